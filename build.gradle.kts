@@ -40,7 +40,22 @@ dependencies {
 
 tasks {
   test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+      // 性能基准测试耗时较长，默认构建不运行，通过 benchmarkTest 任务单独运行
+      excludeTags("benchmark")
+    }
+  }
+  register<Test>("benchmarkTest") {
+    description = "Runs the performance benchmark tests."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+      includeTags("benchmark")
+    }
+    testLogging {
+      showStandardStreams = true
+    }
   }
   // Set the JVM compatibility versions
   withType<JavaCompile> {
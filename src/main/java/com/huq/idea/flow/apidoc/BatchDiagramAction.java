@@ -0,0 +1,105 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.batch.BatchDiagramGenerator;
+import com.huq.idea.flow.apidoc.batch.BatchDiagramKind;
+import com.huq.idea.flow.apidoc.batch.BatchEntry;
+import com.huq.idea.flow.apidoc.batch.BatchEntryPointFinder;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.service.MethodResolveCache;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.util.AiUtils;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * 为项目中所有入口方法批量生成流程图和时序图
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class BatchDiagramAction extends AnAction {
+    private static final Logger LOG = Logger.getInstance(BatchDiagramAction.class);
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null || project.getBasePath() == null) {
+            return;
+        }
+
+        IdeaSettings.State state = IdeaSettings.getInstance().getState();
+        List<IdeaSettings.CustomAiProviderConfig> providers = AiUtils.getCustomProviders();
+        if (providers.isEmpty()) {
+            notify(project, "未配置AI服务商，请先在设置中添加", NotificationType.WARNING);
+            return;
+        }
+        IdeaSettings.CustomAiProviderConfig provider = providers.get(0);
+        String model = provider.getModels() == null ? null : provider.getModels().split(",")[0].trim();
+        AiUtils.AiConfig config = new AiUtils.AiConfig(provider, model);
+        if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+            notify(project, "请在设置中为 " + provider.getName() + " 配置API密钥", NotificationType.WARNING);
+            return;
+        }
+        config.setSystemMessage("你是一个专业的PlantUML图表生成专家，擅长分析Java代码并生成高质量的图表。")
+              .setTemperature(0.7)
+              .setMaxTokens(8000);
+
+        Path outputDir = Paths.get(project.getBasePath()).resolve(state.getBatchOutputDir());
+
+        new Task.Backgroundable(project, "批量生成图表", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText("正在查找入口方法...");
+                indicator.setIndeterminate(true);
+
+                List<BatchEntry> entries = ReadAction.compute(() -> new BatchEntryPointFinder(project)
+                        .find(state.getBatchEntryAnnotations(), state.getBatchEntryPatterns()));
+                if (entries.isEmpty()) {
+                    BatchDiagramAction.notify(project, "未找到入口方法，请检查入口注解和方法模式配置", NotificationType.WARNING);
+                    return;
+                }
+
+                BatchDiagramGenerator generator = new BatchDiagramGenerator(DiagramJobManager.getInstance(project),
+                        state, config, outputDir, EnumSet.allOf(BatchDiagramKind.class));
+                try {
+                    BatchDiagramGenerator.BatchResult result = generator.run(entries, indicator);
+                    LOG.info(MethodResolveCache.getInstance(project).getStatistics());
+                    String message = String.format("入口 %d 个，成功 %d，失败 %d，跳过 %d，速率 %.1f 张/分钟%s<br/>输出目录: %s",
+                            result.getEntryCount(), result.getSucceeded(), result.getFailures().size(),
+                            result.getSkipped(), result.getThroughput(),
+                            result.isCancelled() ? "（已取消，重新运行将继续）" : "", outputDir);
+                    BatchDiagramAction.notify(project, message,
+                            result.getFailures().isEmpty() ? NotificationType.INFORMATION : NotificationType.WARNING);
+                } catch (Exception ex) {
+                    LOG.error("Batch diagram generation failed", ex);
+                    BatchDiagramAction.notify(project, "批量生成失败: " + ex.getMessage(), NotificationType.ERROR);
+                } finally {
+                    VirtualFile dir = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(outputDir);
+                    if (dir != null) {
+                        dir.refresh(true, true);
+                    }
+                }
+            }
+        }.queue();
+    }
+
+    private static void notify(Project project, String content, NotificationType type) {
+        Notifications.Bus.notify(new Notification("com.yt.huq.idea", "批量生成图表", content, type), project);
+    }
+}
@@ -0,0 +1,97 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.MethodDescription;
+import com.intellij.openapi.diagnostic.Logger;
+
+/**
+ * 把方法调用链中的源码拼接成提示词所需的代码文本
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class CallStackCodeCollector {
+    private static final Logger LOG = Logger.getInstance(CallStackCodeCollector.class);
+
+    // 限制递归深度，避免代码过多
+    private static final int MAX_DEPTH = 10;
+
+    private CallStackCodeCollector() {
+    }
+
+    /**
+     * 收集方法调用链中的所有代码
+     */
+    public static String collect(CallStack callStack) {
+        StringBuilder codeBuilder = new StringBuilder();
+        if (callStack == null) {
+            return "";
+        }
+
+        // 添加根方法的代码
+        appendMethodCode(codeBuilder, callStack);
+
+        // 递归添加子方法的代码
+        for (CallStack child : callStack.getChildren()) {
+            collectFromChild(codeBuilder, child, 1);
+        }
+
+        return codeBuilder.toString();
+    }
+
+    /**
+     * 递归收集子调用栈中的代码
+     */
+    private static void collectFromChild(StringBuilder codeBuilder, CallStack callStack, int depth) {
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+        if (!callStack.isRecursive()) {
+            // 添加当前方法的代码
+            appendMethodCode(codeBuilder, callStack);
+        }
+
+        // 递归处理子节点
+        for (CallStack child : callStack.getChildren()) {
+            collectFromChild(codeBuilder, child, depth + 1);
+        }
+    }
+
+    /**
+     * 将方法的代码添加到构建器中
+     */
+    static void appendMethodCode(StringBuilder codeBuilder, CallStack callStack) {
+        MethodDescription methodDesc = callStack.getMethodDescription();
+        if (methodDesc == null) {
+            return;
+        }
+
+        // 获取方法的完整代码
+        String methodCode = methodDesc.getText();
+        if (methodCode == null || methodCode.isEmpty()) {
+            return;
+        }
+
+        if (codeBuilder.indexOf(methodDesc.buildMethodId()) != -1) {
+            // 如果已经添加过这个方法的代码，就不再重复添加
+            LOG.info("Method already added: " + methodDesc.buildMethodId());
+            return;
+        }
+
+        // 添加分隔符和方法信息
+        codeBuilder.append("\n\n// ").append("=".repeat(80)).append("\n");
+        codeBuilder.append("// Class: ").append(methodDesc.getClassName()).append("\n");
+        codeBuilder.append("// Method: ").append(methodDesc.getName()).append("\n");
+        codeBuilder.append("// token: ").append(methodDesc.buildMethodId()).append("\n");
+
+        // 标注被省略的实现，让模型知道还有其他分支
+        if (!callStack.getOmittedImplementations().isEmpty()) {
+            codeBuilder.append("// Omitted implementations (+").append(callStack.getOmittedImplementations().size())
+                    .append(" more): ").append(String.join(", ", callStack.getOmittedImplementations())).append("\n");
+        }
+
+        // 添加方法代码
+        codeBuilder.append(methodCode);
+        codeBuilder.append("\n// ").append("=".repeat(80)).append("\n\n");
+    }
+}
@@ -0,0 +1,391 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.util.MyPsiUtil;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.psi.PsiArrayType;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiTypeElement;
+import com.intellij.psi.PsiTypeParameter;
+import com.intellij.psi.PsiWildcardType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 类图关联类的广度优先扫描
+ *
+ * <p>按层扩展：同一层的类在线程池中并行解析依赖（父类、接口、字段类型、方法返回值和参数类型），
+ * 每个任务各自在读操作中执行，再按上一层的顺序合并结果，因此扫描结果与并行度无关。
+ * 每个类都在离入口类最近的一层被扩展一次，收集的类数量达到上限后立即停止。
+ * 同一文件中文本相同的类型只解析一次，类是否符合过滤条件也只判断一次。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class ClassDependencyCrawler {
+    private static final Logger LOG = Logger.getInstance(ClassDependencyCrawler.class);
+
+    private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * 扫描结果，节点按发现顺序排列
+     */
+    public static class Result<T> {
+        private final Map<T, Integer> depths;
+        private final int expandedCount;
+        private final boolean truncated;
+
+        Result(Map<T, Integer> depths, int expandedCount, boolean truncated) {
+            this.depths = depths;
+            this.expandedCount = expandedCount;
+            this.truncated = truncated;
+        }
+
+        public List<T> getNodes() {
+            return new ArrayList<>(depths.keySet());
+        }
+
+        /**
+         * 节点离入口的层数，入口为 0
+         */
+        public int getDepth(T node) {
+            Integer depth = depths.get(node);
+            return depth == null ? -1 : depth;
+        }
+
+        /**
+         * 解析过依赖的节点数量
+         */
+        public int getExpandedCount() {
+            return expandedCount;
+        }
+
+        /**
+         * 是否因为达到数量上限而提前停止
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    private ClassDependencyCrawler() {
+    }
+
+    /**
+     * 收集类图需要的关联类，入口类不受类名模式过滤
+     *
+     * <p>不能在读操作中调用，每个解析任务会自己获取读操作。
+     */
+    public static Set<PsiClass> collect(PsiClass root, IdeaSettings.State settings, ProgressIndicator indicator) {
+        ClassFilter filter = new ClassFilter(settings);
+        if (!ReadAction.compute(() -> root.isValid() && filter.accept(root, true))) {
+            return Collections.emptySet();
+        }
+
+        TypeResolver resolver = new TypeResolver(filter);
+        long start = System.currentTimeMillis();
+        Result<PsiClass> result = crawl(root, settings.getClassDiagramDepth(), settings.getClassDiagramMaxClasses(), PARALLELISM,
+                psiClass -> ReadAction.nonBlocking(() -> resolver.dependenciesOf(psiClass)).executeSynchronously(),
+                indicator::checkCanceled);
+        LOG.info("类图关联类扫描完成: " + result.getNodes().size() + " 个类, 解析 " + result.getExpandedCount()
+                + " 个类, 类型缓存 " + resolver.getCacheSize() + " 项, 耗时 " + (System.currentTimeMillis() - start) + " ms"
+                + (result.isTruncated() ? ", 已达到数量上限" : ""));
+        return new LinkedHashSet<>(result.getNodes());
+    }
+
+    /**
+     * 按层广度优先扫描
+     *
+     * @param maxDepth      最大层数，该层的节点会被收集但不再扩展
+     * @param maxNodes      最多收集的节点数量（含入口）
+     * @param parallelism   同一层并行解析的线程数，为 1 时在当前线程中解析
+     * @param dependencies  返回节点的直接依赖（已过滤），可能在多个线程中同时调用
+     * @param checkCanceled 每层开始前调用，用于响应取消
+     */
+    public static <T> Result<T> crawl(T root, int maxDepth, int maxNodes, int parallelism,
+                                      Function<T, List<T>> dependencies, Runnable checkCanceled) {
+        Map<T, Integer> depths = new LinkedHashMap<>();
+        depths.put(root, 0);
+        List<T> frontier = List.of(root);
+        int expanded = 0;
+        boolean truncated = false;
+
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            for (int depth = 0; depth < maxDepth && !frontier.isEmpty() && !truncated; depth++) {
+                checkCanceled.run();
+                List<List<T>> resolved = expandLevel(frontier, dependencies, pool);
+                expanded += frontier.size();
+
+                List<T> next = new ArrayList<>();
+                for (List<T> nodeDependencies : resolved) {
+                    for (T dependency : nodeDependencies) {
+                        if (depths.containsKey(dependency)) {
+                            continue;
+                        }
+                        if (depths.size() >= maxNodes) {
+                            truncated = true;
+                            break;
+                        }
+                        depths.put(dependency, depth + 1);
+                        next.add(dependency);
+                    }
+                    if (truncated) {
+                        break;
+                    }
+                }
+                frontier = next;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        return new Result<>(depths, expanded, truncated);
+    }
+
+    /**
+     * 解析一层节点的依赖，结果与节点顺序一致
+     */
+    private static <T> List<List<T>> expandLevel(List<T> frontier, Function<T, List<T>> dependencies, ForkJoinPool pool) {
+        List<List<T>> resolved = new ArrayList<>(frontier.size());
+        if (pool == null || frontier.size() == 1) {
+            for (T node : frontier) {
+                resolved.add(dependencies.apply(node));
+            }
+            return resolved;
+        }
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>(frontier.size());
+        for (T node : frontier) {
+            tasks.add(pool.submit(() -> dependencies.apply(node)));
+        }
+        for (ForkJoinTask<List<T>> task : tasks) {
+            resolved.add(task.join());
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析类型及其泛型参数、数组元素和通配符边界中引用的类
+     */
+    static List<PsiClass> resolveClasses(PsiType type) {
+        List<PsiClass> classes = new ArrayList<>();
+        Deque<PsiType> pending = new ArrayDeque<>();
+        if (type != null) {
+            pending.push(type);
+        }
+        while (!pending.isEmpty()) {
+            PsiType current = pending.pop();
+            if (current instanceof PsiArrayType) {
+                pending.push(current.getDeepComponentType());
+            } else if (current instanceof PsiWildcardType) {
+                PsiType bound = ((PsiWildcardType) current).getBound();
+                if (bound != null) {
+                    pending.push(bound);
+                }
+            } else if (current instanceof PsiClassType) {
+                PsiClassType classType = (PsiClassType) current;
+                PsiClass resolvedClass = classType.resolve();
+                if (resolvedClass != null) {
+                    classes.add(resolvedClass);
+                }
+                PsiType[] parameters = classType.getParameters();
+                for (int i = parameters.length - 1; i >= 0; i--) {
+                    pending.push(parameters[i]);
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 类图的类过滤条件，结果按类缓存
+     */
+    private static class ClassFilter {
+        private final boolean includeLibrarySources;
+        private final List<Pattern> relevantPatterns;
+        private final List<Pattern> excludedPatterns;
+        private final Map<PsiClass, Boolean> accepted = new ConcurrentHashMap<>();
+
+        ClassFilter(IdeaSettings.State settings) {
+            this.includeLibrarySources = settings.isIncludeLibrarySources();
+            this.relevantPatterns = compile(settings.getClassRelevantClassPatterns());
+            this.excludedPatterns = compile(settings.getClassExcludedClassPatterns());
+        }
+
+        /**
+         * 必须在读操作中调用
+         */
+        boolean accept(PsiClass psiClass, boolean root) {
+            if (root) {
+                return check(psiClass, true);
+            }
+            Boolean cached = accepted.get(psiClass);
+            if (cached == null) {
+                cached = check(psiClass, false);
+                accepted.put(psiClass, cached);
+            }
+            return cached;
+        }
+
+        private boolean check(PsiClass psiClass, boolean root) {
+            // 泛型参数不是真正的类
+            if (psiClass instanceof PsiTypeParameter) {
+                return false;
+            }
+            // 排除 compiled class files with no readable source or strictly jar file system
+            if (MyPsiUtil.isInClassFile(psiClass)) {
+                return false;
+            }
+            boolean inJar = MyPsiUtil.isInJarFileSystem(psiClass);
+            if (!includeLibrarySources && inJar) {
+                return false;
+            }
+
+            String qualifiedName = psiClass.getQualifiedName();
+            // Additional safeguard for JDK classes even if includeLibrarySources is true
+            if (inJar && qualifiedName != null
+                    && (qualifiedName.startsWith("java.") || qualifiedName.startsWith("javax.") || qualifiedName.startsWith("jdk."))) {
+                return false;
+            }
+            // Skip filtering for the root target class so the diagram always generates the target
+            if (root || qualifiedName == null) {
+                return true;
+            }
+            return !matchesAny(excludedPatterns, qualifiedName) && matchesAny(relevantPatterns, qualifiedName);
+        }
+
+        private static boolean matchesAny(List<Pattern> patterns, String qualifiedName) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(qualifiedName).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 通配符模式转成正则：. 匹配点号，* 匹配任意字符
+         */
+        private static List<Pattern> compile(List<String> wildcardPatterns) {
+            List<Pattern> patterns = new ArrayList<>();
+            for (String wildcardPattern : wildcardPatterns) {
+                if (wildcardPattern == null) {
+                    continue;
+                }
+                try {
+                    patterns.add(Pattern.compile(wildcardPattern.replace(".", "\\.").replace("*", ".*")));
+                } catch (Exception e) {
+                    LOG.warn("忽略无效的类名模式: " + wildcardPattern);
+                }
+            }
+            return patterns;
+        }
+    }
+
+    /**
+     * 解析类的直接依赖，同一文件中文本相同的类型只解析一次
+     */
+    private static class TypeResolver {
+        private final ClassFilter filter;
+        // 文件 -> 类型文本 -> 类型中引用的类（含泛型参数），同一文件的导入相同，解析结果也相同
+        private final Map<PsiFile, Map<String, List<PsiClass>>> typeCache = new ConcurrentHashMap<>();
+
+        TypeResolver(ClassFilter filter) {
+            this.filter = filter;
+        }
+
+        int getCacheSize() {
+            int size = 0;
+            for (Map<String, List<PsiClass>> types : typeCache.values()) {
+                size += types.size();
+            }
+            return size;
+        }
+
+        /**
+         * 必须在读操作中调用
+         */
+        List<PsiClass> dependenciesOf(PsiClass psiClass) {
+            if (!psiClass.isValid()) {
+                return List.of();
+            }
+            Set<PsiClass> classes = new LinkedHashSet<>();
+            // 父类
+            addAccepted(classes, psiClass.getSuperClass());
+            // 接口
+            for (PsiClass intf : psiClass.getInterfaces()) {
+                addAccepted(classes, intf);
+            }
+
+            PsiFile file = psiClass.getContainingFile();
+            // 字段
+            for (PsiField field : psiClass.getFields()) {
+                addType(classes, file, field.getTypeElement(), field.getType());
+            }
+            // 方法返回值和参数
+            for (PsiMethod method : psiClass.getMethods()) {
+                PsiType returnType = method.getReturnType();
+                if (returnType != null) {
+                    addType(classes, file, method.getReturnTypeElement(), returnType);
+                }
+                for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                    addType(classes, file, parameter.getTypeElement(), parameter.getType());
+                }
+            }
+            classes.remove(psiClass);
+            return new ArrayList<>(classes);
+        }
+
+        private void addAccepted(Set<PsiClass> classes, PsiClass psiClass) {
+            if (psiClass != null && filter.accept(psiClass, false)) {
+                classes.add(psiClass);
+            }
+        }
+
+        private void addType(Set<PsiClass> classes, PsiFile file, PsiTypeElement typeElement, PsiType type) {
+            if (file == null || typeElement == null) {
+                // 编译类没有类型元素，直接解析
+                for (PsiClass psiClass : resolveClasses(type)) {
+                    addAccepted(classes, psiClass);
+                }
+                return;
+            }
+            Map<String, List<PsiClass>> types = typeCache.computeIfAbsent(file, f -> new ConcurrentHashMap<>());
+            String text = typeElement.getText();
+            List<PsiClass> resolved = types.get(text);
+            if (resolved == null) {
+                List<PsiClass> accepted = new ArrayList<>();
+                for (PsiClass psiClass : resolveClasses(type)) {
+                    if (filter.accept(psiClass, false)) {
+                        accepted.add(psiClass);
+                    }
+                }
+                resolved = accepted;
+                types.putIfAbsent(text, resolved);
+            }
+            classes.addAll(resolved);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.huq.idea.flow.apidoc;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.javadoc.PsiDocComment;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 类图和状态图提示词中的类源码精简
+ *
+ * <p>只保留类声明、字段声明和方法签名，方法体只保留读写状态字段（非静态的枚举类型字段）的方法，
+ * 并且在 token 预算内按类的收集顺序（离入口类近的优先）加入。文档注释、未收集的内部类都会省略。
+ * 分两步：{@link #outline(Collection)} 在读操作中把类转换成 {@link ClassOutline}，
+ * {@link #render(List, int)} 再按预算输出，与 PSI 无关。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class ClassSourcePruner {
+    private static final Logger LOG = Logger.getInstance(ClassSourcePruner.class);
+
+    /**
+     * 一个方法：签名和方法体，没有方法体（抽象方法）时 body 为 null
+     */
+    public static class MethodOutline {
+        private final String signature;
+        private final String body;
+        private final boolean touchesState;
+
+        public MethodOutline(String signature, String body, boolean touchesState) {
+            this.signature = signature;
+            this.body = body;
+            this.touchesState = touchesState;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public boolean isTouchesState() {
+            return touchesState;
+        }
+    }
+
+    /**
+     * 一个类的精简结构，originalTokens 为类完整源码估算的 token 数量
+     */
+    public static class ClassOutline {
+        private final String qualifiedName;
+        private final String header;
+        private final int originalTokens;
+        private final List<String> enumConstants = new ArrayList<>();
+        private final List<String> fields = new ArrayList<>();
+        private final List<MethodOutline> methods = new ArrayList<>();
+        private final List<String> omittedInnerClasses = new ArrayList<>();
+
+        public ClassOutline(String qualifiedName, String header, int originalTokens) {
+            this.qualifiedName = qualifiedName;
+            this.header = header;
+            this.originalTokens = originalTokens;
+        }
+
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        public String getHeader() {
+            return header;
+        }
+
+        public int getOriginalTokens() {
+            return originalTokens;
+        }
+
+        public List<String> getEnumConstants() {
+            return enumConstants;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        public List<MethodOutline> getMethods() {
+            return methods;
+        }
+
+        public List<String> getOmittedInnerClasses() {
+            return omittedInnerClasses;
+        }
+
+        public ClassOutline addEnumConstant(String constant) {
+            enumConstants.add(constant);
+            return this;
+        }
+
+        public ClassOutline addField(String declaration) {
+            fields.add(declaration);
+            return this;
+        }
+
+        public ClassOutline addMethod(String signature, String body, boolean touchesState) {
+            methods.add(new MethodOutline(signature, body, touchesState));
+            return this;
+        }
+
+        public ClassOutline addOmittedInnerClass(String name) {
+            omittedInnerClasses.add(name);
+            return this;
+        }
+    }
+
+    /**
+     * 精简结果
+     */
+    public static class Result {
+        private final String code;
+        private final int originalTokens;
+        private final int tokens;
+        private final int keptBodies;
+        private final int droppedBodies;
+
+        Result(String code, int originalTokens, int tokens, int keptBodies, int droppedBodies) {
+            this.code = code;
+            this.originalTokens = originalTokens;
+            this.tokens = tokens;
+            this.keptBodies = keptBodies;
+            this.droppedBodies = droppedBodies;
+        }
+
+        /**
+         * 精简后的源码，精简比例见 {@link #getSummary()}
+         */
+        public String getCode() {
+            return code;
+        }
+
+        public int getOriginalTokens() {
+            return originalTokens;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        /**
+         * 保留了方法体的状态相关方法数量
+         */
+        public int getKeptBodies() {
+            return keptBodies;
+        }
+
+        /**
+         * 因为超出预算而省略方法体的状态相关方法数量
+         */
+        public int getDroppedBodies() {
+            return droppedBodies;
+        }
+
+        /**
+         * 减少的比例，0 到 1
+         */
+        public double getReductionRatio() {
+            return originalTokens == 0 ? 0 : 1 - (double) tokens / originalTokens;
+        }
+
+        public String getSummary() {
+            return String.format("源码精简: 约 %d -> %d tokens (减少 %.0f%%), 保留 %d 个状态相关方法体%s",
+                    originalTokens, tokens, getReductionRatio() * 100, keptBodies,
+                    droppedBodies > 0 ? ", 超出预算省略 " + droppedBodies + " 个" : "");
+        }
+    }
+
+    private ClassSourcePruner() {
+    }
+
+    /**
+     * 收集类的精简源码，必须在读操作中调用
+     *
+     * @param tokenBudget 精简源码的 token 预算，类声明和方法签名超出预算时仍然保留
+     */
+    public static Result collect(Collection<PsiClass> classes, int tokenBudget) {
+        Result result = render(outline(classes), tokenBudget);
+        LOG.info(result.getSummary());
+        return result;
+    }
+
+    /**
+     * 把类转换成精简结构，必须在读操作中调用
+     */
+    public static List<ClassOutline> outline(Collection<PsiClass> classes) {
+        Set<PsiField> stateFields = new HashSet<>();
+        for (PsiClass psiClass : classes) {
+            for (PsiField field : psiClass.getFields()) {
+                if (StateMachineExtractor.stateEnumOf(field) != null) {
+                    stateFields.add(field);
+                }
+            }
+        }
+
+        List<ClassOutline> outlines = new ArrayList<>();
+        for (PsiClass psiClass : classes) {
+            String text = psiClass.getText();
+            if (text == null || text.isEmpty() || psiClass.getLBrace() == null) {
+                continue;
+            }
+            ClassOutline outline = new ClassOutline(psiClass.getQualifiedName(),
+                    withoutDocComment(psiClass, psiClass.getDocComment(), psiClass.getLBrace()), estimateTokens(text));
+            for (PsiField field : psiClass.getFields()) {
+                String declaration = withoutDocComment(field, field.getDocComment(), null);
+                if (field instanceof PsiEnumConstant) {
+                    outline.addEnumConstant(declaration);
+                } else {
+                    outline.addField(declaration);
+                }
+            }
+            for (PsiMethod method : psiClass.getMethods()) {
+                PsiCodeBlock body = method.getBody();
+                outline.addMethod(withoutDocComment(method, method.getDocComment(), body),
+                        body != null ? body.getText() : null, body != null && touchesState(body, stateFields));
+            }
+            for (PsiClass inner : psiClass.getInnerClasses()) {
+                if (!classes.contains(inner)) {
+                    outline.addOmittedInnerClass(inner.getName());
+                }
+            }
+            outlines.add(outline);
+        }
+        return outlines;
+    }
+
+    private static boolean touchesState(PsiCodeBlock body, Set<PsiField> stateFields) {
+        if (stateFields.isEmpty()) {
+            return false;
+        }
+        for (PsiReferenceExpression reference : PsiTreeUtil.findChildrenOfType(body, PsiReferenceExpression.class)) {
+            PsiElement resolved = reference.resolve();
+            if (resolved instanceof PsiField && stateFields.contains(resolved)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 元素从文档注释之后到 end 之前的源码，end 为 null 时到元素结尾
+     */
+    private static String withoutDocComment(PsiElement element, PsiDocComment docComment, PsiElement end) {
+        String text = element.getText();
+        int start = docComment != null ? docComment.getStartOffsetInParent() + docComment.getTextLength() : 0;
+        int stop = end != null ? end.getStartOffsetInParent() : text.length();
+        return text.substring(start, Math.max(start, stop)).trim();
+    }
+
+    /**
+     * 收集类的完整源码，关闭精简时使用，必须在读操作中调用
+     */
+    public static String fullSource(Collection<PsiClass> classes) {
+        StringBuilder code = new StringBuilder();
+        for (PsiClass psiClass : classes) {
+            String text = psiClass.getText();
+            if (text != null && !text.isEmpty()) {
+                code.append(separator(psiClass.getQualifiedName())).append(text);
+            }
+        }
+        return code.toString();
+    }
+
+    private static String separator(String qualifiedName) {
+        return "\n\n// " + "=".repeat(80) + "\n"
+                + "// Class: " + qualifiedName + "\n"
+                + "// " + "=".repeat(80) + "\n\n";
+    }
+
+    /**
+     * 按预算输出精简源码：先计算所有声明和签名，再按顺序加入状态相关方法的方法体，直到超出预算
+     */
+    public static Result render(List<ClassOutline> outlines, int tokenBudget) {
+        int used = 0;
+        int originalTokens = 0;
+        List<String> separators = new ArrayList<>();
+        for (ClassOutline outline : outlines) {
+            String separator = separator(outline.getQualifiedName());
+            separators.add(separator);
+            int separatorTokens = estimateTokens(separator);
+            used += separatorTokens + estimateTokens(renderClass(outline, Set.of()));
+            // 分隔注释在完整源码中同样存在
+            originalTokens += separatorTokens + outline.getOriginalTokens();
+        }
+
+        Set<MethodOutline> kept = new HashSet<>();
+        int dropped = 0;
+        for (ClassOutline outline : outlines) {
+            for (MethodOutline method : outline.getMethods()) {
+                if (!method.isTouchesState() || method.getBody() == null) {
+                    continue;
+                }
+                int cost = estimateTokens(method.getBody());
+                if (used + cost <= tokenBudget) {
+                    kept.add(method);
+                    used += cost;
+                } else {
+                    dropped++;
+                }
+            }
+        }
+
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < outlines.size(); i++) {
+            code.append(separators.get(i)).append(renderClass(outlines.get(i), kept));
+        }
+        String pruned = code.toString();
+        return new Result(pruned, originalTokens, estimateTokens(pruned), kept.size(), dropped);
+    }
+
+    private static String renderClass(ClassOutline outline, Set<MethodOutline> kept) {
+        StringBuilder code = new StringBuilder(outline.getHeader()).append(" {\n");
+        if (!outline.getEnumConstants().isEmpty()) {
+            code.append("    ").append(String.join(",\n    ", outline.getEnumConstants())).append(";\n\n");
+        }
+        for (String field : outline.getFields()) {
+            code.append("    ").append(field).append('\n');
+        }
+        if (!outline.getFields().isEmpty()) {
+            code.append('\n');
+        }
+        for (MethodOutline method : outline.getMethods()) {
+            code.append("    ").append(method.getSignature());
+            if (kept.contains(method)) {
+                code.append(' ').append(method.getBody());
+            } else if (method.getBody() != null) {
+                code.append(" { ... }");
+            }
+            code.append('\n');
+        }
+        for (String inner : outline.getOmittedInnerClasses()) {
+            code.append("    // 内部类 ").append(inner).append(" 已省略\n");
+        }
+        return code.append("}\n").toString();
+    }
+
+    /**
+     * 估算 token 数量：中日韩字符按 1 个 token，其余字符按 4 个字符 1 个 token
+     */
+    static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
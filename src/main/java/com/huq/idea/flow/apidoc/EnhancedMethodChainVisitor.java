@@ -1,5 +1,6 @@
 package com.huq.idea.flow.apidoc;
 
+import com.huq.idea.flow.apidoc.service.MethodResolveCache;
 import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
 import com.huq.idea.flow.model.MethodDescription;
@@ -8,15 +9,14 @@ import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiStatement;
 import com.intellij.psi.javadoc.PsiDocComment;
-import com.intellij.psi.search.searches.DefinitionsScopedSearch;
 import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.util.Query;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -51,6 +51,9 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
     // Maximum depth to prevent excessive nesting
     private static final int MAX_DEPTH = 10;
 
+    // Scoped and ranked implementation search, bound to the entry method
+    private ImplementationFinder implementationFinder;
+
     /**
      * Generate method call chains starting from the given element
      *
@@ -67,7 +70,11 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
         if (element instanceof PsiMethod) {
             PsiMethod method = (PsiMethod) element;
             LOG.info("Starting method chain analysis for: " + method.getName());
+            implementationFinder = new ImplementationFinder(method);
             analyzeMethod(method);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(MethodResolveCache.getInstance(method.getProject()).getStatistics());
+            }
         }
         
         return topStack;
@@ -128,20 +135,9 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
             // First visit the abstract method itself
             method.accept(this);
             
-            // Then find and visit all implementations
-            Query<PsiElement> search = DefinitionsScopedSearch.search(method).allowParallelProcessing();
-
-            // Create a collection to hold valid implementation methods
-            java.util.List<PsiMethod> implementations = new java.util.ArrayList<>();
-            for (PsiElement element : search) {
-                if (element instanceof PsiMethod) {
-                    PsiMethod implMethod = (PsiMethod) element;
-                    PsiClass implClass = implMethod.getContainingClass();
-                    if (implClass != null) {
-                        implementations.add(implMethod);
-                    }
-                }
-            }
+            // Then find all implementations within the configured scope, limited to the top-ranked ones
+            ImplementationFinder.Result found = implementationFinder.find(method);
+            java.util.List<PsiMethod> implementations = found.getIncluded();
 
             if (implementations.size() > 1) {
                 // If there are multiple implementations, wrap them in a multi-implementation group node
@@ -150,6 +146,7 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
                 // Create a virtual node for the par/else group
                 CallStack groupNode = new CallStack(methodDescription, currentStack);
                 groupNode.setMultiImplementationGroup(true);
+                recordOmitted(groupNode, found);
                 currentStack.addChild(groupNode);
 
                 for (PsiMethod implMethod : implementations) {
@@ -181,6 +178,7 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
                 implDescription.put("implementation", "true");
                 implDescription.put("implements", methodId);
 
+                recordOmitted(currentStack, found);
                 CallStack parentStack = currentStack;
                 currentStack = currentStack.methodCall(implDescription);
                 implMethod.accept(this);
@@ -192,6 +190,15 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
         }
     }
 
+    /**
+     * Record the implementations left out by the top-K limit on the given node
+     */
+    private void recordOmitted(CallStack node, ImplementationFinder.Result found) {
+        for (String className : found.getOmittedClassNames()) {
+            node.addOmittedImplementation(className);
+        }
+    }
+
     /**
      * Create a method description from a PsiMethod
      *
@@ -206,6 +213,15 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
         
         String className = containingClass.getQualifiedName();
         String methodName = method.getName();
+        String returnType = method.getReturnType() != null ? method.getReturnType().getPresentableText() : "void";
+
+        // In stub-only mode only stub-backed data is read here, source text and doc comment load on demand
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        if (settings.isStubOnlyAnalysis()) {
+            return MethodDescription.lazy(method, className, methodName, returnType,
+                    interfaceToImplementationMap.get(method), settings.isIncludeLibrarySources());
+        }
+
         String methodText = method.getText();
         PsiDocComment docComment = method.getDocComment();
         
@@ -217,8 +233,6 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
             }
         }
         
-        String returnType = method.getReturnType() != null ? method.getReturnType().getPresentableText() : "void";
-        
         return new MethodDescription(method, className, methodText, methodName, docComment, returnType);
     }
 
@@ -233,7 +247,7 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
         
         // Get the calling and called methods
         PsiMethod callingMethod = PsiTreeUtil.getParentOfType(expression, PsiMethod.class);
-        PsiMethod calledMethod = expression.resolveMethod();
+        PsiMethod calledMethod = MethodResolveCache.getInstance(expression.getProject()).resolveMethod(expression);
         
         if (callingMethod != null && calledMethod != null) {
             PsiClass calledClass = calledMethod.getContainingClass();
@@ -366,6 +380,12 @@ public class EnhancedMethodChainVisitor extends JavaRecursiveElementVisitor {
             return false;
         }
         
+        // Don't follow compiled library methods in stub-only mode, visiting them would trigger the decompiler
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        if (settings.isStubOnlyAnalysis() && !settings.isIncludeLibrarySources() && method instanceof PsiCompiledElement) {
+            return false;
+        }
+        
         // Check if we've already visited this method
         String methodId = qualifiedName + "." + method.getName();
         if (visitedMethods.contains(methodId)) {
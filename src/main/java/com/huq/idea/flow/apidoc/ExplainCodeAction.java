@@ -1,8 +1,13 @@
 package com.huq.idea.flow.apidoc;
 
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.job.DiagramPipeline;
 import com.huq.idea.flow.apidoc.service.UmlFlowService;
 import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
 import com.huq.idea.flow.model.MethodDescription;
 import com.huq.idea.flow.util.AiUtils;
 import com.huq.idea.flow.util.MethodUtils;
@@ -16,21 +21,18 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.LogicalPosition;
-import com.intellij.openapi.progress.PerformInBackgroundOption;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
-import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.util.concurrent.CancellationException;
 
 /**
  * Action to explain Java code using AI
@@ -207,66 +209,66 @@ public class ExplainCodeAction extends AnAction implements DumbAware {
                 return;
             }
 
-            new Task.Backgroundable(project, "解释代码", true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
-                @Override
-                public void run(@NotNull ProgressIndicator indicator) {
-                    indicator.setText("正在分析代码...");
-                    indicator.setIndeterminate(true);
-
-                    String explainPromptTemplate = IdeaSettings.getInstance().getState().getExplainCodePrompt();
-                    String prompt = String.format(explainPromptTemplate, codeArea.getText());
-
-                    AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
-                    if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            generateButton.setEnabled(true);
-                            Notifications.Bus.notify(new Notification(
-                                "com.yt.huq.idea",
-                                "API密钥未配置",
-                                "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
-                                NotificationType.WARNING),
-                                project);
-                        });
-                        return;
-                    }
-
-                    config.setSystemMessage("你是一个高级Java开发专家和架构师。请提供专业、准确、易懂的代码解释。")
-                          .setTemperature(0.7)
-                          .setMaxTokens(8000);
-
-                    AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
-                    String explanation = response.isSuccess() ? response.getContent() : null;
-
-                    if (explanation != null && !explanation.isEmpty()) {
-                        String finalExplanation = explanation;
-                        SwingUtilities.invokeLater(() -> {
-                            explanationArea.setText(finalExplanation);
-                            // Move caret to top
-                            explanationArea.setCaretPosition(0);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("重新解释");
-                        });
-                    } else {
-                        SwingUtilities.invokeLater(() -> {
-                            String errorMsg = "代码解释失败，请检查API设置和网络连接";
-                            if (response != null && !response.isSuccess() && response.getErrorMessage() != null) {
-                                errorMsg = "代码解释失败: " + response.getErrorMessage();
-                            }
-
-                            Notifications.Bus.notify(new Notification(
-                                    "com.yt.huq.idea",
-                                    "代码解释",
-                                    errorMsg,
-                                    NotificationType.ERROR),
-                                    project);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("解释代码");
-                        });
-                    }
+            String explainPromptTemplate = IdeaSettings.getInstance().getState().getExplainCodePrompt();
+            String prompt = String.format(explainPromptTemplate, codeArea.getText());
+
+            AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
+            if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+                generateButton.setEnabled(true);
+                generateButton.setText("解释代码");
+                Notifications.Bus.notify(new Notification(
+                    "com.yt.huq.idea",
+                    "API密钥未配置",
+                    "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
+                    NotificationType.WARNING),
+                    project);
+                return;
+            }
+
+            config.setSystemMessage("你是一个高级Java开发专家和架构师。请提供专业、准确、易懂的代码解释。")
+                  .setTemperature(0.7)
+                  .setMaxTokens(8000);
+
+            // 相同模型和代码的解释进行中时复用同一个任务
+            DiagramJobContext context = new DiagramJobContext("explain",
+                    "explain:" + CallStackFingerprint.sha256(selectedProvider.getName() + "|" + selectedModel + "|" + prompt),
+                    "代码解释: " + title, DiagramJobContext.Priority.INTERACTIVE);
+            DiagramJobManager jobManager = DiagramJobManager.getInstance(project);
+            DiagramJob<String> job = jobManager.submit(context, DiagramPipeline
+                    .of(DiagramJob.Stage.AI, (input, j) -> {
+                        AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
+                        j.recordAiCall(response);
+                        if (!response.isSuccess() || response.getContent() == null || response.getContent().isEmpty()) {
+                            throw new IllegalStateException(response.getErrorMessage());
+                        }
+                        return response.getContent();
+                    }));
+            jobManager.track("解释代码", job);
+
+            job.onResult((explanation, error) -> SwingUtilities.invokeLater(() -> {
+                if (explanation != null) {
+                    explanationArea.setText(explanation);
+                    // Move caret to top
+                    explanationArea.setCaretPosition(0);
+
+                    generateButton.setEnabled(true);
+                    generateButton.setText("重新解释");
+                    return;
                 }
-            }.queue();
+                if (!(error instanceof CancellationException)) {
+                    String errorMsg = error.getMessage() != null
+                            ? "代码解释失败: " + error.getMessage()
+                            : "代码解释失败，请检查API设置和网络连接";
+                    Notifications.Bus.notify(new Notification(
+                            "com.yt.huq.idea",
+                            "代码解释",
+                            errorMsg,
+                            NotificationType.ERROR),
+                            project);
+                }
+                generateButton.setEnabled(true);
+                generateButton.setText("解释代码");
+            }));
         });
         buttonPanel.add(generateButton);
 
@@ -1,8 +1,13 @@
 package com.huq.idea.flow.apidoc;
 
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.job.DiagramPipeline;
 import com.huq.idea.flow.apidoc.service.UmlFlowService;
 import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
 import com.huq.idea.flow.model.MethodDescription;
 import com.huq.idea.flow.util.AiUtils;
 import com.huq.idea.flow.util.MethodUtils;
@@ -16,21 +21,18 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.LogicalPosition;
-import com.intellij.openapi.progress.PerformInBackgroundOption;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
-import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.util.concurrent.CancellationException;
 
 /**
  * Action to generate JUnit 5 tests for Java code using AI
@@ -206,76 +208,76 @@ public class GenerateUnitTestAction extends AnAction implements DumbAware {
                 return;
             }
 
-            new Task.Backgroundable(project, "生成测试代码", true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
-                @Override
-                public void run(@NotNull ProgressIndicator indicator) {
-                    indicator.setText("正在生成单元测试...");
-                    indicator.setIndeterminate(true);
-
-                    String generateTestPromptTemplate = IdeaSettings.getInstance().getState().getGenerateTestPrompt();
-                    String prompt = String.format(generateTestPromptTemplate, codeArea.getText());
-
-                    AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
-                    if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            generateButton.setEnabled(true);
-                            Notifications.Bus.notify(new Notification(
-                                "com.yt.huq.idea",
-                                "API密钥未配置",
-                                "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
-                                NotificationType.WARNING),
-                                project);
-                        });
-                        return;
-                    }
-
-                    config.setSystemMessage("你是一个高级Java开发专家和测试工程师。请提供高质量、可以直接运行的JUnit 5单元测试代码。如果包含Markdown代码块符号(如```java)，请去掉，只输出纯代码。")
-                          .setTemperature(0.2)
-                          .setMaxTokens(8000);
-
-                    AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
-                    String generatedTest = response.isSuccess() ? response.getContent() : null;
-
-                    if (generatedTest != null && !generatedTest.isEmpty()) {
+            String generateTestPromptTemplate = IdeaSettings.getInstance().getState().getGenerateTestPrompt();
+            String prompt = String.format(generateTestPromptTemplate, codeArea.getText());
+
+            AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
+            if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+                generateButton.setEnabled(true);
+                generateButton.setText("生成测试代码");
+                Notifications.Bus.notify(new Notification(
+                    "com.yt.huq.idea",
+                    "API密钥未配置",
+                    "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
+                    NotificationType.WARNING),
+                    project);
+                return;
+            }
+
+            config.setSystemMessage("你是一个高级Java开发专家和测试工程师。请提供高质量、可以直接运行的JUnit 5单元测试代码。如果包含Markdown代码块符号(如```java)，请去掉，只输出纯代码。")
+                  .setTemperature(0.2)
+                  .setMaxTokens(8000);
+
+            // 相同模型和代码的测试生成进行中时复用同一个任务
+            DiagramJobContext context = new DiagramJobContext("test",
+                    "test:" + CallStackFingerprint.sha256(selectedProvider.getName() + "|" + selectedModel + "|" + prompt),
+                    "单元测试: " + title, DiagramJobContext.Priority.INTERACTIVE);
+            DiagramJobManager jobManager = DiagramJobManager.getInstance(project);
+            DiagramJob<String> job = jobManager.submit(context, DiagramPipeline
+                    .of(DiagramJob.Stage.AI, (input, j) -> {
+                        AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
+                        j.recordAiCall(response);
+                        if (!response.isSuccess() || response.getContent() == null || response.getContent().isEmpty()) {
+                            throw new IllegalStateException(response.getErrorMessage());
+                        }
+                        String content = response.getContent();
                         // 清理可能包含的 Markdown 代码块标签
-                        if (generatedTest.startsWith("```java")) {
-                            generatedTest = generatedTest.substring(7);
-                        } else if (generatedTest.startsWith("```")) {
-                            generatedTest = generatedTest.substring(3);
+                        if (content.startsWith("```java")) {
+                            content = content.substring(7);
+                        } else if (content.startsWith("```")) {
+                            content = content.substring(3);
                         }
-                        if (generatedTest.endsWith("```")) {
-                            generatedTest = generatedTest.substring(0, generatedTest.length() - 3);
+                        if (content.endsWith("```")) {
+                            content = content.substring(0, content.length() - 3);
                         }
-                        String finalGeneratedTest = generatedTest.trim();
-
-                        SwingUtilities.invokeLater(() -> {
-                            testArea.setText(finalGeneratedTest);
-                            // Move caret to top
-                            testArea.setCaretPosition(0);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("重新生成");
-                        });
-                    } else {
-                        SwingUtilities.invokeLater(() -> {
-                            String errorMsg = "生成测试代码失败，请检查API设置和网络连接";
-                            if (response != null && !response.isSuccess() && response.getErrorMessage() != null) {
-                                errorMsg = "生成测试代码失败: " + response.getErrorMessage();
-                            }
-
-                            Notifications.Bus.notify(new Notification(
-                                    "com.yt.huq.idea",
-                                    "生成单元测试",
-                                    errorMsg,
-                                    NotificationType.ERROR),
-                                    project);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("生成测试代码");
-                        });
-                    }
+                        return content.trim();
+                    }));
+            jobManager.track("生成测试代码", job);
+
+            job.onResult((generatedTest, error) -> SwingUtilities.invokeLater(() -> {
+                if (generatedTest != null) {
+                    testArea.setText(generatedTest);
+                    // Move caret to top
+                    testArea.setCaretPosition(0);
+
+                    generateButton.setEnabled(true);
+                    generateButton.setText("重新生成");
+                    return;
                 }
-            }.queue();
+                if (!(error instanceof CancellationException)) {
+                    String errorMsg = error.getMessage() != null
+                            ? "生成测试代码失败: " + error.getMessage()
+                            : "生成测试代码失败，请检查API设置和网络连接";
+                    Notifications.Bus.notify(new Notification(
+                            "com.yt.huq.idea",
+                            "生成单元测试",
+                            errorMsg,
+                            NotificationType.ERROR),
+                            project);
+                }
+                generateButton.setEnabled(true);
+                generateButton.setText("生成测试代码");
+            }));
         });
         buttonPanel.add(generateButton);
 
@@ -0,0 +1,207 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.service.MethodResolveCache;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleRootManager;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.search.searches.ReferencesSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按配置的范围查找接口/抽象方法的实现，并限制展开数量
+ *
+ * <p>搜索范围可选：
+ * <ul>
+ *     <li>{@link #SCOPE_PROJECT} 整个项目（默认，与原行为一致）</li>
+ *     <li>{@link #SCOPE_MODULE} 入口方法所在模块及其依赖</li>
+ *     <li>{@link #SCOPE_PRODUCTION} 仅项目中的生产代码，排除测试代码</li>
+ * </ul>
+ * 实现数量超过上限时，按模块距离（同模块 &lt; 依赖模块 &lt; 其他）和实现类被引用次数排序，
+ * 只保留前 K 个，其余的记录为省略。同分时按类名排序，索引的并行搜索顺序不影响结果。必须在读操作中调用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class ImplementationFinder {
+
+    public static final String SCOPE_PROJECT = "project";
+    public static final String SCOPE_MODULE = "module";
+    public static final String SCOPE_PRODUCTION = "production";
+
+    // 统计引用次数时的上限，超过后不再继续计数
+    private static final int MAX_USAGE_COUNT = 100;
+
+    // 最后的排序依据，索引的并行搜索返回顺序不固定
+    private static final Comparator<PsiMethod> BY_CLASS_NAME = Comparator.comparing(ImplementationFinder::className);
+
+    private final Project project;
+    private final Module rootModule;
+    private final Set<Module> dependencyModules = new HashSet<>();
+    private final String scopeKey;
+    private final GlobalSearchScope scope;
+    private final int topK;
+
+    /**
+     * @param rootMethod 分析的入口方法，用于确定模块范围和模块距离
+     */
+    public ImplementationFinder(PsiMethod rootMethod) {
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        this.project = rootMethod.getProject();
+        this.rootModule = ModuleUtilCore.findModuleForPsiElement(rootMethod);
+        this.topK = settings.getImplementationTopK();
+        if (rootModule != null) {
+            dependencyModules.addAll(Arrays.asList(ModuleRootManager.getInstance(rootModule).getDependencies()));
+        }
+
+        String scopeSetting = settings.getImplementationSearchScope();
+        if (SCOPE_MODULE.equals(scopeSetting) && rootModule != null) {
+            this.scopeKey = SCOPE_MODULE + ":" + rootModule.getName();
+            this.scope = GlobalSearchScope.moduleWithDependenciesScope(rootModule);
+        } else if (SCOPE_PRODUCTION.equals(scopeSetting)) {
+            this.scopeKey = SCOPE_PRODUCTION;
+            this.scope = GlobalSearchScopesCore.projectProductionScope(project);
+        } else {
+            this.scopeKey = null;
+            this.scope = null;
+        }
+    }
+
+    /**
+     * 查找实现并按上限截断
+     */
+    public Result find(PsiMethod method) {
+        return find(method, implMethod -> false);
+    }
+
+    /**
+     * 查找实现并按上限截断
+     *
+     * @param skip 不展开的实现（例如会形成递归的实现），在排序前排除，不占用上限也不记录为省略
+     */
+    public Result find(PsiMethod method, Predicate<PsiMethod> skip) {
+        MethodResolveCache cache = MethodResolveCache.getInstance(project);
+        List<PsiMethod> implementations = new ArrayList<>();
+        for (PsiMethod implMethod : cache.findImplementations(method, scopeKey, scope)) {
+            if (implMethod.getContainingClass() != null && !skip.test(implMethod)) {
+                implementations.add(implMethod);
+            }
+        }
+        return rank(implementations, topK, this::moduleProximity,
+                implMethod -> cache.countUsages(implMethod.getContainingClass(), this::countUsages));
+    }
+
+    /**
+     * 超过上限时按模块距离升序、引用次数降序、类名升序排序，保留前 topK 个；未超过上限时只按类名排序
+     *
+     * @param topK 不大于 0 时不限制
+     */
+    static Result rank(List<PsiMethod> implementations, int topK,
+                       ToIntFunction<PsiMethod> proximity, ToIntFunction<PsiMethod> usages) {
+        if (topK <= 0 || implementations.size() <= topK) {
+            List<PsiMethod> sorted = new ArrayList<>(implementations);
+            sorted.sort(BY_CLASS_NAME);
+            return new Result(sorted, Collections.emptyList());
+        }
+
+        Map<PsiMethod, Integer> proximities = new HashMap<>();
+        Map<PsiMethod, Integer> usageCounts = new HashMap<>();
+        for (PsiMethod implMethod : implementations) {
+            proximities.put(implMethod, proximity.applyAsInt(implMethod));
+            usageCounts.put(implMethod, usages.applyAsInt(implMethod));
+        }
+        List<PsiMethod> sorted = new ArrayList<>(implementations);
+        sorted.sort(Comparator.<PsiMethod>comparingInt(proximities::get)
+                .thenComparing(Comparator.<PsiMethod>comparingInt(usageCounts::get).reversed())
+                .thenComparing(BY_CLASS_NAME));
+        return new Result(new ArrayList<>(sorted.subList(0, topK)),
+                new ArrayList<>(sorted.subList(topK, sorted.size())));
+    }
+
+    /**
+     * 实现所在类的名称，优先使用全限定名，局部类使用简单名，匿名类为空字符串
+     */
+    private static String className(PsiMethod implMethod) {
+        PsiClass psiClass = implMethod.getContainingClass();
+        String name = psiClass == null ? null
+                : psiClass.getQualifiedName() != null ? psiClass.getQualifiedName() : psiClass.getName();
+        return name != null ? name : "";
+    }
+
+    /**
+     * 模块距离：0 同模块，1 入口模块的依赖，2 其他
+     */
+    private int moduleProximity(PsiMethod implMethod) {
+        Module module = ModuleUtilCore.findModuleForPsiElement(implMethod);
+        if (module == null || rootModule == null) {
+            return 2;
+        }
+        if (module.equals(rootModule)) {
+            return 0;
+        }
+        return dependencyModules.contains(module) ? 1 : 2;
+    }
+
+    /**
+     * 统计实现类在项目中的引用次数，达到上限即停止，结果由 {@link MethodResolveCache} 缓存
+     */
+    private int countUsages(PsiClass implClass) {
+        AtomicInteger count = new AtomicInteger();
+        ReferencesSearch.search(implClass, GlobalSearchScope.projectScope(project)).forEach(reference -> count.incrementAndGet() < MAX_USAGE_COUNT);
+        return count.get();
+    }
+
+    /**
+     * 查找结果：保留展开的实现和被省略的实现
+     */
+    public static class Result {
+        private final List<PsiMethod> included;
+        private final List<PsiMethod> omitted;
+
+        public Result(List<PsiMethod> included, List<PsiMethod> omitted) {
+            this.included = included;
+            this.omitted = omitted;
+        }
+
+        public List<PsiMethod> getIncluded() {
+            return included;
+        }
+
+        public List<PsiMethod> getOmitted() {
+            return omitted;
+        }
+
+        /**
+         * 被省略实现所在类的名称，优先使用全限定名，局部类使用简单名，匿名类没有名称，不列出
+         */
+        public List<String> getOmittedClassNames() {
+            List<String> names = new ArrayList<>(omitted.size());
+            for (PsiMethod method : omitted) {
+                PsiClass psiClass = method.getContainingClass();
+                String name = psiClass == null ? null
+                        : psiClass.getQualifiedName() != null ? psiClass.getQualifiedName() : psiClass.getName();
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+            return names;
+        }
+    }
+}
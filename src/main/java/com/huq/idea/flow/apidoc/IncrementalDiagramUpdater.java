@@ -0,0 +1,322 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
+import com.huq.idea.flow.model.MethodDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 增量更新图表：只让 AI 重新生成源码发生变化的方法对应的部分
+ *
+ * <p>设置中开启增量更新后，流程图和时序图完整生成时在提示词后追加 {@link #sectionInstruction(Map)}，要求 AI 用
+ * {@code ' @method 方法标识} 和 {@code ' @end 方法标识} 注释包围每个方法对应的 PlantUML 片段。
+ * 源码修改后按结构哈希比较新旧调用链，找到包含变化方法的最小片段，
+ * 把旧片段和修改后的源码发给 AI，再把返回的片段替换回原图表。
+ * 无法定位片段（旧图表没有标记、变化的是入口方法或只有调用结构变化）时返回 null，由调用方完整生成。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class IncrementalDiagramUpdater {
+
+    private static final String METHOD_MARKER = "@method";
+    private static final String END_MARKER = "@end";
+
+    private IncrementalDiagramUpdater() {
+    }
+
+    /**
+     * 图表中一个方法对应的片段，包含首尾的标记行
+     */
+    public static class Section {
+        private final String key;
+        private final int start;
+        private final int end;
+
+        Section(String key, int start, int end) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        boolean contains(Section other) {
+            return this != other && start <= other.start && other.end <= end;
+        }
+    }
+
+    /**
+     * 一次增量更新需要重新生成的片段和对应的提示词
+     */
+    public static class Plan {
+        private final String previousOutput;
+        private final Map<String, CallStack> targets;
+        private final List<Section> ranges;
+        private final Set<String> changedMethods;
+
+        private Plan(String previousOutput, Map<String, CallStack> targets, List<Section> ranges, Set<String> changedMethods) {
+            this.previousOutput = previousOutput;
+            this.targets = targets;
+            this.ranges = ranges;
+            this.changedMethods = changedMethods;
+        }
+
+        /**
+         * 需要重新生成的片段的方法标识
+         */
+        public Set<String> getTargets() {
+            return targets.keySet();
+        }
+
+        /**
+         * 新增、删除或修改过的方法
+         */
+        public Set<String> getChangedMethods() {
+            return changedMethods;
+        }
+
+        /**
+         * 提示词：每个片段的旧内容，以及片段内修改过或新增的方法源码
+         */
+        public String getPrompt() {
+            StringBuilder prompt = new StringBuilder();
+            prompt.append("下面是之前根据Java方法调用链生成的PlantUML图表中的若干片段，这些片段对应的方法源码已经修改。\n")
+                    .append("请根据修改后的源码重新生成每个片段，保持与原图表一致的风格、参与者和命名。\n")
+                    .append("每个片段仍然以单独一行的 ' @method 方法标识 开始、以 ' @end 方法标识 结束，")
+                    .append("片段内被调用的方法同样按此嵌套标记。\n")
+                    .append("只输出这些片段，不要输出 @startuml、@enduml 或其他说明。\n");
+
+            int index = 1;
+            for (Map.Entry<String, CallStack> target : targets.entrySet()) {
+                Section previous = firstRange(target.getKey());
+                prompt.append("\n=== 片段 ").append(index++).append(": ").append(target.getKey()).append(" ===\n")
+                        .append("之前的片段:\n")
+                        .append(previousOutput, previous.start, previous.end);
+                if (previous.end == previousOutput.length() || previousOutput.charAt(previous.end - 1) != '\n') {
+                    prompt.append('\n');
+                }
+                prompt.append("修改后的源码:");
+                prompt.append(changedCode(target.getValue()));
+            }
+            return prompt.toString();
+        }
+
+        /**
+         * 把 AI 返回的片段替换到旧图表中，缺少任何一个片段时返回 null
+         */
+        public String splice(String response) {
+            Map<String, List<Section>> replies = sections(response);
+            StringBuilder result = new StringBuilder(previousOutput);
+            List<Section> sorted = new ArrayList<>(ranges);
+            sorted.sort(Comparator.comparingInt(Section::getStart).reversed());
+            for (Section range : sorted) {
+                List<Section> reply = replies.get(range.key);
+                if (reply == null) {
+                    return null;
+                }
+                String text = response.substring(reply.get(0).start, reply.get(0).end);
+                if (!text.endsWith("\n") && previousOutput.substring(range.start, range.end).endsWith("\n")) {
+                    text += "\n";
+                }
+                result.replace(range.start, range.end, text);
+            }
+            return result.toString();
+        }
+
+        private Section firstRange(String key) {
+            for (Section range : ranges) {
+                if (range.key.equals(key)) {
+                    return range;
+                }
+            }
+            throw new IllegalStateException("No section for " + key);
+        }
+
+        /**
+         * 片段入口方法的源码，以及它调用的方法中修改过或新增的源码
+         */
+        private String changedCode(CallStack target) {
+            StringBuilder code = new StringBuilder();
+            Deque<CallStack> stack = new ArrayDeque<>();
+            stack.push(target);
+            while (!stack.isEmpty()) {
+                CallStack current = stack.pop();
+                MethodDescription method = current.getMethodDescription();
+                if (method != null && !current.isRecursive()
+                        && (current == target || changedMethods.contains(method.getSignatureKey()))) {
+                    CallStackCodeCollector.appendMethodCode(code, current);
+                }
+                List<CallStack> children = current.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+            return code.toString();
+        }
+    }
+
+    /**
+     * 支持按方法片段增量更新的图表类型，其他类型的输出没有按方法划分的结构
+     */
+    public static boolean supports(String diagramKind) {
+        return "flow".equals(diagramKind) || "sequence".equals(diagramKind);
+    }
+
+    /**
+     * 完整生成时追加到提示词后面，要求 AI 标记每个方法对应的片段
+     */
+    public static String sectionInstruction(Map<String, CallStackFingerprint.MethodEntry> methods) {
+        StringBuilder instruction = new StringBuilder("\n\n另外，为了之后只更新修改过的方法，请在PlantUML代码中用注释标记每个方法对应的部分：")
+                .append("在该方法的第一行之前单独一行写 ' @method 方法标识，在最后一行之后单独一行写 ' @end 方法标识，")
+                .append("被调用方法的部分嵌套在调用方的部分之内。方法标识如下：\n");
+        for (Map.Entry<String, CallStackFingerprint.MethodEntry> entry : methods.entrySet()) {
+            CallStackFingerprint.MethodEntry method = entry.getValue();
+            String className = method.getClassName();
+            instruction.append("- ").append(className.substring(className.lastIndexOf('.') + 1))
+                    .append('.').append(method.getName()).append(": ").append(entry.getKey()).append('\n');
+        }
+        return instruction.toString();
+    }
+
+    /**
+     * 解析输出中标记的片段，同一方法出现多次时按出现顺序保留全部
+     */
+    public static Map<String, List<Section>> sections(String output) {
+        Map<String, List<Section>> sections = new LinkedHashMap<>();
+        if (output == null) {
+            return sections;
+        }
+        Deque<String> openKeys = new ArrayDeque<>();
+        Deque<Integer> openStarts = new ArrayDeque<>();
+        int lineStart = 0;
+        while (lineStart < output.length()) {
+            int newline = output.indexOf('\n', lineStart);
+            int lineEnd = newline < 0 ? output.length() : newline + 1;
+            String line = output.substring(lineStart, newline < 0 ? output.length() : newline).trim();
+            if (line.startsWith("'")) {
+                String comment = line.substring(1).trim();
+                if (comment.startsWith(METHOD_MARKER + " ")) {
+                    openKeys.push(comment.substring(METHOD_MARKER.length()).trim());
+                    openStarts.push(lineStart);
+                } else if (comment.startsWith(END_MARKER + " ")) {
+                    String key = comment.substring(END_MARKER.length()).trim();
+                    // 容忍缺少结束标记的内层片段
+                    if (openKeys.contains(key)) {
+                        while (!openKeys.isEmpty()) {
+                            String open = openKeys.pop();
+                            int start = openStarts.pop();
+                            if (open.equals(key)) {
+                                sections.computeIfAbsent(key, k -> new ArrayList<>()).add(new Section(key, start, lineEnd));
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            lineStart = lineEnd;
+        }
+        return sections;
+    }
+
+    /**
+     * 比较新旧调用链，确定需要重新生成的片段
+     *
+     * @return 需要完整生成时返回 null
+     */
+    public static Plan plan(CallStack callStack,
+                            Map<String, CallStackFingerprint.MethodEntry> previousMethods,
+                            Map<String, CallStackFingerprint.MethodEntry> currentMethods,
+                            String previousOutput) {
+        Set<String> changed = CallStackFingerprint.changedMethods(previousMethods, currentMethods);
+        Map<String, List<Section>> sections = sections(previousOutput);
+        if (changed.isEmpty() || sections.isEmpty()) {
+            return null;
+        }
+
+        Map<String, CallStack> firstCalls = firstCalls(callStack);
+        // 删除的方法不在新调用链中，调用它的方法源码也一定变了
+        Map<String, CallStack> candidates = new LinkedHashMap<>();
+        for (String key : changed) {
+            CallStack call = firstCalls.get(key);
+            // 向上找到最近的有标记片段的调用方
+            while (call != null && (call.getMethodDescription() == null || !sections.containsKey(call.getMethodDescription().getSignatureKey()))) {
+                call = call.getParent();
+            }
+            if (call == null) {
+                if (currentMethods.containsKey(key)) {
+                    return null;
+                }
+                continue;
+            }
+            if (call == callStack) {
+                // 入口方法变化时增量更新没有意义
+                return null;
+            }
+            candidates.putIfAbsent(call.getMethodDescription().getSignatureKey(), call);
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        // 去掉嵌套在其他待更新片段中的片段
+        List<Section> all = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            all.addAll(sections.get(key));
+        }
+        List<Section> ranges = new ArrayList<>();
+        for (Section section : all) {
+            boolean nested = false;
+            for (Section other : all) {
+                if (other.contains(section)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) {
+                ranges.add(section);
+            }
+        }
+        Map<String, CallStack> targets = new LinkedHashMap<>();
+        for (Section range : ranges) {
+            targets.putIfAbsent(range.key, candidates.get(range.key));
+        }
+        return new Plan(previousOutput, targets, ranges, changed);
+    }
+
+    private static Map<String, CallStack> firstCalls(CallStack root) {
+        Map<String, CallStack> firstCalls = new HashMap<>();
+        Deque<CallStack> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            CallStack current = stack.pop();
+            if (current.getMethodDescription() != null) {
+                firstCalls.putIfAbsent(current.getMethodDescription().getSignatureKey(), current);
+            }
+            List<CallStack> children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+        return firstCalls;
+    }
+}
@@ -0,0 +1,522 @@
+package com.huq.idea.flow.apidoc;
+
+import com.intellij.psi.PsiArrayType;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.javadoc.PsiDocComment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 直接根据 PSI 生成 PlantUML 类图
+ *
+ * <p>类的属性、方法、继承和关联关系都可以从源码结构中准确得到，不需要把整个类的源码发给 AI。
+ * 分两步：{@link #extract(Collection)} 在读操作中把类转换成 {@link ClassInfo}，
+ * {@link #render(List)} 再把 {@link ClassInfo} 输出成 PlantUML，与 PSI 无关。
+ * AI 只作为可选的第二步，基于 {@link #describe(List, String)} 给骨架补充说明和分组。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class LocalClassDiagramGenerator {
+
+    /**
+     * 每个类最多输出的属性或方法数量，超出部分折叠
+     */
+    static final int MAX_MEMBERS = 30;
+
+    public enum Kind {
+        CLASS("class"),
+        ABSTRACT_CLASS("abstract class"),
+        INTERFACE("interface"),
+        ENUM("enum"),
+        ANNOTATION("annotation"),
+        RECORD("class");
+
+        private final String keyword;
+
+        Kind(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    public enum RelationType {
+        EXTENDS("<|--"),
+        IMPLEMENTS("<|.."),
+        ASSOCIATION("-->"),
+        DEPENDENCY("..>");
+
+        private final String arrow;
+
+        RelationType(String arrow) {
+            this.arrow = arrow;
+        }
+    }
+
+    /**
+     * 类之间的关系，from 和 to 都是类的全限定名
+     */
+    public static class Relation {
+        private final RelationType type;
+        private final String from;
+        private final String to;
+        private final String label;
+        private final boolean many;
+
+        public Relation(RelationType type, String from, String to, String label, boolean many) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.label = label;
+            this.many = many;
+        }
+
+        public RelationType getType() {
+            return type;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public boolean isMany() {
+            return many;
+        }
+    }
+
+    /**
+     * 类图中的一个类，属性和方法已经是 PlantUML 成员格式，例如 {@code - id : Long}
+     */
+    public static class ClassInfo {
+        private final String qualifiedName;
+        private final String name;
+        private final String packageName;
+        private final Kind kind;
+        private String summary;
+        private final List<String> fields = new ArrayList<>();
+        private final List<String> methods = new ArrayList<>();
+        private final List<String> enumConstants = new ArrayList<>();
+        private final List<Relation> relations = new ArrayList<>();
+
+        public ClassInfo(String qualifiedName, String name, String packageName, Kind kind) {
+            this.qualifiedName = qualifiedName;
+            this.name = name;
+            this.packageName = packageName == null ? "" : packageName;
+            this.kind = kind;
+        }
+
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public void setSummary(String summary) {
+            this.summary = summary;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        public List<String> getEnumConstants() {
+            return enumConstants;
+        }
+
+        public List<Relation> getRelations() {
+            return relations;
+        }
+
+        public ClassInfo addField(String member) {
+            fields.add(member);
+            return this;
+        }
+
+        public ClassInfo addMethod(String member) {
+            methods.add(member);
+            return this;
+        }
+
+        public ClassInfo addEnumConstant(String constant) {
+            enumConstants.add(constant);
+            return this;
+        }
+
+        public ClassInfo addRelation(RelationType type, String to, String label, boolean many) {
+            relations.add(new Relation(type, qualifiedName, to, label, many));
+            return this;
+        }
+    }
+
+    private LocalClassDiagramGenerator() {
+    }
+
+    /**
+     * 把类转换成类图模型，只保留指向集合内类的关系，必须在读操作中调用
+     */
+    public static List<ClassInfo> extract(Collection<PsiClass> classes) {
+        Map<PsiClass, String> included = new LinkedHashMap<>();
+        for (PsiClass psiClass : classes) {
+            if (psiClass.isValid() && psiClass.getQualifiedName() != null) {
+                included.put(psiClass, psiClass.getQualifiedName());
+            }
+        }
+
+        List<ClassInfo> result = new ArrayList<>(included.size());
+        for (Map.Entry<PsiClass, String> entry : included.entrySet()) {
+            result.add(extract(entry.getKey(), entry.getValue(), included));
+        }
+        return result;
+    }
+
+    private static ClassInfo extract(PsiClass psiClass, String qualifiedName, Map<PsiClass, String> included) {
+        PsiFile file = psiClass.getContainingFile();
+        String packageName = file instanceof PsiJavaFile ? ((PsiJavaFile) file).getPackageName() : "";
+        ClassInfo info = new ClassInfo(qualifiedName, psiClass.getName(), packageName, kindOf(psiClass));
+        info.setSummary(summaryOf(psiClass.getDocComment()));
+
+        // 继承和实现
+        if (psiClass.isInterface()) {
+            for (PsiClass superInterface : psiClass.getInterfaces()) {
+                addRelation(info, included, RelationType.EXTENDS, superInterface, null, false);
+            }
+        } else {
+            addRelation(info, included, RelationType.EXTENDS, psiClass.getSuperClass(), null, false);
+            for (PsiClass intf : psiClass.getInterfaces()) {
+                addRelation(info, included, RelationType.IMPLEMENTS, intf, null, false);
+            }
+        }
+
+        // 属性：非静态属性中引用的类作为关联关系
+        Set<String> fieldNames = new HashSet<>();
+        for (PsiField field : psiClass.getFields()) {
+            if (field instanceof PsiEnumConstant) {
+                info.addEnumConstant(field.getName());
+                continue;
+            }
+            fieldNames.add(field.getName());
+            info.addField(member(field, field.getName() + " : " + field.getType().getPresentableText()));
+            if (!field.hasModifierProperty(PsiModifier.STATIC)) {
+                PsiType type = field.getType();
+                for (PsiClass target : ClassDependencyCrawler.resolveClasses(type)) {
+                    boolean single = !(type instanceof PsiArrayType) && type instanceof PsiClassType
+                            && target.equals(((PsiClassType) type).resolve());
+                    addRelation(info, included, RelationType.ASSOCIATION, target, field.getName(), !single);
+                }
+            }
+        }
+
+        // 方法：省略构造方法、访问器和 Object 的方法，参数和返回值中引用的类作为依赖关系
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (method.isConstructor() || isAccessor(method, fieldNames) || isObjectMethod(method)) {
+                continue;
+            }
+            StringBuilder signature = new StringBuilder(method.getName()).append('(');
+            PsiParameter[] parameters = method.getParameterList().getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                signature.append(i > 0 ? ", " : "").append(parameters[i].getType().getPresentableText());
+                for (PsiClass target : ClassDependencyCrawler.resolveClasses(parameters[i].getType())) {
+                    addRelation(info, included, RelationType.DEPENDENCY, target, null, false);
+                }
+            }
+            signature.append(')');
+            PsiType returnType = method.getReturnType();
+            if (returnType != null && !"void".equals(returnType.getCanonicalText())) {
+                signature.append(" : ").append(returnType.getPresentableText());
+                for (PsiClass target : ClassDependencyCrawler.resolveClasses(returnType)) {
+                    addRelation(info, included, RelationType.DEPENDENCY, target, null, false);
+                }
+            }
+            info.addMethod(member(method, signature.toString()));
+        }
+        return info;
+    }
+
+    private static void addRelation(ClassInfo info, Map<PsiClass, String> included, RelationType type,
+                                    PsiClass target, String label, boolean many) {
+        String to = target != null ? included.get(target) : null;
+        if (to != null && !to.equals(info.getQualifiedName())) {
+            info.addRelation(type, to, label, many);
+        }
+    }
+
+    private static Kind kindOf(PsiClass psiClass) {
+        if (psiClass.isAnnotationType()) {
+            return Kind.ANNOTATION;
+        }
+        if (psiClass.isInterface()) {
+            return Kind.INTERFACE;
+        }
+        if (psiClass.isEnum()) {
+            return Kind.ENUM;
+        }
+        if (psiClass.isRecord()) {
+            return Kind.RECORD;
+        }
+        return psiClass.hasModifierProperty(PsiModifier.ABSTRACT) ? Kind.ABSTRACT_CLASS : Kind.CLASS;
+    }
+
+    private static String member(PsiModifierListOwner owner, String text) {
+        String visibility;
+        if (owner.hasModifierProperty(PsiModifier.PUBLIC)) {
+            visibility = "+";
+        } else if (owner.hasModifierProperty(PsiModifier.PRIVATE)) {
+            visibility = "-";
+        } else if (owner.hasModifierProperty(PsiModifier.PROTECTED)) {
+            visibility = "#";
+        } else {
+            visibility = "~";
+        }
+        String modifier = owner.hasModifierProperty(PsiModifier.STATIC) ? "{static} "
+                : owner.hasModifierProperty(PsiModifier.ABSTRACT) ? "{abstract} " : "";
+        return modifier + visibility + " " + text;
+    }
+
+    /**
+     * 与属性同名的 getter/setter，例如 getName、isEnabled、setName
+     */
+    static boolean isAccessor(String methodName, int parameterCount, Set<String> fieldNames) {
+        String property;
+        if (methodName.startsWith("get") && parameterCount == 0) {
+            property = methodName.substring(3);
+        } else if (methodName.startsWith("is") && parameterCount == 0) {
+            property = methodName.substring(2);
+        } else if (methodName.startsWith("set") && parameterCount == 1) {
+            property = methodName.substring(3);
+        } else {
+            return false;
+        }
+        if (property.isEmpty()) {
+            return false;
+        }
+        return fieldNames.contains(Character.toLowerCase(property.charAt(0)) + property.substring(1))
+                || fieldNames.contains(methodName);
+    }
+
+    private static boolean isAccessor(PsiMethod method, Set<String> fieldNames) {
+        return isAccessor(method.getName(), method.getParameterList().getParametersCount(), fieldNames);
+    }
+
+    private static boolean isObjectMethod(PsiMethod method) {
+        int parameterCount = method.getParameterList().getParametersCount();
+        String name = method.getName();
+        return parameterCount == 0 && ("toString".equals(name) || "hashCode".equals(name))
+                || parameterCount == 1 && "equals".equals(name);
+    }
+
+    /**
+     * 文档注释的第一句话
+     */
+    static String summaryOf(PsiDocComment docComment) {
+        return docComment == null ? null : firstSentence(docComment.getText());
+    }
+
+    static String firstSentence(String docText) {
+        StringBuilder text = new StringBuilder();
+        for (String line : docText.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("/**")) {
+                trimmed = trimmed.substring(3);
+            }
+            if (trimmed.endsWith("*/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 2);
+            }
+            if (trimmed.startsWith("*")) {
+                trimmed = trimmed.substring(1);
+            }
+            trimmed = trimmed.replaceAll("<[^>]+>", "").trim();
+            if (trimmed.startsWith("@")) {
+                break;
+            }
+            if (!trimmed.isEmpty()) {
+                text.append(text.length() > 0 ? " " : "").append(trimmed);
+            }
+        }
+        String summary = text.toString();
+        int end = summary.length();
+        for (String terminator : new String[]{"。", ". ", "；"}) {
+            int index = summary.indexOf(terminator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        summary = summary.substring(0, end).trim();
+        if (summary.length() > 80) {
+            summary = summary.substring(0, 80) + "...";
+        }
+        return summary.isEmpty() ? null : summary;
+    }
+
+    /**
+     * 输出 PlantUML 类图：按包分组声明类，再输出继承、关联和依赖关系
+     *
+     * <p>同一对类之间已经有继承或关联关系时不再输出依赖关系，简单类名重复的类使用别名。
+     */
+    public static String render(List<ClassInfo> classes) {
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (ClassInfo info : classes) {
+            nameCounts.merge(info.getName(), 1, Integer::sum);
+        }
+        Map<String, String> ids = new HashMap<>();
+        for (ClassInfo info : classes) {
+            ids.put(info.getQualifiedName(), nameCounts.get(info.getName()) > 1
+                    ? info.getQualifiedName().replace('.', '_')
+                    : info.getName());
+        }
+
+        Map<String, List<ClassInfo>> packages = new LinkedHashMap<>();
+        for (ClassInfo info : classes) {
+            packages.computeIfAbsent(info.getPackageName(), k -> new ArrayList<>()).add(info);
+        }
+
+        StringBuilder uml = new StringBuilder("@startuml\n");
+        uml.append("set separator none\n");
+        uml.append("hide empty members\n\n");
+        for (Map.Entry<String, List<ClassInfo>> entry : packages.entrySet()) {
+            boolean hasPackage = !entry.getKey().isEmpty();
+            String indent = hasPackage ? "  " : "";
+            if (hasPackage) {
+                uml.append("package ").append(entry.getKey()).append(" {\n");
+            }
+            for (ClassInfo info : entry.getValue()) {
+                appendClass(uml, info, ids.get(info.getQualifiedName()), indent);
+            }
+            if (hasPackage) {
+                uml.append("}\n\n");
+            }
+        }
+
+        // 已有继承或关联关系的类对，不再输出依赖关系
+        Set<String> linked = new HashSet<>();
+        for (ClassInfo info : classes) {
+            for (Relation relation : info.getRelations()) {
+                String to = ids.get(relation.getTo());
+                if (to == null || relation.getType() == RelationType.DEPENDENCY) {
+                    continue;
+                }
+                String from = ids.get(relation.getFrom());
+                linked.add(relation.getFrom() + '|' + relation.getTo());
+                if (relation.getType() != RelationType.ASSOCIATION) {
+                    uml.append(to).append(' ').append(relation.getType().arrow).append(' ').append(from).append('\n');
+                    continue;
+                }
+                uml.append(from).append(' ').append(relation.getType().arrow).append(' ');
+                if (relation.isMany()) {
+                    uml.append("\"*\" ");
+                }
+                uml.append(to);
+                if (relation.getLabel() != null) {
+                    uml.append(" : ").append(relation.getLabel());
+                }
+                uml.append('\n');
+            }
+        }
+        for (ClassInfo info : classes) {
+            for (Relation relation : info.getRelations()) {
+                String to = ids.get(relation.getTo());
+                if (relation.getType() == RelationType.DEPENDENCY && to != null
+                        && linked.add(relation.getFrom() + '|' + relation.getTo())) {
+                    uml.append(ids.get(relation.getFrom())).append(' ').append(relation.getType().arrow).append(' ').append(to).append('\n');
+                }
+            }
+        }
+        return uml.append("@enduml").toString();
+    }
+
+    private static void appendClass(StringBuilder uml, ClassInfo info, String id, String indent) {
+        uml.append(indent).append(info.getKind().keyword).append(' ');
+        if (id.equals(info.getName())) {
+            uml.append(id);
+        } else {
+            uml.append('"').append(info.getName()).append("\" as ").append(id);
+        }
+        if (info.getKind() == Kind.RECORD) {
+            uml.append(" <<record>>");
+        }
+        if (info.getEnumConstants().isEmpty() && info.getFields().isEmpty() && info.getMethods().isEmpty()) {
+            uml.append('\n');
+            return;
+        }
+        uml.append(" {\n");
+        appendMembers(uml, info.getEnumConstants(), indent);
+        if (!info.getEnumConstants().isEmpty() && !info.getFields().isEmpty()) {
+            uml.append(indent).append("  --\n");
+        }
+        appendMembers(uml, info.getFields(), indent);
+        if (!info.getMethods().isEmpty() && !(info.getEnumConstants().isEmpty() && info.getFields().isEmpty())) {
+            uml.append(indent).append("  --\n");
+        }
+        appendMembers(uml, info.getMethods(), indent);
+        uml.append(indent).append("}\n");
+    }
+
+    private static void appendMembers(StringBuilder uml, List<String> members, String indent) {
+        int shown = Math.min(members.size(), MAX_MEMBERS);
+        for (int i = 0; i < shown; i++) {
+            uml.append(indent).append("  ").append(members.get(i)).append('\n');
+        }
+        if (members.size() > shown) {
+            uml.append(indent).append("  .. 另有 ").append(members.size() - shown).append(" 项 ..\n");
+        }
+    }
+
+    /**
+     * AI 补充说明时使用的输入：类的一句话说明和本地生成的类图骨架，不包含源码
+     */
+    public static String describe(List<ClassInfo> classes, String skeleton) {
+        StringBuilder text = new StringBuilder("## 类说明\n");
+        Set<String> described = new LinkedHashSet<>();
+        for (ClassInfo info : classes) {
+            if (info.getSummary() != null && described.add(info.getQualifiedName())) {
+                text.append("- ").append(info.getQualifiedName()).append(": ").append(info.getSummary()).append('\n');
+            }
+        }
+        if (described.isEmpty()) {
+            text.append("（无）\n");
+        }
+        return text.append("\n## 类图骨架\n").append(skeleton).append('\n').toString();
+    }
+}
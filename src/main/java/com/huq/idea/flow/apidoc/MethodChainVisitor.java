@@ -1,7 +1,10 @@
 package com.huq.idea.flow.apidoc;
 
+import com.huq.idea.flow.apidoc.service.MethodResolveCache;
+import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
 import com.huq.idea.flow.model.MethodDescription;
+import com.huq.idea.flow.model.TextSlice;
 import com.huq.idea.flow.util.MyPsiUtil;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.diagnostic.Logger;
@@ -11,15 +14,14 @@ import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiCodeBlock;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiMethodReferenceExpression;
 import com.intellij.psi.PsiReferenceExpression;
 import com.intellij.psi.PsiStatement;
 import com.intellij.psi.javadoc.PsiDocComment;
-import com.intellij.psi.search.searches.DefinitionsScopedSearch;
 import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.util.Query;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -52,6 +54,13 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
     private CallStack topStack;
     private CallStack currentStack;
 
+    // 按配置范围查找实现，并限制展开数量
+    private ImplementationFinder implementationFinder;
+
+    // 当前文件及其内容快照，用于创建源码片段
+    private PsiFile currentFile;
+    private CharSequence currentContents;
+
 
     /**
      * 提取方法调用的通用属性
@@ -71,7 +80,7 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
             methodDescription.put("caller", qualifier.getText());
         }
         
-        methodDescription.put("expression.text", expression.getText());
+        methodDescription.putSlice("expression.text", slice(expression, expression.getTextRange()));
         
         return methodDescription;
     }
@@ -90,17 +99,29 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
         if (parentStatement == null) return; // 修改点5：提前返回
         
         TextRange parentTextRange = parentStatement.getTextRange();
-        String subBody = currentMethodBody.getText().substring(offset, parentTextRange.getEndOffset() - startOffset);
         
         MethodDescription methodDescription = createMethodDescriptionFromExpression(expression, psiMethod);
         methodDescription.put("external", "false");
-        methodDescription.put("parentStatement", parentStatement.getText());
-        methodDescription.put("expression.subBody", subBody);
+        // 片段只记录文件内容快照上的偏移量，避免每个调用点都复制一遍方法体
+        methodDescription.putSlice("parentStatement", slice(parentStatement, parentTextRange));
+        methodDescription.putSlice("expression.subBody", slice(parentStatement, new TextRange(startOffset + offset, parentTextRange.getEndOffset())));
         
         currentStack.methodCall(methodDescription);
         currentStack.setCurrentOffset(parentTextRange.getEndOffset());
     }
 
+    /**
+     * 基于当前文件内容快照创建片段，同一文件的所有片段共享这一份内容
+     */
+    private TextSlice slice(PsiElement element, TextRange range) {
+        PsiFile file = element.getContainingFile();
+        if (file != currentFile) {
+            currentFile = file;
+            currentContents = file.getViewProvider().getContents();
+        }
+        return new TextSlice(currentContents, range.getStartOffset(), range.getEndOffset());
+    }
+
     private void processExternalMethodCall(PsiMethodCallExpression expression, PsiMethod psiMethod) {
         MethodDescription methodDescription = createMethodDescriptionFromExpression(expression, psiMethod);
         methodDescription.put("external", "true");
@@ -112,7 +133,7 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
         super.visitMethodCallExpression(expression);
 
         PsiMethod callingMethod = PsiTreeUtil.getParentOfType(expression, PsiMethod.class);
-        PsiMethod calledMethod = expression.resolveMethod();
+        PsiMethod calledMethod = MethodResolveCache.getInstance(expression.getProject()).resolveMethod(expression);
         log.info("visitMethodCallExpression: " + expression.getText());
 
         if (callingMethod != null && calledMethod != null) {
@@ -154,14 +175,20 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
     }
 
     private boolean alreadyInStack(PsiMethod psiMethod) {
-        // Don't check external method, because the getTextOffset() will cause Java decompiler, it will wast of time.
+        // Don't check external method, reading its text or offset would run the Java decompiler and waste time.
         if (psiMethod.getContainingClass() == null || MyPsiUtil.isExternal(psiMethod.getContainingClass())) return true;
-        final int offset = psiMethod.getTextOffset();
         MethodDescription method = createMethodDescription(psiMethod);
         return currentStack.isRecursive(method);
     }
 
     private MethodDescription createMethodDescription(PsiMethod psiMethod) {
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        if (settings.isStubOnlyAnalysis()) {
+            // 轻量分析模式：只读取 stub 中的信息，源码和注释按需加载
+            return MethodDescription.lazy(psiMethod, psiMethod.getContainingClass().getQualifiedName(), psiMethod.getName(),
+                    psiMethod.getReturnType() == null ? "void" : psiMethod.getReturnType().getPresentableText(),
+                    subMethodInterfaceMap.get(psiMethod), settings.isIncludeLibrarySources());
+        }
         PsiDocComment docComment = psiMethod.getDocComment();
         if (psiMethod.getDocComment() == null) {
             PsiMethod superMethod = subMethodInterfaceMap.get(psiMethod);
@@ -245,6 +272,7 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
             currentStack = parentStack;
         }
         if (element instanceof PsiMethod) {
+            implementationFinder = new ImplementationFinder((PsiMethod) element);
             generate((PsiMethod) element);
         }
         return topStack;
@@ -269,21 +297,17 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
 
         if (MyPsiUtil.isAbstract(containingClass)) {
             psiMethod.accept(this);
-            Query<PsiElement> search = DefinitionsScopedSearch.search(psiMethod).allowParallelProcessing();
-            java.util.List<PsiMethod> implementations = new java.util.ArrayList<>();
-            for (PsiElement psiElement : search) {
-                if (psiElement instanceof PsiMethod) {
-                    if (alreadyInStack((PsiMethod) psiElement)) {
-                        continue;
-                    }
-                    implementations.add((PsiMethod) psiElement);
-                }
-            }
+            // 递归的实现在排序前排除，不占用展开上限
+            ImplementationFinder.Result found = implementationFinder.find(psiMethod, this::alreadyInStack);
+            java.util.List<PsiMethod> implementations = found.getIncluded();
             if (implementations.size() > 1) {
                 CallStack parentStack = currentStack;
                 MethodDescription methodDescription = createMethodDescription(psiMethod);
                 CallStack groupNode = new CallStack(methodDescription, currentStack);
                 groupNode.setMultiImplementationGroup(true);
+                for (String className : found.getOmittedClassNames()) {
+                    groupNode.addOmittedImplementation(className);
+                }
                 currentStack.addChild(groupNode);
 
                 for (PsiMethod impl : implementations) {
@@ -294,6 +318,9 @@ public class MethodChainVisitor extends JavaRecursiveElementVisitor {
                 currentStack = parentStack;
             } else if (implementations.size() == 1) {
                 PsiMethod impl = implementations.get(0);
+                for (String className : found.getOmittedClassNames()) {
+                    currentStack.addOmittedImplementation(className);
+                }
                 subMethodInterfaceMap.put(impl, psiMethod);
                 methodAccept(impl);
             }
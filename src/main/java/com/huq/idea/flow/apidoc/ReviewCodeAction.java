@@ -1,8 +1,13 @@
 package com.huq.idea.flow.apidoc;
 
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.job.DiagramPipeline;
 import com.huq.idea.flow.apidoc.service.UmlFlowService;
 import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
 import com.huq.idea.flow.model.MethodDescription;
 import com.huq.idea.flow.util.AiUtils;
 import com.huq.idea.flow.util.MethodUtils;
@@ -16,21 +21,18 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.LogicalPosition;
-import com.intellij.openapi.progress.PerformInBackgroundOption;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
-import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.util.concurrent.CancellationException;
 
 /**
  * Action to review Java code using AI
@@ -208,66 +210,66 @@ public class ReviewCodeAction extends AnAction implements DumbAware {
                 return;
             }
 
-            new Task.Backgroundable(project, "审查代码", true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
-                @Override
-                public void run(@NotNull ProgressIndicator indicator) {
-                    indicator.setText("正在审查代码...");
-                    indicator.setIndeterminate(true);
-
-                    String reviewPromptTemplate = IdeaSettings.getInstance().getState().getReviewCodePrompt();
-                    String prompt = String.format(reviewPromptTemplate, codeArea.getText());
-
-                    AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
-                    if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            generateButton.setEnabled(true);
-                            Notifications.Bus.notify(new Notification(
-                                "com.yt.huq.idea",
-                                "API密钥未配置",
-                                "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
-                                NotificationType.WARNING),
-                                project);
-                        });
-                        return;
-                    }
-
-                    config.setSystemMessage("你是一个高级Java开发专家和代码审查员。请提供专业、准确、可行的代码优化和重构建议。")
-                          .setTemperature(0.7)
-                          .setMaxTokens(8000);
-
-                    AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
-                    String reviewResult = response.isSuccess() ? response.getContent() : null;
-
-                    if (reviewResult != null && !reviewResult.isEmpty()) {
-                        String finalReviewResult = reviewResult;
-                        SwingUtilities.invokeLater(() -> {
-                            reviewArea.setText(finalReviewResult);
-                            // Move caret to top
-                            reviewArea.setCaretPosition(0);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("重新审查");
-                        });
-                    } else {
-                        SwingUtilities.invokeLater(() -> {
-                            String errorMsg = "代码审查失败，请检查API设置和网络连接";
-                            if (response != null && !response.isSuccess() && response.getErrorMessage() != null) {
-                                errorMsg = "代码审查失败: " + response.getErrorMessage();
-                            }
-
-                            Notifications.Bus.notify(new Notification(
-                                    "com.yt.huq.idea",
-                                    "代码审查",
-                                    errorMsg,
-                                    NotificationType.ERROR),
-                                    project);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText("审查代码");
-                        });
-                    }
+            String reviewPromptTemplate = IdeaSettings.getInstance().getState().getReviewCodePrompt();
+            String prompt = String.format(reviewPromptTemplate, codeArea.getText());
+
+            AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
+            if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+                generateButton.setEnabled(true);
+                generateButton.setText("审查代码");
+                Notifications.Bus.notify(new Notification(
+                    "com.yt.huq.idea",
+                    "API密钥未配置",
+                    "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
+                    NotificationType.WARNING),
+                    project);
+                return;
+            }
+
+            config.setSystemMessage("你是一个高级Java开发专家和代码审查员。请提供专业、准确、可行的代码优化和重构建议。")
+                  .setTemperature(0.7)
+                  .setMaxTokens(8000);
+
+            // 相同模型和代码的审查进行中时复用同一个任务
+            DiagramJobContext context = new DiagramJobContext("review",
+                    "review:" + CallStackFingerprint.sha256(selectedProvider.getName() + "|" + selectedModel + "|" + prompt),
+                    "代码审查: " + title, DiagramJobContext.Priority.INTERACTIVE);
+            DiagramJobManager jobManager = DiagramJobManager.getInstance(project);
+            DiagramJob<String> job = jobManager.submit(context, DiagramPipeline
+                    .of(DiagramJob.Stage.AI, (input, j) -> {
+                        AiUtils.AiResponse response = AiUtils.callAi(prompt, config);
+                        j.recordAiCall(response);
+                        if (!response.isSuccess() || response.getContent() == null || response.getContent().isEmpty()) {
+                            throw new IllegalStateException(response.getErrorMessage());
+                        }
+                        return response.getContent();
+                    }));
+            jobManager.track("审查代码", job);
+
+            job.onResult((reviewResult, error) -> SwingUtilities.invokeLater(() -> {
+                if (reviewResult != null) {
+                    reviewArea.setText(reviewResult);
+                    // Move caret to top
+                    reviewArea.setCaretPosition(0);
+
+                    generateButton.setEnabled(true);
+                    generateButton.setText("重新审查");
+                    return;
                 }
-            }.queue();
+                if (!(error instanceof CancellationException)) {
+                    String errorMsg = error.getMessage() != null
+                            ? "代码审查失败: " + error.getMessage()
+                            : "代码审查失败，请检查API设置和网络连接";
+                    Notifications.Bus.notify(new Notification(
+                            "com.yt.huq.idea",
+                            "代码审查",
+                            errorMsg,
+                            NotificationType.ERROR),
+                            project);
+                }
+                generateButton.setEnabled(true);
+                generateButton.setText("审查代码");
+            }));
         });
         buttonPanel.add(generateButton);
 
@@ -3,7 +3,6 @@ package com.huq.idea.flow.apidoc;
 import com.huq.idea.flow.apidoc.service.UmlFlowService;
 import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.util.AiUtils;
-import com.huq.idea.flow.util.MyPsiUtil;
 import com.huq.idea.flow.util.PlantUmlRenderException;
 import com.huq.idea.flow.util.PlantUmlRenderer;
 import com.intellij.notification.Notification;
@@ -23,21 +22,17 @@ import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
-import com.intellij.psi.PsiMethod;
-import com.intellij.psi.PsiParameter;
-import com.intellij.psi.PsiType;
+import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.NotNull;
 import com.huq.idea.flow.apidoc.ui.UmlDiagramUIFactory;
 import com.intellij.openapi.ui.ComboBox;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -99,8 +94,15 @@ public class StateDiagramAction extends AnAction {
             return;
         }
 
-        final PsiClass currentClass = targetClass;
+        analyze(project, targetClass);
+    }
 
+    /**
+     * 扫描类的关联类并显示图表，释放后重新打开的面板也通过这里重新分析
+     */
+    private void analyze(Project project, PsiClass currentClass) {
+        UmlDiagramUIFactory.DiagramOrigin<PsiClass> origin = new UmlDiagramUIFactory.DiagramOrigin<>("state",
+                ReadAction.compute(currentClass::getQualifiedName), SmartPointerManager.createPointer(currentClass), this::analyze);
         IdeaSettings.State settings = IdeaSettings.getInstance().getState();
 
         // 在后台任务中执行耗时的扫描，避免冻结UI
@@ -111,16 +113,28 @@ public class StateDiagramAction extends AnAction {
                 indicator.setText("正在扫描关联类...");
 
                 // 收集关联的类
-                Set<PsiClass> associatedClasses = ReadAction.compute(() -> {
-                    Set<PsiClass> classes = new HashSet<>();
-                    // The root class is always included, ignore the generic filter for depth 0
-                    collectAssociatedClasses(currentClass, classes, 0, settings);
-                    return classes;
-                });
-
-                indicator.setText("正在收集源码...");
-                // 收集代码
-                String collectedCode = ReadAction.compute(() -> collectCodeFromClasses(associatedClasses));
+                Set<PsiClass> associatedClasses = ClassDependencyCrawler.collect(currentClass, settings, indicator);
+
+                // 先从状态字段的赋值中提取状态转换，找到时只发送转换表和相关方法
+                String draftDiagram = null;
+                String collectedCode = null;
+                if (settings.isStaticStateExtraction()) {
+                    indicator.setText("正在提取状态转换...");
+                    long start = System.currentTimeMillis();
+                    List<StateMachineExtractor.StateMachine> machines = ReadAction.compute(() -> StateMachineExtractor.extract(associatedClasses));
+                    if (!machines.isEmpty()) {
+                        draftDiagram = StateMachineExtractor.render(machines);
+                        collectedCode = StateMachineExtractor.describe(machines);
+                    }
+                    LOG.info("状态转换提取完成: " + machines.size() + " 个状态字段, 耗时 " + (System.currentTimeMillis() - start) + " ms");
+                }
+                if (collectedCode == null) {
+                    indicator.setText("正在收集源码...");
+                    // 收集代码
+                    collectedCode = collectSource(project, associatedClasses, settings);
+                }
+                String finalCollectedCode = collectedCode;
+                String finalDraftDiagram = draftDiagram;
 
                 // 显示初始对话框
                 SwingUtilities.invokeLater(() -> {
@@ -156,130 +170,30 @@ public class StateDiagramAction extends AnAction {
                         }
                     };
 
-                    UmlDiagramUIFactory.showInitialDialog(project, collectedCode, "UML状态图: " + currentClass.getName(), promptProvider, "生成状态图");
+                    if (finalDraftDiagram != null) {
+                        UmlDiagramUIFactory.showInitialDialog(project, finalCollectedCode, "UML状态图: " + currentClass.getName(), promptProvider, "AI完善状态图", finalDraftDiagram, origin);
+                    } else {
+                        UmlDiagramUIFactory.showInitialDialog(project, finalCollectedCode, "UML状态图: " + currentClass.getName(), promptProvider, "生成状态图", origin);
+                    }
                 });
             }
         }.queue();
     }
 
-    private void collectAssociatedClasses(PsiClass psiClass, Set<PsiClass> collected, int depth, IdeaSettings.State settings) {
-        if (psiClass == null || depth > settings.getClassDiagramDepth() || collected.contains(psiClass)) {
-            return;
-        }
-
-        // 排除 compiled class files with no readable source or strictly jar file system
-        if (MyPsiUtil.isInClassFile(psiClass)) {
-            return;
-        }
-
-        if (!settings.isIncludeLibrarySources() && MyPsiUtil.isInJarFileSystem(psiClass)) {
-            return;
-        }
-
-        // Additional safeguard for JDK classes even if includeLibrarySources is true
-        if (settings.isIncludeLibrarySources() && MyPsiUtil.isInJarFileSystem(psiClass)) {
-             String qName = psiClass.getQualifiedName();
-             if (qName != null && (qName.startsWith("java.") || qName.startsWith("javax.") || qName.startsWith("jdk."))) {
-                 return;
-             }
-        }
-
-        String qualifiedName = psiClass.getQualifiedName();
-        // Skip filtering for the root target class (depth == 0) so the diagram always generates the target
-        if (depth > 0 && qualifiedName != null) {
-            // Check if class matches any excluded pattern
-            boolean isExcludedClass = settings.getClassExcludedClassPatterns().stream()
-                    .anyMatch(pattern -> matchesWildcardPattern(qualifiedName, pattern));
-            if (isExcludedClass) {
-                return;
-            }
-
-            // Check if class matches any relevant pattern
-            boolean isRelevantClass = settings.getClassRelevantClassPatterns().stream()
-                    .anyMatch(pattern -> matchesWildcardPattern(qualifiedName, pattern));
-            if (!isRelevantClass) {
-                return;
-            }
-        }
-
-        collected.add(psiClass);
-
-        // 父类
-        PsiClass superClass = psiClass.getSuperClass();
-        if (superClass != null) {
-            collectAssociatedClasses(superClass, collected, depth + 1, settings);
-        }
-
-        // 接口
-        PsiClass[] interfaces = psiClass.getInterfaces();
-        for (PsiClass intf : interfaces) {
-            collectAssociatedClasses(intf, collected, depth + 1, settings);
-        }
-
-        // 字段
-        PsiField[] fields = psiClass.getFields();
-        for (PsiField field : fields) {
-            resolveAllClassesInType(field.getType(), collected, depth + 1, settings);
-        }
-
-        // 方法返回值和参数
-        PsiMethod[] methods = psiClass.getMethods();
-        for (PsiMethod method : methods) {
-            PsiType returnType = method.getReturnType();
-            if (returnType != null) {
-                resolveAllClassesInType(returnType, collected, depth + 1, settings);
-            }
-
-            PsiParameter[] parameters = method.getParameterList().getParameters();
-            for (PsiParameter parameter : parameters) {
-                resolveAllClassesInType(parameter.getType(), collected, depth + 1, settings);
-            }
-        }
-    }
-
-    private void resolveAllClassesInType(PsiType type, Set<PsiClass> collected, int depth, IdeaSettings.State settings) {
-        if (type == null) {
-            return;
-        }
-
-        if (type instanceof com.intellij.psi.PsiClassType) {
-            com.intellij.psi.PsiClassType classType = (com.intellij.psi.PsiClassType) type;
-            PsiClass resolvedClass = classType.resolve();
-            if (resolvedClass != null) {
-                collectAssociatedClasses(resolvedClass, collected, depth, settings);
-            }
-
-            PsiType[] parameters = classType.getParameters();
-            for (PsiType paramType : parameters) {
-                resolveAllClassesInType(paramType, collected, depth, settings);
-            }
-        }
-    }
-
-    private boolean matchesWildcardPattern(String str, String wildcardPattern) {
-        if (str == null || wildcardPattern == null) {
-            return false;
-        }
-
-        // Convert wildcard pattern to regex pattern
-        String regexPattern = wildcardPattern
-                .replace(".", "\\.")  // Escape dots
-                .replace("*", ".*");  // Convert * to .*
-
-        return str.matches(regexPattern);
-    }
-
-    private String collectCodeFromClasses(Set<PsiClass> classes) {
-        StringBuilder codeBuilder = new StringBuilder();
-        for (PsiClass psiClass : classes) {
-            String classCode = psiClass.getText();
-            if (classCode != null && !classCode.isEmpty()) {
-                codeBuilder.append("\n\n// ").append("=".repeat(80)).append("\n");
-                codeBuilder.append("// Class: ").append(psiClass.getQualifiedName()).append("\n");
-                codeBuilder.append("// ").append("=".repeat(80)).append("\n\n");
-                codeBuilder.append(classCode);
-            }
-        }
-        return codeBuilder.toString();
+    /**
+     * 收集发送给 AI 的类源码，精简时把精简比例通知给用户
+     */
+    private static String collectSource(Project project, Set<PsiClass> associatedClasses, IdeaSettings.State settings) {
+        if (!settings.isPruneClassSource()) {
+            return ReadAction.compute(() -> ClassSourcePruner.fullSource(associatedClasses));
+        }
+        ClassSourcePruner.Result pruned = ReadAction.compute(() -> ClassSourcePruner.collect(associatedClasses, settings.getClassPromptTokenBudget()));
+        Notifications.Bus.notify(new Notification(
+                "com.yt.huq.idea",
+                "状态图生成",
+                pruned.getSummary(),
+                NotificationType.INFORMATION),
+                project);
+        return pruned.getCode();
     }
 }
\ No newline at end of file
@@ -0,0 +1,601 @@
+package com.huq.idea.flow.apidoc;
+
+import com.intellij.psi.JavaRecursiveElementVisitor;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.PsiAssignmentExpression;
+import com.intellij.psi.PsiBinaryExpression;
+import com.intellij.psi.PsiBlockStatement;
+import com.intellij.psi.PsiCaseLabelElement;
+import com.intellij.psi.PsiCaseLabelElementList;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiIfStatement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParenthesizedExpression;
+import com.intellij.psi.PsiPolyadicExpression;
+import com.intellij.psi.PsiPrefixExpression;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiReturnStatement;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.PsiSwitchBlock;
+import com.intellij.psi.PsiSwitchLabelStatement;
+import com.intellij.psi.PsiSwitchLabelStatementBase;
+import com.intellij.psi.PsiSwitchLabeledRuleStatement;
+import com.intellij.psi.PsiThrowStatement;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 状态图的静态提取
+ *
+ * <p>状态通常保存在枚举类型的字段中，状态转换就是对这些字段的赋值（{@code status = Status.PAID}
+ * 或 {@code setStatus(Status.PAID)}）。{@link #extract(Collection)} 在读操作中找出这些赋值，
+ * 并从外层的 if、switch 和提前抛异常/返回的判断中得到转换前的状态和条件，生成转换表。
+ * {@link #render(List)} 直接把转换表输出成 PlantUML 状态图草稿，
+ * {@link #describe(List)} 输出转换表和相关方法源码，作为 AI 完善状态图的输入。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class StateMachineExtractor {
+
+    /**
+     * 转换条件在图中显示的最大长度
+     */
+    private static final int MAX_GUARD_LENGTH = 60;
+
+    /**
+     * 构造方法中的赋值，表示初始状态
+     */
+    public static final String INITIAL = "[*]";
+
+    /**
+     * 一次状态转换，from 为空表示无法确定转换前的状态
+     */
+    public static class Transition {
+        private final List<String> from;
+        private final String to;
+        private final String trigger;
+        private final String guard;
+
+        public Transition(List<String> from, String to, String trigger, String guard) {
+            this.from = from;
+            this.to = to;
+            this.trigger = trigger;
+            this.guard = guard;
+        }
+
+        public List<String> getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getTrigger() {
+            return trigger;
+        }
+
+        public String getGuard() {
+            return guard;
+        }
+    }
+
+    /**
+     * 一个状态字段的状态机
+     */
+    public static class StateMachine {
+        private final String ownerClass;
+        private final String fieldName;
+        private final String enumName;
+        private final List<String> states;
+        private String initial;
+        private final List<Transition> transitions = new ArrayList<>();
+        // 方法 -> 源码，只包含发生状态转换的方法
+        private final Map<String, String> snippets = new LinkedHashMap<>();
+
+        public StateMachine(String ownerClass, String fieldName, String enumName, List<String> states) {
+            this.ownerClass = ownerClass;
+            this.fieldName = fieldName;
+            this.enumName = enumName;
+            this.states = states;
+        }
+
+        public String getOwnerClass() {
+            return ownerClass;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public String getEnumName() {
+            return enumName;
+        }
+
+        public List<String> getStates() {
+            return states;
+        }
+
+        public String getInitial() {
+            return initial;
+        }
+
+        public void setInitial(String initial) {
+            this.initial = initial;
+        }
+
+        public List<Transition> getTransitions() {
+            return transitions;
+        }
+
+        public Map<String, String> getSnippets() {
+            return snippets;
+        }
+
+        public StateMachine addTransition(List<String> from, String to, String trigger, String guard) {
+            for (Transition transition : transitions) {
+                if (transition.from.equals(from) && transition.to.equals(to)
+                        && transition.trigger.equals(trigger) && String.valueOf(transition.guard).equals(String.valueOf(guard))) {
+                    return this;
+                }
+            }
+            transitions.add(new Transition(from, to, trigger, guard));
+            return this;
+        }
+
+        public StateMachine addSnippet(String method, String text) {
+            snippets.putIfAbsent(method, text);
+            return this;
+        }
+
+        String getTitle() {
+            int dot = ownerClass.lastIndexOf('.');
+            return ownerClass.substring(dot + 1) + "." + fieldName;
+        }
+    }
+
+    private StateMachineExtractor() {
+    }
+
+    /**
+     * 提取类中枚举类型状态字段的状态机，只返回找到状态转换的字段，必须在读操作中调用
+     */
+    public static List<StateMachine> extract(Collection<PsiClass> classes) {
+        Map<PsiField, StateMachine> machines = new LinkedHashMap<>();
+        for (PsiClass psiClass : classes) {
+            if (!psiClass.isValid() || psiClass.getQualifiedName() == null) {
+                continue;
+            }
+            for (PsiField field : psiClass.getFields()) {
+                PsiClass enumClass = stateEnumOf(field);
+                if (enumClass == null) {
+                    continue;
+                }
+                List<String> states = new ArrayList<>();
+                for (PsiField constant : enumClass.getFields()) {
+                    if (constant instanceof PsiEnumConstant) {
+                        states.add(constant.getName());
+                    }
+                }
+                StateMachine machine = new StateMachine(psiClass.getQualifiedName(), field.getName(), enumClass.getName(), states);
+                machine.setInitial(constantOf(field.getInitializer(), enumClass));
+                machines.put(field, machine);
+            }
+        }
+        if (machines.isEmpty()) {
+            return List.of();
+        }
+
+        for (PsiClass psiClass : classes) {
+            if (!psiClass.isValid()) {
+                continue;
+            }
+            for (PsiMethod method : psiClass.getMethods()) {
+                if (method.getBody() != null) {
+                    method.getBody().accept(new AssignmentVisitor(method, machines));
+                }
+            }
+        }
+
+        List<StateMachine> result = new ArrayList<>();
+        for (StateMachine machine : machines.values()) {
+            if (!machine.getTransitions().isEmpty()) {
+                result.add(machine);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 非静态的枚举类型字段
+     */
+    static PsiClass stateEnumOf(PsiField field) {
+        if (field instanceof PsiEnumConstant || field.hasModifierProperty(PsiModifier.STATIC)
+                || !(field.getType() instanceof PsiClassType)) {
+            return null;
+        }
+        PsiClass type = ((PsiClassType) field.getType()).resolve();
+        return type != null && type.isEnum() ? type : null;
+    }
+
+    /**
+     * 找到对状态字段的赋值和 setter 调用，记录转换
+     */
+    private static class AssignmentVisitor extends JavaRecursiveElementVisitor {
+        private final PsiMethod method;
+        private final Map<PsiField, StateMachine> machines;
+
+        AssignmentVisitor(PsiMethod method, Map<PsiField, StateMachine> machines) {
+            this.method = method;
+            this.machines = machines;
+        }
+
+        @Override
+        public void visitAssignmentExpression(PsiAssignmentExpression expression) {
+            super.visitAssignmentExpression(expression);
+            PsiExpression lhs = expression.getLExpression();
+            if (lhs instanceof PsiReferenceExpression
+                    && ((PsiReferenceExpression) lhs).resolve() instanceof PsiField field
+                    && machines.containsKey(field)) {
+                record(expression, field, expression.getRExpression());
+            }
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            super.visitMethodCallExpression(expression);
+            PsiExpression[] arguments = expression.getArgumentList().getExpressions();
+            String name = expression.getMethodExpression().getReferenceName();
+            if (arguments.length != 1 || name == null || !name.startsWith("set") || name.length() <= 3) {
+                return;
+            }
+            PsiMethod setter = expression.resolveMethod();
+            PsiClass owner = setter != null ? setter.getContainingClass() : null;
+            if (owner == null) {
+                return;
+            }
+            PsiField field = owner.findFieldByName(Character.toLowerCase(name.charAt(3)) + name.substring(4), true);
+            if (field != null && machines.containsKey(field)) {
+                record(expression, field, arguments[0]);
+            }
+        }
+
+        private void record(PsiElement site, PsiField field, PsiExpression value) {
+            StateMachine machine = machines.get(field);
+            PsiClass enumClass = stateEnumOf(field);
+            String to = constantOf(value, enumClass);
+            if (to == null) {
+                return;
+            }
+
+            Set<String> from = new LinkedHashSet<>();
+            List<String> guards = new ArrayList<>();
+            collectGuards(site, field, enumClass, from, guards);
+            if (method.isConstructor()) {
+                from.clear();
+                from.add(INITIAL);
+            }
+            String guard = guards.isEmpty() ? null : String.join(" && ", guards);
+            machine.addTransition(new ArrayList<>(from), to, method.getName(), guard);
+
+            PsiClass containingClass = method.getContainingClass();
+            String className = containingClass != null ? containingClass.getName() : "";
+            machine.addSnippet(className + "#" + method.getName(), method.getText());
+        }
+
+        /**
+         * 从赋值位置向外查找 if、switch 和前面提前抛异常/返回的判断
+         */
+        private void collectGuards(PsiElement site, PsiField field, PsiClass enumClass, Set<String> from, List<String> guards) {
+            PsiElement child = site;
+            PsiElement parent = site.getParent();
+            while (parent != null && parent != method) {
+                if (parent instanceof PsiIfStatement ifStatement && ifStatement.getCondition() != null) {
+                    if (child == ifStatement.getThenBranch()) {
+                        addGuard(ifStatement.getCondition(), true, field, enumClass, from, guards);
+                    } else if (child == ifStatement.getElseBranch()) {
+                        addGuard(ifStatement.getCondition(), false, field, enumClass, from, guards);
+                    }
+                } else if (parent instanceof PsiSwitchLabeledRuleStatement rule && child == rule.getBody()) {
+                    addCases(rule, field, enumClass, from);
+                } else if (parent instanceof PsiCodeBlock block && child instanceof PsiStatement) {
+                    addEarlierGuards(block, (PsiStatement) child, field, enumClass, from, guards);
+                }
+                child = parent;
+                parent = parent.getParent();
+            }
+        }
+
+        /**
+         * 同一代码块中前面的语句：switch 的 case 标签，以及 {@code if (...) throw/return} 形式的前置判断
+         */
+        private void addEarlierGuards(PsiCodeBlock block, PsiStatement statement, PsiField field, PsiClass enumClass,
+                                      Set<String> from, List<String> guards) {
+            if (block.getParent() instanceof PsiSwitchBlock) {
+                // 当前 case 的标签：向前跳过本 case 的语句，直到连续的标签结束
+                boolean labelFound = false;
+                for (PsiStatement previous = PsiTreeUtil.getPrevSiblingOfType(statement, PsiStatement.class);
+                     previous != null;
+                     previous = PsiTreeUtil.getPrevSiblingOfType(previous, PsiStatement.class)) {
+                    if (previous instanceof PsiSwitchLabelStatement label) {
+                        addCases(label, field, enumClass, from);
+                        labelFound = true;
+                    } else if (labelFound) {
+                        break;
+                    }
+                }
+                return;
+            }
+            for (PsiStatement previous = PsiTreeUtil.getPrevSiblingOfType(statement, PsiStatement.class);
+                 previous != null;
+                 previous = PsiTreeUtil.getPrevSiblingOfType(previous, PsiStatement.class)) {
+                if (previous instanceof PsiIfStatement ifStatement && ifStatement.getElseBranch() == null
+                        && ifStatement.getCondition() != null && exits(ifStatement.getThenBranch())) {
+                    addGuard(ifStatement.getCondition(), false, field, enumClass, from, guards);
+                }
+            }
+        }
+
+        private void addCases(PsiSwitchLabelStatementBase label, PsiField field, PsiClass enumClass, Set<String> from) {
+            PsiSwitchBlock switchBlock = label.getEnclosingSwitchBlock();
+            if (switchBlock == null || !referencesField(switchBlock.getExpression(), field)) {
+                return;
+            }
+            PsiCaseLabelElementList elements = label.getCaseLabelElementList();
+            if (elements == null) {
+                return;
+            }
+            for (PsiCaseLabelElement element : elements.getElements()) {
+                if (element instanceof PsiReferenceExpression reference
+                        && reference.resolve() instanceof PsiEnumConstant constant
+                        && enumClass.equals(constant.getContainingClass())) {
+                    from.add(constant.getName());
+                }
+            }
+        }
+    }
+
+    private static boolean exits(PsiStatement statement) {
+        if (statement instanceof PsiBlockStatement block) {
+            PsiStatement[] statements = block.getCodeBlock().getStatements();
+            return statements.length > 0 && exits(statements[statements.length - 1]);
+        }
+        return statement instanceof PsiThrowStatement || statement instanceof PsiReturnStatement;
+    }
+
+    private static void addGuard(PsiExpression condition, boolean positive, PsiField field, PsiClass enumClass,
+                                 Set<String> from, List<String> guards) {
+        String text = condition.getText().replaceAll("\\s+", " ");
+        guards.add(positive ? text : "!(" + text + ")");
+        collectFromStates(condition, positive, field, enumClass, from);
+    }
+
+    /**
+     * 从条件中找出转换前的状态：成立时 {@code status == A}，或不成立时 {@code status != A}
+     */
+    private static void collectFromStates(PsiExpression condition, boolean positive, PsiField field, PsiClass enumClass, Set<String> from) {
+        if (condition instanceof PsiParenthesizedExpression parenthesized) {
+            if (parenthesized.getExpression() != null) {
+                collectFromStates(parenthesized.getExpression(), positive, field, enumClass, from);
+            }
+        } else if (condition instanceof PsiPrefixExpression prefix) {
+            if (JavaTokenType.EXCL.equals(prefix.getOperationTokenType()) && prefix.getOperand() != null) {
+                collectFromStates(prefix.getOperand(), !positive, field, enumClass, from);
+            }
+        } else if (condition instanceof PsiBinaryExpression binary) {
+            IElementType operation = binary.getOperationTokenType();
+            boolean equality = JavaTokenType.EQEQ.equals(operation);
+            if (equality || JavaTokenType.NE.equals(operation)) {
+                if (equality == positive) {
+                    addComparedState(binary.getLOperand(), binary.getROperand(), field, enumClass, from);
+                }
+            } else {
+                collectFromOperands(binary, positive, field, enumClass, from);
+            }
+        } else if (condition instanceof PsiPolyadicExpression polyadic) {
+            collectFromOperands(polyadic, positive, field, enumClass, from);
+        } else if (condition instanceof PsiMethodCallExpression call && positive
+                && "equals".equals(call.getMethodExpression().getReferenceName())) {
+            PsiExpressionList arguments = call.getArgumentList();
+            if (arguments.getExpressionCount() == 1) {
+                addComparedState(call.getMethodExpression().getQualifierExpression(), arguments.getExpressions()[0], field, enumClass, from);
+            }
+        }
+    }
+
+    private static void collectFromOperands(PsiPolyadicExpression expression, boolean positive, PsiField field, PsiClass enumClass, Set<String> from) {
+        IElementType operation = expression.getOperationTokenType();
+        if (JavaTokenType.OROR.equals(operation) || JavaTokenType.ANDAND.equals(operation)) {
+            for (PsiExpression operand : expression.getOperands()) {
+                collectFromStates(operand, positive, field, enumClass, from);
+            }
+        }
+    }
+
+    private static void addComparedState(PsiExpression left, PsiExpression right, PsiField field, PsiClass enumClass, Set<String> from) {
+        String state = null;
+        if (referencesField(left, field)) {
+            state = constantOf(right, enumClass);
+        } else if (referencesField(right, field)) {
+            state = constantOf(left, enumClass);
+        }
+        if (state != null) {
+            from.add(state);
+        }
+    }
+
+    /**
+     * 表达式是否读取了状态字段：直接引用字段，或调用对应的 getter
+     */
+    private static boolean referencesField(PsiExpression expression, PsiField field) {
+        while (expression instanceof PsiParenthesizedExpression parenthesized) {
+            expression = parenthesized.getExpression();
+        }
+        if (expression instanceof PsiReferenceExpression reference) {
+            return field.equals(reference.resolve());
+        }
+        if (expression instanceof PsiMethodCallExpression call && call.getArgumentList().getExpressionCount() == 0) {
+            String name = call.getMethodExpression().getReferenceName();
+            String property = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+            return ("get" + property).equals(name);
+        }
+        return false;
+    }
+
+    /**
+     * 表达式引用的枚举常量名称
+     */
+    private static String constantOf(PsiExpression expression, PsiClass enumClass) {
+        while (expression instanceof PsiParenthesizedExpression parenthesized) {
+            expression = parenthesized.getExpression();
+        }
+        if (expression instanceof PsiReferenceExpression reference
+                && reference.resolve() instanceof PsiEnumConstant constant
+                && enumClass.equals(constant.getContainingClass())) {
+            return constant.getName();
+        }
+        return null;
+    }
+
+    /**
+     * 输出 PlantUML 状态图草稿：多个状态机时每个状态机是一个组合状态
+     *
+     * <p>无法确定转换前状态的转换从"任意状态"出发，只有转入没有转出的状态作为结束状态，
+     * 没有任何转换的状态也会输出，便于发现遗漏。
+     */
+    public static String render(List<StateMachine> machines) {
+        StringBuilder uml = new StringBuilder("@startuml\n");
+        uml.append("hide empty description\n\n");
+        boolean composite = machines.size() > 1;
+        for (int i = 0; i < machines.size(); i++) {
+            StateMachine machine = machines.get(i);
+            String prefix = composite ? "S" + (i + 1) + "_" : "";
+            String indent = composite ? "  " : "";
+            if (composite) {
+                uml.append("state \"").append(machine.getTitle()).append("\" as S").append(i + 1).append(" {\n");
+            }
+            appendMachine(uml, machine, prefix, indent);
+            if (composite) {
+                uml.append("}\n");
+            }
+            uml.append('\n');
+        }
+        return uml.append("@enduml").toString();
+    }
+
+    private static void appendMachine(StringBuilder uml, StateMachine machine, String prefix, String indent) {
+        Set<String> used = new LinkedHashSet<>();
+        Set<String> withOutgoing = new LinkedHashSet<>();
+        boolean hasAny = false;
+        for (Transition transition : machine.getTransitions()) {
+            used.add(transition.getTo());
+            if (transition.getFrom().isEmpty()) {
+                hasAny = true;
+            }
+            for (String from : transition.getFrom()) {
+                used.add(from);
+                withOutgoing.add(from);
+            }
+        }
+        if (machine.getInitial() != null) {
+            used.add(machine.getInitial());
+        }
+
+        for (String state : machine.getStates()) {
+            if (!prefix.isEmpty() || !used.contains(state)) {
+                uml.append(indent).append("state \"").append(state).append("\" as ").append(prefix).append(state).append('\n');
+            }
+        }
+        String any = prefix + "AnyState";
+        if (hasAny) {
+            uml.append(indent).append("state \"任意状态\" as ").append(any).append('\n');
+        }
+        if (machine.getInitial() != null) {
+            uml.append(indent).append("[*] --> ").append(prefix).append(machine.getInitial()).append('\n');
+        }
+
+        for (Transition transition : machine.getTransitions()) {
+            String label = transition.getTrigger();
+            if (transition.getGuard() != null) {
+                String guard = transition.getGuard();
+                if (guard.length() > MAX_GUARD_LENGTH) {
+                    guard = guard.substring(0, MAX_GUARD_LENGTH) + "...";
+                }
+                label += "\\n[" + guard + "]";
+            }
+            List<String> sources = transition.getFrom().isEmpty() ? List.of(any) : transition.getFrom();
+            for (String from : sources) {
+                String source = INITIAL.equals(from) ? INITIAL : from.equals(any) ? any : prefix + from;
+                uml.append(indent).append(source).append(" --> ").append(prefix).append(transition.getTo())
+                        .append(" : ").append(label).append('\n');
+            }
+        }
+
+        for (String state : machine.getStates()) {
+            if (used.contains(state) && !withOutgoing.contains(state) && !state.equals(machine.getInitial())) {
+                uml.append(indent).append(prefix).append(state).append(" --> [*]\n");
+            }
+        }
+    }
+
+    /**
+     * 转换表
+     */
+    public static String renderTable(StateMachine machine) {
+        StringBuilder table = new StringBuilder();
+        table.append("### ").append(machine.getOwnerClass()).append('.').append(machine.getFieldName())
+                .append(" (").append(machine.getEnumName()).append("): ")
+                .append(String.join(", ", machine.getStates())).append('\n');
+        if (machine.getInitial() != null) {
+            table.append("初始状态: ").append(machine.getInitial()).append('\n');
+        }
+        table.append("| 起始状态 | 目标状态 | 触发方法 | 条件 |\n");
+        table.append("| --- | --- | --- | --- |\n");
+        for (Transition transition : machine.getTransitions()) {
+            table.append("| ").append(transition.getFrom().isEmpty() ? "任意" : String.join(", ", transition.getFrom()))
+                    .append(" | ").append(transition.getTo())
+                    .append(" | ").append(transition.getTrigger())
+                    .append(" | ").append(transition.getGuard() == null ? "" : transition.getGuard().replace("|", "\\|"))
+                    .append(" |\n");
+        }
+        return table.toString();
+    }
+
+    /**
+     * AI 完善状态图时使用的输入：转换表和发生状态转换的方法源码
+     */
+    public static String describe(List<StateMachine> machines) {
+        StringBuilder text = new StringBuilder("## 状态转换表（根据源码静态提取）\n\n");
+        for (StateMachine machine : machines) {
+            text.append(renderTable(machine)).append('\n');
+        }
+        text.append("## 相关方法\n");
+        Set<String> written = new LinkedHashSet<>();
+        for (StateMachine machine : machines) {
+            for (Map.Entry<String, String> snippet : machine.getSnippets().entrySet()) {
+                if (written.add(snippet.getKey())) {
+                    text.append("\n// ").append(snippet.getKey()).append('\n').append(snippet.getValue()).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,343 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.job.DiagramPipeline;
+import com.huq.idea.flow.apidoc.job.MethodAnalysis;
+import com.huq.idea.flow.apidoc.ui.UmlDiagramUIFactory;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.util.AiUtils;
+import com.huq.idea.flow.util.GraphExporter;
+import com.huq.idea.flow.util.PlantUmlRenderer;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量生成图表的流水线
+ *
+ * <p>每个入口先提交一个调用链分析任务，分析完成后为每种图表提交一个生成任务（构建提示词、AI 生成、渲染），
+ * 全部以批量优先级交给 {@link DiagramJobManager}，各阶段的并发限制由任务管理器统一控制，
+ * 交互式生成的任务使用独立的线程池，不受批量并发限制。
+ * 同时进行中的入口数量受信号量限制，分析过快时提交会被反压，避免收集的代码堆积在内存中。
+ * 结果写入 {@code 输出目录/图表类型/入口.puml|png}，完成情况记录在 {@link BatchProgressStore} 中，
+ * 最后生成 {@code batch-report.md} 汇总报告。
+ * 分析完成后还会用 {@link GraphExporter} 在本地把调用链导出为 {@code 输出目录/call-graph/入口.svg}，不经过 AI。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class BatchDiagramGenerator {
+    private static final Logger LOG = Logger.getInstance(BatchDiagramGenerator.class);
+
+    public static final String REPORT_FILE_NAME = "batch-report.md";
+    public static final String CALL_GRAPH_DIRECTORY = "call-graph";
+
+    // 允许进行中的入口数 = (分析并行度 + AI 并发数) * 该系数
+    private static final int QUEUE_FACTOR = 2;
+
+    private final DiagramJobManager jobManager;
+    private final IdeaSettings.State settings;
+    private final AiUtils.AiConfig aiConfig;
+    private final Path outputDir;
+    private final Set<BatchDiagramKind> kinds;
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private final Set<DiagramJob<?>> activeJobs = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+
+    public BatchDiagramGenerator(DiagramJobManager jobManager, IdeaSettings.State settings, AiUtils.AiConfig aiConfig,
+                                 Path outputDir, Set<BatchDiagramKind> kinds) {
+        this.jobManager = jobManager;
+        this.settings = settings;
+        this.aiConfig = aiConfig;
+        this.outputDir = outputDir;
+        this.kinds = kinds;
+    }
+
+    /**
+     * 执行批量生成，阻塞直到全部完成或被取消
+     */
+    public BatchResult run(List<BatchEntry> entries, ProgressIndicator indicator) throws IOException {
+        for (BatchDiagramKind kind : kinds) {
+            Files.createDirectories(outputDir.resolve(kind.getDirectory()));
+        }
+        Files.createDirectories(outputDir.resolve(CALL_GRAPH_DIRECTORY));
+        BatchProgressStore progressStore = new BatchProgressStore(outputDir);
+
+        int total = 0;
+        int skipped = 0;
+        for (BatchEntry entry : entries) {
+            for (BatchDiagramKind kind : kinds) {
+                if (progressStore.isCompleted(kind, entry)) {
+                    skipped++;
+                } else {
+                    total++;
+                }
+            }
+        }
+
+        CountDownLatch remaining = new CountDownLatch(total);
+        Semaphore entrySlots = new Semaphore((Math.max(1, settings.getBatchAnalysisParallelism())
+                + Math.max(1, settings.getBatchAiConcurrency())) * QUEUE_FACTOR);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            for (BatchEntry entry : entries) {
+                List<BatchDiagramKind> pendingKinds = new ArrayList<>();
+                for (BatchDiagramKind kind : kinds) {
+                    if (!progressStore.isCompleted(kind, entry)) {
+                        pendingKinds.add(kind);
+                    }
+                }
+                if (pendingKinds.isEmpty()) {
+                    continue;
+                }
+                // 在调用线程中等待名额，同时刷新进度和响应取消
+                while (!entrySlots.tryAcquire(500, TimeUnit.MILLISECONDS)) {
+                    if (indicator.isCanceled()) {
+                        cancelled = true;
+                        break;
+                    }
+                    updateIndicator(indicator, total, startTime);
+                }
+                if (cancelled) {
+                    break;
+                }
+                analyze(entry, pendingKinds, entrySlots, progressStore, remaining);
+            }
+
+            while (!cancelled && !remaining.await(500, TimeUnit.MILLISECONDS)) {
+                if (indicator.isCanceled()) {
+                    cancelled = true;
+                    break;
+                }
+                updateIndicator(indicator, total, startTime);
+            }
+            updateIndicator(indicator, total, startTime);
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            if (cancelled) {
+                for (DiagramJob<?> job : activeJobs) {
+                    job.cancel();
+                }
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        BatchResult result = new BatchResult(entries.size(), total, skipped, succeeded.get(),
+                new ArrayList<>(failures), elapsed, cancelled);
+        writeReport(result);
+        return result;
+    }
+
+    /**
+     * 提交调用链分析任务，完成后为每种图表提交生成任务，全部结束后释放入口名额
+     */
+    private void analyze(BatchEntry entry, List<BatchDiagramKind> pendingKinds, Semaphore entrySlots,
+                         BatchProgressStore progressStore, CountDownLatch remaining) {
+        AtomicInteger unfinishedKinds = new AtomicInteger(pendingKinds.size());
+        Runnable kindFinished = () -> {
+            if (unfinishedKinds.decrementAndGet() == 0) {
+                entrySlots.release();
+            }
+        };
+
+        DiagramJobContext context = new DiagramJobContext("batch", "batch:analysis:" + entry.getId(),
+                "批量分析: " + entry.getDisplayName(), DiagramJobContext.Priority.BATCH);
+        DiagramJob<MethodAnalysis> job = track(jobManager.submit(context, MethodAnalysis.pipeline(entry.getMethodPointer())));
+        job.getResult().whenComplete((analysis, error) -> {
+            if (analysis != null) {
+                exportCallGraph(entry, analysis);
+            }
+            String code = analysis != null ? analysis.getCode() : null;
+            for (BatchDiagramKind kind : pendingKinds) {
+                if (error != null) {
+                    fail(kind, entry, failureReason(job, error), remaining);
+                    kindFinished.run();
+                } else if (code == null || code.isEmpty()) {
+                    fail(kind, entry, "入口方法已失效或无代码", remaining);
+                    kindFinished.run();
+                } else {
+                    generate(kind, entry, code, progressStore, remaining, kindFinished);
+                }
+            }
+        });
+    }
+
+    /**
+     * 把分析得到的调用链导出为 SVG，已存在时跳过；导出失败只记录日志，不影响图表生成
+     */
+    private void exportCallGraph(BatchEntry entry, MethodAnalysis analysis) {
+        Path svgFile = outputDir.resolve(CALL_GRAPH_DIRECTORY).resolve(entry.getFileName() + ".svg");
+        if (analysis.getCallStack() == null || Files.exists(svgFile)) {
+            return;
+        }
+        try {
+            GraphExporter.export(analysis.getCallStack(), svgFile);
+        } catch (Exception e) {
+            LOG.warn("导出调用链图失败: " + entry.getId() + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * 提交生成任务：构建提示词、调用 AI 生成 PlantUML 代码（已有 .puml 文件时直接复用）、渲染 PNG 图片
+     */
+    private void generate(BatchDiagramKind kind, BatchEntry entry, String code,
+                          BatchProgressStore progressStore, CountDownLatch remaining, Runnable kindFinished) {
+        Path pumlFile = outputDir.resolve(kind.getDirectory()).resolve(entry.getFileName() + ".puml");
+        Path pngFile = outputDir.resolve(kind.getDirectory()).resolve(entry.getFileName() + ".png");
+        DiagramPipeline<Void> pipeline = DiagramPipeline
+                .of(DiagramJob.Stage.PROMPT, (input, job) -> String.format(kind.getPromptTemplate(settings), code))
+                .then(DiagramJob.Stage.AI, (prompt, job) -> {
+                    if (Files.exists(pumlFile)) {
+                        job.recordCacheHit();
+                        return Files.readString(pumlFile, StandardCharsets.UTF_8);
+                    }
+                    AiUtils.AiResponse response = AiUtils.callAiStreaming(prompt, aiConfig, delta -> job.checkCanceled());
+                    job.recordAiCall(response);
+                    if (!response.isSuccess() || response.getContent() == null || response.getContent().isEmpty()) {
+                        throw new IllegalStateException(response.getErrorMessage());
+                    }
+                    String diagram = UmlDiagramUIFactory.cleanupUmlResponse(response.getContent());
+                    Files.writeString(pumlFile, diagram, StandardCharsets.UTF_8);
+                    return diagram;
+                })
+                .then(DiagramJob.Stage.RENDER, (diagram, job) -> {
+                    Files.write(pngFile, PlantUmlRenderer.renderPlantUmlToPng(diagram));
+                    return null;
+                });
+
+        DiagramJobContext context = new DiagramJobContext(kind.getDirectory(), "batch:" + kind.getDirectory() + ":" + entry.getId(),
+                kind.getTitle() + ": " + entry.getDisplayName(), DiagramJobContext.Priority.BATCH);
+        DiagramJob<Void> job = track(jobManager.submit(context, pipeline));
+        job.getResult().whenComplete((ignored, error) -> {
+            if (error == null) {
+                progressStore.markCompleted(kind, entry);
+                succeeded.incrementAndGet();
+                finished.incrementAndGet();
+                remaining.countDown();
+            } else {
+                fail(kind, entry, failureReason(job, error), remaining);
+            }
+            kindFinished.run();
+        });
+    }
+
+    private <T> DiagramJob<T> track(DiagramJob<T> job) {
+        activeJobs.add(job);
+        job.getResult().whenComplete((result, error) -> activeJobs.remove(job));
+        return job;
+    }
+
+    private static String failureReason(DiagramJob<?> job, Throwable error) {
+        if (error instanceof CancellationException) {
+            return "已取消";
+        }
+        DiagramJob.Stage stage = job.getStage();
+        return (stage != null ? stage.getTitle() : "") + "失败: " + error.getMessage();
+    }
+
+    private void fail(BatchDiagramKind kind, BatchEntry entry, String reason, CountDownLatch remaining) {
+        failures.add(kind.getTitle() + " | " + entry.getId() + " | " + reason);
+        finished.incrementAndGet();
+        remaining.countDown();
+    }
+
+    private void updateIndicator(ProgressIndicator indicator, int total, long startTime) {
+        int done = finished.get();
+        indicator.setIndeterminate(false);
+        indicator.setFraction(total == 0 ? 1.0 : (double) done / total);
+        indicator.setText(String.format("批量生成图表: %d/%d，失败 %d，速率 %.1f 张/分钟",
+                done, total, failures.size(), throughput(succeeded.get(), System.currentTimeMillis() - startTime)));
+    }
+
+    static double throughput(int diagrams, long elapsedMillis) {
+        return elapsedMillis <= 0 ? 0 : diagrams * 60000.0 / elapsedMillis;
+    }
+
+    private void writeReport(BatchResult result) {
+        StringBuilder report = new StringBuilder();
+        report.append("# 批量图表生成报告\n\n");
+        report.append("- 生成时间: ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append("\n");
+        report.append("- 入口方法: ").append(result.getEntryCount()).append("\n");
+        report.append("- 本次任务: ").append(result.getTotal()).append("\n");
+        report.append("- 已跳过(之前完成): ").append(result.getSkipped()).append("\n");
+        report.append("- 成功: ").append(result.getSucceeded()).append("\n");
+        report.append("- 失败: ").append(result.getFailures().size()).append("\n");
+        report.append("- 耗时: ").append(result.getElapsedMillis() / 1000).append(" 秒\n");
+        report.append(String.format("- 速率: %.1f 张/分钟%n", result.getThroughput()));
+        if (result.isCancelled()) {
+            report.append("- 状态: 已取消，重新运行将从断点继续\n");
+        }
+        if (!result.getFailures().isEmpty()) {
+            report.append("\n## 失败列表\n\n| 类型 | 入口 | 原因 |\n| --- | --- | --- |\n");
+            for (String failure : result.getFailures()) {
+                report.append("| ").append(failure.replace("\n", " ")).append(" |\n");
+            }
+        }
+        try {
+            Files.writeString(outputDir.resolve(REPORT_FILE_NAME), report.toString(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Failed to write batch report", e);
+        }
+    }
+
+    /**
+     * 批量生成的结果汇总
+     */
+    public static class BatchResult {
+        private final int entryCount;
+        private final int total;
+        private final int skipped;
+        private final int succeeded;
+        private final List<String> failures;
+        private final long elapsedMillis;
+        private final boolean cancelled;
+
+        public BatchResult(int entryCount, int total, int skipped, int succeeded,
+                           List<String> failures, long elapsedMillis, boolean cancelled) {
+            this.entryCount = entryCount;
+            this.total = total;
+            this.skipped = skipped;
+            this.succeeded = succeeded;
+            this.failures = failures;
+            this.elapsedMillis = elapsedMillis;
+            this.cancelled = cancelled;
+        }
+
+        public int getEntryCount() { return entryCount; }
+        public int getTotal() { return total; }
+        public int getSkipped() { return skipped; }
+        public int getSucceeded() { return succeeded; }
+        public List<String> getFailures() { return failures; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isCancelled() { return cancelled; }
+
+        public double getThroughput() {
+            return throughput(succeeded, elapsedMillis);
+        }
+    }
+}
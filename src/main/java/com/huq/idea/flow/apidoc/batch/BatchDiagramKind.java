@@ -0,0 +1,46 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import com.huq.idea.flow.config.config.IdeaSettings;
+
+import java.util.List;
+
+/**
+ * 批量生成支持的图表类型
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public enum BatchDiagramKind {
+    FLOW("flow", "流程图"),
+    SEQUENCE("sequence", "时序图");
+
+    private final String directory;
+    private final String title;
+
+    BatchDiagramKind(String directory, String title) {
+        this.directory = directory;
+        this.title = title;
+    }
+
+    /**
+     * 输出子目录名
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * 取该类型配置的第一个提示词模板
+     */
+    public String getPromptTemplate(IdeaSettings.State state) {
+        List<IdeaSettings.PromptConfig> prompts = this == FLOW ? state.getFlowPrompts() : state.getSequencePrompts();
+        if (!prompts.isEmpty() && prompts.get(0).getPrompt() != null) {
+            return prompts.get(0).getPrompt();
+        }
+        return this == FLOW ? state.getBuildFlowPrompt() : state.getUmlSequencePrompt();
+    }
+}
@@ -0,0 +1,48 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPsiElementPointer;
+
+/**
+ * 批量生成中的一个入口方法
+ *
+ * <p>PSI 元素通过 {@link SmartPsiElementPointer} 持有，可以安全地跨读操作和线程传递。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class BatchEntry {
+    private final String id;
+    private final String displayName;
+    private final String fileName;
+    private final SmartPsiElementPointer<PsiMethod> methodPointer;
+
+    public BatchEntry(String id, String displayName, String fileName, SmartPsiElementPointer<PsiMethod> methodPointer) {
+        this.id = id;
+        this.displayName = displayName;
+        this.fileName = fileName;
+        this.methodPointer = methodPointer;
+    }
+
+    /**
+     * 稳定的入口标识，形如 {@code com.demo.UserController#getUser(Long)}，用于断点续跑
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * 输出文件名（不含扩展名）
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public SmartPsiElementPointer<PsiMethod> getMethodPointer() {
+        return methodPointer;
+    }
+}
@@ -0,0 +1,158 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import com.huq.idea.flow.model.CallStackFingerprint;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.AllClassesSearch;
+import com.intellij.psi.search.searches.AnnotatedElementsSearch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 在整个项目中查找批量生成的入口方法
+ *
+ * <p>支持两种方式：
+ * <ul>
+ *     <li>按注解查找，例如 Spring 的 {@code @GetMapping}</li>
+ *     <li>按 {@code 类名通配符#方法名通配符} 模式查找，例如 {@code com.demo.*Facade#*}</li>
+ * </ul>
+ * 必须在读操作中调用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class BatchEntryPointFinder {
+    private static final Logger LOG = Logger.getInstance(BatchEntryPointFinder.class);
+
+    private final Project project;
+
+    public BatchEntryPointFinder(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * 查找所有入口方法，结果按发现顺序去重
+     */
+    public List<BatchEntry> find(List<String> annotations, List<String> patterns) {
+        GlobalSearchScope projectScope = GlobalSearchScope.projectScope(project);
+        GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+        Map<String, PsiMethod> methods = new LinkedHashMap<>();
+
+        for (String annotation : annotations) {
+            PsiClass annotationClass = JavaPsiFacade.getInstance(project).findClass(annotation, allScope);
+            if (annotationClass == null || !annotationClass.isAnnotationType()) {
+                LOG.info("Annotation not found in project classpath: " + annotation);
+                continue;
+            }
+            for (PsiMethod method : AnnotatedElementsSearch.searchPsiMethods(annotationClass, projectScope).findAll()) {
+                ProgressManager.checkCanceled();
+                addMethod(methods, method);
+            }
+        }
+
+        if (!patterns.isEmpty()) {
+            List<Pattern[]> compiled = new ArrayList<>();
+            for (String pattern : patterns) {
+                int index = pattern.indexOf('#');
+                String classPattern = index >= 0 ? pattern.substring(0, index) : pattern;
+                String methodPattern = index >= 0 ? pattern.substring(index + 1) : "*";
+                compiled.add(new Pattern[]{toRegex(classPattern), toRegex(methodPattern)});
+            }
+            for (PsiClass psiClass : AllClassesSearch.search(projectScope, project).findAll()) {
+                ProgressManager.checkCanceled();
+                String qualifiedName = psiClass.getQualifiedName();
+                if (qualifiedName == null || psiClass.isInterface() || psiClass.isAnnotationType()) {
+                    continue;
+                }
+                for (Pattern[] pattern : compiled) {
+                    if (!pattern[0].matcher(qualifiedName).matches()) {
+                        continue;
+                    }
+                    for (PsiMethod method : psiClass.getMethods()) {
+                        if (!method.isConstructor() && method.getBody() != null
+                                && pattern[1].matcher(method.getName()).matches()) {
+                            addMethod(methods, method);
+                        }
+                    }
+                }
+            }
+        }
+
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        List<BatchEntry> entries = new ArrayList<>(methods.size());
+        for (Map.Entry<String, PsiMethod> entry : methods.entrySet()) {
+            PsiMethod method = entry.getValue();
+            PsiClass containingClass = method.getContainingClass();
+            String className = containingClass == null ? "" : containingClass.getName();
+            entries.add(new BatchEntry(entry.getKey(),
+                    className + "." + method.getName(),
+                    toFileName(entry.getKey()),
+                    pointerManager.createSmartPsiElementPointer(method)));
+        }
+        LOG.info("Found " + entries.size() + " batch entry methods");
+        return entries;
+    }
+
+    private static void addMethod(Map<String, PsiMethod> methods, PsiMethod method) {
+        String id = buildEntryId(method);
+        if (id != null) {
+            methods.putIfAbsent(id, method);
+        }
+    }
+
+    /**
+     * 生成稳定的入口标识：全限定类名#方法名(参数类型)
+     */
+    static String buildEntryId(PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        if (containingClass == null || containingClass.getQualifiedName() == null) {
+            return null;
+        }
+        StringBuilder id = new StringBuilder(containingClass.getQualifiedName())
+                .append('#').append(method.getName()).append('(');
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(parameters[i].getType().getPresentableText());
+        }
+        return id.append(')').toString();
+    }
+
+    /**
+     * 把入口标识转换成可作为文件名的字符串
+     *
+     * <p>可读部分中数组和可变参数分别写作 {@code Arr} 和 {@code Var}，末尾再加上入口标识哈希的前 8 位，
+     * 保证重载方法以及只有大小写不同的方法在不区分大小写的文件系统上也不会共用同一个文件。
+     */
+    static String toFileName(String entryId) {
+        String name = entryId.replace('#', '.')
+                .replace("()", "")
+                .replace("...", "Var")
+                .replace("[]", "Arr")
+                .replaceAll("[^A-Za-z0-9._-]+", "_");
+        if (name.endsWith("_")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name + "-" + CallStackFingerprint.sha256(entryId).substring(0, 8);
+    }
+
+    private static Pattern toRegex(String wildcardPattern) {
+        String regex = wildcardPattern.trim()
+                .replace(".", "\\.")
+                .replace("*", ".*");
+        return Pattern.compile(regex);
+    }
+}
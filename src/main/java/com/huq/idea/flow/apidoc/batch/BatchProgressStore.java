@@ -0,0 +1,79 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 记录批量生成中已完成的任务，用于中断后续跑
+ *
+ * <p>每完成一张图就向进度文件追加一行 {@code 图表类型|入口标识}，
+ * 再次运行时跳过文件中已记录的任务。失败的任务不会记录，下次会重新执行。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class BatchProgressStore {
+    private static final Logger LOG = Logger.getInstance(BatchProgressStore.class);
+
+    public static final String FILE_NAME = ".batch-progress";
+
+    private final Path file;
+    private final Set<String> completed = Collections.synchronizedSet(new HashSet<>());
+
+    public BatchProgressStore(Path outputDir) {
+        this.file = outputDir.resolve(FILE_NAME);
+        load();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    completed.add(line.trim());
+                }
+            }
+            LOG.info("Resuming batch, " + completed.size() + " diagrams already completed");
+        } catch (IOException e) {
+            LOG.warn("Failed to read batch progress file: " + file, e);
+        }
+    }
+
+    public boolean isCompleted(BatchDiagramKind kind, BatchEntry entry) {
+        return completed.contains(key(kind, entry));
+    }
+
+    /**
+     * 标记任务完成并立即落盘，保证进程中断时进度不丢失
+     */
+    public synchronized void markCompleted(BatchDiagramKind kind, BatchEntry entry) {
+        String key = key(kind, entry);
+        if (!completed.add(key)) {
+            return;
+        }
+        try {
+            Files.writeString(file, key + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.warn("Failed to write batch progress file: " + file, e);
+        }
+    }
+
+    public int size() {
+        return completed.size();
+    }
+
+    private static String key(BatchDiagramKind kind, BatchEntry entry) {
+        return kind.getDirectory() + "|" + entry.getId();
+    }
+}
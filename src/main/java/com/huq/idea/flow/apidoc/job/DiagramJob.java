@@ -0,0 +1,321 @@
+package com.huq.idea.flow.apidoc.job;
+
+import com.huq.idea.flow.util.AiUtils;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 由 {@link DiagramJobManager} 调度的一个生成任务
+ *
+ * <p>记录当前阶段、状态、每个阶段的耗时、AI 调用的首字节耗时和 token 数以及缓存命中次数，
+ * 结果通过 {@link #getResult()} 或 {@link #onResult(BiConsumer)} 获取。
+ * 取消后结果立即以 {@link CancellationException} 结束，正在执行的阶段会被中断，
+ * 即使阶段执行完成，其输出也会被丢弃。
+ *
+ * @param <T> 任务结果类型
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramJob<T> {
+
+    /**
+     * 任务阶段，每个阶段在独立的线程池中执行
+     */
+    public enum Stage {
+        ANALYSIS("调用链分析"),
+        PROMPT("构建提示词"),
+        AI("AI生成"),
+        RENDER("渲染");
+
+        private final String title;
+
+        Stage(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    public enum Status {
+        QUEUED("排队中"),
+        RUNNING("执行中"),
+        SUCCEEDED("已完成"),
+        FAILED("失败"),
+        CANCELLED("已取消");
+
+        private final String title;
+
+        Status(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public boolean isDone() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final long id;
+    private final DiagramJobContext context;
+    private final DiagramPipeline<T> pipeline;
+    private final Consumer<DiagramJob<?>> onFinished;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final long submittedAt = System.currentTimeMillis();
+    private final Map<Stage, Long> stageMillis = new EnumMap<>(Stage.class);
+    private final List<BiConsumer<? super T, ? super Throwable>> resultHandlers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Stage stage;
+    private volatile long stageStartedAt;
+    private volatile Throwable error;
+    private volatile long finishedAt;
+    private volatile long aiFirstByteMillis = -1;
+    private volatile long inputTokens = -1;
+    private volatile long outputTokens = -1;
+
+    // 正在执行当前阶段的线程，取消时中断
+    private Thread worker;
+
+    DiagramJob(long id, DiagramJobContext context, DiagramPipeline<T> pipeline, Consumer<DiagramJob<?>> onFinished) {
+        this.id = id;
+        this.context = context;
+        this.pipeline = pipeline;
+        this.onFinished = onFinished;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public DiagramJobContext getContext() {
+        return context;
+    }
+
+    DiagramPipeline<T> getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * 任务结果，失败时以阶段抛出的异常结束，取消时以 {@link CancellationException} 结束
+     */
+    public CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * 注册结果回调，任务结束时在结束任务的线程中执行
+     *
+     * <p>与直接使用 {@link #getResult()} 不同，通过 {@link DiagramJobManager#retry(DiagramJob)} 重试时回调会转移到新任务上。
+     */
+    public void onResult(BiConsumer<? super T, ? super Throwable> handler) {
+        resultHandlers.add(handler);
+        result.whenComplete(handler);
+    }
+
+    List<BiConsumer<? super T, ? super Throwable>> getResultHandlers() {
+        return resultHandlers;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 当前或最后执行的阶段，尚未开始时为 null
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * 当前阶段开始执行的时间
+     */
+    public long getStageStartedAt() {
+        return stageStartedAt;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isDone() {
+        return status.isDone();
+    }
+
+    /**
+     * 已完成阶段的耗时（毫秒）
+     */
+    public Map<Stage, Long> getStageMillis() {
+        synchronized (stageMillis) {
+            return Collections.unmodifiableMap(new EnumMap<>(stageMillis));
+        }
+    }
+
+    /**
+     * AI 调用的首字节耗时（毫秒），没有调用 AI 或未知时为 -1
+     */
+    public long getAiFirstByteMillis() {
+        return aiFirstByteMillis;
+    }
+
+    /**
+     * 输入 token 数，未知时为 -1
+     */
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    /**
+     * 输出 token 数，未知时为 -1
+     */
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    public int getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * 记录一次 AI 调用的首字节耗时和 token 数，供任务面板显示
+     */
+    public void recordAiCall(AiUtils.AiResponse response) {
+        recordAiCall(response.getFirstByteTime(), response.getInputTokens(), response.getOutputTokens());
+    }
+
+    /**
+     * 多次调用时首字节耗时取第一次，token 数累加，值为负数表示未知
+     */
+    synchronized void recordAiCall(long firstByteMillis, long input, long output) {
+        if (aiFirstByteMillis < 0) {
+            aiFirstByteMillis = firstByteMillis;
+        }
+        if (input >= 0) {
+            inputTokens = Math.max(inputTokens, 0) + input;
+        }
+        if (output >= 0) {
+            outputTokens = Math.max(outputTokens, 0) + output;
+        }
+    }
+
+    /**
+     * 记录一次缓存命中，例如复用了进行中的相同任务或已生成的文件
+     */
+    public void recordCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    /**
+     * 进度条上显示的状态文本
+     */
+    public String getStatusText() {
+        Stage current = stage;
+        return context.getTitle() + " - " + (current != null && status == Status.RUNNING ? current.getTitle() : status.getTitle());
+    }
+
+    /**
+     * 取消任务，任务已结束时返回 false
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            status = Status.CANCELLED;
+            finishedAt = System.currentTimeMillis();
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        complete(Status.CANCELLED, null, null);
+        return true;
+    }
+
+    /**
+     * 任务已取消时抛出 {@link CancellationException}，供阶段在耗时循环中调用
+     */
+    public void checkCanceled() {
+        if (status == Status.CANCELLED || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException(context.getTitle() + " 已取消");
+        }
+    }
+
+    /**
+     * 开始执行一个阶段，任务已结束时返回 false
+     */
+    synchronized boolean beginStage(Stage stage) {
+        if (isDone()) {
+            return false;
+        }
+        this.stage = stage;
+        this.stageStartedAt = System.currentTimeMillis();
+        this.status = Status.RUNNING;
+        this.worker = Thread.currentThread();
+        return true;
+    }
+
+    void endStage(Stage stage, long millis) {
+        synchronized (this) {
+            worker = null;
+        }
+        synchronized (stageMillis) {
+            stageMillis.merge(stage, millis, Long::sum);
+        }
+    }
+
+    /**
+     * 以成功或失败结束任务，任务已结束（例如已被取消）时返回 false
+     */
+    boolean finish(Status finalStatus, Object value, Throwable failure) {
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            status = finalStatus;
+            error = failure;
+            finishedAt = System.currentTimeMillis();
+        }
+        complete(finalStatus, value, failure);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Status finalStatus, Object value, Throwable failure) {
+        onFinished.accept(this);
+        if (finalStatus == Status.SUCCEEDED) {
+            result.complete((T) value);
+        } else if (finalStatus == Status.CANCELLED) {
+            result.cancel(false);
+        } else {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + context.getTitle() + " " + status.getTitle() + " " + getStageMillis();
+    }
+}
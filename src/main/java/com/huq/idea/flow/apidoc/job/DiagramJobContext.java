@@ -0,0 +1,71 @@
+package com.huq.idea.flow.apidoc.job;
+
+/**
+ * 一个生成任务的上下文，提交后不再变化
+ *
+ * <p>动作只负责在提交时收集上下文，分析、AI 调用和渲染所需的状态都由任务自己持有，
+ * 不再存放在单例动作的字段中，同时进行的多次调用互不影响。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class DiagramJobContext {
+
+    /**
+     * 任务优先级，交互式任务在每个阶段使用独立的线程池，不会排在批量任务之后
+     */
+    public enum Priority {
+        INTERACTIVE("交互"),
+        BATCH("批量");
+
+        private final String title;
+
+        Priority(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    private final String kind;
+    private final String key;
+    private final String title;
+    private final Priority priority;
+
+    /**
+     * @param kind     任务类型，例如 flow、sequence
+     * @param key      去重标识，相同标识的任务进行中时不会重复执行；
+     *                 不同用途的任务结果类型不同，标识中应包含用途前缀
+     * @param title    显示名称
+     * @param priority 优先级
+     */
+    public DiagramJobContext(String kind, String key, String title, Priority priority) {
+        this.kind = kind;
+        this.key = key;
+        this.title = title;
+        this.priority = priority;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return title + " [" + key + ", " + priority + "]";
+    }
+}
@@ -0,0 +1,139 @@
+package com.huq.idea.flow.apidoc.job;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 任务事件的环形缓冲区
+ *
+ * <p>只保留最近的 {@code capacity} 条事件，每条事件有递增的序号。
+ * 任务面板定时读取 {@link #getLastSequence()}，序号没有变化时不做任何刷新，
+ * 变化时通过 {@link #since(long)} 取出新事件。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramJobEventLog {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    public enum Type {
+        SUBMITTED("提交"),
+        REUSED("复用"),
+        RETRIED("重试"),
+        STAGE_STARTED("开始"),
+        STAGE_FINISHED("完成"),
+        FINISHED("结束");
+
+        private final String title;
+
+        Type(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    /**
+     * 一条任务事件
+     */
+    public static class Event {
+        private final long sequence;
+        private final long time;
+        private final long jobId;
+        private final String jobTitle;
+        private final Type type;
+        private final DiagramJob.Stage stage;
+        private final String message;
+
+        Event(long sequence, long time, long jobId, String jobTitle, Type type, DiagramJob.Stage stage, String message) {
+            this.sequence = sequence;
+            this.time = time;
+            this.jobId = jobId;
+            this.jobTitle = jobTitle;
+            this.type = type;
+            this.stage = stage;
+            this.message = message;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public long getJobId() {
+            return jobId;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * 阶段事件对应的阶段，其他事件为 null
+         */
+        public DiagramJob.Stage getStage() {
+            return stage;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder()
+                    .append(TIME_FORMAT.format(Instant.ofEpochMilli(time)))
+                    .append("  #").append(jobId).append(' ').append(jobTitle)
+                    .append("  ").append(type.getTitle());
+            if (stage != null) {
+                text.append(' ').append(stage.getTitle());
+            }
+            if (message != null && !message.isEmpty()) {
+                text.append(": ").append(message);
+            }
+            return text.toString();
+        }
+    }
+
+    private final Event[] buffer;
+    private volatile long lastSequence;
+
+    public DiagramJobEventLog(int capacity) {
+        this.buffer = new Event[Math.max(1, capacity)];
+    }
+
+    public synchronized void add(Type type, DiagramJob<?> job, DiagramJob.Stage stage, String message) {
+        long sequence = lastSequence + 1;
+        buffer[(int) (sequence % buffer.length)] = new Event(sequence, System.currentTimeMillis(),
+                job.getId(), job.getContext().getTitle(), type, stage, message);
+        lastSequence = sequence;
+    }
+
+    /**
+     * 最后一条事件的序号，没有事件时为 0，不加锁，可以频繁调用
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * 序号大于 {@code sequence} 的事件，按序号排列；已被覆盖的事件不再返回
+     */
+    public synchronized List<Event> since(long sequence) {
+        long first = Math.max(sequence + 1, lastSequence - buffer.length + 1);
+        List<Event> events = new ArrayList<>();
+        for (long i = Math.max(first, 1); i <= lastSequence; i++) {
+            events.add(buffer[(int) (i % buffer.length)]);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,322 @@
+package com.huq.idea.flow.apidoc.job;
+
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 项目级的图表生成任务管理器
+ *
+ * <p>任务由多个阶段组成（调用链分析、构建提示词、AI 生成、渲染），每个阶段按优先级各有一个线程池：
+ * 批量任务的并发数取自设置中的调用链分析并行度、AI 请求并发数和 PlantUML 渲染并发数，修改设置后在下次提交时生效；
+ * 交互式任务使用独立的线程池，每个阶段 {@value #INTERACTIVE_LIMIT} 个线程，批量生成占满线程池时也不需要排队。
+ * 同一线程池中的任务按提交顺序执行，已经开始执行的阶段不会被抢占。
+ * 相同去重标识的任务进行中时，再次提交直接返回进行中的任务。
+ * 任务的提交、阶段开始和结束等事件写入 {@link DiagramJobEventLog}，并保留最近结束的任务，供任务面板显示。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramJobManager implements Disposable {
+    private static final Logger LOG = Logger.getInstance(DiagramJobManager.class);
+
+    private static final int EVENT_CAPACITY = 500;
+    private static final int RECENT_JOBS = 50;
+    // 交互式任务每个阶段的并发数，由用户逐个触发，不受批量设置限制
+    static final int INTERACTIVE_LIMIT = 2;
+
+    private final Project project;
+    private final Map<DiagramJobContext.Priority, ToIntFunction<DiagramJob.Stage>> limits = new EnumMap<>(DiagramJobContext.Priority.class);
+    private final Map<DiagramJobContext.Priority, Map<DiagramJob.Stage, ThreadPoolExecutor>> executors = new EnumMap<>(DiagramJobContext.Priority.class);
+    private final Map<String, DiagramJob<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final DiagramJobEventLog events = new DiagramJobEventLog(EVENT_CAPACITY);
+    // 最近结束的任务，最新的在前
+    private final Deque<DiagramJob<?>> recentJobs = new ArrayDeque<>();
+
+    public DiagramJobManager(Project project) {
+        this(project, DiagramJobManager::configuredLimit, stage -> INTERACTIVE_LIMIT);
+    }
+
+    DiagramJobManager(Project project, ToIntFunction<DiagramJob.Stage> limits) {
+        this(project, limits, limits);
+    }
+
+    /**
+     * @param batchLimits       批量任务每个阶段的并发数
+     * @param interactiveLimits 交互式任务每个阶段的并发数
+     */
+    DiagramJobManager(Project project, ToIntFunction<DiagramJob.Stage> batchLimits, ToIntFunction<DiagramJob.Stage> interactiveLimits) {
+        this.project = project;
+        limits.put(DiagramJobContext.Priority.INTERACTIVE, interactiveLimits);
+        limits.put(DiagramJobContext.Priority.BATCH, batchLimits);
+        for (DiagramJobContext.Priority priority : DiagramJobContext.Priority.values()) {
+            Map<DiagramJob.Stage, ThreadPoolExecutor> stageExecutors = new EnumMap<>(DiagramJob.Stage.class);
+            for (DiagramJob.Stage stage : DiagramJob.Stage.values()) {
+                int limit = limit(priority, stage);
+                String prefix = "UmlFlow-" + priority.name().toLowerCase() + "-" + stage.name().toLowerCase() + "-";
+                AtomicInteger threadCount = new AtomicInteger();
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(limit, limit, 60, TimeUnit.SECONDS,
+                        new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.allowCoreThreadTimeOut(true);
+                stageExecutors.put(stage, executor);
+            }
+            executors.put(priority, stageExecutors);
+        }
+    }
+
+    public static DiagramJobManager getInstance(Project project) {
+        return project.getService(DiagramJobManager.class);
+    }
+
+    /**
+     * 提交任务，相同去重标识的任务进行中时直接返回该任务
+     */
+    @SuppressWarnings("unchecked")
+    public <T> DiagramJob<T> submit(DiagramJobContext context, DiagramPipeline<T> pipeline) {
+        applyLimits();
+        DiagramJob<?>[] created = new DiagramJob<?>[1];
+        DiagramJob<?> job = inFlight.compute(context.getKey(), (key, existing) -> {
+            if (existing != null && !existing.isDone()) {
+                return existing;
+            }
+            created[0] = new DiagramJob<>(sequence.incrementAndGet(), context, pipeline, this::finished);
+            return created[0];
+        });
+        if (created[0] == null) {
+            LOG.info("复用进行中的任务: " + job);
+            job.recordCacheHit();
+            events.add(DiagramJobEventLog.Type.REUSED, job, null, null);
+        } else {
+            events.add(DiagramJobEventLog.Type.SUBMITTED, job, null, context.getPriority().getTitle() + "任务");
+            schedule(job, 0, null);
+        }
+        return (DiagramJob<T>) job;
+    }
+
+    /**
+     * 重新提交失败或已取消的任务，通过 {@link DiagramJob#onResult} 注册的回调转移到新任务
+     */
+    public <T> DiagramJob<T> retry(DiagramJob<T> job) {
+        if (job.getStatus() != DiagramJob.Status.FAILED && job.getStatus() != DiagramJob.Status.CANCELLED) {
+            throw new IllegalArgumentException("只能重试失败或已取消的任务: " + job);
+        }
+        DiagramJob<T> retried = submit(job.getContext(), job.getPipeline());
+        events.add(DiagramJobEventLog.Type.RETRIED, retried, null, "原任务 #" + job.getId());
+        for (BiConsumer<? super T, ? super Throwable> handler : job.getResultHandlers()) {
+            retried.onResult(handler);
+        }
+        return retried;
+    }
+
+    /**
+     * 进行中（排队或执行中）的任务，按提交顺序排列
+     */
+    public List<DiagramJob<?>> getActiveJobs() {
+        List<DiagramJob<?>> jobs = new ArrayList<>(inFlight.values());
+        jobs.sort(Comparator.comparingLong(DiagramJob::getId));
+        return jobs;
+    }
+
+    /**
+     * 最近结束的任务，最新的在前
+     */
+    public List<DiagramJob<?>> getRecentJobs() {
+        synchronized (recentJobs) {
+            return new ArrayList<>(recentJobs);
+        }
+    }
+
+    public DiagramJobEventLog getEvents() {
+        return events;
+    }
+
+    /**
+     * 在 IDE 后台进度中显示任务状态，用户在进度条上取消时同时取消任务
+     */
+    public void track(String title, DiagramJob<?> job) {
+        new Task.Backgroundable(project, title, true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                while (!job.isDone()) {
+                    if (indicator.isCanceled()) {
+                        job.cancel();
+                        return;
+                    }
+                    indicator.setText(job.getStatusText());
+                    try {
+                        job.getResult().get(200, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // 继续刷新状态
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        // 失败和取消由提交方处理
+                        return;
+                    }
+                }
+            }
+        }.queue();
+    }
+
+    private void schedule(DiagramJob<?> job, int index, Object input) {
+        if (job.isDone()) {
+            return;
+        }
+        try {
+            executors.get(job.getContext().getPriority()).get(job.getPipeline().stageAt(index)).execute(new StageTask(job, index, input));
+        } catch (RejectedExecutionException e) {
+            // 项目关闭后线程池已停止
+            job.cancel();
+        }
+    }
+
+    private void finished(DiagramJob<?> job) {
+        inFlight.remove(job.getContext().getKey(), job);
+        synchronized (recentJobs) {
+            recentJobs.addFirst(job);
+            if (recentJobs.size() > RECENT_JOBS) {
+                recentJobs.removeLast();
+            }
+        }
+        Throwable error = job.getError();
+        events.add(DiagramJobEventLog.Type.FINISHED, job, null,
+                job.getStatus().getTitle() + (error != null ? " " + error.getMessage() : ""));
+        if (job.getStatus() == DiagramJob.Status.FAILED) {
+            LOG.warn("任务失败: " + job, job.getError());
+        } else {
+            LOG.info("任务结束: " + job + ", 总耗时 " + (job.getFinishedAt() - job.getSubmittedAt()) + " ms");
+        }
+    }
+
+    private void applyLimits() {
+        for (Map.Entry<DiagramJobContext.Priority, Map<DiagramJob.Stage, ThreadPoolExecutor>> pools : executors.entrySet()) {
+            for (Map.Entry<DiagramJob.Stage, ThreadPoolExecutor> entry : pools.getValue().entrySet()) {
+                int limit = limit(pools.getKey(), entry.getKey());
+                ThreadPoolExecutor executor = entry.getValue();
+                // 调整顺序保证 core <= max
+                if (limit > executor.getMaximumPoolSize()) {
+                    executor.setMaximumPoolSize(limit);
+                    executor.setCorePoolSize(limit);
+                } else if (limit < executor.getMaximumPoolSize()) {
+                    executor.setCorePoolSize(limit);
+                    executor.setMaximumPoolSize(limit);
+                }
+            }
+        }
+    }
+
+    private int limit(DiagramJobContext.Priority priority, DiagramJob.Stage stage) {
+        return Math.max(1, limits.get(priority).applyAsInt(stage));
+    }
+
+    private static int configuredLimit(DiagramJob.Stage stage) {
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        switch (stage) {
+            case AI:
+                return settings.getBatchAiConcurrency();
+            case RENDER:
+                return settings.getBatchRenderConcurrency();
+            default:
+                return settings.getBatchAnalysisParallelism();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (DiagramJob<?> job : getActiveJobs()) {
+            job.cancel();
+        }
+        for (Map<DiagramJob.Stage, ThreadPoolExecutor> stageExecutors : executors.values()) {
+            for (ThreadPoolExecutor executor : stageExecutors.values()) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 一个任务的一个阶段，在阶段队列中按优先级和提交顺序排序
+     */
+    private class StageTask implements Runnable, Comparable<StageTask> {
+        private final DiagramJob<?> job;
+        private final int index;
+        private final Object input;
+
+        StageTask(DiagramJob<?> job, int index, Object input) {
+            this.job = job;
+            this.index = index;
+            this.input = input;
+        }
+
+        @Override
+        public void run() {
+            DiagramJob.Stage stage = job.getPipeline().stageAt(index);
+            if (!job.beginStage(stage)) {
+                return;
+            }
+            events.add(DiagramJobEventLog.Type.STAGE_STARTED, job, stage, null);
+            long start = System.currentTimeMillis();
+            Object output;
+            try {
+                output = job.getPipeline().stepAt(index).run(input, job);
+            } catch (ProcessCanceledException e) {
+                job.cancel();
+                return;
+            } catch (CancellationException | InterruptedException e) {
+                job.cancel();
+                return;
+            } catch (Throwable e) {
+                job.finish(DiagramJob.Status.FAILED, null, e);
+                return;
+            } finally {
+                long millis = System.currentTimeMillis() - start;
+                job.endStage(stage, millis);
+                events.add(DiagramJobEventLog.Type.STAGE_FINISHED, job, stage, millis + " ms");
+                // 清除取消时设置的中断标记，避免影响线程池中的下一个任务
+                Thread.interrupted();
+            }
+            if (index + 1 < job.getPipeline().size()) {
+                schedule(job, index + 1, output);
+            } else {
+                job.finish(DiagramJob.Status.SUCCEEDED, output, null);
+            }
+        }
+
+        @Override
+        public int compareTo(StageTask other) {
+            int byPriority = job.getContext().getPriority().compareTo(other.job.getContext().getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(job.getId(), other.job.getId());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.huq.idea.flow.apidoc.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 任务的阶段流水线，每个阶段的输出作为下一个阶段的输入
+ *
+ * <p>每个阶段在 {@link DiagramJobManager} 中对应阶段的线程池中执行，
+ * 阶段之间重新排队，因此一个任务等待 AI 响应时不会占用分析或渲染的线程。
+ *
+ * @param <T> 最后一个阶段的输出类型
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class DiagramPipeline<T> {
+
+    /**
+     * 一个阶段的执行逻辑，长时间运行的阶段应定期调用 {@link DiagramJob#checkCanceled()}
+     */
+    @FunctionalInterface
+    public interface Step<I, O> {
+        O run(I input, DiagramJob<?> job) throws Exception;
+    }
+
+    private final List<DiagramJob.Stage> stages;
+    private final List<Step<Object, Object>> steps;
+
+    private DiagramPipeline(List<DiagramJob.Stage> stages, List<Step<Object, Object>> steps) {
+        this.stages = Collections.unmodifiableList(stages);
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * 以一个阶段开始流水线，第一个阶段的输入为 null
+     */
+    public static <O> DiagramPipeline<O> of(DiagramJob.Stage stage, Step<Void, O> step) {
+        return new DiagramPipeline<Void>(new ArrayList<>(), new ArrayList<>()).then(stage, step);
+    }
+
+    /**
+     * 追加一个阶段，返回新的流水线，原流水线不变
+     */
+    @SuppressWarnings("unchecked")
+    public <N> DiagramPipeline<N> then(DiagramJob.Stage stage, Step<? super T, N> step) {
+        List<DiagramJob.Stage> nextStages = new ArrayList<>(stages);
+        List<Step<Object, Object>> nextSteps = new ArrayList<>(steps);
+        nextStages.add(stage);
+        nextSteps.add((Step<Object, Object>) (Step<?, ?>) step);
+        return new DiagramPipeline<>(nextStages, nextSteps);
+    }
+
+    public List<DiagramJob.Stage> getStages() {
+        return stages;
+    }
+
+    int size() {
+        return stages.size();
+    }
+
+    DiagramJob.Stage stageAt(int index) {
+        return stages.get(index);
+    }
+
+    Step<Object, Object> stepAt(int index) {
+        return steps.get(index);
+    }
+}
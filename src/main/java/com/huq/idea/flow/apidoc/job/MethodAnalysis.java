@@ -0,0 +1,80 @@
+package com.huq.idea.flow.apidoc.job;
+
+import com.huq.idea.flow.apidoc.CallStackCodeCollector;
+import com.huq.idea.flow.apidoc.EnhancedMethodChainVisitor;
+import com.huq.idea.flow.apidoc.service.DiagramStore;
+import com.huq.idea.flow.model.CallStack;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPsiElementPointer;
+
+/**
+ * 入口方法的分析结果：调用链、收集到的代码，以及按需查找的已保存图表
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class MethodAnalysis {
+    private final CallStack callStack;
+    private final String code;
+    private final DiagramStore.Lookup stored;
+
+    public MethodAnalysis(CallStack callStack, String code) {
+        this(callStack, code, null);
+    }
+
+    public MethodAnalysis(CallStack callStack, String code, DiagramStore.Lookup stored) {
+        this.callStack = callStack;
+        this.code = code;
+        this.stored = stored;
+    }
+
+    public CallStack getCallStack() {
+        return callStack;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 已保存图表的查找结果，流水线没有指定图表类型时为 null
+     */
+    public DiagramStore.Lookup getStored() {
+        return stored;
+    }
+
+    /**
+     * 分析调用链并收集代码的流水线
+     *
+     * <p>方法通过 {@link SmartPsiElementPointer} 传入，分析阶段使用非阻塞读操作，遇到写操作时自动让出并重试。
+     */
+    public static DiagramPipeline<MethodAnalysis> pipeline(SmartPsiElementPointer<PsiMethod> methodPointer) {
+        return DiagramPipeline
+                .of(DiagramJob.Stage.ANALYSIS, (input, job) -> ReadAction.nonBlocking(() -> {
+                    PsiMethod method = methodPointer.getElement();
+                    if (method == null || !method.isValid()) {
+                        throw new IllegalStateException("入口方法已失效");
+                    }
+                    return new EnhancedMethodChainVisitor().generateMethodChains(method, null);
+                }).executeSynchronously())
+                .then(DiagramJob.Stage.PROMPT, (callStack, job) ->
+                        new MethodAnalysis(callStack, ReadAction.compute(() -> CallStackCodeCollector.collect(callStack))));
+    }
+
+    /**
+     * 分析调用链、收集代码，并计算调用链指纹、查找该类型已保存的图表和图像
+     *
+     * <p>指纹需要读取调用链中所有方法的源码，图表存储首次使用时需要读取磁盘，都在任务线程中完成，
+     * 打开对话框时不再在 EDT 上执行这些操作。
+     */
+    public static DiagramPipeline<MethodAnalysis> pipeline(SmartPsiElementPointer<PsiMethod> methodPointer,
+                                                           String diagramKind, DiagramStore store) {
+        return pipeline(methodPointer)
+                .then(DiagramJob.Stage.PROMPT, (analysis, job) -> {
+                    DiagramStore.Source source = ReadAction.compute(() ->
+                            DiagramStore.Source.of(diagramKind, analysis.getCallStack()));
+                    return new MethodAnalysis(analysis.getCallStack(), analysis.getCode(), store.lookup(source));
+                });
+    }
+}
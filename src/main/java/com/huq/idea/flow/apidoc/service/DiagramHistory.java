@@ -0,0 +1,168 @@
+package com.huq.idea.flow.apidoc.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工具窗口中图表的有界历史
+ *
+ * <p>按最近访问顺序记录每个图表的估算内存。保留完整面板的图表超过数量上限或内存预算时，
+ * 从最久未访问的图表开始释放，释放后只保留源码和缩略图的轻量记录，重新打开时再创建完整面板。
+ * 当前选中的图表和无法重新创建的内容不会被释放。轻量记录同样有数量上限，超出后最旧的记录被移除。
+ *
+ * <p>只记录状态和决定释放哪些图表，面板的释放和重建由 {@link UmlFlowServiceImpl} 完成。不是线程安全的，只在 EDT 中使用。
+ *
+ * @param <K> 图表的标识，工具窗口中为 Content
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramHistory<K> {
+
+    /**
+     * 一个图表的历史记录
+     */
+    public static class Entry<K> {
+        private final K key;
+        private final boolean reopenable;
+        private long estimatedBytes;
+        private boolean live = true;
+
+        Entry(K key, long estimatedBytes, boolean reopenable) {
+            this.key = key;
+            this.estimatedBytes = estimatedBytes;
+            this.reopenable = reopenable;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /**
+         * 是否保留着完整面板，false 表示只剩轻量记录
+         */
+        public boolean isLive() {
+            return live;
+        }
+
+        public boolean isReopenable() {
+            return reopenable;
+        }
+    }
+
+    // 按访问顺序排列，最久未访问的在前
+    private final Map<K, Entry<K>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public void add(K key, long estimatedBytes, boolean reopenable) {
+        entries.put(key, new Entry<>(key, estimatedBytes, reopenable));
+    }
+
+    /**
+     * 记录一次访问（例如选中图表），不存在时返回 null
+     */
+    public Entry<K> touch(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 重新创建完整面板后更新估算内存
+     */
+    public void rehydrated(K key, long estimatedBytes) {
+        Entry<K> entry = entries.get(key);
+        if (entry != null) {
+            entry.live = true;
+            entry.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    /**
+     * 更新图表的估算内存，例如异步渲染完成后
+     */
+    public void resize(K key, long estimatedBytes) {
+        Entry<K> entry = entries.get(key);
+        if (entry != null && entry.live) {
+            entry.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * 计算需要释放完整面板的图表，并把它们标记为已释放
+     *
+     * @param maxLive     保留完整面板的图表数量上限
+     * @param budgetBytes 保留完整面板的图表的估算内存预算
+     * @param pinned      当前选中的图表，不会被释放，可以为 null
+     * @return 需要释放的图表，最久未访问的在前
+     */
+    public List<K> evict(int maxLive, long budgetBytes, K pinned) {
+        int liveCount = getLiveCount();
+        long liveBytes = getLiveBytes();
+        List<K> evicted = new ArrayList<>();
+        for (Entry<K> entry : entries.values()) {
+            if (liveCount <= maxLive && liveBytes <= budgetBytes) {
+                break;
+            }
+            if (!entry.live || !entry.reopenable || entry.key.equals(pinned)) {
+                continue;
+            }
+            entry.live = false;
+            liveCount--;
+            liveBytes -= entry.estimatedBytes;
+            evicted.add(entry.key);
+        }
+        return evicted;
+    }
+
+    /**
+     * 轻量记录超过上限时需要移除的记录，最旧的在前，并从历史中删除
+     */
+    public List<K> trimRecords(int maxRecords) {
+        int records = entries.size() - getLiveCount();
+        List<K> removed = new ArrayList<>();
+        for (Entry<K> entry : entries.values()) {
+            if (records <= maxRecords) {
+                break;
+            }
+            if (!entry.live) {
+                removed.add(entry.key);
+                records--;
+            }
+        }
+        for (K key : removed) {
+            entries.remove(key);
+        }
+        return removed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getLiveCount() {
+        int count = 0;
+        for (Entry<K> entry : entries.values()) {
+            if (entry.live) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getLiveBytes() {
+        long bytes = 0;
+        for (Entry<K> entry : entries.values()) {
+            if (entry.live) {
+                bytes += entry.estimatedBytes;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,526 @@
+package com.huq.idea.flow.apidoc.service;
+
+import com.google.gson.Gson;
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
+import com.huq.idea.flow.model.MethodDescription;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 项目级的图表存储
+ *
+ * <p>保存每个图表的 AI 输出、渲染后的图像、调用链指纹和每个输入方法的结构哈希，
+ * 写入 IDE 系统目录，关闭对话框或重启 IDE 后仍然可以直接打开。
+ * 监听文件系统变化（包括编辑保存和 VCS 更新），只重新计算变化文件中方法的结构哈希，
+ * 把哈希不一致或方法已被删除的图表标记为过期，并记录具体是哪些方法发生了变化。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramStore implements Disposable {
+    private static final Logger LOG = Logger.getInstance(DiagramStore.class);
+
+    /**
+     * 根据方法签名查找方法当前的结构哈希，方法不存在时返回 null
+     */
+    public interface MethodHashResolver {
+        String currentHash(String signatureKey, CallStackFingerprint.MethodEntry entry);
+    }
+
+    /**
+     * 一个已保存的图表
+     */
+    public static class StoredDiagram {
+        private String kind;
+        private String rootKey;
+        private String title;
+        private String output;
+        private String fingerprint;
+        private Map<String, CallStackFingerprint.MethodEntry> methods;
+        private long createdAt;
+        private boolean stale;
+        private List<String> changedMethods;
+
+        public StoredDiagram() {
+        }
+
+        public StoredDiagram(Source source, String title, String output) {
+            this.kind = source.getKind();
+            this.rootKey = source.getRootKey();
+            this.title = title;
+            this.output = output;
+            this.fingerprint = source.getFingerprint();
+            this.methods = new LinkedHashMap<>(source.getMethods());
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getRootKey() {
+            return rootKey;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * AI 生成的 PlantUML 或 JSON 文本
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public Map<String, CallStackFingerprint.MethodEntry> getMethods() {
+            return methods;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public boolean isStale() {
+            return stale;
+        }
+
+        /**
+         * 导致图表过期的方法签名，未过期时为空
+         */
+        public List<String> getChangedMethods() {
+            return changedMethods == null ? List.of() : changedMethods;
+        }
+
+        /**
+         * 与当前调用链的指纹一致且没有被标记为过期
+         */
+        public boolean isFreshFor(Source source) {
+            return !stale && Objects.equals(fingerprint, source.getFingerprint());
+        }
+    }
+
+    /**
+     * 生成图表时的输入：图表类型、入口方法、调用链指纹和方法哈希
+     */
+    public static class Source {
+        private final String kind;
+        private final String rootKey;
+        private final String fingerprint;
+        private final Map<String, CallStackFingerprint.MethodEntry> methods;
+
+        private Source(String kind, String rootKey, String fingerprint, Map<String, CallStackFingerprint.MethodEntry> methods) {
+            this.kind = kind;
+            this.rootKey = rootKey;
+            this.fingerprint = fingerprint;
+            this.methods = methods;
+        }
+
+        /**
+         * 计算调用链的指纹，会读取调用链中所有方法的源码
+         */
+        public static Source of(String kind, CallStack callStack) {
+            Map<String, CallStackFingerprint.MethodEntry> methods = CallStackFingerprint.methodEntries(callStack);
+            MethodDescription root = callStack.getMethodDescription();
+            String rootKey = root != null ? root.getSignatureKey() : "";
+            return new Source(kind, rootKey, CallStackFingerprint.fingerprint(callStack, methods), methods);
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getRootKey() {
+            return rootKey;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public Map<String, CallStackFingerprint.MethodEntry> getMethods() {
+            return methods;
+        }
+    }
+
+    /**
+     * 打开图表对话框前在后台准备好的数据：调用链指纹、已保存的图表和图像，对话框在 EDT 上直接使用
+     */
+    public static class Lookup {
+        private final Source source;
+        private final StoredDiagram stored;
+        private final byte[] image;
+
+        private Lookup(Source source, StoredDiagram stored, byte[] image) {
+            this.source = source;
+            this.stored = stored;
+            this.image = image;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * 同一类型和入口方法已保存的图表，没有时为 null
+         */
+        public StoredDiagram getStored() {
+            return stored;
+        }
+
+        /**
+         * 已保存图表的 PNG 图像，没有时为 null
+         */
+        public byte[] getImage() {
+            return image;
+        }
+    }
+
+    private final Path directory;
+    private final MethodHashResolver resolver;
+    private final Gson gson = new Gson();
+    // 记录文件名（类型和入口方法的哈希）到图表，首次访问时从磁盘加载
+    private Map<String, StoredDiagram> diagrams;
+    // 图表引用的源码文件，图表变化时整体替换，文件监听在 EDT 上只读这个快照，不等待锁和磁盘读写
+    private volatile Set<String> trackedFiles = Collections.emptySet();
+
+    public DiagramStore(Project project) {
+        this(Paths.get(PathManager.getSystemPath(), "ai-generate-flow", "diagrams", project.getLocationHash()),
+                (signatureKey, entry) -> resolveHash(project, signatureKey, entry));
+
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                Set<String> paths = new HashSet<>();
+                for (VFileEvent event : events) {
+                    paths.add(event.getPath());
+                }
+                if (isTracked(paths)) {
+                    ApplicationManager.getApplication().executeOnPooledThread(() -> checkStaleness(paths));
+                }
+            }
+        });
+        // IDE 关闭期间的修改在首次使用时全部检查一遍
+        ApplicationManager.getApplication().executeOnPooledThread(() -> checkStaleness(null));
+    }
+
+    public DiagramStore(Path directory, MethodHashResolver resolver) {
+        this.directory = directory;
+        this.resolver = resolver;
+    }
+
+    public static DiagramStore getInstance(Project project) {
+        return project.getService(DiagramStore.class);
+    }
+
+    /**
+     * 查找图表，不检查是否过期
+     */
+    public synchronized StoredDiagram get(String kind, String rootKey) {
+        return loaded().get(fileName(kind, rootKey));
+    }
+
+    /**
+     * 查找图表并读取图像，首次调用时从磁盘加载全部记录，不要在 EDT 上调用
+     */
+    public Lookup lookup(Source source) {
+        StoredDiagram stored = get(source.getKind(), source.getRootKey());
+        return new Lookup(source, stored, stored != null ? getImage(stored) : null);
+    }
+
+    /**
+     * 查找与当前调用链一致的图表，源码有变化时返回 null
+     */
+    public StoredDiagram findFresh(Source source) {
+        StoredDiagram diagram = get(source.getKind(), source.getRootKey());
+        return diagram != null && diagram.isFreshFor(source) ? diagram : null;
+    }
+
+    /**
+     * 保存新生成的图表，替换同一类型和入口方法的旧图表及其图像
+     */
+    public synchronized void put(StoredDiagram diagram) {
+        String name = fileName(diagram.kind, diagram.rootKey);
+        loaded().put(name, diagram);
+        updateTrackedFiles();
+        try {
+            Files.deleteIfExists(directory.resolve(name + ".png"));
+        } catch (IOException e) {
+            LOG.warn("删除旧的图表图像失败: " + e.getMessage());
+        }
+        write(name, diagram);
+    }
+
+    /**
+     * 保存图表渲染后的 PNG 图像，图表已被替换或删除时忽略
+     */
+    public synchronized void putImage(StoredDiagram diagram, byte[] png) {
+        String name = fileName(diagram.kind, diagram.rootKey);
+        if (png == null || loaded().get(name) != diagram) {
+            return;
+        }
+        try {
+            writeAtomically(name + ".png", png);
+        } catch (IOException e) {
+            LOG.warn("写入图表图像失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取图表的 PNG 图像，没有保存过图像时返回 null
+     */
+    public synchronized byte[] getImage(StoredDiagram diagram) {
+        Path file = directory.resolve(fileName(diagram.kind, diagram.rootKey) + ".png");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            LOG.warn("读取图表图像失败: " + file + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void remove(StoredDiagram diagram) {
+        String name = fileName(diagram.kind, diagram.rootKey);
+        loaded().remove(name);
+        updateTrackedFiles();
+        try {
+            Files.deleteIfExists(directory.resolve(name + ".json"));
+            Files.deleteIfExists(directory.resolve(name + ".png"));
+        } catch (IOException e) {
+            LOG.warn("删除图表失败: " + e.getMessage());
+        }
+    }
+
+    public synchronized List<StoredDiagram> getDiagrams() {
+        return new ArrayList<>(loaded().values());
+    }
+
+    public synchronized List<StoredDiagram> getStaleDiagrams() {
+        List<StoredDiagram> result = new ArrayList<>();
+        for (StoredDiagram diagram : loaded().values()) {
+            if (diagram.stale) {
+                result.add(diagram);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 重新计算变化文件中方法的结构哈希，更新图表的过期标记
+     *
+     * <p>文件改回原样后图表会重新变为有效。
+     *
+     * @param changedFiles 变化的文件路径，为 null 时检查所有图表的所有方法
+     * @return 本次新变为过期的图表
+     */
+    public List<StoredDiagram> checkStaleness(Collection<String> changedFiles) {
+        List<StoredDiagram> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (StoredDiagram diagram : loaded().values()) {
+                if (changedFiles == null || references(diagram, changedFiles)) {
+                    candidates.add(diagram);
+                }
+            }
+        }
+
+        // 多个图表共享的方法只解析一次
+        Map<String, String> currentHashes = new LinkedHashMap<>();
+        List<StoredDiagram> becameStale = new ArrayList<>();
+        for (StoredDiagram diagram : candidates) {
+            List<String> changed = new ArrayList<>();
+            for (Map.Entry<String, CallStackFingerprint.MethodEntry> entry : diagram.methods.entrySet()) {
+                CallStackFingerprint.MethodEntry method = entry.getValue();
+                if (changedFiles != null && !changedFiles.contains(method.getFile())) {
+                    // 只检查变化文件中的方法，保留之前的结果
+                    if (diagram.getChangedMethods().contains(entry.getKey())) {
+                        changed.add(entry.getKey());
+                    }
+                    continue;
+                }
+                String current = currentHashes.computeIfAbsent(entry.getKey(), key -> {
+                    String hash = resolver.currentHash(key, method);
+                    // computeIfAbsent 不保存 null，用空串表示方法已不存在
+                    return hash == null ? "" : hash;
+                });
+                if (!current.equals(method.getHash())) {
+                    changed.add(entry.getKey());
+                }
+            }
+
+            synchronized (this) {
+                String name = fileName(diagram.kind, diagram.rootKey);
+                // 检查期间图表被重新生成时丢弃结果
+                if (loaded().get(name) != diagram) {
+                    continue;
+                }
+                boolean stale = !changed.isEmpty();
+                if (stale != diagram.stale || !changed.equals(diagram.getChangedMethods())) {
+                    if (stale && !diagram.stale) {
+                        becameStale.add(diagram);
+                    }
+                    diagram.stale = stale;
+                    diagram.changedMethods = stale ? changed : null;
+                    write(name, diagram);
+                }
+            }
+        }
+        if (!becameStale.isEmpty()) {
+            LOG.info("源码变化导致 " + becameStale.size() + " 个已保存的图表过期");
+        }
+        return becameStale;
+    }
+
+    /**
+     * 变化的文件中是否有图表引用的文件，在 EDT 上调用，只读取快照
+     *
+     * <p>还没有加载时快照为空，加载后的全量检查会覆盖这些变化
+     */
+    boolean isTracked(Collection<String> paths) {
+        Set<String> tracked = trackedFiles;
+        for (String path : paths) {
+            if (tracked.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重新生成引用文件的快照，在持有锁时调用
+     */
+    private void updateTrackedFiles() {
+        Set<String> files = new HashSet<>();
+        for (StoredDiagram diagram : diagrams.values()) {
+            for (CallStackFingerprint.MethodEntry method : diagram.methods.values()) {
+                if (method.getFile() != null) {
+                    files.add(method.getFile());
+                }
+            }
+        }
+        trackedFiles = Collections.unmodifiableSet(files);
+    }
+
+    private static boolean references(StoredDiagram diagram, Collection<String> files) {
+        for (CallStackFingerprint.MethodEntry method : diagram.methods.values()) {
+            if (method.getFile() != null && files.contains(method.getFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在索引就绪后按类名和签名查找方法，编译类的方法视为未变化
+     */
+    private static String resolveHash(Project project, String signatureKey, CallStackFingerprint.MethodEntry entry) {
+        if (project.isDisposed()) {
+            return entry.getHash();
+        }
+        return DumbService.getInstance(project).runReadActionInSmartMode(() -> {
+            PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(entry.getClassName(), GlobalSearchScope.allScope(project));
+            if (psiClass == null) {
+                return null;
+            }
+            for (PsiMethod method : psiClass.findMethodsByName(entry.getName(), false)) {
+                if (signatureKey.equals(MethodDescription.signatureKey(entry.getClassName(), method))) {
+                    return method instanceof PsiCompiledElement ? entry.getHash() : CallStackFingerprint.methodHash(method.getText());
+                }
+            }
+            return null;
+        });
+    }
+
+    private Map<String, StoredDiagram> loaded() {
+        if (diagrams == null) {
+            diagrams = new LinkedHashMap<>();
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+                    for (Path file : files) {
+                        read(file);
+                    }
+                } catch (IOException e) {
+                    LOG.warn("读取图表存储目录失败: " + directory + ", " + e.getMessage());
+                }
+            }
+            updateTrackedFiles();
+        }
+        return diagrams;
+    }
+
+    private void read(Path file) {
+        try {
+            StoredDiagram diagram = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), StoredDiagram.class);
+            if (diagram == null || diagram.kind == null || diagram.rootKey == null || diagram.methods == null) {
+                LOG.warn("忽略不完整的图表记录: " + file);
+                return;
+            }
+            diagrams.put(fileName(diagram.kind, diagram.rootKey), diagram);
+        } catch (Exception e) {
+            LOG.warn("读取图表记录失败: " + file + ", " + e.getMessage());
+        }
+    }
+
+    private void write(String name, StoredDiagram diagram) {
+        try {
+            writeAtomically(name + ".json", gson.toJson(diagram).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("写入图表记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 先写临时文件再移动，避免读到半个文件
+     */
+    private void writeAtomically(String fileName, byte[] content) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, fileName, ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String fileName(String kind, String rootKey) {
+        return CallStackFingerprint.sha256(kind + "|" + rootKey);
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,333 @@
+package com.huq.idea.flow.apidoc.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.searches.DefinitionsScopedSearch;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.Query;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 项目级的方法解析缓存，供两个调用链访问器共享
+ *
+ * <p>缓存三类结果：
+ * <ul>
+ *     <li>调用点 -> {@code resolveMethod()} 解析出的方法</li>
+ *     <li>抽象方法 -> {@link DefinitionsScopedSearch} 找到的实现列表</li>
+ *     <li>类 -> 在项目中的引用次数，用于给实现排序</li>
+ * </ul>
+ * 所有缓存都按 LRU 限制大小，PSI 发生任何修改后整体失效。
+ * 键和值都只弱引用 PSI 元素，缓存不会让已关闭文件的语法树常驻内存，元素被回收后对应的条目视为未命中，并在下次写入时移除。
+ * 同时统计命中率，并按未命中时的平均耗时估算节省的时间。
+ * 必须在读操作中调用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class MethodResolveCache {
+    private static final Logger LOG = Logger.getInstance(MethodResolveCache.class);
+
+    private static final int MAX_CALL_SITES = 20000;
+    private static final int MAX_IMPLEMENTATIONS = 2000;
+    private static final int MAX_USAGE_COUNTS = 2000;
+
+    private final LongSupplier modificationTracker;
+    private final LruMap<WeakReference<PsiMethod>> callSiteCache = new LruMap<>(MAX_CALL_SITES);
+    private final LruMap<List<WeakReference<PsiMethod>>> implementationCache = new LruMap<>(MAX_IMPLEMENTATIONS);
+    private final LruMap<Integer> usageCache = new LruMap<>(MAX_USAGE_COUNTS);
+    private long modificationCount = -1;
+
+    private final Stats resolveStats = new Stats();
+    private final Stats implementationStats = new Stats();
+    private final Stats usageStats = new Stats();
+
+    public MethodResolveCache(Project project) {
+        this(() -> PsiModificationTracker.getInstance(project).getModificationCount());
+    }
+
+    MethodResolveCache(LongSupplier modificationTracker) {
+        this.modificationTracker = modificationTracker;
+    }
+
+    public static MethodResolveCache getInstance(Project project) {
+        return project.getService(MethodResolveCache.class);
+    }
+
+    /**
+     * 解析调用点对应的方法，结果可能为 null
+     */
+    public PsiMethod resolveMethod(PsiMethodCallExpression expression) {
+        ElementKey key = new ElementKey(expression, null);
+        synchronized (this) {
+            checkModification();
+            WeakReference<PsiMethod> cached = callSiteCache.get(key);
+            PsiMethod resolved = cached != null ? cached.get() : null;
+            if (cached == UNRESOLVED || resolved != null) {
+                resolveStats.hit();
+                return resolved;
+            }
+        }
+
+        // 解析放在锁外进行，避免并行分析时互相阻塞
+        long start = System.nanoTime();
+        PsiMethod method = expression.resolveMethod();
+        resolveStats.miss(System.nanoTime() - start);
+
+        synchronized (this) {
+            checkModification();
+            callSiteCache.store(key, method == null ? UNRESOLVED : new WeakReference<>(method));
+        }
+        return method;
+    }
+
+    /**
+     * 在默认范围内查找抽象方法或接口方法的所有实现
+     */
+    public List<PsiMethod> findImplementations(PsiMethod method) {
+        return findImplementations(method, null, null);
+    }
+
+    /**
+     * 在指定范围内查找抽象方法或接口方法的所有实现
+     *
+     * @param scopeKey 搜索范围的标识，作为缓存键的一部分，为 null 时使用默认范围
+     * @param scope    搜索范围，为 null 时使用默认范围
+     */
+    public List<PsiMethod> findImplementations(PsiMethod method, String scopeKey, SearchScope scope) {
+        ElementKey key = new ElementKey(method, scope == null ? null : scopeKey);
+        synchronized (this) {
+            checkModification();
+            List<PsiMethod> cached = dereference(implementationCache.get(key));
+            if (cached != null) {
+                implementationStats.hit();
+                return cached;
+            }
+        }
+
+        long start = System.nanoTime();
+        List<PsiMethod> implementations = new ArrayList<>();
+        Query<PsiElement> search = scope == null ? DefinitionsScopedSearch.search(method) : DefinitionsScopedSearch.search(method, scope);
+        for (PsiElement element : search.allowParallelProcessing()) {
+            if (element instanceof PsiMethod) {
+                implementations.add((PsiMethod) element);
+            }
+        }
+        implementations = Collections.unmodifiableList(implementations);
+        implementationStats.miss(System.nanoTime() - start);
+
+        List<WeakReference<PsiMethod>> references = new ArrayList<>(implementations.size());
+        for (PsiMethod implementation : implementations) {
+            references.add(new WeakReference<>(implementation));
+        }
+        synchronized (this) {
+            checkModification();
+            implementationCache.store(key, references);
+        }
+        return implementations;
+    }
+
+    /**
+     * 返回类的引用次数，未缓存时调用 counter 统计
+     *
+     * @param counter 统计引用次数，通常是有上限的 {@code ReferencesSearch}
+     */
+    public int countUsages(PsiClass psiClass, ToIntFunction<PsiClass> counter) {
+        ElementKey key = new ElementKey(psiClass, null);
+        synchronized (this) {
+            checkModification();
+            Integer cached = usageCache.get(key);
+            if (cached != null) {
+                usageStats.hit();
+                return cached;
+            }
+        }
+
+        long start = System.nanoTime();
+        int count = counter.applyAsInt(psiClass);
+        usageStats.miss(System.nanoTime() - start);
+
+        synchronized (this) {
+            checkModification();
+            usageCache.store(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * 取出弱引用的实现列表，任一实现已被回收时返回 null，按未命中处理
+     */
+    private static List<PsiMethod> dereference(List<WeakReference<PsiMethod>> references) {
+        if (references == null) {
+            return null;
+        }
+        List<PsiMethod> methods = new ArrayList<>(references.size());
+        for (WeakReference<PsiMethod> reference : references) {
+            PsiMethod method = reference.get();
+            if (method == null) {
+                return null;
+            }
+            methods.add(method);
+        }
+        return Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * PSI 修改计数变化时清空缓存，统计数据保留
+     */
+    private void checkModification() {
+        long currentCount = modificationTracker.getAsLong();
+        if (currentCount != modificationCount) {
+            if (!callSiteCache.isEmpty() || !implementationCache.isEmpty() || !usageCache.isEmpty()) {
+                LOG.debug("PSI modified, clearing method resolve cache");
+            }
+            callSiteCache.clear();
+            implementationCache.clear();
+            usageCache.clear();
+            modificationCount = currentCount;
+        }
+    }
+
+    public synchronized void clear() {
+        callSiteCache.clear();
+        implementationCache.clear();
+        usageCache.clear();
+    }
+
+    /**
+     * 当前缓存的调用点数量，包括元素已被回收但尚未清理的条目
+     */
+    synchronized int callSiteCount() {
+        return callSiteCache.size();
+    }
+
+    /**
+     * 返回命中率和节省时间的统计信息
+     */
+    public String getStatistics() {
+        return String.format("方法解析缓存: 调用点 %s; 实现查找 %s; 引用计数 %s", resolveStats, implementationStats, usageStats);
+    }
+
+    /**
+     * 命中/未命中计数，以及未命中时的累计耗时
+     */
+    private static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong missNanos = new AtomicLong();
+
+        void hit() {
+            hits.incrementAndGet();
+        }
+
+        void miss(long nanos) {
+            misses.incrementAndGet();
+            missNanos.addAndGet(nanos);
+        }
+
+        @Override
+        public String toString() {
+            long hitCount = hits.get();
+            long missCount = misses.get();
+            long total = hitCount + missCount;
+            double hitRate = total == 0 ? 0 : hitCount * 100.0 / total;
+            // 以未命中的平均耗时估算每次命中节省的时间
+            double savedMillis = missCount == 0 ? 0 : hitCount * ((double) missNanos.get() / missCount) / 1_000_000;
+            return String.format("命中 %d/%d (%.1f%%)，节省约 %.1f ms", hitCount, total, hitRate, savedMillis);
+        }
+    }
+
+    // 调用点无法解析时缓存的结果，区别于已被回收的弱引用
+    private static final WeakReference<PsiMethod> UNRESOLVED = new WeakReference<>(null);
+
+    /**
+     * 缓存键：弱引用的 PSI 元素 + 搜索范围标识
+     *
+     * <p>PSI 元素按引用比较，哈希值在创建时计算，元素被回收后键只等于自身。
+     */
+    private static class ElementKey {
+        private final WeakReference<PsiElement> element;
+        private final String scopeKey;
+        private final int hash;
+
+        ElementKey(PsiElement element, String scopeKey) {
+            this(element, scopeKey, null);
+        }
+
+        private ElementKey(PsiElement element, String scopeKey, ReferenceQueue<PsiElement> queue) {
+            this.element = new KeyReference(element, queue, this);
+            this.scopeKey = scopeKey;
+            this.hash = System.identityHashCode(element) * 31 + Objects.hashCode(scopeKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ElementKey)) return false;
+            ElementKey that = (ElementKey) o;
+            PsiElement referent = element.get();
+            return referent != null && referent == that.element.get() && Objects.equals(scopeKey, that.scopeKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class KeyReference extends WeakReference<PsiElement> {
+        private final ElementKey key;
+
+        KeyReference(PsiElement element, ReferenceQueue<PsiElement> queue, ElementKey key) {
+            super(element, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * LRU 缓存，写入时先移除元素已被回收的条目
+     */
+    private static class LruMap<V> extends LinkedHashMap<ElementKey, V> {
+        private final int maxSize;
+        private final ReferenceQueue<PsiElement> collected = new ReferenceQueue<>();
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * 用注册到回收队列的新键写入，查询时创建的临时键不会进入队列
+         */
+        void store(ElementKey key, V value) {
+            for (Reference<? extends PsiElement> reference; (reference = collected.poll()) != null; ) {
+                remove(((KeyReference) reference).key);
+            }
+            PsiElement element = key.element.get();
+            if (element != null) {
+                put(new ElementKey(element, key.scopeKey, collected), value);
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ElementKey, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.huq.idea.flow.apidoc.service;
 
 import javax.swing.*;
+import java.util.function.Function;
 
 /**
  * @author huqiang
@@ -10,6 +11,23 @@ public interface UmlFlowService {
 
     String PLUGIN_NAME = "FlowDiagram";
 
+    /**
+     * 面板的客户端属性，值为 {@code Supplier<String>}，返回面板当前的图表源码（例如 PlantUML 代码），
+     * 释放面板前读取并保存在轻量记录中
+     */
+    String SOURCE_PROPERTY = "UmlFlowService.source";
+
     void addFlow(JComponent jComponent);
 
+    /**
+     * 添加可以在历史中释放的图表
+     *
+     * <p>保留完整面板的图表超过设置中的数量或内存预算时，最久未查看的图表只保留源码和缩略图，
+     * 再次选中时调用 reopen 根据保存的源码重新创建面板。
+     *
+     * @param reopen 根据源码创建新面板，源码取自 {@link #SOURCE_PROPERTY}，没有设置该属性时为 null。
+     *               reopen 在图表关闭前一直保留，只应引用重建所需的轻量信息，不应引用 PSI 元素、分析结果或面板组件
+     */
+    void addFlow(JComponent jComponent, Function<String, JComponent> reopen);
+
 }
@@ -1,12 +1,24 @@
 package com.huq.idea.flow.apidoc.service;
 
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.util.ComponentFootprint;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentManager;
+import com.intellij.ui.content.ContentManagerEvent;
+import com.intellij.ui.content.ContentManagerListener;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author huqiang
@@ -14,9 +26,29 @@ import javax.swing.*;
  */
 public class UmlFlowServiceImpl implements UmlFlowService{
 
+    private static final Logger LOG = Logger.getInstance(UmlFlowServiceImpl.class);
+
+    // 已释放图表的轻量记录上限，超出后关闭最旧的标签页
+    private static final int MAX_RECORDS = 50;
+    private static final int THUMBNAIL_SIZE = 240;
 
     private final Project _project;
     private final ToolWindow _toolWindow;
+    private final DiagramHistory<Content> history = new DiagramHistory<>();
+    private final Map<Content, Record> records = new HashMap<>();
+    private boolean listening;
+
+    /**
+     * 图表的重建信息，面板释放后只保留源码和缩略图
+     */
+    private static final class Record {
+        private final Function<String, JComponent> reopen;
+        private String source;
+
+        Record(Function<String, JComponent> reopen) {
+            this.reopen = reopen;
+        }
+    }
 
     public UmlFlowServiceImpl(Project _project) {
         this._project = _project;
@@ -25,14 +57,116 @@ public class UmlFlowServiceImpl implements UmlFlowService{
 
     @Override
     public void addFlow(JComponent jComponent) {
+        addFlow(jComponent, null);
+    }
+
+    @Override
+    public void addFlow(JComponent jComponent, Function<String, JComponent> reopen) {
         ContentManager contentManager = _toolWindow.getContentManager();
+        listen(contentManager);
         final Content content = contentManager.getFactory().createContent(jComponent, jComponent.getName(), false);
+        history.add(content, ComponentFootprint.estimateBytes(jComponent), reopen != null);
+        records.put(content, new Record(reopen));
         contentManager.addContent(content);
         contentManager.setSelectedContent(content);
+        enforceLimits(content);
         if (_toolWindow.isActive()) {
             _toolWindow.show();
         } else {
             _toolWindow.activate(null);
         }
     }
+
+    private void listen(ContentManager contentManager) {
+        if (listening) {
+            return;
+        }
+        listening = true;
+        contentManager.addContentManagerListener(new ContentManagerListener() {
+            @Override
+            public void selectionChanged(@NotNull ContentManagerEvent event) {
+                Content content = event.getContent();
+                if (event.getOperation() != ContentManagerEvent.ContentOperation.add) {
+                    return;
+                }
+                DiagramHistory.Entry<Content> entry = history.touch(content);
+                if (entry != null && !entry.isLive()) {
+                    reopen(content);
+                }
+            }
+
+            @Override
+            public void contentRemoved(@NotNull ContentManagerEvent event) {
+                Content content = event.getContent();
+                DiagramHistory.Entry<Content> entry = history.touch(content);
+                history.remove(content);
+                records.remove(content);
+                if (entry != null && entry.isLive() && content.getComponent() != null) {
+                    ComponentFootprint.release(content.getComponent());
+                }
+            }
+        });
+    }
+
+    /**
+     * 按设置中的数量上限和内存预算释放最久未查看的图表，当前选中的图表不释放
+     */
+    private void enforceLimits(Content selected) {
+        IdeaSettings.State state = IdeaSettings.getInstance().getState();
+        // 图片通常在面板加入后异步渲染，释放前重新估算保留完整面板的图表
+        for (Map.Entry<Content, Record> record : records.entrySet()) {
+            history.resize(record.getKey(), ComponentFootprint.estimateBytes(record.getKey().getComponent()));
+        }
+        long budgetBytes = state.getDiagramMemoryBudgetMb() * 1024L * 1024L;
+        for (Content content : history.evict(state.getMaxLiveDiagrams(), budgetBytes, selected)) {
+            release(content);
+        }
+        ContentManager contentManager = _toolWindow.getContentManager();
+        for (Content content : history.trimRecords(MAX_RECORDS)) {
+            records.remove(content);
+            contentManager.removeContent(content, true);
+        }
+    }
+
+    private void release(Content content) {
+        Record record = records.get(content);
+        JComponent heavy = content.getComponent();
+        Object source = heavy.getClientProperty(SOURCE_PROPERTY);
+        record.source = source instanceof Supplier ? (String) ((Supplier<?>) source).get() : null;
+        Image thumbnail = ComponentFootprint.thumbnail(heavy, THUMBNAIL_SIZE);
+        long bytes = ComponentFootprint.estimateBytes(heavy);
+        content.setComponent(createPlaceholder(content.getDisplayName(), thumbnail));
+        ComponentFootprint.release(heavy);
+        LOG.info("释放图表面板: " + content.getDisplayName() + "，估算 " + bytes / 1024 + " KB");
+    }
+
+    /**
+     * 重新创建已释放的图表面板
+     */
+    private void reopen(Content content) {
+        Record record = records.get(content);
+        JComponent placeholder = content.getComponent();
+        JComponent panel;
+        try {
+            panel = record.reopen.apply(record.source);
+        } catch (Exception e) {
+            LOG.warn("重新打开图表失败: " + content.getDisplayName(), e);
+            return;
+        }
+        content.setComponent(panel);
+        ComponentFootprint.release(placeholder);
+        record.source = null;
+        history.rehydrated(content, ComponentFootprint.estimateBytes(panel));
+        enforceLimits(content);
+    }
+
+    private static JComponent createPlaceholder(String title, Image thumbnail) {
+        JPanel panel = new JPanel(new BorderLayout());
+        JLabel hint = new JLabel(title + " 已释放以节省内存，选中后重新打开", SwingConstants.CENTER);
+        panel.add(hint, BorderLayout.NORTH);
+        if (thumbnail != null) {
+            panel.add(new JBScrollPane(new JLabel(new ImageIcon(thumbnail))), BorderLayout.CENTER);
+        }
+        return panel;
+    }
 }
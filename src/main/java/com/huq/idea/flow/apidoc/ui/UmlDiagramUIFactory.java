@@ -1,24 +1,34 @@
 package com.huq.idea.flow.apidoc.ui;
 
+import com.huq.idea.flow.apidoc.IncrementalDiagramUpdater;
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.huq.idea.flow.apidoc.job.DiagramPipeline;
+import com.huq.idea.flow.apidoc.service.DiagramStore;
 import com.huq.idea.flow.apidoc.service.UmlFlowService;
 import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
 import com.huq.idea.flow.util.AiUtils;
 import com.huq.idea.flow.util.PlantUmlRenderException;
 import com.huq.idea.flow.util.PlantUmlRenderer;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.progress.PerformInBackgroundOption;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
-import org.jetbrains.annotations.NotNull;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.SmartPsiElementPointer;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -35,10 +45,165 @@ public class UmlDiagramUIFactory {
         }
     }
 
-    public static void showInitialDialog(Project project, String collectedCode, String title, PromptProvider promptProvider, String generateButtonText) {
+    /**
+     * 图表的来源，面板释放后只保留这些轻量信息，不保留调用链、收集的源码和提示词
+     *
+     * @param <T> 入口元素的类型，例如方法或类
+     */
+    public static final class DiagramOrigin<T extends PsiElement> {
+        private final String kind;
+        private final String rootKey;
+        private final SmartPsiElementPointer<T> pointer;
+        private final BiConsumer<Project, T> analyzer;
+
+        /**
+         * @param kind     图表类型，例如 flow、class
+         * @param rootKey  入口方法的签名或入口类的全限定名
+         * @param pointer  入口元素的指针，重新分析时解析
+         * @param analyzer 重新分析入口元素并显示新图表，不应引用面板或分析结果
+         */
+        public DiagramOrigin(String kind, String rootKey, SmartPsiElementPointer<T> pointer, BiConsumer<Project, T> analyzer) {
+            this.kind = kind;
+            this.rootKey = rootKey;
+            this.pointer = pointer;
+            this.analyzer = analyzer;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getRootKey() {
+            return rootKey;
+        }
+
+        /**
+         * 重新分析入口元素，元素已被删除时返回 false
+         */
+        boolean reanalyze(Project project) {
+            T element = ReadAction.compute(pointer::getElement);
+            if (element == null) {
+                return false;
+            }
+            analyzer.accept(project, element);
+            return true;
+        }
+    }
+
+    public static void showInitialDialog(Project project, String collectedCode, String title, PromptProvider promptProvider,
+                                         String generateButtonText, DiagramOrigin<?> origin) {
+        showDialog(project, collectedCode, title, promptProvider, generateButtonText, null, null, null, origin);
+    }
+
+    /**
+     * 显示图表对话框，同一类型和入口方法已保存过图表时直接显示保存的结果
+     *
+     * @param callStack 生成图表的调用链，用于增量更新
+     * @param stored    在分析任务中准备好的 {@link DiagramStore} 查找结果，为 null 时不保存
+     * @param origin    图表的来源，面板释放后用于重新分析，为 null 时面板不会被释放
+     */
+    public static void showInitialDialog(Project project, String collectedCode, String title, PromptProvider promptProvider,
+                                         String generateButtonText, CallStack callStack, DiagramStore.Lookup stored,
+                                         DiagramOrigin<?> origin) {
+        showDialog(project, collectedCode, title, promptProvider, generateButtonText, callStack, stored, null, origin);
+    }
+
+    /**
+     * 显示图表对话框并直接显示本地生成的图表，AI 生成作为可选的第二步
+     *
+     * @param initialDiagram 本地生成的 PlantUML 代码
+     */
+    public static void showInitialDialog(Project project, String collectedCode, String title, PromptProvider promptProvider,
+                                         String generateButtonText, String initialDiagram, DiagramOrigin<?> origin) {
+        showDialog(project, collectedCode, title, promptProvider, generateButtonText, null, null, initialDiagram, origin);
+    }
+
+    private static void showDialog(Project project, String collectedCode, String title, PromptProvider promptProvider,
+                                   String generateButtonText, CallStack callStack, DiagramStore.Lookup stored, String initialDiagram,
+                                   DiagramOrigin<?> origin) {
+        UmlFlowService plugin = project.getService(UmlFlowService.class);
+        JPanel mainPanel = createMainPanel(project, collectedCode, title, promptProvider, generateButtonText, callStack, stored, initialDiagram);
+        if (origin == null) {
+            plugin.addFlow(mainPanel);
+            return;
+        }
+        // 面板被释放后根据保存的 PlantUML 代码重新打开，AI 生成和增量更新需要通过来源重新分析
+        plugin.addFlow(mainPanel, uml -> createReopenedPanel(project, title, uml, origin));
+    }
+
+    /**
+     * 释放后重新打开的面板，只包含可编辑的 PlantUML 代码和渲染结果
+     *
+     * <p>代码与 {@link DiagramStore} 中保存的图表一致时直接显示保存的图像，否则重新渲染
+     */
+    private static JPanel createReopenedPanel(Project project, String title, String uml, DiagramOrigin<?> origin) {
+        JTextArea umlTextArea = new JTextArea(uml != null ? uml : "");
+        umlTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        splitPane.setDividerLocation(500);
+        splitPane.setResizeWeight(0.5);
+        splitPane.setLeftComponent(new JScrollPane(umlTextArea));
+        if (uml == null || uml.isBlank()) {
+            splitPane.setRightComponent(new JLabel("没有保存的图表，点击\"重新分析\"重新生成", SwingConstants.CENTER));
+        } else {
+            // 查找记录和读取图像都会访问磁盘，在后台线程中进行
+            JLabel loadingLabel = new JLabel("正在加载图表...", SwingConstants.CENTER);
+            splitPane.setRightComponent(loadingLabel);
+            DiagramStore store = DiagramStore.getInstance(project);
+            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                DiagramStore.StoredDiagram stored = store.get(origin.getKind(), origin.getRootKey());
+                boolean matches = stored != null && uml.equals(stored.getOutput());
+                byte[] image = matches ? store.getImage(stored) : null;
+                SwingUtilities.invokeLater(() -> {
+                    // 加载期间用户已经手动重新渲染
+                    if (splitPane.getRightComponent() != loadingLabel) {
+                        return;
+                    }
+                    splitPane.setRightComponent(image != null
+                            ? PlantUmlRenderer.createImagePanel(image)
+                            : PlantUmlRenderer.createPlantUmlPanel(uml, matches ? png -> store.putImage(stored, png) : null));
+                    splitPane.revalidate();
+                });
+            });
+        }
+
+        JButton renderButton = new JButton("重新渲染");
+        renderButton.addActionListener(e -> {
+            splitPane.setRightComponent(PlantUmlRenderer.createPlantUmlPanel(umlTextArea.getText()));
+            splitPane.revalidate();
+        });
+        JButton reanalyzeButton = new JButton("重新分析");
+        reanalyzeButton.setToolTipText("重新收集源码并打开新的图表，用于AI生成和增量更新");
+        reanalyzeButton.addActionListener(e -> {
+            LOG.info("重新分析图表: " + origin.getKind() + " " + origin.getRootKey());
+            if (!origin.reanalyze(project)) {
+                Notifications.Bus.notify(new Notification(
+                        "com.yt.huq.idea",
+                        "重新分析失败",
+                        "源码已不存在: " + origin.getRootKey(),
+                        NotificationType.WARNING),
+                        project);
+            }
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(renderButton);
+        buttonPanel.add(reanalyzeButton);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(splitPane, BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        panel.putClientProperty(UmlFlowService.SOURCE_PROPERTY, (Supplier<String>) umlTextArea::getText);
+        panel.setName(title);
+        return panel;
+    }
+
+    private static JPanel createMainPanel(Project project, String collectedCode, String title, PromptProvider promptProvider,
+                                          String generateButtonText, CallStack callStack, DiagramStore.Lookup stored,
+                                          String initialDiagram) {
         JTabbedPane tabbedPane = new JTabbedPane();
 
-        JPanel plantUmlTab = createInitialPlantUmlTab(project, title, collectedCode, promptProvider, generateButtonText);
+        JPanel plantUmlTab = createInitialPlantUmlTab(project, title, collectedCode, promptProvider, generateButtonText, callStack, stored, initialDiagram);
         tabbedPane.addTab("PlantUML视图", plantUmlTab);
 
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -49,13 +214,16 @@ public class UmlDiagramUIFactory {
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         mainPanel.add(bottomPanel, BorderLayout.SOUTH);
-
-        UmlFlowService plugin = project.getService(UmlFlowService.class);
+        mainPanel.putClientProperty(UmlFlowService.SOURCE_PROPERTY, plantUmlTab.getClientProperty(UmlFlowService.SOURCE_PROPERTY));
         mainPanel.setName(title);
-        plugin.addFlow(mainPanel);
+        return mainPanel;
     }
 
-    private static JPanel createInitialPlantUmlTab(Project project, String title, String collectedCode, PromptProvider promptProvider, String generateButtonText) {
+    private static JPanel createInitialPlantUmlTab(Project project, String title, String collectedCode, PromptProvider promptProvider,
+                                                   String generateButtonText, CallStack callStack, DiagramStore.Lookup lookup,
+                                                   String initialDiagram) {
+        DiagramStore.Source source = lookup != null ? lookup.getSource() : null;
+        DiagramStore store = lookup != null ? DiagramStore.getInstance(project) : null;
         JPanel panel = new JPanel(new BorderLayout());
 
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
@@ -81,6 +249,7 @@ public class UmlDiagramUIFactory {
         umlTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
         umlCodePanel.add(new JScrollPane(umlTextArea), BorderLayout.CENTER);
         leftCodeTabbedPane.addTab("PlantUML代码", umlCodePanel);
+        panel.putClientProperty(UmlFlowService.SOURCE_PROPERTY, (Supplier<String>) umlTextArea::getText);
 
 
         // Right pane (Diagram)
@@ -92,6 +261,29 @@ public class UmlDiagramUIFactory {
         splitPane.setLeftComponent(leftCodeTabbedPane);
         splitPane.setRightComponent(diagramPanel);
 
+        // 直接显示保存的图表，源码变化后仍然显示但提示需要重新生成
+        // 重新打开时传入的代码与保存的不同说明用户修改过，按修改后的代码渲染
+        DiagramStore.StoredDiagram stored = lookup != null ? lookup.getStored() : null;
+        if (stored != null && (initialDiagram == null || initialDiagram.equals(stored.getOutput()))) {
+            umlTextArea.setText(stored.getOutput());
+            leftCodeTabbedPane.setSelectedIndex(1);
+            byte[] image = lookup.getImage();
+            JPanel storedPanel = new JPanel(new BorderLayout());
+            storedPanel.add(image != null
+                    ? PlantUmlRenderer.createImagePanel(image)
+                    : PlantUmlRenderer.createPlantUmlPanel(stored.getOutput(), png -> store.putImage(stored, png)), BorderLayout.CENTER);
+            if (!stored.isFreshFor(source)) {
+                JLabel staleLabel = new JLabel("源码已变化，当前显示的是之前生成的图表，请重新生成", SwingConstants.CENTER);
+                staleLabel.setForeground(Color.RED);
+                storedPanel.add(staleLabel, BorderLayout.NORTH);
+            }
+            splitPane.setRightComponent(storedPanel);
+        } else if (initialDiagram != null) {
+            umlTextArea.setText(initialDiagram);
+            leftCodeTabbedPane.setSelectedIndex(1);
+            splitPane.setRightComponent(PlantUmlRenderer.createPlantUmlPanel(initialDiagram));
+        }
+
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
 
         JLabel providerLabel = new JLabel("AI提供商:");
@@ -144,7 +336,13 @@ public class UmlDiagramUIFactory {
             buttonPanel.add(promptComboBox);
         }
 
-        JButton generateButton = new JButton(generateButtonText);
+        // 设置中开启增量更新后，源码变化时只重新生成变化方法对应的片段
+        boolean sections = source != null && IdeaSettings.getInstance().getState().isIncrementalDiagramSections()
+                && IncrementalDiagramUpdater.supports(source.getKind());
+        JButton incrementalButton = new JButton("增量更新");
+        incrementalButton.setVisible(sections && stored != null && !stored.isFreshFor(source));
+
+        JButton generateButton = new JButton(stored != null ? "重新生成" : generateButtonText);
         generateButton.addActionListener(e -> {
             generateButton.setEnabled(false);
             generateButton.setText("生成中...");
@@ -176,73 +374,182 @@ public class UmlDiagramUIFactory {
                 return;
             }
 
-            new Task.Backgroundable(project, "生成图表", true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
-                @Override
-                public void run(@NotNull ProgressIndicator indicator) {
-                    indicator.setText("正在生成PlantUML图表...");
-                    indicator.setIndeterminate(true);
-
-                    String flowPrompt = promptProvider.getPrompt(collectedCode);
+            String flowPrompt = promptProvider.getPrompt(collectedCode);
+            if (sections) {
+                flowPrompt += IncrementalDiagramUpdater.sectionInstruction(source.getMethods());
+            }
+            AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
+            if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+                Notifications.Bus.notify(new Notification(
+                        "com.yt.huq.idea",
+                        "API密钥未配置",
+                        "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
+                        NotificationType.WARNING),
+                        project);
+                generateButton.setEnabled(true);
+                generateButton.setText(generateButtonText);
+                return;
+            }
+            config.setSystemMessage("你是一个专业的PlantUML图表生成专家，擅长分析Java代码并生成高质量的图表。")
+                  .setTemperature(0.7)
+                  .setMaxTokens(8000);
+
+            // 相同模型和提示词的生成进行中时复用同一个任务
+            String prompt = flowPrompt;
+            DiagramJobContext context = new DiagramJobContext(source != null ? source.getKind() : "diagram",
+                    "generate:" + CallStackFingerprint.sha256(selectedProvider.getName() + "|" + selectedModel + "|" + prompt),
+                    title, DiagramJobContext.Priority.INTERACTIVE);
+            DiagramPipeline<GeneratedDiagram> pipeline = DiagramPipeline
+                    .of(DiagramJob.Stage.AI, (input, job) -> {
+                        // 流式读取响应，首字节耗时按第一段内容到达的时间统计，取消任务时立即停止读取
+                        AiUtils.AiResponse response = AiUtils.callAiStreaming(prompt, config, delta -> job.checkCanceled());
+                        job.recordAiCall(response);
+                        if (!response.isSuccess() || response.getContent() == null || response.getContent().isEmpty()) {
+                            throw new IllegalStateException(response.getErrorMessage());
+                        }
+                        return cleanupUmlResponse(response.getContent());
+                    })
+                    .then(DiagramJob.Stage.RENDER, (diagram, job) -> GeneratedDiagram.render(diagram));
+            DiagramJobManager jobManager = DiagramJobManager.getInstance(project);
+            DiagramJob<GeneratedDiagram> job = jobManager.submit(context, pipeline);
+            jobManager.track("生成图表", job);
+
+            job.onResult((generated, error) -> {
+                DiagramStore.StoredDiagram saved = generated != null && store != null
+                        ? new DiagramStore.StoredDiagram(source, title, generated.getDiagram()) : null;
+                if (saved != null) {
+                    store.put(saved);
+                    if (generated.getImage() != null) {
+                        store.putImage(saved, generated.getImage());
+                    }
+                }
 
-                    AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, selectedModel);
-                    if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
-                        SwingUtilities.invokeLater(() -> {
-                            generateButton.setEnabled(true);
+                SwingUtilities.invokeLater(() -> {
+                    if (generated == null) {
+                        if (!(error instanceof CancellationException)) {
+                            String errorMsg = error.getMessage() != null
+                                    ? "生成图表失败: " + error.getMessage()
+                                    : "生成图表失败，请检查API设置和网络连接";
                             Notifications.Bus.notify(new Notification(
-                                "com.yt.huq.idea",
-                                "API密钥未配置",
-                                "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
-                                NotificationType.WARNING),
-                                project);
-                        });
+                                    "com.yt.huq.idea",
+                                    "图表生成",
+                                    errorMsg,
+                                    NotificationType.ERROR),
+                                    project);
+                        }
+                        generateButton.setEnabled(true);
+                        generateButton.setText(generateButtonText);
                         return;
                     }
 
-                    config.setSystemMessage("你是一个专业的PlantUML图表生成专家，擅长分析Java代码并生成高质量的图表。")
-                          .setTemperature(0.7)
-                          .setMaxTokens(8000);
+                    umlTextArea.setText(generated.getDiagram());
+                    leftCodeTabbedPane.setSelectedIndex(1); // Auto switch to UML Code tab
+                    splitPane.setRightComponent(generated.createPanel());
 
-                    AiUtils.AiResponse response = AiUtils.callAi(flowPrompt, config);
-                    String diagram = response.isSuccess() ? response.getContent() : null;
+                    generateButton.setEnabled(true);
+                    generateButton.setText("重新生成");
+                    incrementalButton.setVisible(false);
 
-                    if (diagram != null && !diagram.isEmpty()) {
-                        diagram = cleanupUmlResponse(diagram);
-                        String finalDiagram = diagram;
+                    panel.revalidate();
+                    panel.repaint();
+                });
+            });
+        });
+        buttonPanel.add(generateButton);
 
-                        SwingUtilities.invokeLater(() -> {
-                            umlTextArea.setText(finalDiagram);
-                            leftCodeTabbedPane.setSelectedIndex(1); // Auto switch to UML Code tab
-                            JPanel newDiagramPanel = PlantUmlRenderer.createPlantUmlPanel(finalDiagram);
-                            splitPane.setRightComponent(newDiagramPanel);
+        incrementalButton.addActionListener(e -> {
+            IncrementalDiagramUpdater.Plan plan = IncrementalDiagramUpdater.plan(callStack, stored.getMethods(), source.getMethods(), stored.getOutput());
+            if (plan == null) {
+                Notifications.Bus.notify(new Notification(
+                        "com.yt.huq.idea",
+                        "图表生成",
+                        "无法在之前的图表中定位修改的方法，将完整重新生成",
+                        NotificationType.INFORMATION),
+                        project);
+                generateButton.doClick();
+                return;
+            }
 
-                            generateButton.setEnabled(true);
-                            generateButton.setText("重新生成");
+            IdeaSettings.CustomAiProviderConfig selectedProvider = (IdeaSettings.CustomAiProviderConfig) providerComboBox.getSelectedItem();
+            if (selectedProvider == null) {
+                Notifications.Bus.notify(new Notification(
+                        "com.yt.huq.idea",
+                        "无可用AI模型",
+                        "未选择AI提供商或没有可用的AI提供商。请在设置 > UmlFlowAiConfigurable 中配置至少一个提供商",
+                        NotificationType.ERROR),
+                        project);
+                return;
+            }
+            AiUtils.AiConfig config = new AiUtils.AiConfig(selectedProvider, (String) specificModelComboBox.getSelectedItem());
+            if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+                Notifications.Bus.notify(new Notification(
+                        "com.yt.huq.idea",
+                        "API密钥未配置",
+                        "请在设置中为 " + selectedProvider.getName() + " 配置API密钥",
+                        NotificationType.WARNING),
+                        project);
+                return;
+            }
+            config.setSystemMessage("你是一个专业的PlantUML图表生成专家，擅长分析Java代码并生成高质量的图表。")
+                  .setTemperature(0.7)
+                  .setMaxTokens(8000);
 
-                            panel.revalidate();
-                            panel.repaint();
-                        });
-                    } else {
-                        SwingUtilities.invokeLater(() -> {
-                            String errorMsg = "生成图表失败，请检查API设置和网络连接";
-                            if (response != null && !response.isSuccess() && response.getErrorMessage() != null) {
-                                errorMsg = "生成图表失败: " + response.getErrorMessage();
-                            }
+            incrementalButton.setEnabled(false);
+            generateButton.setEnabled(false);
+            DiagramJobContext context = new DiagramJobContext(source.getKind(),
+                    "incremental:" + CallStackFingerprint.sha256(selectedProvider.getName() + "|" + config.getModel() + "|" + plan.getPrompt()),
+                    title + " (增量更新 " + plan.getTargets().size() + " 个片段)", DiagramJobContext.Priority.INTERACTIVE);
+            DiagramPipeline<GeneratedDiagram> pipeline = DiagramPipeline
+                    .of(DiagramJob.Stage.AI, (input, job) -> {
+                        AiUtils.AiResponse response = AiUtils.callAiStreaming(plan.getPrompt(), config, delta -> job.checkCanceled());
+                        job.recordAiCall(response);
+                        if (!response.isSuccess()) {
+                            throw new IllegalStateException("增量更新失败: " + response.getErrorMessage());
+                        }
+                        String updated = response.getContent() != null ? plan.splice(response.getContent()) : null;
+                        if (updated == null) {
+                            throw new IllegalStateException("AI返回的内容缺少需要更新的片段，请完整重新生成");
+                        }
+                        return updated;
+                    })
+                    .then(DiagramJob.Stage.RENDER, (diagram, job) -> GeneratedDiagram.render(diagram));
+            DiagramJobManager jobManager = DiagramJobManager.getInstance(project);
+            DiagramJob<GeneratedDiagram> job = jobManager.submit(context, pipeline);
+            jobManager.track("增量更新图表", job);
+
+            job.onResult((generated, error) -> {
+                DiagramStore.StoredDiagram saved = generated != null ? new DiagramStore.StoredDiagram(source, title, generated.getDiagram()) : null;
+                if (saved != null) {
+                    store.put(saved);
+                    if (generated.getImage() != null) {
+                        store.putImage(saved, generated.getImage());
+                    }
+                }
 
+                SwingUtilities.invokeLater(() -> {
+                    incrementalButton.setEnabled(true);
+                    generateButton.setEnabled(true);
+                    if (saved == null) {
+                        if (!(error instanceof CancellationException)) {
                             Notifications.Bus.notify(new Notification(
                                     "com.yt.huq.idea",
                                     "图表生成",
-                                    errorMsg,
+                                    error.getMessage(),
                                     NotificationType.ERROR),
                                     project);
-
-                            generateButton.setEnabled(true);
-                            generateButton.setText(generateButtonText);
-                        });
+                        }
+                        return;
                     }
-                }
-            }.queue();
+                    umlTextArea.setText(generated.getDiagram());
+                    leftCodeTabbedPane.setSelectedIndex(1);
+                    splitPane.setRightComponent(generated.createPanel());
+                    incrementalButton.setVisible(false);
+                    panel.revalidate();
+                    panel.repaint();
+                });
+            });
         });
-        buttonPanel.add(generateButton);
+        buttonPanel.add(incrementalButton);
 
         JButton copyButton = new JButton("复制到剪贴板");
         copyButton.addActionListener(e -> {
@@ -357,13 +664,50 @@ public class UmlDiagramUIFactory {
         return panel;
     }
 
+    /**
+     * 生成任务的结果：PlantUML 代码和渲染好的图像，渲染失败时图像为 null
+     */
+    private static final class GeneratedDiagram {
+        private final String diagram;
+        private final byte[] image;
+
+        private GeneratedDiagram(String diagram, byte[] image) {
+            this.diagram = diagram;
+            this.image = image;
+        }
+
+        static GeneratedDiagram render(String diagram) {
+            try {
+                return new GeneratedDiagram(diagram, PlantUmlRenderer.renderPlantUmlToPng(diagram));
+            } catch (PlantUmlRenderException e) {
+                LOG.warn("Failed to render PlantUML diagram", e);
+                return new GeneratedDiagram(diagram, null);
+            }
+        }
+
+        String getDiagram() {
+            return diagram;
+        }
+
+        byte[] getImage() {
+            return image;
+        }
+
+        /**
+         * 渲染失败时交给 {@link PlantUmlRenderer#createPlantUmlPanel(String)} 重新渲染，在面板中显示错误信息
+         */
+        JPanel createPanel() {
+            return image != null ? PlantUmlRenderer.createImagePanel(image) : PlantUmlRenderer.createPlantUmlPanel(diagram);
+        }
+    }
+
     private static void copyToClipboard(String text) {
         StringSelection stringSelection = new StringSelection(text);
         Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
         clipboard.setContents(stringSelection, null);
     }
 
-    private static String cleanupUmlResponse(String umlResponse) {
+    public static String cleanupUmlResponse(String umlResponse) {
         if (umlResponse == null || umlResponse.isEmpty()) {
             return umlResponse;
         }
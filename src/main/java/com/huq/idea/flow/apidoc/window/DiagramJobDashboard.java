@@ -0,0 +1,145 @@
+package com.huq.idea.flow.apidoc.window;
+
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+import com.huq.idea.flow.apidoc.job.DiagramJobEventLog;
+import com.huq.idea.flow.apidoc.job.DiagramJobManager;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 工具窗口中的任务面板
+ *
+ * <p>显示进行中和最近结束的任务、各阶段耗时和最近的任务事件，可以取消或重试选中的任务。
+ * 每 {@value #REFRESH_MILLIS} 毫秒检查一次事件序号，没有新事件时只重绘执行中的行；
+ * 面板不可见时不做任何刷新。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramJobDashboard extends JPanel implements Disposable {
+
+    private static final int REFRESH_MILLIS = 500;
+    private static final int MAX_EVENT_LINES = 500;
+
+    private final DiagramJobManager jobManager;
+    private final DiagramJobTableModel tableModel = new DiagramJobTableModel();
+    private final JBTable table = new JBTable(tableModel);
+    private final DefaultListModel<DiagramJobEventLog.Event> eventModel = new DefaultListModel<>();
+    private final JBList<DiagramJobEventLog.Event> eventList = new JBList<>(eventModel);
+    private final JLabel summaryLabel = new JLabel();
+    private final JButton cancelButton = new JButton("取消");
+    private final JButton retryButton = new JButton("重试");
+    private final Timer timer;
+    private long seenSequence;
+
+    public DiagramJobDashboard(Project project) {
+        super(new BorderLayout());
+        this.jobManager = DiagramJobManager.getInstance(project);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setMaxWidth(JBUI.scale(50));
+        table.getColumnModel().getColumn(1).setPreferredWidth(JBUI.scale(240));
+        table.getSelectionModel().addListSelectionListener(e -> updateButtons());
+
+        cancelButton.addActionListener(e -> {
+            DiagramJob<?> job = selectedJob();
+            if (job != null) {
+                job.cancel();
+            }
+        });
+        retryButton.addActionListener(e -> {
+            DiagramJob<?> job = selectedJob();
+            if (job != null && isRetryable(job)) {
+                DiagramJob<?> retried = jobManager.retry(job);
+                jobManager.track("重试: " + retried.getContext().getTitle(), retried);
+            }
+        });
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.add(cancelButton);
+        toolbar.add(retryButton);
+        toolbar.add(Box.createHorizontalStrut(JBUI.scale(10)));
+        toolbar.add(summaryLabel);
+
+        JBSplitter splitter = new JBSplitter(true, 0.7f);
+        splitter.setFirstComponent(new JBScrollPane(table));
+        splitter.setSecondComponent(new JBScrollPane(eventList));
+
+        add(toolbar, BorderLayout.NORTH);
+        add(splitter, BorderLayout.CENTER);
+
+        timer = new Timer(REFRESH_MILLIS, e -> refresh());
+        timer.start();
+        reload();
+    }
+
+    private void refresh() {
+        if (!isShowing()) {
+            return;
+        }
+        if (jobManager.getEvents().getLastSequence() == seenSequence) {
+            tableModel.refreshRunning();
+            return;
+        }
+        reload();
+    }
+
+    /**
+     * 追加新事件并重新加载任务列表，保持选中的任务
+     */
+    private void reload() {
+        List<DiagramJobEventLog.Event> events = jobManager.getEvents().since(seenSequence);
+        for (DiagramJobEventLog.Event event : events) {
+            eventModel.addElement(event);
+            seenSequence = event.getSequence();
+        }
+        while (eventModel.size() > MAX_EVENT_LINES) {
+            eventModel.remove(0);
+        }
+        if (!events.isEmpty()) {
+            eventList.ensureIndexIsVisible(eventModel.size() - 1);
+        }
+
+        DiagramJob<?> selected = selectedJob();
+        List<DiagramJob<?>> activeJobs = jobManager.getActiveJobs();
+        List<DiagramJob<?>> recentJobs = jobManager.getRecentJobs();
+        tableModel.setJobs(activeJobs, recentJobs);
+        if (selected != null) {
+            int row = tableModel.indexOf(selected.getId());
+            if (row >= 0) {
+                table.getSelectionModel().setSelectionInterval(row, row);
+            }
+        }
+        summaryLabel.setText("进行中 " + activeJobs.size() + "，最近结束 " + recentJobs.size());
+        updateButtons();
+    }
+
+    private void updateButtons() {
+        DiagramJob<?> job = selectedJob();
+        cancelButton.setEnabled(job != null && !job.isDone());
+        retryButton.setEnabled(job != null && isRetryable(job));
+    }
+
+    private DiagramJob<?> selectedJob() {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : tableModel.getJob(table.convertRowIndexToModel(row));
+    }
+
+    private static boolean isRetryable(DiagramJob<?> job) {
+        return job.getStatus() == DiagramJob.Status.FAILED || job.getStatus() == DiagramJob.Status.CANCELLED;
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+    }
+}
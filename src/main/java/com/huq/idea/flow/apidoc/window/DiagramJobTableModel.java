@@ -0,0 +1,180 @@
+package com.huq.idea.flow.apidoc.window;
+
+import com.huq.idea.flow.apidoc.job.DiagramJob;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 任务面板的表格模型：进行中的任务在前，最近结束的任务在后
+ *
+ * <p>每行显示排队等待、各阶段耗时、AI 首字节耗时、token 数和缓存命中次数。
+ * 执行中的阶段显示已经执行的时间，通过 {@link #refreshRunning()} 只重绘这些行。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class DiagramJobTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {
+            "#", "任务", "状态", "排队", "调用链分析", "构建上下文", "AI首字节", "AI总耗时", "渲染", "Token(输入/输出)", "缓存命中", "总耗时"
+    };
+
+    private final LongSupplier clock;
+    private List<DiagramJob<?>> jobs = new ArrayList<>();
+
+    public DiagramJobTableModel() {
+        this(System::currentTimeMillis);
+    }
+
+    DiagramJobTableModel(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void setJobs(List<DiagramJob<?>> activeJobs, List<DiagramJob<?>> recentJobs) {
+        List<DiagramJob<?>> rows = new ArrayList<>(activeJobs);
+        for (DiagramJob<?> job : recentJobs) {
+            // 刚结束的任务可能同时出现在两个列表中
+            if (!rows.contains(job)) {
+                rows.add(job);
+            }
+        }
+        jobs = rows;
+        fireTableDataChanged();
+    }
+
+    public DiagramJob<?> getJob(int row) {
+        return row >= 0 && row < jobs.size() ? jobs.get(row) : null;
+    }
+
+    /**
+     * 任务所在的行，不存在时返回 -1
+     */
+    public int indexOf(long jobId) {
+        for (int i = 0; i < jobs.size(); i++) {
+            if (jobs.get(i).getId() == jobId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 只重绘执行中的行，用于更新当前阶段的耗时
+     */
+    public void refreshRunning() {
+        for (int i = 0; i < jobs.size(); i++) {
+            if (jobs.get(i).getStatus() == DiagramJob.Status.RUNNING) {
+                fireTableRowsUpdated(i, i);
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return jobs.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        DiagramJob<?> job = jobs.get(row);
+        switch (column) {
+            case 0:
+                return job.getId();
+            case 1:
+                return job.getContext().getTitle();
+            case 2:
+                return status(job);
+            case 3:
+                return formatMillis(queueMillis(job));
+            case 4:
+                return stage(job, DiagramJob.Stage.ANALYSIS);
+            case 5:
+                return stage(job, DiagramJob.Stage.PROMPT);
+            case 6:
+                return formatMillis(job.getAiFirstByteMillis());
+            case 7:
+                return stage(job, DiagramJob.Stage.AI);
+            case 8:
+                return stage(job, DiagramJob.Stage.RENDER);
+            case 9:
+                return tokens(job);
+            case 10:
+                return job.getCacheHits();
+            case 11:
+                return formatMillis(totalMillis(job));
+            default:
+                return "";
+        }
+    }
+
+    private String status(DiagramJob<?> job) {
+        DiagramJob.Status status = job.getStatus();
+        if (status == DiagramJob.Status.RUNNING && job.getStage() != null) {
+            return status.getTitle() + ": " + job.getStage().getTitle();
+        }
+        if (status == DiagramJob.Status.FAILED && job.getError() != null) {
+            return status.getTitle() + ": " + job.getError().getMessage();
+        }
+        return status.getTitle();
+    }
+
+    private String stage(DiagramJob<?> job, DiagramJob.Stage stage) {
+        if (job.getStatus() == DiagramJob.Status.RUNNING && job.getStage() == stage) {
+            return formatMillis(clock.getAsLong() - job.getStageStartedAt()) + " …";
+        }
+        Long millis = job.getStageMillis().get(stage);
+        return millis != null ? formatMillis(millis) : "-";
+    }
+
+    private long totalMillis(DiagramJob<?> job) {
+        long end = job.isDone() ? job.getFinishedAt() : clock.getAsLong();
+        return end - job.getSubmittedAt();
+    }
+
+    /**
+     * 总耗时中不在任何阶段执行的时间，即在各阶段队列中等待的时间
+     */
+    private long queueMillis(DiagramJob<?> job) {
+        long busy = 0;
+        for (Map.Entry<DiagramJob.Stage, Long> entry : job.getStageMillis().entrySet()) {
+            busy += entry.getValue();
+        }
+        if (job.getStatus() == DiagramJob.Status.RUNNING) {
+            busy += clock.getAsLong() - job.getStageStartedAt();
+        }
+        return Math.max(0, totalMillis(job) - busy);
+    }
+
+    private static String tokens(DiagramJob<?> job) {
+        long input = job.getInputTokens();
+        long output = job.getOutputTokens();
+        if (input < 0 && output < 0) {
+            return "-";
+        }
+        return (input < 0 ? "?" : String.valueOf(input)) + " / " + (output < 0 ? "?" : String.valueOf(output));
+    }
+
+    static String formatMillis(long millis) {
+        if (millis < 0) {
+            return "-";
+        }
+        if (millis < 1000) {
+            return millis + " ms";
+        }
+        return String.format("%.1f s", millis / 1000.0);
+    }
+}
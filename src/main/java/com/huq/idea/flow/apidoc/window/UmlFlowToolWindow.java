@@ -34,6 +34,13 @@ public class UmlFlowToolWindow implements ToolWindowFactory {
         Content welcomeContent = contentManager.getFactory().createContent(welcomePanel, "欢迎", false);
         welcomeContent.setCloseable(false);
         contentManager.addContent(welcomeContent);
+
+        // 任务面板
+        DiagramJobDashboard dashboard = new DiagramJobDashboard(project);
+        Content dashboardContent = contentManager.getFactory().createContent(dashboard, "任务", false);
+        dashboardContent.setCloseable(false);
+        dashboardContent.setDisposer(dashboard);
+        contentManager.addContent(dashboardContent);
     }
     
     /**
@@ -1,5 +1,6 @@
 package com.huq.idea.flow.config.config;
 
+import com.huq.idea.flow.apidoc.ImplementationFinder;
 import com.huq.idea.flow.util.AiUtils;
 
 import javax.swing.*;
@@ -18,6 +19,10 @@ import java.util.Map;
  * @since 2024/8/1 21:11
  */
 public class AiConfigurationComponent {
+    // 与实现类搜索范围下拉框的选项一一对应
+    private static final List<String> IMPLEMENTATION_SCOPES = Arrays.asList(
+            ImplementationFinder.SCOPE_PROJECT, ImplementationFinder.SCOPE_MODULE, ImplementationFinder.SCOPE_PRODUCTION);
+
     // 移除旧的form组件，改为程序化创建
     private JPanel mainPanel;
     private JTextField plantumlPathVal;
@@ -36,7 +41,27 @@ public class AiConfigurationComponent {
     private JTextArea classRelevantPatternsArea;
     private JTextArea classExcludedPatternsArea;
     private JSpinner classDiagramDepthSpinner;
+    private JSpinner classDiagramMaxClassesSpinner;
+    private JSpinner classPromptTokenBudgetSpinner;
+    private JCheckBox pruneClassSourceCheckBox;
     private JCheckBox includeLibrarySourcesCheckBox;
+    private JCheckBox localClassDiagramCheckBox;
+    private JCheckBox staticStateExtractionCheckBox;
+    private JTextArea batchEntryAnnotationsArea;
+    private JTextArea batchEntryPatternsArea;
+    private JTextField batchOutputDirField;
+    private JSpinner batchAnalysisParallelismSpinner;
+    private JSpinner batchAiConcurrencySpinner;
+    private JSpinner batchRenderConcurrencySpinner;
+    private JCheckBox stubOnlyAnalysisCheckBox;
+    private JComboBox<String> implementationSearchScopeComboBox;
+    private JSpinner implementationTopKSpinner;
+    private JSpinner lodLabelZoomPercentSpinner;
+    private JSpinner lodClusterZoomPercentSpinner;
+    private JSpinner callGraphInitialDepthSpinner;
+    private JSpinner maxLiveDiagramsSpinner;
+    private JSpinner diagramMemoryBudgetSpinner;
+    private JCheckBox incrementalDiagramSectionsCheckBox;
     
     // 多AI模型API密钥配置
     private Map<String, JTextField> aiApiKeyFields = new HashMap<>();
@@ -44,6 +69,7 @@ public class AiConfigurationComponent {
     private JPanel generalConfigPanel;
     private JPanel promptConfigPanel;
     private JPanel patternConfigPanel;
+    private JPanel batchConfigPanel;
 
     private DefaultListModel<String> aiProviderListModel;
     private JList<String> aiProviderList;
@@ -107,7 +133,29 @@ public class AiConfigurationComponent {
         classRelevantPatternsArea.setText(String.join("\n", state.getClassRelevantClassPatterns()));
         classExcludedPatternsArea.setText(String.join("\n", state.getClassExcludedClassPatterns()));
         classDiagramDepthSpinner.setValue(state.getClassDiagramDepth());
+        classDiagramMaxClassesSpinner.setValue(state.getClassDiagramMaxClasses());
+        classPromptTokenBudgetSpinner.setValue(state.getClassPromptTokenBudget());
+        pruneClassSourceCheckBox.setSelected(state.isPruneClassSource());
+        classPromptTokenBudgetSpinner.setEnabled(state.isPruneClassSource());
         includeLibrarySourcesCheckBox.setSelected(state.isIncludeLibrarySources());
+        localClassDiagramCheckBox.setSelected(state.isLocalClassDiagram());
+        staticStateExtractionCheckBox.setSelected(state.isStaticStateExtraction());
+
+        batchEntryAnnotationsArea.setText(String.join("\n", state.getBatchEntryAnnotations()));
+        batchEntryPatternsArea.setText(String.join("\n", state.getBatchEntryPatterns()));
+        batchOutputDirField.setText(state.getBatchOutputDir());
+        batchAnalysisParallelismSpinner.setValue(state.getBatchAnalysisParallelism());
+        batchAiConcurrencySpinner.setValue(state.getBatchAiConcurrency());
+        batchRenderConcurrencySpinner.setValue(state.getBatchRenderConcurrency());
+        stubOnlyAnalysisCheckBox.setSelected(state.isStubOnlyAnalysis());
+        implementationSearchScopeComboBox.setSelectedIndex(Math.max(0, IMPLEMENTATION_SCOPES.indexOf(state.getImplementationSearchScope())));
+        implementationTopKSpinner.setValue(state.getImplementationTopK());
+        lodLabelZoomPercentSpinner.setValue(state.getLodLabelZoomPercent());
+        lodClusterZoomPercentSpinner.setValue(state.getLodClusterZoomPercent());
+        callGraphInitialDepthSpinner.setValue(state.getCallGraphInitialDepth());
+        maxLiveDiagramsSpinner.setValue(state.getMaxLiveDiagrams());
+        diagramMemoryBudgetSpinner.setValue(state.getDiagramMemoryBudgetMb());
+        incrementalDiagramSectionsCheckBox.setSelected(state.isIncrementalDiagramSections());
 
         aiProviderListModel.clear();
         for (IdeaSettings.CustomAiProviderConfig config : customAiProviders) {
@@ -132,6 +180,7 @@ public class AiConfigurationComponent {
         createAiConfigPanel();
         createPromptConfigPanel();
         createPatternConfigPanel();
+        createBatchConfigPanel();
         
         // 组装主面板，使用TabbedPane以提升UI可用性
         com.intellij.ui.components.JBTabbedPane tabbedPane = new com.intellij.ui.components.JBTabbedPane();
@@ -155,6 +204,12 @@ public class AiConfigurationComponent {
         filterPanel.setBorder(com.intellij.util.ui.JBUI.Borders.empty(5));
         tabbedPane.addTab("过滤与扫描规则", filterPanel);
 
+        // Tab 4: 批量生成与性能
+        JPanel batchPanel = new JPanel(new BorderLayout());
+        batchPanel.add(batchConfigPanel, BorderLayout.CENTER);
+        batchPanel.setBorder(com.intellij.util.ui.JBUI.Borders.empty(5));
+        tabbedPane.addTab("批量与性能", batchPanel);
+
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
     }
     
@@ -556,11 +611,36 @@ public class AiConfigurationComponent {
         depthLabel.setDisplayedMnemonic('D');
         depthLabel.setLabelFor(classDiagramDepthSpinner);
 
+        // 类图最大类数量
+        classDiagramMaxClassesSpinner = new JSpinner(new SpinnerNumberModel(150, 10, 2000, 10));
+        classDiagramMaxClassesSpinner.setToolTipText("类图最多收集的关联类数量，距离入口类近的类优先");
+        JLabel maxClassesLabel = new JLabel("类图 - 最大类数量:");
+        maxClassesLabel.setLabelFor(classDiagramMaxClassesSpinner);
+
+        // 类源码 token 预算
+        classPromptTokenBudgetSpinner = new JSpinner(new SpinnerNumberModel(24000, 2000, 200000, 1000));
+        classPromptTokenBudgetSpinner.setToolTipText("发送给AI的类源码只保留声明和方法签名，读写状态字段的方法体在预算内保留");
+        JLabel tokenBudgetLabel = new JLabel("类图/状态图 - 源码token预算:");
+        tokenBudgetLabel.setLabelFor(classPromptTokenBudgetSpinner);
+
+        // 精简类源码
+        pruneClassSourceCheckBox = new JCheckBox("精简发送给AI的类源码 (只保留声明、签名和状态相关方法体)");
+        pruneClassSourceCheckBox.setToolTipText("不勾选时发送关联类的完整源码，token 预算不生效");
+        pruneClassSourceCheckBox.addActionListener(e -> classPromptTokenBudgetSpinner.setEnabled(pruneClassSourceCheckBox.isSelected()));
+
         // 包含库源码
         includeLibrarySourcesCheckBox = new JCheckBox("分析外部库或非项目源码 (仅限带有源码的类)");
         includeLibrarySourcesCheckBox.setMnemonic('S');
         includeLibrarySourcesCheckBox.setToolTipText("勾选此项以在类图生成时深入解析第三方依赖库源码");
 
+        // 本地生成类图
+        localClassDiagramCheckBox = new JCheckBox("直接根据源码结构生成类图 (AI 只用于补充说明)");
+        localClassDiagramCheckBox.setToolTipText("不勾选时将关联类的源码发送给AI生成类图，是否精简由上面的选项决定");
+
+        // 静态提取状态转换
+        staticStateExtractionCheckBox = new JCheckBox("状态图先根据源码提取状态转换 (只发送转换表和相关方法)");
+        staticStateExtractionCheckBox.setToolTipText("从枚举类型的状态字段赋值中提取状态转换，未找到时发送关联类的源码，是否精简由上面的选项决定");
+
         // 类图相关类模式
         classRelevantPatternsArea = new JTextArea(2, 30);
         classRelevantPatternsArea.setToolTipText("类图中匹配相关类的正则表达式模式，每行一个");
@@ -588,7 +668,12 @@ public class AiConfigurationComponent {
                 .addLabeledComponent(excludedLabel, excludedScrollPane)
                 .addSeparator(10)
                 .addLabeledComponent(depthLabel, classDiagramDepthSpinner)
+                .addLabeledComponent(maxClassesLabel, classDiagramMaxClassesSpinner)
+                .addComponentToRightColumn(pruneClassSourceCheckBox)
+                .addLabeledComponent(tokenBudgetLabel, classPromptTokenBudgetSpinner)
                 .addComponentToRightColumn(includeLibrarySourcesCheckBox)
+                .addComponentToRightColumn(localClassDiagramCheckBox)
+                .addComponentToRightColumn(staticStateExtractionCheckBox)
                 .addLabeledComponent(classRelevantLabel, classRelevantScrollPane)
                 .addLabeledComponent(classExcludedLabel, classExcludedScrollPane)
                 .addComponentFillVertically(new JPanel(), 0)
@@ -599,6 +684,122 @@ public class AiConfigurationComponent {
     
 
 
+    /**
+     * 创建批量生成与性能配置面板
+     */
+    private void createBatchConfigPanel() {
+        batchConfigPanel = new JPanel(new BorderLayout());
+        batchConfigPanel.setBorder(com.intellij.util.ui.JBUI.Borders.empty(10));
+
+        // 入口方法注解
+        batchEntryAnnotationsArea = new JTextArea(4, 30);
+        batchEntryAnnotationsArea.setToolTipText("标记入口方法的注解全限定名，每行一个");
+        batchEntryAnnotationsArea.setLineWrap(true);
+        batchEntryAnnotationsArea.setWrapStyleWord(true);
+        JScrollPane annotationsScrollPane = new com.intellij.ui.components.JBScrollPane(batchEntryAnnotationsArea);
+
+        JLabel annotationsLabel = new JLabel("批量生成 - 入口注解 (&A):");
+        annotationsLabel.setDisplayedMnemonic('A');
+        annotationsLabel.setLabelFor(batchEntryAnnotationsArea);
+
+        // 入口方法模式
+        batchEntryPatternsArea = new JTextArea(2, 30);
+        batchEntryPatternsArea.setToolTipText("入口方法模式，格式为 类名通配符#方法名通配符，例如 com.demo.*Facade#*，每行一个");
+        batchEntryPatternsArea.setLineWrap(true);
+        batchEntryPatternsArea.setWrapStyleWord(true);
+        JScrollPane patternsScrollPane = new com.intellij.ui.components.JBScrollPane(batchEntryPatternsArea);
+
+        JLabel patternsLabel = new JLabel("批量生成 - 入口方法模式 (&M):");
+        patternsLabel.setDisplayedMnemonic('M');
+        patternsLabel.setLabelFor(batchEntryPatternsArea);
+
+        // 输出目录
+        batchOutputDirField = new JTextField(30);
+        batchOutputDirField.setToolTipText("生成结果的输出目录，相对于项目根目录");
+        JLabel outputDirLabel = new JLabel("批量生成 - 输出目录 (&O):");
+        outputDirLabel.setDisplayedMnemonic('O');
+        outputDirLabel.setLabelFor(batchOutputDirField);
+
+        // 并发限制
+        batchAnalysisParallelismSpinner = new JSpinner(new SpinnerNumberModel(4, 1, 32, 1));
+        batchAnalysisParallelismSpinner.setToolTipText("并行执行调用链分析的线程数");
+        JLabel analysisLabel = new JLabel("调用链分析并行度:");
+        analysisLabel.setLabelFor(batchAnalysisParallelismSpinner);
+
+        batchAiConcurrencySpinner = new JSpinner(new SpinnerNumberModel(2, 1, 16, 1));
+        batchAiConcurrencySpinner.setToolTipText("同时进行中的AI请求数上限");
+        JLabel aiLabel = new JLabel("AI请求并发数:");
+        aiLabel.setLabelFor(batchAiConcurrencySpinner);
+
+        batchRenderConcurrencySpinner = new JSpinner(new SpinnerNumberModel(2, 1, 16, 1));
+        batchRenderConcurrencySpinner.setToolTipText("同时进行中的PlantUML渲染进程数上限");
+        JLabel renderLabel = new JLabel("PlantUML渲染并发数:");
+        renderLabel.setLabelFor(batchRenderConcurrencySpinner);
+
+        stubOnlyAnalysisCheckBox = new JCheckBox("轻量分析模式（基于索引解析调用骨架，按需加载方法体，不反编译库类）");
+        stubOnlyAnalysisCheckBox.setToolTipText("开启后仅在生成提示词时读取方法源码，外部库中的编译类不会被跟踪或反编译（除非勾选分析外部库源码）");
+
+        implementationSearchScopeComboBox = new JComboBox<>(new String[]{"整个项目", "入口所在模块及其依赖", "仅生产代码（排除测试）"});
+        implementationSearchScopeComboBox.setToolTipText("查找接口/抽象方法实现时的搜索范围");
+        JLabel implementationSearchScopeLabel = new JLabel("实现类搜索范围:");
+        implementationSearchScopeLabel.setLabelFor(implementationSearchScopeComboBox);
+
+        implementationTopKSpinner = new JSpinner(new SpinnerNumberModel(5, 0, 100, 1));
+        implementationTopKSpinner.setToolTipText("接口存在多个实现时最多展开的数量，按模块距离和引用次数排序，0 表示不限制");
+        JLabel implementationTopKLabel = new JLabel("多实现最大展开数:");
+        implementationTopKLabel.setLabelFor(implementationTopKSpinner);
+
+        lodLabelZoomPercentSpinner = new JSpinner(new SpinnerNumberModel(50, 0, 200, 5));
+        lodLabelZoomPercentSpinner.setToolTipText("缩放比例低于该值时不绘制节点文字和箭头，0 表示始终显示");
+        JLabel lodLabelZoomPercentLabel = new JLabel("隐藏标签的缩放比例(%):");
+        lodLabelZoomPercentLabel.setLabelFor(lodLabelZoomPercentSpinner);
+
+        lodClusterZoomPercentSpinner = new JSpinner(new SpinnerNumberModel(25, 0, 200, 5));
+        lodClusterZoomPercentSpinner.setToolTipText("缩放比例低于该值时同一类的节点合并为一个方框，边合并为带权连线，0 表示不聚合");
+        JLabel lodClusterZoomPercentLabel = new JLabel("按类聚合的缩放比例(%):");
+        lodClusterZoomPercentLabel.setLabelFor(lodClusterZoomPercentSpinner);
+
+        callGraphInitialDepthSpinner = new JSpinner(new SpinnerNumberModel(3, 1, 50, 1));
+        callGraphInitialDepthSpinner.setToolTipText("打开调用图时只创建前 N 层节点，更深的调用显示为可展开的 \"+k calls\" 占位节点");
+        JLabel callGraphInitialDepthLabel = new JLabel("调用图初始展开层数:");
+        callGraphInitialDepthLabel.setLabelFor(callGraphInitialDepthSpinner);
+
+        maxLiveDiagramsSpinner = new JSpinner(new SpinnerNumberModel(8, 1, 100, 1));
+        maxLiveDiagramsSpinner.setToolTipText("超出后最久未查看的图表只保留源码和缩略图，选中时重新打开");
+        JLabel maxLiveDiagramsLabel = new JLabel("工具窗口保留的图表数量:");
+        maxLiveDiagramsLabel.setLabelFor(maxLiveDiagramsSpinner);
+
+        diagramMemoryBudgetSpinner = new JSpinner(new SpinnerNumberModel(256, 16, 4096, 16));
+        diagramMemoryBudgetSpinner.setToolTipText("按图像尺寸和图形节点数估算，超出后同样释放最久未查看的图表");
+        JLabel diagramMemoryBudgetLabel = new JLabel("工具窗口图表内存预算(MB):");
+        diagramMemoryBudgetLabel.setLabelFor(diagramMemoryBudgetSpinner);
+
+        incrementalDiagramSectionsCheckBox = new JCheckBox("流程图/时序图支持增量更新（生成时要求AI标记每个方法对应的片段）");
+        incrementalDiagramSectionsCheckBox.setToolTipText("开启后完整生成时在提示词末尾追加片段标记要求，源码修改后只重新生成变化方法对应的片段");
+
+        JPanel innerForm = com.intellij.util.ui.FormBuilder.createFormBuilder()
+                .addLabeledComponent(annotationsLabel, annotationsScrollPane)
+                .addLabeledComponent(patternsLabel, patternsScrollPane)
+                .addLabeledComponent(outputDirLabel, batchOutputDirField)
+                .addSeparator(10)
+                .addLabeledComponent(analysisLabel, batchAnalysisParallelismSpinner)
+                .addLabeledComponent(aiLabel, batchAiConcurrencySpinner)
+                .addLabeledComponent(renderLabel, batchRenderConcurrencySpinner)
+                .addComponent(stubOnlyAnalysisCheckBox)
+                .addLabeledComponent(implementationSearchScopeLabel, implementationSearchScopeComboBox)
+                .addLabeledComponent(implementationTopKLabel, implementationTopKSpinner)
+                .addLabeledComponent(lodLabelZoomPercentLabel, lodLabelZoomPercentSpinner)
+                .addLabeledComponent(lodClusterZoomPercentLabel, lodClusterZoomPercentSpinner)
+                .addLabeledComponent(callGraphInitialDepthLabel, callGraphInitialDepthSpinner)
+                .addLabeledComponent(maxLiveDiagramsLabel, maxLiveDiagramsSpinner)
+                .addLabeledComponent(diagramMemoryBudgetLabel, diagramMemoryBudgetSpinner)
+                .addComponent(incrementalDiagramSectionsCheckBox)
+                .addComponentFillVertically(new JPanel(), 0)
+                .getPanel();
+
+        batchConfigPanel.add(innerForm, BorderLayout.CENTER);
+    }
+
     public List<String> getRelevantPatterns() {
         return Arrays.asList(relevantPatternsArea.getText().split("\n"));
     }
@@ -619,10 +820,100 @@ public class AiConfigurationComponent {
         return (Integer) classDiagramDepthSpinner.getValue();
     }
 
+    public int getClassDiagramMaxClasses() {
+        return (Integer) classDiagramMaxClassesSpinner.getValue();
+    }
+
+    public int getClassPromptTokenBudget() {
+        return (Integer) classPromptTokenBudgetSpinner.getValue();
+    }
+
+    public boolean isPruneClassSource() {
+        return pruneClassSourceCheckBox.isSelected();
+    }
+
     public boolean isIncludeLibrarySources() {
         return includeLibrarySourcesCheckBox.isSelected();
     }
 
+    public boolean isLocalClassDiagram() {
+        return localClassDiagramCheckBox.isSelected();
+    }
+
+    public boolean isStaticStateExtraction() {
+        return staticStateExtractionCheckBox.isSelected();
+    }
+
+    public List<String> getBatchEntryAnnotations() {
+        return splitLines(batchEntryAnnotationsArea.getText());
+    }
+
+    public List<String> getBatchEntryPatterns() {
+        return splitLines(batchEntryPatternsArea.getText());
+    }
+
+    public String getBatchOutputDir() {
+        return batchOutputDirField.getText().trim();
+    }
+
+    public int getBatchAnalysisParallelism() {
+        return (Integer) batchAnalysisParallelismSpinner.getValue();
+    }
+
+    public int getBatchAiConcurrency() {
+        return (Integer) batchAiConcurrencySpinner.getValue();
+    }
+
+    public int getBatchRenderConcurrency() {
+        return (Integer) batchRenderConcurrencySpinner.getValue();
+    }
+
+    public boolean isStubOnlyAnalysis() {
+        return stubOnlyAnalysisCheckBox.isSelected();
+    }
+
+    public String getImplementationSearchScope() {
+        return IMPLEMENTATION_SCOPES.get(Math.max(0, implementationSearchScopeComboBox.getSelectedIndex()));
+    }
+
+    public int getImplementationTopK() {
+        return (Integer) implementationTopKSpinner.getValue();
+    }
+
+    public int getLodLabelZoomPercent() {
+        return (Integer) lodLabelZoomPercentSpinner.getValue();
+    }
+
+    public int getLodClusterZoomPercent() {
+        return (Integer) lodClusterZoomPercentSpinner.getValue();
+    }
+
+    public int getCallGraphInitialDepth() {
+        return (Integer) callGraphInitialDepthSpinner.getValue();
+    }
+
+    public int getMaxLiveDiagrams() {
+        return (Integer) maxLiveDiagramsSpinner.getValue();
+    }
+
+    public boolean isIncrementalDiagramSections() {
+        return incrementalDiagramSectionsCheckBox.isSelected();
+    }
+
+    public int getDiagramMemoryBudgetMb() {
+        return (Integer) diagramMemoryBudgetSpinner.getValue();
+    }
+
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
     public JTextArea getFlowPromptTextArea() {
         return this.flowPromptTextArea;
     }
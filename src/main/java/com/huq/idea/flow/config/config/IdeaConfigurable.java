@@ -57,6 +57,27 @@ public class IdeaConfigurable implements Configurable {
         state.setClassRelevantClassPatterns(settingsComponent.getClassRelevantPatterns());
         state.setClassExcludedClassPatterns(settingsComponent.getClassExcludedPatterns());
         state.setClassDiagramDepth(settingsComponent.getClassDiagramDepth());
+        state.setClassDiagramMaxClasses(settingsComponent.getClassDiagramMaxClasses());
+        state.setClassPromptTokenBudget(settingsComponent.getClassPromptTokenBudget());
+        state.setPruneClassSource(settingsComponent.isPruneClassSource());
         state.setIncludeLibrarySources(settingsComponent.isIncludeLibrarySources());
+        state.setLocalClassDiagram(settingsComponent.isLocalClassDiagram());
+        state.setStaticStateExtraction(settingsComponent.isStaticStateExtraction());
+
+        state.setBatchEntryAnnotations(settingsComponent.getBatchEntryAnnotations());
+        state.setBatchEntryPatterns(settingsComponent.getBatchEntryPatterns());
+        state.setBatchOutputDir(settingsComponent.getBatchOutputDir());
+        state.setBatchAnalysisParallelism(settingsComponent.getBatchAnalysisParallelism());
+        state.setBatchAiConcurrency(settingsComponent.getBatchAiConcurrency());
+        state.setBatchRenderConcurrency(settingsComponent.getBatchRenderConcurrency());
+        state.setStubOnlyAnalysis(settingsComponent.isStubOnlyAnalysis());
+        state.setImplementationSearchScope(settingsComponent.getImplementationSearchScope());
+        state.setImplementationTopK(settingsComponent.getImplementationTopK());
+        state.setLodLabelZoomPercent(settingsComponent.getLodLabelZoomPercent());
+        state.setLodClusterZoomPercent(settingsComponent.getLodClusterZoomPercent());
+        state.setCallGraphInitialDepth(settingsComponent.getCallGraphInitialDepth());
+        state.setMaxLiveDiagrams(settingsComponent.getMaxLiveDiagrams());
+        state.setDiagramMemoryBudgetMb(settingsComponent.getDiagramMemoryBudgetMb());
+        state.setIncrementalDiagramSections(settingsComponent.isIncrementalDiagramSections());
     }
 }
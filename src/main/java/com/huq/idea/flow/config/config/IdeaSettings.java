@@ -131,6 +131,15 @@ public class IdeaSettings implements PersistentStateComponent<IdeaSettings.State
             "5. 不要包含与代码无关的注释或解释。\n\n" +
             "下面是需要分析的代码：\n%s";
 
+    public static final String DEFAULT_CLASS_DIAGRAM_ENHANCE_PROMPT = "你是一个UML类图专家。下面是根据源码结构生成的PlantUML类图，其中的类、属性、方法和关系都是准确的。\n" +
+            "请在此基础上完善类图，遵循以下规则：\n" +
+            "1. 不要删除或修改已有的类、属性、方法和关系。\n" +
+            "2. 按业务职责对类分组，可以调整 package 的划分或使用 together。\n" +
+            "3. 为核心类添加简短的 note，说明其职责。\n" +
+            "4. 为重要的关联关系补充业务含义的标签。\n" +
+            "5. 只输出完整的PlantUML代码，以 `@startuml` 开始，以 `@enduml` 结束。\n\n" +
+            "%s";
+
     public static final String DEFAULT_STATE_DIAGRAM_PROMPT = "你是一个UML状态图生成专家。请基于下面提供的Java类相关的代码，生成一个PlantUML格式的UML状态图。\n" +
             "请遵循以下规则：\n" +
             "1. 严格使用PlantUML语法。\n" +
@@ -297,7 +306,183 @@ public class IdeaSettings implements PersistentStateComponent<IdeaSettings.State
         );
 
         private int classDiagramDepth = 2;
+        // 类图最多收集的类数量，超出后停止扫描
+        private int classDiagramMaxClasses = 150;
+        // 类图和状态图提示词中类源码的 token 预算
+        private int classPromptTokenBudget = 24000;
+        // 类图和状态图提示词中的类源码是否精简，关闭时发送完整源码
+        private boolean pruneClassSource = true;
         private boolean includeLibrarySources = false;
+        // 类图直接根据源码结构生成，AI 只用于补充说明
+        private boolean localClassDiagram = true;
+        // 状态图先根据源码提取状态转换表，只把转换表和相关方法发送给 AI
+        private boolean staticStateExtraction = true;
+
+        // 批量生成：入口方法上的注解（全限定名）
+        private List<String> batchEntryAnnotations = Arrays.asList(
+                "org.springframework.web.bind.annotation.RequestMapping",
+                "org.springframework.web.bind.annotation.GetMapping",
+                "org.springframework.web.bind.annotation.PostMapping",
+                "org.springframework.web.bind.annotation.PutMapping",
+                "org.springframework.web.bind.annotation.DeleteMapping",
+                "org.springframework.web.bind.annotation.PatchMapping"
+        );
+
+        // 批量生成：入口方法模式，格式为 "类名通配符#方法名通配符"
+        private List<String> batchEntryPatterns = new java.util.ArrayList<>();
+
+        // 批量生成：输出目录（相对于项目根目录）
+        private String batchOutputDir = "docs/diagrams";
+        private int batchAnalysisParallelism = 4;
+        private int batchAiConcurrency = 2;
+        private int batchRenderConcurrency = 2;
+
+        // 轻量分析：调用骨架基于索引构建，方法体按需加载，不反编译库类。
+        // 默认关闭，保持原有行为：编译类的方法源码通过反编译读取
+        private boolean stubOnlyAnalysis = false;
+
+        // 多实现展开：搜索范围（project / module / production）与最多展开的实现数量
+        private String implementationSearchScope = "project";
+        private int implementationTopK = 5;
+
+        // 大图细节层次：低于该缩放比例（百分比）时隐藏标签和箭头
+        private int lodLabelZoomPercent = 50;
+
+        // 大图细节层次：低于该缩放比例（百分比）时按类聚合节点
+        private int lodClusterZoomPercent = 25;
+
+        // 调用图初始展开的层数
+        private int callGraphInitialDepth = 3;
+
+        // 工具窗口中同时保留完整面板的图表数量，更早的图表只保留源码和缩略图
+        private int maxLiveDiagrams = 8;
+
+        // 工具窗口中图表面板的估算内存预算（MB）
+        private int diagramMemoryBudgetMb = 256;
+
+        // 增量更新：完整生成流程图/时序图时要求 AI 标记每个方法对应的片段。
+        // 默认关闭，提示词保持用户配置的原样
+        private boolean incrementalDiagramSections = false;
+
+        public List<String> getBatchEntryAnnotations() {
+            return batchEntryAnnotations;
+        }
+
+        public void setBatchEntryAnnotations(List<String> batchEntryAnnotations) {
+            this.batchEntryAnnotations = batchEntryAnnotations;
+        }
+
+        public List<String> getBatchEntryPatterns() {
+            return batchEntryPatterns;
+        }
+
+        public void setBatchEntryPatterns(List<String> batchEntryPatterns) {
+            this.batchEntryPatterns = batchEntryPatterns;
+        }
+
+        public String getBatchOutputDir() {
+            return batchOutputDir;
+        }
+
+        public void setBatchOutputDir(String batchOutputDir) {
+            this.batchOutputDir = batchOutputDir;
+        }
+
+        public int getBatchAnalysisParallelism() {
+            return batchAnalysisParallelism;
+        }
+
+        public void setBatchAnalysisParallelism(int batchAnalysisParallelism) {
+            this.batchAnalysisParallelism = batchAnalysisParallelism;
+        }
+
+        public int getBatchAiConcurrency() {
+            return batchAiConcurrency;
+        }
+
+        public void setBatchAiConcurrency(int batchAiConcurrency) {
+            this.batchAiConcurrency = batchAiConcurrency;
+        }
+
+        public int getBatchRenderConcurrency() {
+            return batchRenderConcurrency;
+        }
+
+        public void setBatchRenderConcurrency(int batchRenderConcurrency) {
+            this.batchRenderConcurrency = batchRenderConcurrency;
+        }
+
+        public boolean isStubOnlyAnalysis() {
+            return stubOnlyAnalysis;
+        }
+
+        public void setStubOnlyAnalysis(boolean stubOnlyAnalysis) {
+            this.stubOnlyAnalysis = stubOnlyAnalysis;
+        }
+
+        public String getImplementationSearchScope() {
+            return implementationSearchScope;
+        }
+
+        public void setImplementationSearchScope(String implementationSearchScope) {
+            this.implementationSearchScope = implementationSearchScope;
+        }
+
+        public int getImplementationTopK() {
+            return implementationTopK;
+        }
+
+        public void setImplementationTopK(int implementationTopK) {
+            this.implementationTopK = implementationTopK;
+        }
+
+        public int getLodLabelZoomPercent() {
+            return lodLabelZoomPercent;
+        }
+
+        public void setLodLabelZoomPercent(int lodLabelZoomPercent) {
+            this.lodLabelZoomPercent = lodLabelZoomPercent;
+        }
+
+        public int getLodClusterZoomPercent() {
+            return lodClusterZoomPercent;
+        }
+
+        public void setLodClusterZoomPercent(int lodClusterZoomPercent) {
+            this.lodClusterZoomPercent = lodClusterZoomPercent;
+        }
+
+        public int getCallGraphInitialDepth() {
+            return callGraphInitialDepth;
+        }
+
+        public void setCallGraphInitialDepth(int callGraphInitialDepth) {
+            this.callGraphInitialDepth = callGraphInitialDepth;
+        }
+
+        public int getMaxLiveDiagrams() {
+            return maxLiveDiagrams;
+        }
+
+        public void setMaxLiveDiagrams(int maxLiveDiagrams) {
+            this.maxLiveDiagrams = maxLiveDiagrams;
+        }
+
+        public int getDiagramMemoryBudgetMb() {
+            return diagramMemoryBudgetMb;
+        }
+
+        public void setDiagramMemoryBudgetMb(int diagramMemoryBudgetMb) {
+            this.diagramMemoryBudgetMb = diagramMemoryBudgetMb;
+        }
+
+        public boolean isIncrementalDiagramSections() {
+            return incrementalDiagramSections;
+        }
+
+        public void setIncrementalDiagramSections(boolean incrementalDiagramSections) {
+            this.incrementalDiagramSections = incrementalDiagramSections;
+        }
 
         public List<String> getExcludedClassPatterns() {
             return this.excludedClassPatterns;
@@ -339,6 +524,30 @@ public class IdeaSettings implements PersistentStateComponent<IdeaSettings.State
             this.classDiagramDepth = classDiagramDepth;
         }
 
+        public int getClassDiagramMaxClasses() {
+            return classDiagramMaxClasses;
+        }
+
+        public void setClassDiagramMaxClasses(int classDiagramMaxClasses) {
+            this.classDiagramMaxClasses = classDiagramMaxClasses;
+        }
+
+        public int getClassPromptTokenBudget() {
+            return classPromptTokenBudget;
+        }
+
+        public void setClassPromptTokenBudget(int classPromptTokenBudget) {
+            this.classPromptTokenBudget = classPromptTokenBudget;
+        }
+
+        public boolean isPruneClassSource() {
+            return pruneClassSource;
+        }
+
+        public void setPruneClassSource(boolean pruneClassSource) {
+            this.pruneClassSource = pruneClassSource;
+        }
+
         public boolean isIncludeLibrarySources() {
             return includeLibrarySources;
         }
@@ -347,6 +556,22 @@ public class IdeaSettings implements PersistentStateComponent<IdeaSettings.State
             this.includeLibrarySources = includeLibrarySources;
         }
 
+        public boolean isLocalClassDiagram() {
+            return localClassDiagram;
+        }
+
+        public void setLocalClassDiagram(boolean localClassDiagram) {
+            this.localClassDiagram = localClassDiagram;
+        }
+
+        public boolean isStaticStateExtraction() {
+            return staticStateExtraction;
+        }
+
+        public void setStaticStateExtraction(boolean staticStateExtraction) {
+            this.staticStateExtraction = staticStateExtraction;
+        }
+
         public String getPlantumlPathVal() {
             return this.plantumlPathVal;
         }
@@ -28,6 +28,9 @@ public class CallStack {
 
     private int currentOffset;
 
+    // 超出展开上限而被省略的实现（全限定类名），渲染时显示为 "+N more"
+    private final List<String> omittedImplementations = new ArrayList<>();
+
     public CallStack() {}
 
     public CallStack(MethodDescription method) {
@@ -76,6 +79,16 @@ public class CallStack {
         this.multiImplementationGroup = multiImplementationGroup;
     }
 
+    public List<String> getOmittedImplementations() {
+        return omittedImplementations;
+    }
+
+    public void addOmittedImplementation(String className) {
+        if (className != null) {
+            omittedImplementations.add(className);
+        }
+    }
+
     public Map<String, Object> getMetaData() {
         return metaData;
     }
@@ -239,6 +252,7 @@ public class CallStack {
                 child.appendMessages(uml, indent + 1);
                 first = false;
             }
+            appendOmittedImplementations(uml, indentStr);
 
             uml.append(indentStr).append("end\n");
             return;
@@ -350,6 +364,8 @@ public class CallStack {
                    .append(" #Pink: 递归调用\n");
             }
 
+            appendOmittedImplementations(uml, indentStr);
+
             // 激活当前对象
             uml.append(indentStr).append("activate ").append(target).append("\n");
 
@@ -374,6 +390,28 @@ public class CallStack {
         }
     }
 
+    /**
+     * 添加被省略实现的提示，例如 "+3 more: AImpl, BImpl, CImpl"
+     */
+    private void appendOmittedImplementations(StringBuilder uml, String indentStr) {
+        if (omittedImplementations.isEmpty()) {
+            return;
+        }
+        StringBuilder names = new StringBuilder();
+        for (String className : omittedImplementations) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(className.substring(className.lastIndexOf('.') + 1));
+        }
+        uml.append(indentStr)
+           .append("note right #WhiteSmoke: +")
+           .append(omittedImplementations.size())
+           .append(" more: ")
+           .append(names)
+           .append("\n");
+    }
+
     /**
      * 清理JavaDoc注释，提取主要描述
      */
@@ -0,0 +1,222 @@
+package com.huq.idea.flow.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 调用链指纹和方法结构哈希
+ *
+ * <p>方法的结构哈希忽略注释和字面量之外的空白，只改格式或注释不会让图表过期。
+ * 调用链指纹按先序遍历合并每个调用的深度、方法签名和结构哈希，
+ * 调用关系或任意一个方法体发生变化时指纹都会改变。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class CallStackFingerprint {
+
+    private CallStackFingerprint() {
+    }
+
+    /**
+     * 调用链中一个方法的标识和结构哈希
+     */
+    public static class MethodEntry {
+        private String className;
+        private String name;
+        private String hash;
+        private String file;
+
+        public MethodEntry() {
+        }
+
+        public MethodEntry(String className, String name, String hash, String file) {
+            this.className = className;
+            this.name = name;
+            this.hash = hash;
+            this.file = file;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * 方法所在文件的路径，可能为 null
+         */
+        public String getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * 计算方法源码的结构哈希
+     */
+    public static String methodHash(String text) {
+        return sha256(normalize(text == null ? "" : text));
+    }
+
+    /**
+     * 去掉注释，字面量之外的空白只在两个标识符字符之间保留一个空格
+     */
+    static String normalize(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            char next = i + 1 < length ? text.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = true;
+            } else if (c == '/' && next == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && result.length() > 0
+                        && Character.isJavaIdentifierPart(result.charAt(result.length() - 1))
+                        && Character.isJavaIdentifierPart(c)) {
+                    result.append(' ');
+                }
+                pendingSpace = false;
+                if (c == '"' || c == '\'') {
+                    // 字面量原样保留，文本块按连续的字符串处理，内容同样不变
+                    int start = i++;
+                    while (i < length && text.charAt(i) != c) {
+                        i += text.charAt(i) == '\\' ? 2 : 1;
+                    }
+                    i = Math.min(i + 1, length);
+                    result.append(text, start, i);
+                } else {
+                    result.append(c);
+                    i++;
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 按先序收集调用链中的方法，签名相同的方法只保留一个
+     */
+    public static Map<String, MethodEntry> methodEntries(CallStack root) {
+        Map<String, MethodEntry> entries = new LinkedHashMap<>();
+        Deque<CallStack> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            CallStack current = stack.pop();
+            MethodDescription method = current.getMethodDescription();
+            if (method != null) {
+                String key = method.getSignatureKey();
+                if (!entries.containsKey(key)) {
+                    entries.put(key, new MethodEntry(method.getClassName(), method.getName(),
+                            methodHash(method.getText()), method.getSourceFilePath()));
+                }
+            }
+            pushChildren(stack, current);
+        }
+        return entries;
+    }
+
+    /**
+     * 计算调用链指纹
+     *
+     * @param entries {@link #methodEntries(CallStack)} 的结果，避免重复计算方法哈希
+     */
+    public static String fingerprint(CallStack root, Map<String, MethodEntry> entries) {
+        StringBuilder text = new StringBuilder();
+        Deque<CallStack> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            CallStack current = stack.pop();
+            MethodDescription method = current.getMethodDescription();
+            text.append(current.getDepth()).append('\u0001');
+            if (method != null) {
+                String key = method.getSignatureKey();
+                MethodEntry entry = entries.get(key);
+                text.append(key).append('\u0001').append(entry == null ? methodHash(method.getText()) : entry.getHash());
+            } else {
+                text.append('-');
+            }
+            if (current.isRecursive()) {
+                text.append("\u0001R");
+            }
+            if (current.isMultiImplementationGroup()) {
+                text.append("\u0001G");
+            }
+            for (String omitted : current.getOmittedImplementations()) {
+                text.append("\u0001+").append(omitted);
+            }
+            text.append('\n');
+            pushChildren(stack, current);
+        }
+        return sha256(text.toString());
+    }
+
+    public static String fingerprint(CallStack root) {
+        return fingerprint(root, methodEntries(root));
+    }
+
+    /**
+     * 比较两次收集的方法，返回新增、删除或结构哈希变化的方法签名
+     */
+    public static Set<String> changedMethods(Map<String, MethodEntry> before, Map<String, MethodEntry> after) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, MethodEntry> entry : after.entrySet()) {
+            MethodEntry old = before.get(entry.getKey());
+            if (old == null || !Objects.equals(old.getHash(), entry.getValue().getHash())) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    private static void pushChildren(Deque<CallStack> stack, CallStack current) {
+        List<CallStack> children = current.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.push(children.get(i));
+        }
+    }
+
+    public static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
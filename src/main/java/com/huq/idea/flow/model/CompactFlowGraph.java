@@ -0,0 +1,521 @@
+package com.huq.idea.flow.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的只读流程图表示
+ *
+ * <p>节点和边按列存储在 int 数组中，节点用 0 开始的下标表示。所有字符串（id、类名、文件路径、代码等）
+ * 放在一张去重的字符串表里，每列只保存表中的下标，重复出现上百次的类名和路径只保存一份。
+ * 出边和入边使用 CSR 形式的邻接数组，不再为每个节点创建列表对象。
+ *
+ * <p>可以用 {@link #fromJson(String)} 或 {@link Builder} 直接从 JSON 流构建，不必先得到完整的 {@link FlowGraphData}。
+ * 源节点或目标节点不存在的边不会保留。需要 {@link FlowGraphData.Node} 对象的调用方可以使用
+ * {@link #getNode(int)}、{@link #nodes()} 或 {@link #toFlowGraphData()}，这些视图按需创建对象。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class CompactFlowGraph {
+
+    // 字符串为 null 时的下标
+    private static final int NONE = -1;
+
+    private final String[] strings;
+
+    private final int nodeCount;
+    private final int[] nodeId;
+    private final int[] nodeLabel;
+    private final int[] nodeType;
+    private final int[] nodeClassName;
+    private final int[] nodeMethodName;
+    private final int[] nodeDescription;
+    private final int[] nodeCode;
+    private final int[] nodeFilePath;
+    private final int[] nodeLineNumber;
+    // 开放寻址的 id 散列表，槽中保存节点下标，重复 id 时保留第一个节点
+    private final int[] idTable;
+
+    private final int edgeCount;
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private final int[] edgeLabel;
+    private final int[] edgeType;
+
+    // CSR 邻接：节点 v 的出边是 outEdges[outOffsets[v] .. outOffsets[v + 1])
+    private final int[] outOffsets;
+    private final int[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    private CompactFlowGraph(Builder builder) {
+        this.strings = builder.strings.toArray();
+        this.nodeCount = builder.nodeCount;
+        this.nodeId = Arrays.copyOf(builder.nodeId, nodeCount);
+        this.nodeLabel = Arrays.copyOf(builder.nodeLabel, nodeCount);
+        this.nodeType = Arrays.copyOf(builder.nodeType, nodeCount);
+        this.nodeClassName = Arrays.copyOf(builder.nodeClassName, nodeCount);
+        this.nodeMethodName = Arrays.copyOf(builder.nodeMethodName, nodeCount);
+        this.nodeDescription = Arrays.copyOf(builder.nodeDescription, nodeCount);
+        this.nodeCode = Arrays.copyOf(builder.nodeCode, nodeCount);
+        this.nodeFilePath = Arrays.copyOf(builder.nodeFilePath, nodeCount);
+        this.nodeLineNumber = Arrays.copyOf(builder.nodeLineNumber, nodeCount);
+        this.idTable = buildIdTable();
+
+        this.edgeCount = builder.edgeCount;
+        this.edgeSource = Arrays.copyOf(builder.edgeSource, edgeCount);
+        this.edgeTarget = Arrays.copyOf(builder.edgeTarget, edgeCount);
+        this.edgeLabel = Arrays.copyOf(builder.edgeLabel, edgeCount);
+        this.edgeType = Arrays.copyOf(builder.edgeType, edgeCount);
+
+        this.outOffsets = new int[nodeCount + 1];
+        this.outEdges = new int[edgeCount];
+        this.inOffsets = new int[nodeCount + 1];
+        this.inEdges = new int[edgeCount];
+        buildAdjacency(edgeSource, outOffsets, outEdges);
+        buildAdjacency(edgeTarget, inOffsets, inEdges);
+    }
+
+    private int[] buildIdTable() {
+        int capacity = Integer.highestOneBit(Math.max(2, nodeCount * 2 - 1)) << 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, NONE);
+        int mask = capacity - 1;
+        // 每个不同的 id 只登记第一个节点
+        boolean[] seen = new boolean[strings.length];
+        for (int node = 0; node < nodeCount; node++) {
+            int ref = nodeId[node];
+            if (ref == NONE || seen[ref]) {
+                continue;
+            }
+            seen[ref] = true;
+            int slot = mix(strings[ref].hashCode()) & mask;
+            while (table[slot] != NONE) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = node;
+        }
+        return table;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 计数排序构建 CSR 邻接数组，同一节点的边保持原有顺序
+     */
+    private void buildAdjacency(int[] endpoint, int[] offsets, int[] adjacency) {
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[endpoint[e] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            adjacency[next[endpoint[e]]++] = e;
+        }
+    }
+
+    /**
+     * 从流程图数据构建紧凑表示
+     */
+    public static CompactFlowGraph of(FlowGraphData data) {
+        List<FlowGraphData.Node> nodes = data.getNodes();
+        List<FlowGraphData.Edge> edges = data.getEdges();
+        Builder builder = new Builder(nodes.size(), edges.size());
+        for (FlowGraphData.Node node : nodes) {
+            builder.onNode(node);
+        }
+        for (FlowGraphData.Edge edge : edges) {
+            builder.onEdge(edge);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 直接从 AI 输出的 JSON 文本构建紧凑表示，不经过完整的 {@link FlowGraphData}
+     *
+     * <p>每个节点或边对象解析后立即写入列数组，解析出的对象随即可以回收。与
+     * {@link FlowGraphData#fromJson(String)} 一样容忍说明文字、代码块标记和截断的输出。
+     */
+    public static CompactFlowGraph fromJson(String json) {
+        Builder builder = new Builder();
+        FlowGraphStreamParser parser = new FlowGraphStreamParser(builder, false);
+        parser.feed(json);
+        parser.finish();
+        return builder.build();
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 字符串表中不同字符串的数量
+     */
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    /**
+     * 按 id 查找节点下标，不存在时返回 -1
+     */
+    public int indexOf(String id) {
+        if (id == null) {
+            return NONE;
+        }
+        int mask = idTable.length - 1;
+        for (int slot = mix(id.hashCode()) & mask; idTable[slot] != NONE; slot = (slot + 1) & mask) {
+            int node = idTable[slot];
+            if (id.equals(strings[nodeId[node]])) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    public String getId(int node) {
+        return string(nodeId[node]);
+    }
+
+    public String getLabel(int node) {
+        return string(nodeLabel[node]);
+    }
+
+    public String getType(int node) {
+        return string(nodeType[node]);
+    }
+
+    public String getClassName(int node) {
+        return string(nodeClassName[node]);
+    }
+
+    public String getMethodName(int node) {
+        return string(nodeMethodName[node]);
+    }
+
+    public String getDescription(int node) {
+        return string(nodeDescription[node]);
+    }
+
+    public String getCode(int node) {
+        return string(nodeCode[node]);
+    }
+
+    public String getFilePath(int node) {
+        return string(nodeFilePath[node]);
+    }
+
+    public int getLineNumber(int node) {
+        return nodeLineNumber[node];
+    }
+
+    public int getEdgeSource(int edge) {
+        return edgeSource[edge];
+    }
+
+    public int getEdgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    public String getEdgeLabel(int edge) {
+        return string(edgeLabel[edge]);
+    }
+
+    public String getEdgeType(int edge) {
+        return string(edgeType[edge]);
+    }
+
+    public int getOutDegree(int node) {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    /**
+     * 节点的第 k 条出边的下标
+     */
+    public int getOutEdge(int node, int k) {
+        return outEdges[outOffsets[node] + k];
+    }
+
+    public int getInDegree(int node) {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    /**
+     * 节点的第 k 条入边的下标
+     */
+    public int getInEdge(int node, int k) {
+        return inEdges[inOffsets[node] + k];
+    }
+
+    /**
+     * source 到 target 的第一条边的标签，没有则返回 null
+     */
+    public String getEdgeLabel(int source, int target) {
+        for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+            int edge = outEdges[i];
+            if (edgeTarget[edge] == target) {
+                return string(edgeLabel[edge]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建节点对象视图，每次调用返回新对象，修改它不会影响紧凑表示
+     */
+    public FlowGraphData.Node getNode(int node) {
+        FlowGraphData.Node view = new FlowGraphData.Node();
+        view.setId(getId(node));
+        view.setLabel(getLabel(node));
+        view.setType(getType(node));
+        view.setClassName(getClassName(node));
+        view.setMethodName(getMethodName(node));
+        view.setDescription(getDescription(node));
+        view.setCode(getCode(node));
+        view.setFilePath(getFilePath(node));
+        view.setLineNumber(getLineNumber(node));
+        return view;
+    }
+
+    /**
+     * 创建边对象视图
+     */
+    public FlowGraphData.Edge getEdge(int edge) {
+        FlowGraphData.Edge view = new FlowGraphData.Edge();
+        view.setSource(getId(edgeSource[edge]));
+        view.setTarget(getId(edgeTarget[edge]));
+        view.setLabel(getEdgeLabel(edge));
+        view.setType(getEdgeType(edge));
+        return view;
+    }
+
+    /**
+     * 节点列表视图，访问元素时才创建对象
+     */
+    public List<FlowGraphData.Node> nodes() {
+        return new AbstractList<>() {
+            @Override
+            public FlowGraphData.Node get(int index) {
+                return getNode(index);
+            }
+
+            @Override
+            public int size() {
+                return nodeCount;
+            }
+        };
+    }
+
+    /**
+     * 边列表视图，访问元素时才创建对象
+     */
+    public List<FlowGraphData.Edge> edges() {
+        return new AbstractList<>() {
+            @Override
+            public FlowGraphData.Edge get(int index) {
+                return getEdge(index);
+            }
+
+            @Override
+            public int size() {
+                return edgeCount;
+            }
+        };
+    }
+
+    /**
+     * 还原为普通的流程图数据，供需要可修改对象的调用方使用
+     */
+    public FlowGraphData toFlowGraphData() {
+        FlowGraphData data = new FlowGraphData();
+        data.setNodes(new ArrayList<>(nodes()));
+        data.setEdges(new ArrayList<>(edges()));
+        return data;
+    }
+
+    private String string(int ref) {
+        return ref == NONE ? null : strings[ref];
+    }
+
+    /**
+     * 逐个接收节点和边的构建器，可以直接作为 {@link FlowGraphStreamParser} 的回调
+     *
+     * <p>边可以先于它引用的节点到达，端点在 {@link #build()} 时才解析。构建器不是线程安全的，
+     * 只能构建一次。
+     */
+    public static final class Builder implements FlowGraphStreamParser.Listener {
+        private final StringTable strings = new StringTable();
+
+        private int nodeCount;
+        private int[] nodeId;
+        private int[] nodeLabel;
+        private int[] nodeType;
+        private int[] nodeClassName;
+        private int[] nodeMethodName;
+        private int[] nodeDescription;
+        private int[] nodeCode;
+        private int[] nodeFilePath;
+        private int[] nodeLineNumber;
+
+        // build() 之前保存端点 id 在字符串表中的下标，之后保存节点下标
+        private int edgeCount;
+        private int[] edgeSource;
+        private int[] edgeTarget;
+        private int[] edgeLabel;
+        private int[] edgeType;
+
+        private boolean built;
+
+        public Builder() {
+            this(16, 16);
+        }
+
+        public Builder(int nodeCapacity, int edgeCapacity) {
+            nodeCapacity = Math.max(1, nodeCapacity);
+            edgeCapacity = Math.max(1, edgeCapacity);
+            nodeId = new int[nodeCapacity];
+            nodeLabel = new int[nodeCapacity];
+            nodeType = new int[nodeCapacity];
+            nodeClassName = new int[nodeCapacity];
+            nodeMethodName = new int[nodeCapacity];
+            nodeDescription = new int[nodeCapacity];
+            nodeCode = new int[nodeCapacity];
+            nodeFilePath = new int[nodeCapacity];
+            nodeLineNumber = new int[nodeCapacity];
+            edgeSource = new int[edgeCapacity];
+            edgeTarget = new int[edgeCapacity];
+            edgeLabel = new int[edgeCapacity];
+            edgeType = new int[edgeCapacity];
+        }
+
+        @Override
+        public void onNode(FlowGraphData.Node node) {
+            if (node == null) {
+                return;
+            }
+            checkNotBuilt();
+            if (nodeCount == nodeId.length) {
+                int capacity = nodeCount * 2;
+                nodeId = Arrays.copyOf(nodeId, capacity);
+                nodeLabel = Arrays.copyOf(nodeLabel, capacity);
+                nodeType = Arrays.copyOf(nodeType, capacity);
+                nodeClassName = Arrays.copyOf(nodeClassName, capacity);
+                nodeMethodName = Arrays.copyOf(nodeMethodName, capacity);
+                nodeDescription = Arrays.copyOf(nodeDescription, capacity);
+                nodeCode = Arrays.copyOf(nodeCode, capacity);
+                nodeFilePath = Arrays.copyOf(nodeFilePath, capacity);
+                nodeLineNumber = Arrays.copyOf(nodeLineNumber, capacity);
+            }
+            int i = nodeCount++;
+            nodeId[i] = strings.ref(node.getId());
+            nodeLabel[i] = strings.ref(node.getLabel());
+            nodeType[i] = strings.ref(node.getType());
+            nodeClassName[i] = strings.ref(node.getClassName());
+            nodeMethodName[i] = strings.ref(node.getMethodName());
+            nodeDescription[i] = strings.ref(node.getDescription());
+            nodeCode[i] = strings.ref(node.getCode());
+            nodeFilePath[i] = strings.ref(node.getFilePath());
+            nodeLineNumber[i] = node.getLineNumber();
+        }
+
+        @Override
+        public void onEdge(FlowGraphData.Edge edge) {
+            if (edge == null || edge.getSource() == null || edge.getTarget() == null) {
+                return;
+            }
+            checkNotBuilt();
+            if (edgeCount == edgeSource.length) {
+                int capacity = edgeCount * 2;
+                edgeSource = Arrays.copyOf(edgeSource, capacity);
+                edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+                edgeLabel = Arrays.copyOf(edgeLabel, capacity);
+                edgeType = Arrays.copyOf(edgeType, capacity);
+            }
+            int i = edgeCount++;
+            edgeSource[i] = strings.ref(edge.getSource());
+            edgeTarget[i] = strings.ref(edge.getTarget());
+            edgeLabel[i] = strings.ref(edge.getLabel());
+            edgeType[i] = strings.ref(edge.getType());
+        }
+
+        /**
+         * 解析边的端点并生成紧凑表示，端点不存在的边被丢弃
+         */
+        public CompactFlowGraph build() {
+            checkNotBuilt();
+            built = true;
+
+            // id 到节点下标，重复 id 时保留第一个节点
+            int[] nodeByString = new int[strings.size()];
+            Arrays.fill(nodeByString, NONE);
+            for (int i = nodeCount - 1; i >= 0; i--) {
+                if (nodeId[i] != NONE) {
+                    nodeByString[nodeId[i]] = i;
+                }
+            }
+
+            int kept = 0;
+            for (int e = 0; e < edgeCount; e++) {
+                int source = nodeByString[edgeSource[e]];
+                int target = nodeByString[edgeTarget[e]];
+                if (source == NONE || target == NONE) {
+                    continue;
+                }
+                edgeSource[kept] = source;
+                edgeTarget[kept] = target;
+                edgeLabel[kept] = edgeLabel[e];
+                edgeType[kept] = edgeType[e];
+                kept++;
+            }
+            edgeCount = kept;
+            return new CompactFlowGraph(this);
+        }
+
+        private void checkNotBuilt() {
+            if (built) {
+                throw new IllegalStateException("Builder already built");
+            }
+        }
+    }
+
+    /**
+     * 字符串去重表
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int ref(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer ref = refs.get(value);
+            if (ref == null) {
+                ref = values.size();
+                refs.put(value, ref);
+                values.add(value);
+            }
+            return ref;
+        }
+
+        private int size() {
+            return values.size();
+        }
+
+        private String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+}
@@ -5,7 +5,10 @@ import com.google.gson.annotations.SerializedName;
 import com.intellij.openapi.diagnostic.Logger;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 流程图数据模型，用于与AI生成的JSON数据进行交互
@@ -17,18 +20,25 @@ public class FlowGraphData {
 
     private static final Logger LOG = Logger.getInstance(FlowGraphData.class);
 
+    // Gson 实例线程安全，所有解析共享
+    static final Gson GSON = new Gson();
+
     @SerializedName("nodes")
     private List<Node> nodes = new ArrayList<>();
 
     @SerializedName("edges")
     private List<Edge> edges = new ArrayList<>();
 
+    // 解析后一次性构建的只读索引，transient 避免参与 JSON 序列化
+    private transient volatile Index index;
+
     public List<Node> getNodes() {
         return nodes;
     }
 
     public void setNodes(List<Node> nodes) {
         this.nodes = nodes;
+        this.index = null;
     }
 
     public List<Edge> getEdges() {
@@ -37,6 +47,63 @@ public class FlowGraphData {
 
     public void setEdges(List<Edge> edges) {
         this.edges = edges;
+        this.index = null;
+    }
+
+    /**
+     * 按 id 查找节点，O(1)
+     */
+    public Node getNode(String id) {
+        return id == null ? null : index().nodeById.get(id);
+    }
+
+    /**
+     * 查找 source 到 target 的所有边标签（同一对节点可能有多条边），O(1)
+     */
+    public List<String> getEdgeLabels(String sourceId, String targetId) {
+        return index().edgeLabels.getOrDefault(pairKey(sourceId, targetId), Collections.emptyList());
+    }
+
+    /**
+     * 查找 source 到 target 的第一条边的标签，没有则返回 null
+     */
+    public String getEdgeLabel(String sourceId, String targetId) {
+        List<String> labels = getEdgeLabels(sourceId, targetId);
+        return labels.isEmpty() ? null : labels.get(0);
+    }
+
+    /**
+     * 节点的出边
+     */
+    public List<Edge> getOutgoingEdges(String nodeId) {
+        return index().outgoing.getOrDefault(nodeId, Collections.emptyList());
+    }
+
+    /**
+     * 节点的入边
+     */
+    public List<Edge> getIncomingEdges(String nodeId) {
+        return index().incoming.getOrDefault(nodeId, Collections.emptyList());
+    }
+
+    /**
+     * 节点数据修改后（例如直接操作 getNodes() 返回的列表）需要调用，下次查询时重建索引
+     */
+    public void invalidateIndex() {
+        this.index = null;
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current == null) {
+            current = new Index(nodes, edges);
+            index = current;
+        }
+        return current;
+    }
+
+    private static String pairKey(String sourceId, String targetId) {
+        return sourceId + "->" + targetId;
     }
 
     /**
@@ -47,13 +114,66 @@ public class FlowGraphData {
             return new FlowGraphData();
         }
         try {
-            Gson gson = new Gson();
-            FlowGraphData data = gson.fromJson(json, FlowGraphData.class);
-            return data != null ? data : new FlowGraphData();
+            FlowGraphData data = GSON.fromJson(json, FlowGraphData.class);
+            if (data == null) {
+                return new FlowGraphData();
+            }
+            if (data.nodes == null) {
+                data.nodes = new ArrayList<>();
+            }
+            if (data.edges == null) {
+                data.edges = new ArrayList<>();
+            }
+            data.index();
+            return data;
         } catch (Exception e) {
-            LOG.warn("Failed to parse FlowGraphData from JSON: " + e.getMessage());
-            // 如果解析失败，返回一个空的数据对象
-            return new FlowGraphData();
+            // 带说明文字、代码块标记或被截断的输出，逐个对象恢复能解析的节点和边
+            FlowGraphData data = FlowGraphStreamParser.parse(json);
+            LOG.warn("Failed to parse FlowGraphData from JSON: " + e.getMessage()
+                    + ", recovered " + data.nodes.size() + " nodes and " + data.edges.size() + " edges");
+            data.index();
+            return data;
+        }
+    }
+
+    /**
+     * 只读索引：id 到节点、节点对到边标签、出边和入边邻接表
+     */
+    private static final class Index {
+        private final Map<String, Node> nodeById;
+        private final Map<String, List<String>> edgeLabels;
+        private final Map<String, List<Edge>> outgoing;
+        private final Map<String, List<Edge>> incoming;
+
+        private Index(List<Node> nodes, List<Edge> edges) {
+            Map<String, Node> nodeById = new HashMap<>(nodes.size() * 2);
+            for (Node node : nodes) {
+                if (node != null && node.getId() != null) {
+                    // 重复 id 时保留第一个，与原先线性查找的结果一致
+                    nodeById.putIfAbsent(node.getId(), node);
+                }
+            }
+
+            Map<String, List<String>> edgeLabels = new HashMap<>(edges.size() * 2);
+            Map<String, List<Edge>> outgoing = new HashMap<>(nodes.size() * 2);
+            Map<String, List<Edge>> incoming = new HashMap<>(nodes.size() * 2);
+            for (Edge edge : edges) {
+                if (edge == null) {
+                    continue;
+                }
+                edgeLabels.computeIfAbsent(pairKey(edge.getSource(), edge.getTarget()), key -> new ArrayList<>(1))
+                        .add(edge.getLabel());
+                outgoing.computeIfAbsent(edge.getSource(), key -> new ArrayList<>()).add(edge);
+                incoming.computeIfAbsent(edge.getTarget(), key -> new ArrayList<>()).add(edge);
+            }
+            edgeLabels.replaceAll((key, labels) -> Collections.unmodifiableList(labels));
+            outgoing.replaceAll((key, list) -> Collections.unmodifiableList(list));
+            incoming.replaceAll((key, list) -> Collections.unmodifiableList(list));
+
+            this.nodeById = Collections.unmodifiableMap(nodeById);
+            this.edgeLabels = Collections.unmodifiableMap(edgeLabels);
+            this.outgoing = Collections.unmodifiableMap(outgoing);
+            this.incoming = Collections.unmodifiableMap(incoming);
         }
     }
 
@@ -0,0 +1,287 @@
+package com.huq.idea.flow.model;
+
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 容错的增量流程图 JSON 解析器
+ *
+ * <p>按 AI 输出的顺序逐段喂入文本，每当 "nodes" 或 "edges" 数组中的一个对象闭合，就立即解析并回调，
+ * 流程图面板可以在生成过程中逐步添加单元格。解析器会忽略 JSON 之前的说明文字和 Markdown 代码块标记，
+ * 容忍对象末尾多余的逗号，单个对象格式错误时只跳过该对象。输出被截断时，{@link #finish()}
+ * 会保留所有已闭合的对象，并尽量恢复最后一个未闭合对象中已完整的字段。
+ *
+ * <p>解析器不是线程安全的，同一实例只能在一个线程中使用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class FlowGraphStreamParser {
+
+    private static final Logger LOG = Logger.getInstance(FlowGraphStreamParser.class);
+
+    /**
+     * 节点或边解析完成时的回调，在调用 {@link #feed(CharSequence)} 的线程中执行
+     */
+    public interface Listener {
+        void onNode(FlowGraphData.Node node);
+
+        void onEdge(FlowGraphData.Edge edge);
+    }
+
+    private enum Kind {NODE, EDGE}
+
+    /**
+     * 一层未闭合的对象或数组，数组记录它对应的字段名
+     */
+    private static final class Frame {
+        private final char type;
+        private final String name;
+
+        private Frame(char type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    private final Listener listener;
+    // 是否保留解析出的对象，由 finish() 返回
+    private final boolean retain;
+    private final List<FlowGraphData.Node> nodes = new ArrayList<>();
+    private final List<FlowGraphData.Edge> edges = new ArrayList<>();
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    // 字符串状态，跨越多次 feed 保持
+    private boolean inString;
+    private boolean escaped;
+    private final StringBuilder stringText = new StringBuilder();
+    // 对象中最近一个字符串，后面跟着 ':' 时就是字段名
+    private String pendingKey;
+
+    // 正在收集的节点或边对象
+    private Kind captureKind;
+    private int captureDepth;
+    private final StringBuilder capture = new StringBuilder();
+    // 对象顶层最后一个完整字段之后的位置，截断时从这里恢复
+    private int lastCompleteMember;
+
+    private int skipped;
+    private boolean finished;
+
+    public FlowGraphStreamParser(Listener listener) {
+        this(listener, true);
+    }
+
+    /**
+     * @param retain 为 false 时只回调，不保留解析出的对象，{@link #finish()} 返回空图，
+     *               适合由回调自行存储结果的场景
+     */
+    public FlowGraphStreamParser(Listener listener, boolean retain) {
+        this.listener = listener;
+        this.retain = retain;
+    }
+
+    /**
+     * 一次性解析完整或被截断的文本
+     */
+    public static FlowGraphData parse(String text) {
+        FlowGraphStreamParser parser = new FlowGraphStreamParser(null);
+        parser.feed(text);
+        return parser.finish();
+    }
+
+    /**
+     * 喂入下一段文本
+     */
+    public void feed(CharSequence chunk) {
+        if (finished) {
+            throw new IllegalStateException("Parser already finished");
+        }
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 结束解析，恢复被截断的最后一个对象，返回目前得到的流程图
+     */
+    public FlowGraphData finish() {
+        if (!finished) {
+            finished = true;
+            if (captureKind != null) {
+                recoverTruncated();
+            }
+        }
+        FlowGraphData data = new FlowGraphData();
+        data.setNodes(new ArrayList<>(nodes));
+        data.setEdges(new ArrayList<>(edges));
+        return data;
+    }
+
+    /**
+     * 因格式错误或缺少必需字段而被跳过的对象数量
+     */
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    private void accept(char c) {
+        if (captureKind != null) {
+            capture.append(c);
+        }
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (captureKind == null && !frames.isEmpty() && frames.peek().type == '{') {
+                    pendingKey = stringText.toString();
+                }
+            } else if (captureKind == null) {
+                stringText.append(c);
+            }
+            return;
+        }
+
+        // 根对象之外的说明文字和代码块标记
+        if (frames.isEmpty() && c != '{') {
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                stringText.setLength(0);
+            }
+            case '{' -> {
+                Frame top = frames.peek();
+                if (captureKind == null && top != null && top.type == '[') {
+                    Kind kind = kindOf(top.name);
+                    if (kind != null) {
+                        startCapture(kind);
+                    }
+                }
+                frames.push(new Frame('{', null));
+                pendingKey = null;
+            }
+            case '[' -> {
+                frames.push(new Frame('[', pendingKey));
+                pendingKey = null;
+            }
+            case '}', ']' -> {
+                if (captureKind != null) {
+                    dropTrailingComma();
+                }
+                if (!frames.isEmpty()) {
+                    frames.pop();
+                }
+                pendingKey = null;
+                if (captureKind != null && frames.size() == captureDepth) {
+                    endCapture();
+                }
+            }
+            case ',' -> {
+                pendingKey = null;
+                if (captureKind != null && frames.size() == captureDepth + 1) {
+                    lastCompleteMember = capture.length() - 1;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static Kind kindOf(String arrayName) {
+        if ("nodes".equals(arrayName)) {
+            return Kind.NODE;
+        } else if ("edges".equals(arrayName)) {
+            return Kind.EDGE;
+        }
+        return null;
+    }
+
+    private void startCapture(Kind kind) {
+        captureKind = kind;
+        captureDepth = frames.size();
+        capture.setLength(0);
+        capture.append('{');
+        lastCompleteMember = -1;
+    }
+
+    /**
+     * 去掉闭合括号前多余的逗号，例如 {"id": "1",}
+     */
+    private void dropTrailingComma() {
+        int close = capture.length() - 1;
+        int i = close - 1;
+        while (i >= 0 && Character.isWhitespace(capture.charAt(i))) {
+            i--;
+        }
+        if (i >= 0 && capture.charAt(i) == ',') {
+            capture.deleteCharAt(i);
+        }
+    }
+
+    private void endCapture() {
+        Kind kind = captureKind;
+        captureKind = null;
+        emit(kind, capture.toString());
+    }
+
+    /**
+     * 截断在对象中间时，保留对象顶层最后一个逗号之前的完整字段
+     */
+    private void recoverTruncated() {
+        Kind kind = captureKind;
+        captureKind = null;
+        if (lastCompleteMember <= 0) {
+            skipped++;
+            return;
+        }
+        emit(kind, capture.substring(0, lastCompleteMember) + "}");
+    }
+
+    private void emit(Kind kind, String json) {
+        try {
+            if (kind == Kind.NODE) {
+                FlowGraphData.Node node = FlowGraphData.GSON.fromJson(json, FlowGraphData.Node.class);
+                if (node == null || node.getId() == null) {
+                    skipped++;
+                    return;
+                }
+                if (retain) {
+                    nodes.add(node);
+                }
+                if (listener != null) {
+                    listener.onNode(node);
+                }
+            } else {
+                FlowGraphData.Edge edge = FlowGraphData.GSON.fromJson(json, FlowGraphData.Edge.class);
+                if (edge == null || edge.getSource() == null || edge.getTarget() == null) {
+                    skipped++;
+                    return;
+                }
+                if (retain) {
+                    edges.add(edge);
+                }
+                if (listener != null) {
+                    listener.onEdge(edge);
+                }
+            }
+        } catch (JsonParseException e) {
+            skipped++;
+            LOG.debug("跳过格式错误的" + (kind == Kind.NODE ? "节点" : "边") + ": " + e.getMessage());
+        }
+    }
+}
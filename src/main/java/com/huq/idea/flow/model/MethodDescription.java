@@ -1,11 +1,17 @@
 package com.huq.idea.flow.model;
 
 import com.google.common.base.Objects;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
 import com.intellij.psi.javadoc.PsiDocComment;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.StringJoiner;
 
 /**
  * @author huqiang
@@ -17,16 +23,39 @@ public class MethodDescription {
 
     private String className;
 
-    private String text;
+    // 延迟加载的字段在读操作中计算，计算时不持有对象锁，结果通过 volatile 发布，
+    // 并发计算时得到的值相同，后写入的覆盖先写入的不影响结果
+    private volatile String text;
 
     private String name;
 
-    private PsiDocComment docComment;
+    private volatile PsiDocComment docComment;
 
     private String returnType;
 
     private Map<String, String> attr = new HashMap<>();
 
+    // 源码片段属性，只保存偏移量，读取时才转成字符串
+    private Map<String, TextSlice> slices;
+
+    // 延迟加载：方法源码和注释只在真正用到时读取，避免为不需要的节点加载 AST
+    private boolean lazy;
+
+    // 当前方法没有注释时，从该方法（通常是接口方法）上取注释
+    private PsiMethod docCommentFallback;
+
+    // 是否允许读取编译类的源码（会触发反编译）
+    private boolean allowDecompile;
+
+    private volatile boolean docCommentLoaded;
+
+    // 类名#方法名(参数类型)，区分重载方法，持久化时作为方法的标识
+    private volatile String signatureKey;
+
+    private volatile String sourceFilePath;
+
+    private volatile boolean sourceFileLoaded;
+
     public MethodDescription(PsiMethod psiMethod, String className, String text, String name, PsiDocComment docComment, String returnType) {
         this.psiMethod = psiMethod;
         this.className = className;
@@ -36,32 +65,129 @@ public class MethodDescription {
         this.returnType = returnType;
     }
 
+    /**
+     * 创建延迟加载源码和注释的方法描述，构造时只访问 stub 中已有的信息
+     */
+    public static MethodDescription lazy(PsiMethod psiMethod, String className, String name, String returnType,
+                                         PsiMethod docCommentFallback, boolean allowDecompile) {
+        MethodDescription description = new MethodDescription(psiMethod, className, null, name, null, returnType);
+        description.lazy = true;
+        description.docCommentFallback = docCommentFallback;
+        description.allowDecompile = allowDecompile;
+        return description;
+    }
+
     public String buildMethodId() {
         return className + "-" + name + "-" + attr.get("parameters");
     }
 
+    /**
+     * 方法签名标识，格式为 类名#方法名(参数类型,...)，与调用点的实参无关
+     */
+    public String getSignatureKey() {
+        String key = signatureKey;
+        if (key == null) {
+            key = psiMethod == null
+                    ? className + "#" + name + "()"
+                    : ReadAction.compute(() -> psiMethod.isValid() ? signatureKey(className, psiMethod) : className + "#" + name + "()");
+            signatureKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * 计算方法的签名标识，必须在读操作中调用
+     */
+    public static String signatureKey(String className, PsiMethod method) {
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            parameters.add(parameter.getType().getCanonicalText());
+        }
+        return className + "#" + method.getName() + parameters;
+    }
+
+    /**
+     * 方法所在源文件的路径，编译类返回 class 文件所在的路径，内存中的文件返回 null
+     */
+    public String getSourceFilePath() {
+        if (!sourceFileLoaded) {
+            sourceFilePath = psiMethod == null ? null : ReadAction.compute(() -> {
+                if (!psiMethod.isValid()) {
+                    return null;
+                }
+                PsiFile file = psiMethod.getContainingFile();
+                VirtualFile virtualFile = file == null ? null : file.getVirtualFile();
+                return virtualFile == null ? null : virtualFile.getPath();
+            });
+            // 先写入路径再标记已加载，其他线程看到标记时一定能读到路径
+            sourceFileLoaded = true;
+        }
+        return sourceFilePath;
+    }
+
     public PsiMethod getPsiMethod() {
         return this.psiMethod;
     }
 
     public Map<String, String> getAttr() {
+        resolveSlices();
         return attr;
     }
 
     public String getAttr(String key) {
-        return this.attr.getOrDefault(key, ""); // 修改点4：返回空字符串代替null
+        return getAttr(key, ""); // 修改点4：返回空字符串代替null
     }
 
     public String getAttr(String key, String defaultValue) {
-        return this.attr.getOrDefault(key, defaultValue);
+        String value = this.attr.get(key);
+        if (value == null && slices != null) {
+            TextSlice slice = slices.remove(key);
+            if (slice != null) {
+                value = slice.toString();
+                this.attr.put(key, value);
+            }
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * 以源码片段形式保存属性，真正读取时才生成字符串
+     */
+    public void putSlice(String key, TextSlice slice) {
+        if (slices == null) {
+            slices = new HashMap<>();
+        }
+        this.attr.remove(key);
+        slices.put(key, slice);
+    }
+
+    private void resolveSlices() {
+        if (slices != null) {
+            for (String key : new java.util.ArrayList<>(slices.keySet())) {
+                getAttr(key);
+            }
+        }
     }
 
     public Map<String, String> put(String key, String value) {
+        if (slices != null) {
+            slices.remove(key);
+        }
         this.attr.put(key, value);
         return attr;
     }
 
     public PsiDocComment getDocComment() {
+        if (lazy && !docCommentLoaded) {
+            docComment = !canLoadSource() ? null : ReadAction.compute(() -> {
+                PsiDocComment comment = psiMethod.getDocComment();
+                if (comment == null && docCommentFallback != null && docCommentFallback.isValid()) {
+                    comment = docCommentFallback.getDocComment();
+                }
+                return comment;
+            });
+            docCommentLoaded = true;
+        }
         return this.docComment;
     }
 
@@ -74,7 +200,21 @@ public class MethodDescription {
     }
 
     public String getText() {
-        return this.text;
+        String current = text;
+        if (lazy && current == null) {
+            current = canLoadSource() ? ReadAction.compute(() -> psiMethod.getText()) : "";
+            text = current;
+        }
+        return current;
+    }
+
+    /**
+     * 方法已失效或属于编译类（且不允许反编译）时不读取源码
+     */
+    private boolean canLoadSource() {
+        return psiMethod != null
+                && ReadAction.compute(() -> psiMethod.isValid())
+                && (allowDecompile || !(psiMethod instanceof PsiCompiledElement));
     }
 
     public String getName() {
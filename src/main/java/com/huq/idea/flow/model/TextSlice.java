@@ -0,0 +1,60 @@
+package com.huq.idea.flow.model;
+
+/**
+ * 共享文本快照上的一段区间，只记录偏移量，不复制字符
+ *
+ * <p>同一个文件的所有片段共享一个 {@link CharSequence}（通常是 {@code FileViewProvider.getContents()}），
+ * 直到真正输出到 UML 或提示词时才通过 {@link #toString()} 生成字符串。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class TextSlice implements CharSequence {
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+
+    public TextSlice(CharSequence source, int start, int end) {
+        if (start < 0 || end > source.length() || start > end) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + source.length());
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStartOffset() {
+        return start;
+    }
+
+    public int getEndOffset() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + length());
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", length=" + length());
+        }
+        return new TextSlice(source, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+}
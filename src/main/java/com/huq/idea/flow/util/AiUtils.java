@@ -12,9 +12,12 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.Proxy;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 /**
  * 多AI模型调用工具类
  * @author huqiang
@@ -25,6 +28,7 @@ public class AiUtils {
     public static final Logger log = Logger.getInstance(AiUtils.class);
     public static ConnectionPool connectionPool = new ConnectionPool(10, 5, TimeUnit.MINUTES);
     private static OkHttpClient client;
+    private static final Gson GSON = new Gson();
 
     // AI模型提供商枚举
     public enum AiProvider {
@@ -93,6 +97,7 @@ public class AiUtils {
         private String content;
         private String errorMessage;
         private long responseTime;
+        private long firstByteTime = -1;
         private Object usage;
 
         public AiResponse(boolean success, String content, String errorMessage, long responseTime, Object usage) {
@@ -109,6 +114,36 @@ public class AiUtils {
         public String getErrorMessage() { return errorMessage; }
         public long getResponseTime() { return responseTime; }
         public Object getUsage() { return usage; }
+
+        /**
+         * 从发出请求到收到响应头（流式调用为第一段内容）的耗时，未知时为 -1
+         */
+        public long getFirstByteTime() { return firstByteTime; }
+
+        AiResponse setFirstByteTime(long firstByteTime) { this.firstByteTime = firstByteTime; return this; }
+
+        /**
+         * 输入 token 数，兼容 OpenAI（prompt_tokens）和 Anthropic、通义千问（input_tokens）的格式，未知时为 -1
+         */
+        public long getInputTokens() { return usageTokens("prompt_tokens", "input_tokens"); }
+
+        /**
+         * 输出 token 数，未知时为 -1
+         */
+        public long getOutputTokens() { return usageTokens("completion_tokens", "output_tokens"); }
+
+        private long usageTokens(String... names) {
+            if (!(usage instanceof JsonObject)) {
+                return -1;
+            }
+            JsonObject object = (JsonObject) usage;
+            for (String name : names) {
+                if (object.has(name) && object.get(name).isJsonPrimitive()) {
+                    return object.get(name).getAsLong();
+                }
+            }
+            return -1;
+        }
     }
 
     public static OkHttpClient getOkHttpClient() {
@@ -166,9 +201,39 @@ public class AiUtils {
     }
 
     /**
-     * OpenAI兼容格式调用（DeepSeek、OpenAI、Moonshot、智谱等）
+     * 流式AI调用，每收到一段内容就回调一次 onDelta，返回完整的响应
+     *
+     * <p>OpenAI 兼容的提供商使用 SSE 流式接口；其他提供商退化为普通调用，完整内容一次性回调。
+     * onDelta 在调用线程中执行，抛出 {@link CancellationException} 时停止读取并原样抛出，用于取消生成。
      */
-    private static AiResponse callOpenAiCompatible(String prompt, AiConfig config, long startTime) throws IOException {
+    public static AiResponse callAiStreaming(String prompt, AiConfig config, Consumer<String> onDelta) {
+        if (config.getProvider() != AiProvider.CUSTOM) {
+            AiResponse response = callAi(prompt, config);
+            if (response.isSuccess() && response.getContent() != null) {
+                onDelta.accept(response.getContent());
+            }
+            return response;
+        }
+        if (config.getApiKey() == null || config.getApiKey().trim().isEmpty()) {
+            log.error(config.getProviderName() + " API key is not configured");
+            return new AiResponse(false, null, "API key not configured", 0, null);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            return streamOpenAiCompatible(prompt, config, onDelta, startTime);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI streaming call failed", e);
+            return new AiResponse(false, null, e.getMessage(), System.currentTimeMillis() - startTime, null);
+        }
+    }
+
+    /**
+     * 构建OpenAI兼容格式的请求
+     */
+    private static Request buildOpenAiCompatibleRequest(String prompt, AiConfig config, boolean stream) {
         JsonObject requestJson = new JsonObject();
         JsonArray messages = new JsonArray();
 
@@ -188,22 +253,88 @@ public class AiUtils {
         requestJson.addProperty("model", config.getModel());
         requestJson.addProperty("temperature", config.getTemperature());
         requestJson.addProperty("max_tokens", config.getMaxTokens());
-        requestJson.addProperty("stream", false);
+        requestJson.addProperty("stream", stream);
 
         log.info("Request to " + config.getProviderName() + ": " + requestJson.toString());
 
         MediaType mediaType = MediaType.parse("application/json");
         RequestBody body = RequestBody.create(mediaType, requestJson.toString());
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(config.getApiUrl())
                 .method("POST", body)
                 .addHeader("Content-Type", "application/json")
-                .addHeader("Accept", "application/json")
+                .addHeader("Accept", stream ? "text/event-stream" : "application/json")
                 .addHeader("Authorization", "Bearer " + config.getApiKey())
                 .build();
+    }
+
+    /**
+     * 读取 SSE 响应，每行 "data: {...}" 中的 choices[0].delta.content 是一段增量内容，"data: [DONE]" 表示结束
+     */
+    private static AiResponse streamOpenAiCompatible(String prompt, AiConfig config, Consumer<String> onDelta,
+                                                     long startTime) throws IOException {
+        Request request = buildOpenAiCompatibleRequest(prompt, config, true);
+        try (Response response = getOkHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                String responseBody = response.body().string();
+                return new AiResponse(false, null, "HTTP " + response.code() + ": " + responseBody,
+                        System.currentTimeMillis() - startTime, null);
+            }
+
+            StringBuilder content = new StringBuilder();
+            Object usage = null;
+            long firstByteTime = -1;
+            BufferedReader reader = new BufferedReader(response.body().charStream());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String data = line.substring(5).trim();
+                if (data.equals("[DONE]")) {
+                    break;
+                }
+                if (data.isEmpty()) {
+                    continue;
+                }
+                JsonObject chunk = GSON.fromJson(data, JsonObject.class);
+                if (chunk.has("usage") && chunk.get("usage").isJsonObject()) {
+                    usage = chunk.getAsJsonObject("usage");
+                }
+                JsonArray choices = chunk.getAsJsonArray("choices");
+                if (choices == null || choices.size() == 0) {
+                    continue;
+                }
+                JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+                if (delta == null || !delta.has("content") || delta.get("content").isJsonNull()) {
+                    continue;
+                }
+                String text = delta.get("content").getAsString();
+                if (!text.isEmpty()) {
+                    if (firstByteTime < 0) {
+                        firstByteTime = System.currentTimeMillis() - startTime;
+                    }
+                    content.append(text);
+                    onDelta.accept(text);
+                }
+            }
+
+            long responseTime = System.currentTimeMillis() - startTime;
+            log.info(config.getProviderName() + " 消耗 token: " + (usage != null ? usage.toString() : "N/A") +
+                    ", 耗时：" + responseTime + " ms");
+            return new AiResponse(true, content.toString(), null, responseTime, usage).setFirstByteTime(firstByteTime);
+        }
+    }
+
+    /**
+     * OpenAI兼容格式调用（DeepSeek、OpenAI、Moonshot、智谱等）
+     */
+    private static AiResponse callOpenAiCompatible(String prompt, AiConfig config, long startTime) throws IOException {
+        Request request = buildOpenAiCompatibleRequest(prompt, config, false);
 
         Response response = getOkHttpClient().newCall(request).execute();
+        long firstByteTime = System.currentTimeMillis() - startTime;
         String responseBody = response.body().string();
         log.info("Response from " + config.getProviderName() + ": " + responseBody);
 
@@ -231,7 +362,7 @@ public class AiUtils {
         log.info(config.getProviderName() + " 消耗 token: " + (usage != null ? usage.toString() : "N/A") +
                 ", 耗时：" + responseTime + " ms");
 
-        return new AiResponse(true, content, null, responseTime, usage);
+        return new AiResponse(true, content, null, responseTime, usage).setFirstByteTime(firstByteTime);
     }
 
     /**
@@ -263,6 +394,7 @@ public class AiUtils {
                 .build();
 
         Response response = getOkHttpClient().newCall(request).execute();
+        long firstByteTime = System.currentTimeMillis() - startTime;
         String responseBody = response.body().string();
         System.out.println(responseBody);
 
@@ -279,7 +411,7 @@ public class AiUtils {
                 .get("text").getAsString();
 
         return new AiResponse(true, content, null, System.currentTimeMillis() - startTime,
-                jsonObject.has("usage") ? jsonObject.get("usage") : null);
+                jsonObject.has("usage") ? jsonObject.get("usage") : null).setFirstByteTime(firstByteTime);
     }
 
 
@@ -321,6 +453,7 @@ public class AiUtils {
                 .build();
 
         Response response = getOkHttpClient().newCall(request).execute();
+        long firstByteTime = System.currentTimeMillis() - startTime;
         String responseBody = response.body().string();
         System.out.println(responseBody);
 
@@ -337,11 +470,11 @@ public class AiUtils {
                     .get("content").getAsString();
 
             return new AiResponse(true, content, null, System.currentTimeMillis() - startTime,
-                    jsonObject.has("usage") ? jsonObject.get("usage") : null);
+                    jsonObject.has("usage") ? jsonObject.get("usage") : null).setFirstByteTime(firstByteTime);
         }catch (Exception e) {
             log.error("AI call failed, responseBody : \n "+responseBody, e);
             return new AiResponse(true, responseBody, null, System.currentTimeMillis() - startTime,
-                    jsonObject.has("usage") ? jsonObject.get("usage") : null);
+                    jsonObject.has("usage") ? jsonObject.get("usage") : null).setFirstByteTime(firstByteTime);
         }
 
     }
@@ -0,0 +1,143 @@
+package com.huq.idea.flow.util;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.swing.mxGraphComponent;
+
+import javax.swing.*;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 估算 Swing 面板占用的内存、生成缩略图以及释放面板中的图像和图形组件
+ *
+ * <p>估算只统计主要的部分：图标图像按 ARGB 每像素 4 字节，JGraphX 图形按节点和边数量，文本组件按字符数，
+ * 用于决定工具窗口中保留哪些图表，不是精确的堆占用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class ComponentFootprint {
+
+    // 每个 JGraphX 单元格（节点或边）及其视图状态的估算大小
+    static final long BYTES_PER_GRAPH_CELL = 2048;
+    // 面板本身和普通组件的估算大小
+    static final long BYTES_PER_PANEL = 16 * 1024;
+
+    private ComponentFootprint() {
+    }
+
+    /**
+     * 估算组件树占用的内存（字节）
+     */
+    public static long estimateBytes(Component root) {
+        long bytes = BYTES_PER_PANEL;
+        for (Component component : walk(root)) {
+            if (component instanceof JLabel) {
+                bytes += iconBytes(((JLabel) component).getIcon());
+            } else if (component instanceof mxGraphComponent) {
+                bytes += graphCellCount((mxGraphComponent) component) * BYTES_PER_GRAPH_CELL;
+            } else if (component instanceof JTextComponent) {
+                bytes += ((JTextComponent) component).getDocument().getLength() * 2L;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 以组件中最大的图像生成缩略图，没有图像时返回 null
+     */
+    public static Image thumbnail(Component root, int maxSize) {
+        Image largest = null;
+        long largestArea = 0;
+        for (Component component : walk(root)) {
+            if (component instanceof JLabel && ((JLabel) component).getIcon() instanceof ImageIcon) {
+                ImageIcon icon = (ImageIcon) ((JLabel) component).getIcon();
+                long area = (long) icon.getIconWidth() * icon.getIconHeight();
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = icon.getImage();
+                }
+            }
+        }
+        if (largest == null) {
+            return null;
+        }
+        int width = largest.getWidth(null);
+        int height = largest.getHeight(null);
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int thumbWidth = Math.max(1, (int) Math.round(width * scale));
+        int thumbHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage thumbnail = new BufferedImage(thumbWidth, thumbHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(largest, 0, 0, thumbWidth, thumbHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * 释放组件树：清空图标图像、图形模型，释放实现了 {@link Disposable} 的组件，并移除所有子组件
+     */
+    public static void release(Component root) {
+        for (Component component : walk(root)) {
+            if (component instanceof JLabel) {
+                Icon icon = ((JLabel) component).getIcon();
+                if (icon instanceof ImageIcon) {
+                    ((ImageIcon) icon).getImage().flush();
+                }
+                ((JLabel) component).setIcon(null);
+            } else if (component instanceof mxGraphComponent) {
+                mxIGraphModel model = ((mxGraphComponent) component).getGraph().getModel();
+                if (model instanceof mxGraphModel) {
+                    ((mxGraphModel) model).clear();
+                }
+            }
+            if (component instanceof Disposable) {
+                Disposer.dispose((Disposable) component);
+            }
+        }
+        if (root instanceof Container) {
+            ((Container) root).removeAll();
+        }
+    }
+
+    private static long iconBytes(Icon icon) {
+        return icon instanceof ImageIcon ? (long) icon.getIconWidth() * icon.getIconHeight() * 4 : 0;
+    }
+
+    private static int graphCellCount(mxGraphComponent graphComponent) {
+        mxIGraphModel model = graphComponent.getGraph().getModel();
+        return model instanceof mxGraphModel && ((mxGraphModel) model).getCells() != null
+                ? ((mxGraphModel) model).getCells().size() : 0;
+    }
+
+    /**
+     * 深度优先遍历组件树，包括根组件
+     */
+    private static List<Component> walk(Component root) {
+        List<Component> components = new ArrayList<>();
+        Deque<Component> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Component component = stack.pop();
+            components.add(component);
+            if (component instanceof Container) {
+                for (Component child : ((Container) component).getComponents()) {
+                    stack.push(child);
+                }
+            }
+        }
+        return components;
+    }
+}
@@ -0,0 +1,550 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CompactFlowGraph;
+import com.huq.idea.flow.model.MethodDescription;
+import com.mxgraph.util.mxConstants;
+import com.mxgraph.util.mxUtils;
+import com.mxgraph.view.mxGraph;
+import com.mxgraph.view.mxStylesheet;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DirectedPseudograph;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 无界面的流程图导出
+ *
+ * <p>直接对 {@link CompactFlowGraph} 或 {@link CallStack} 做分层布局，再把节点和边写成 SVG 文本或 PNG 图片，
+ * 不创建 mxGraphComponent 等 Swing 组件，也不需要在 EDT 上执行，可以在后台任务和批量任务中并发调用。
+ * 节点尺寸和配色与 {@link JGraphXRenderer} 的样式表保持一致。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class GraphExporter {
+
+    // 导出时的外边距
+    private static final double PADDING = 20;
+    private static final int FONT_SIZE = 12;
+    private static final int EDGE_FONT_SIZE = 11;
+    private static final double ARROW_SIZE = 8;
+    // PNG 的最大像素数，超出时整体缩小，避免超大图耗尽内存
+    private static final long MAX_PNG_PIXELS = 40_000_000L;
+    // PNG 压缩质量，0 为最高压缩，1 为不压缩
+    private static final float PNG_COMPRESSION_QUALITY = 0.5f;
+
+    // 样式表只读，所有导出线程共享
+    private static final mxStylesheet STYLESHEET = createStylesheet();
+
+    private GraphExporter() {
+    }
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        SVG, PNG;
+
+        /**
+         * 根据文件扩展名确定格式，无法识别时返回 null
+         */
+        public static Format fromFileName(String fileName) {
+            String lower = fileName == null ? "" : fileName.toLowerCase();
+            if (lower.endsWith(".svg")) {
+                return SVG;
+            } else if (lower.endsWith(".png")) {
+                return PNG;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 对 JSON 流程图数据做布局，边的端点直接使用 {@link CompactFlowGraph} 中的节点下标
+     *
+     * <p>JSON 文本可以用 {@link CompactFlowGraph#fromJson(String)} 直接解析为紧凑表示
+     */
+    public static Diagram layout(CompactFlowGraph compact) {
+        Graph<Box, Link> graph = new DirectedPseudograph<>(null, null, false);
+        Box[] boxes = new Box[compact.getNodeCount()];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = new Box(compact.getLabel(i), JGraphXRenderer.determineNodeStyleFromType(compact.getType(i)));
+            graph.addVertex(boxes[i]);
+        }
+        for (int e = 0; e < compact.getEdgeCount(); e++) {
+            graph.addEdge(boxes[compact.getEdgeSource(e)], boxes[compact.getEdgeTarget(e)], new Link(compact.getEdgeLabel(e)));
+        }
+        return layout(graph);
+    }
+
+    /**
+     * 对整个调用栈做布局，超出展开上限的实现显示为 "+N more" 节点
+     */
+    public static Diagram layout(CallStack root) {
+        Graph<Box, Link> graph = new DirectedPseudograph<>(null, null, false);
+        if (root != null && root.getMethodDescription() != null) {
+            // 使用显式栈遍历，很深的调用链也不会栈溢出
+            List<CallStack> calls = new ArrayList<>();
+            List<Box> boxes = new ArrayList<>();
+            calls.add(root);
+            boxes.add(addCall(graph, root.getMethodDescription()));
+            while (!calls.isEmpty()) {
+                CallStack call = calls.remove(calls.size() - 1);
+                Box box = boxes.remove(boxes.size() - 1);
+                for (CallStack child : call.getChildren()) {
+                    MethodDescription methodDesc = child.getMethodDescription();
+                    if (methodDesc == null) {
+                        continue;
+                    }
+                    Box childBox = addCall(graph, methodDesc);
+                    String parameters = methodDesc.getAttr("parameters", "");
+                    graph.addEdge(box, childBox, new Link(parameters.isEmpty() ? "" : "(" + parameters + ")"));
+                    calls.add(child);
+                    boxes.add(childBox);
+                }
+                if (!call.getOmittedImplementations().isEmpty()) {
+                    Box more = new Box("+" + call.getOmittedImplementations().size() + " more", "default");
+                    graph.addVertex(more);
+                    graph.addEdge(box, more, new Link(""));
+                }
+            }
+        }
+        return layout(graph);
+    }
+
+    private static Box addCall(Graph<Box, Link> graph, MethodDescription methodDesc) {
+        Box box = new Box(LazyCallGraph.labelFor(methodDesc), LazyCallGraph.styleFor(methodDesc.getClassName()));
+        graph.addVertex(box);
+        return box;
+    }
+
+    private static Diagram layout(Graph<Box, Link> graph) {
+        SugiyamaLayout.Result<Box, Link> result = new SugiyamaLayout<>(graph)
+                .setNodeSize(box -> JGraphXRenderer.NODE_WIDTH, box -> JGraphXRenderer.NODE_HEIGHT)
+                .setLayerSpacing(JGraphXRenderer.NODE_SPACING)
+                .setNodeSpacing(JGraphXRenderer.NODE_SPACING)
+                .setOrigin(PADDING, PADDING)
+                .layout();
+
+        double width = PADDING;
+        double height = PADDING;
+        for (Map.Entry<Box, Rectangle2D> entry : result.getBounds().entrySet()) {
+            Rectangle2D bounds = entry.getValue();
+            entry.getKey().bounds = bounds;
+            width = Math.max(width, bounds.getMaxX());
+            height = Math.max(height, bounds.getMaxY());
+        }
+
+        List<Link> links = new ArrayList<>(graph.edgeSet().size());
+        for (Link link : graph.edgeSet()) {
+            Box source = graph.getEdgeSource(link);
+            Box target = graph.getEdgeTarget(link);
+            if (source.bounds == null || target.bounds == null) {
+                continue;
+            }
+            link.points = source == target ? selfLoopPoints(source.bounds) : route(source.bounds, target.bounds, result.getBendPoints(link));
+            for (Point2D point : link.points) {
+                width = Math.max(width, point.getX());
+                height = Math.max(height, point.getY());
+            }
+            links.add(link);
+        }
+        return new Diagram(new ArrayList<>(result.getBounds().keySet()), links,
+                Math.ceil(width + PADDING), Math.ceil(height + PADDING));
+    }
+
+    /**
+     * 边从源节点的下边（或上边，回边时）出发，依次经过折点，到达目标节点的上边（或下边）
+     */
+    private static List<Point2D> route(Rectangle2D source, Rectangle2D target, List<Point2D> bends) {
+        List<Point2D> points = new ArrayList<>(bends.size() + 2);
+        Point2D next = bends.isEmpty() ? new Point2D.Double(target.getCenterX(), target.getCenterY()) : bends.get(0);
+        Point2D previous = bends.isEmpty() ? new Point2D.Double(source.getCenterX(), source.getCenterY()) : bends.get(bends.size() - 1);
+        points.add(new Point2D.Double(source.getCenterX(), next.getY() < source.getCenterY() ? source.getMinY() : source.getMaxY()));
+        points.addAll(bends);
+        points.add(new Point2D.Double(target.getCenterX(), previous.getY() > target.getCenterY() ? target.getMaxY() : target.getMinY()));
+        return points;
+    }
+
+    private static List<Point2D> selfLoopPoints(Rectangle2D bounds) {
+        double x = bounds.getMaxX();
+        double offset = bounds.getHeight() / 4;
+        return List.of(
+                new Point2D.Double(x, bounds.getCenterY() - offset),
+                new Point2D.Double(x + 20, bounds.getCenterY() - offset),
+                new Point2D.Double(x + 20, bounds.getCenterY() + offset),
+                new Point2D.Double(x, bounds.getCenterY() + offset));
+    }
+
+    /**
+     * 按格式写出已布局的图，不关闭输出流
+     */
+    public static void write(Diagram diagram, Format format, OutputStream out) throws IOException {
+        if (format == Format.PNG) {
+            writePng(diagram, out);
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writeSvg(diagram, writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * 布局并导出到文件，格式由文件扩展名决定（默认 SVG）
+     */
+    public static void export(CompactFlowGraph graphData, Path file) throws IOException {
+        export(layout(graphData), file);
+    }
+
+    /**
+     * 布局并导出到文件，格式由文件扩展名决定（默认 SVG）
+     */
+    public static void export(CallStack root, Path file) throws IOException {
+        export(layout(root), file);
+    }
+
+    private static void export(Diagram diagram, Path file) throws IOException {
+        Format format = Format.fromFileName(file.getFileName().toString());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(diagram, format == null ? Format.SVG : format, out);
+        }
+    }
+
+    /**
+     * 以流的方式逐个写出节点和边的 SVG 元素，不在内存中拼接整个文档
+     */
+    public static void writeSvg(Diagram diagram, Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        out.write(number(diagram.width));
+        out.write("\" height=\"");
+        out.write(number(diagram.height));
+        out.write("\" viewBox=\"0 0 ");
+        out.write(number(diagram.width));
+        out.write(' ');
+        out.write(number(diagram.height));
+        out.write("\" font-family=\"SansSerif\" font-size=\"" + FONT_SIZE + "\">\n");
+        out.write("<defs><marker id=\"arrow\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"" + ARROW_SIZE
+                + "\" markerHeight=\"" + ARROW_SIZE + "\" markerUnits=\"userSpaceOnUse\" orient=\"auto\">"
+                + "<path d=\"M0,0 L10,5 L0,10 z\" fill=\"" + colorOf(styleOf("edge"), mxConstants.STYLE_STROKECOLOR, "#333333")
+                + "\"/></marker></defs>\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n");
+
+        Map<String, Object> edgeStyle = styleOf("edge");
+        String edgeColor = colorOf(edgeStyle, mxConstants.STYLE_STROKECOLOR, "#333333");
+        for (Link link : diagram.links) {
+            out.write("<polyline fill=\"none\" stroke=\"");
+            out.write(edgeColor);
+            out.write("\" marker-end=\"url(#arrow)\" points=\"");
+            for (int i = 0; i < link.points.size(); i++) {
+                Point2D point = link.points.get(i);
+                if (i > 0) {
+                    out.write(' ');
+                }
+                out.write(number(point.getX()));
+                out.write(',');
+                out.write(number(point.getY()));
+            }
+            out.write("\"/>\n");
+            if (link.label != null && !link.label.isEmpty()) {
+                Point2D anchor = labelAnchor(link);
+                out.write("<text font-size=\"" + EDGE_FONT_SIZE + "\" x=\"");
+                out.write(number(anchor.getX()));
+                out.write("\" y=\"");
+                out.write(number(anchor.getY()));
+                out.write("\">");
+                escape(out, link.label);
+                out.write("</text>\n");
+            }
+        }
+
+        for (Box box : diagram.boxes) {
+            Map<String, Object> style = styleOf(box.style);
+            Rectangle2D bounds = box.bounds;
+            out.write("<rect rx=\"6\" ry=\"6\" x=\"");
+            out.write(number(bounds.getX()));
+            out.write("\" y=\"");
+            out.write(number(bounds.getY()));
+            out.write("\" width=\"");
+            out.write(number(bounds.getWidth()));
+            out.write("\" height=\"");
+            out.write(number(bounds.getHeight()));
+            out.write("\" fill=\"");
+            out.write(colorOf(style, mxConstants.STYLE_FILLCOLOR, "#F5F5F5"));
+            out.write("\" stroke=\"");
+            out.write(colorOf(style, mxConstants.STYLE_STROKECOLOR, "#333333"));
+            out.write("\" stroke-width=\"");
+            out.write(number(mxUtils.getFloat(style, mxConstants.STYLE_STROKEWIDTH, 1)));
+            if (mxUtils.isTrue(style, mxConstants.STYLE_DASHED, false)) {
+                out.write("\" stroke-dasharray=\"3 3");
+            }
+            out.write("\"/>\n");
+            String label = fitLabel(box.label, bounds.getWidth());
+            if (!label.isEmpty()) {
+                out.write("<text text-anchor=\"middle\" dominant-baseline=\"central\" x=\"");
+                out.write(number(bounds.getCenterX()));
+                out.write("\" y=\"");
+                out.write(number(bounds.getCenterY()));
+                out.write("\" fill=\"");
+                out.write(colorOf(style, mxConstants.STYLE_FONTCOLOR, "#000000"));
+                out.write("\">");
+                escape(out, label);
+                out.write("</text>\n");
+            }
+        }
+        out.write("</svg>\n");
+    }
+
+    /**
+     * 在内存中的 BufferedImage 上绘制并编码为 PNG，不依赖任何已显示的组件
+     */
+    public static void writePng(Diagram diagram, OutputStream out) throws IOException {
+        double scale = Math.min(1.0, Math.sqrt((double) MAX_PNG_PIXELS / Math.max(1.0, diagram.width * diagram.height)));
+        int width = Math.max(1, (int) Math.ceil(diagram.width * scale));
+        int height = Math.max(1, (int) Math.ceil(diagram.height * scale));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, width, height);
+            g2.scale(scale, scale);
+            paint(g2, diagram);
+        } finally {
+            g2.dispose();
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) {
+            throw new IOException("No PNG writer available");
+        }
+        ImageWriter writer = writers.next();
+        // 流程图大部分是纯色背景，中等压缩级别的文件大小与默认级别相当，编码时间约减少一半
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        // 使用内存缓存，避免 ImageIO 默认在临时目录创建缓存文件
+        try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void paint(Graphics2D g2, Diagram diagram) {
+        Map<String, Object> edgeStyle = styleOf("edge");
+        Color edgeColor = mxUtils.parseColor(colorOf(edgeStyle, mxConstants.STYLE_STROKECOLOR, "#333333"));
+        Font edgeFont = new Font(Font.SANS_SERIF, Font.PLAIN, EDGE_FONT_SIZE);
+        g2.setStroke(new BasicStroke(1f));
+        g2.setFont(edgeFont);
+        for (Link link : diagram.links) {
+            Path2D path = new Path2D.Double();
+            path.moveTo(link.points.get(0).getX(), link.points.get(0).getY());
+            for (int i = 1; i < link.points.size(); i++) {
+                path.lineTo(link.points.get(i).getX(), link.points.get(i).getY());
+            }
+            g2.setColor(edgeColor);
+            g2.draw(path);
+            fillArrow(g2, link.points.get(link.points.size() - 2), link.points.get(link.points.size() - 1));
+            if (link.label != null && !link.label.isEmpty()) {
+                Point2D anchor = labelAnchor(link);
+                g2.setColor(Color.BLACK);
+                g2.drawString(link.label, (float) anchor.getX(), (float) anchor.getY());
+            }
+        }
+
+        g2.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, FONT_SIZE));
+        FontMetrics metrics = g2.getFontMetrics();
+        for (Box box : diagram.boxes) {
+            Map<String, Object> style = styleOf(box.style);
+            Rectangle2D bounds = box.bounds;
+            Shape shape = new RoundRectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight(), 12, 12);
+            g2.setColor(mxUtils.parseColor(colorOf(style, mxConstants.STYLE_FILLCOLOR, "#F5F5F5")));
+            g2.fill(shape);
+            float strokeWidth = mxUtils.getFloat(style, mxConstants.STYLE_STROKEWIDTH, 1);
+            g2.setStroke(mxUtils.isTrue(style, mxConstants.STYLE_DASHED, false)
+                    ? new BasicStroke(strokeWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f, new float[]{3f, 3f}, 0f)
+                    : new BasicStroke(strokeWidth));
+            g2.setColor(mxUtils.parseColor(colorOf(style, mxConstants.STYLE_STROKECOLOR, "#333333")));
+            g2.draw(shape);
+
+            String label = fitLabel(box.label, bounds.getWidth());
+            if (!label.isEmpty()) {
+                g2.setColor(mxUtils.parseColor(colorOf(style, mxConstants.STYLE_FONTCOLOR, "#000000")));
+                float x = (float) (bounds.getCenterX() - metrics.stringWidth(label) / 2.0);
+                float y = (float) (bounds.getCenterY() - metrics.getHeight() / 2.0 + metrics.getAscent());
+                g2.drawString(label, x, y);
+            }
+        }
+    }
+
+    private static void fillArrow(Graphics2D g2, Point2D from, Point2D to) {
+        double angle = Math.atan2(to.getY() - from.getY(), to.getX() - from.getX());
+        Path2D arrow = new Path2D.Double();
+        arrow.moveTo(to.getX(), to.getY());
+        arrow.lineTo(to.getX() - ARROW_SIZE * Math.cos(angle - Math.PI / 6), to.getY() - ARROW_SIZE * Math.sin(angle - Math.PI / 6));
+        arrow.lineTo(to.getX() - ARROW_SIZE * Math.cos(angle + Math.PI / 6), to.getY() - ARROW_SIZE * Math.sin(angle + Math.PI / 6));
+        arrow.closePath();
+        g2.fill(arrow);
+    }
+
+    /**
+     * 边标签放在第一段的中点右侧
+     */
+    private static Point2D labelAnchor(Link link) {
+        Point2D from = link.points.get(0);
+        Point2D to = link.points.get(1);
+        return new Point2D.Double((from.getX() + to.getX()) / 2 + 5, (from.getY() + to.getY()) / 2 - 5);
+    }
+
+    /**
+     * 按字符宽度估算截断过长的节点标签，SVG 和 PNG 使用相同的规则，两种格式的文字一致
+     */
+    static String fitLabel(String label, double width) {
+        if (label == null) {
+            return "";
+        }
+        double budget = (width - 16) / (FONT_SIZE * 0.6);
+        double used = 0;
+        for (int i = 0; i < label.length(); i++) {
+            // 中文等宽字符约占两个西文字符
+            used += label.charAt(i) > 0x2E80 ? 2 : 1;
+            if (used > budget) {
+                return label.substring(0, Math.max(0, i - 1)) + "…";
+            }
+        }
+        return label;
+    }
+
+    /**
+     * 转义 XML 文本，去掉 XML 1.0 不允许的控制字符
+     */
+    static void escape(Writer out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.write("&lt;");
+                case '>' -> out.write("&gt;");
+                case '&' -> out.write("&amp;");
+                case '"' -> out.write("&quot;");
+                case '\'' -> out.write("&apos;");
+                default -> {
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String number(double value) {
+        long rounded = Math.round(value);
+        if (Math.abs(value - rounded) < 0.05) {
+            return Long.toString(rounded);
+        }
+        return Double.toString(Math.round(value * 10) / 10.0);
+    }
+
+    private static Map<String, Object> styleOf(String name) {
+        Map<String, Object> style = STYLESHEET.getStyles().get(name);
+        return style != null ? style : STYLESHEET.getDefaultVertexStyle();
+    }
+
+    private static String colorOf(Map<String, Object> style, String key, String defaultColor) {
+        return mxUtils.getString(style, key, defaultColor);
+    }
+
+    private static mxStylesheet createStylesheet() {
+        mxGraph graph = new mxGraph();
+        JGraphXRenderer.configureGraphStyles(graph);
+        return graph.getStylesheet();
+    }
+
+    /**
+     * 布局完成的图，可以多次写出为不同格式
+     */
+    public static final class Diagram {
+        private final List<Box> boxes;
+        private final List<Link> links;
+        private final double width;
+        private final double height;
+
+        private Diagram(List<Box> boxes, List<Link> links, double width, double height) {
+            this.boxes = Collections.unmodifiableList(boxes);
+            this.links = Collections.unmodifiableList(links);
+            this.width = width;
+            this.height = height;
+        }
+
+        public double getWidth() {
+            return width;
+        }
+
+        public double getHeight() {
+            return height;
+        }
+
+        public int getNodeCount() {
+            return boxes.size();
+        }
+
+        public int getEdgeCount() {
+            return links.size();
+        }
+    }
+
+    /**
+     * 布局用的节点，每个节点都是独立的对象
+     */
+    private static final class Box {
+        private final String label;
+        private final String style;
+        private Rectangle2D bounds;
+
+        private Box(String label, String style) {
+            this.label = label;
+            this.style = style;
+        }
+    }
+
+    /**
+     * 布局用的边，每条边都是独立的对象，允许两个节点之间有多条边
+     */
+    private static final class Link {
+        private final String label;
+        private List<Point2D> points;
+
+        private Link(String label) {
+            this.label = label;
+        }
+    }
+}
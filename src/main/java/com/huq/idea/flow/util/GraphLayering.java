@@ -0,0 +1,259 @@
+package com.huq.idea.flow.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 有向图分层算法，时间复杂度 O(V+E)
+ *
+ * <p>步骤：
+ * <ol>
+ *     <li>用迭代版 Tarjan 算法求强连通分量，把环缩成一个点，得到有向无环图</li>
+ *     <li>在每个强连通分量内部，从入口节点做 BFS，得到节点相对分量起点的偏移，使循环体仍然纵向展开</li>
+ *     <li>对缩点后的图做一次拓扑排序（Kahn），按最长路径计算每个分量的起始层级</li>
+ * </ol>
+ * 结果只依赖于顶点的迭代顺序，相同输入总是得到相同输出。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class GraphLayering {
+
+    private GraphLayering() {
+    }
+
+    /**
+     * 计算每个顶点的层级
+     *
+     * @param vertices   所有顶点，迭代顺序决定结果的稳定性
+     * @param successors 顶点的后继，不在 vertices 中的后继会被忽略
+     * @return 顶点到层级的映射，层级从 0 开始，保持 vertices 的迭代顺序
+     */
+    public static <V> Map<V, Integer> computeLevels(Collection<V> vertices, Function<V, ? extends Iterable<V>> successors) {
+        Map<V, Integer> index = new HashMap<>(vertices.size() * 2);
+        Object[] byIndex = new Object[vertices.size()];
+        int n = 0;
+        for (V vertex : vertices) {
+            if (index.putIfAbsent(vertex, n) == null) {
+                byIndex[n++] = vertex;
+            }
+        }
+
+        // 构建 CSR 邻接表
+        int[] edgeStart = new int[n + 1];
+        int[][] adjacency = new int[n][];
+        int edgeCount = 0;
+        int[] buffer = new int[16];
+        for (int v = 0; v < n; v++) {
+            @SuppressWarnings("unchecked")
+            V vertex = (V) byIndex[v];
+            int count = 0;
+            for (V successor : successors.apply(vertex)) {
+                Integer w = index.get(successor);
+                if (w != null) {
+                    if (count == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, count * 2);
+                    }
+                    buffer[count++] = w;
+                }
+            }
+            adjacency[v] = Arrays.copyOf(buffer, count);
+            edgeCount += count;
+        }
+        int[] targets = new int[edgeCount];
+        for (int v = 0, pos = 0; v < n; v++) {
+            edgeStart[v] = pos;
+            System.arraycopy(adjacency[v], 0, targets, pos, adjacency[v].length);
+            pos += adjacency[v].length;
+        }
+        edgeStart[n] = edgeCount;
+
+        int[] levels = computeLevels(n, edgeStart, targets);
+
+        Map<V, Integer> result = new LinkedHashMap<>(n * 2);
+        for (int v = 0; v < n; v++) {
+            @SuppressWarnings("unchecked")
+            V vertex = (V) byIndex[v];
+            result.put(vertex, levels[v]);
+        }
+        return result;
+    }
+
+    /**
+     * 基于 CSR 邻接表计算层级：顶点 v 的后继为 targets[edgeStart[v] .. edgeStart[v+1])
+     */
+    public static int[] computeLevels(int n, int[] edgeStart, int[] targets) {
+        int[] component = stronglyConnectedComponents(n, edgeStart, targets);
+        int componentCount = 0;
+        for (int c : component) {
+            componentCount = Math.max(componentCount, c + 1);
+        }
+
+        // 找出每个分量的入口：第一个有外部前驱的顶点，没有则取编号最小的顶点
+        int[] entry = new int[componentCount];
+        Arrays.fill(entry, -1);
+        int[] inDegree = new int[componentCount];
+        for (int v = 0; v < n; v++) {
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                int w = targets[e];
+                if (component[v] != component[w]) {
+                    inDegree[component[w]]++;
+                    if (entry[component[w]] == -1 || w < entry[component[w]]) {
+                        entry[component[w]] = w;
+                    }
+                }
+            }
+        }
+        int[] firstMember = new int[componentCount];
+        Arrays.fill(firstMember, -1);
+        for (int v = 0; v < n; v++) {
+            if (firstMember[component[v]] == -1) {
+                firstMember[component[v]] = v;
+            }
+        }
+
+        // 分量内部 BFS，计算偏移
+        int[] offset = new int[n];
+        Arrays.fill(offset, -1);
+        int[] queue = new int[n];
+        for (int c = 0; c < componentCount; c++) {
+            int start = entry[c] != -1 ? entry[c] : firstMember[c];
+            int head = 0;
+            int tail = 0;
+            offset[start] = 0;
+            queue[tail++] = start;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                    int w = targets[e];
+                    if (component[w] == c && offset[w] == -1) {
+                        offset[w] = offset[v] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+        }
+
+        // 把顶点按分量分组，便于拓扑遍历时访问分量的出边
+        int[] memberStart = new int[componentCount + 1];
+        for (int v = 0; v < n; v++) {
+            memberStart[component[v] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberStart[c + 1] += memberStart[c];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(memberStart, componentCount);
+        for (int v = 0; v < n; v++) {
+            members[fill[component[v]]++] = v;
+        }
+
+        // Kahn 拓扑排序 + 最长路径；初始队列按分量内最小顶点编号排序，保证稳定
+        int[] base = new int[componentCount];
+        ArrayDeque<Integer> ready = new ArrayDeque<>();
+        Integer[] roots = new Integer[componentCount];
+        int rootCount = 0;
+        for (int c = 0; c < componentCount; c++) {
+            if (inDegree[c] == 0) {
+                roots[rootCount++] = c;
+            }
+        }
+        Arrays.sort(roots, 0, rootCount, (a, b) -> Integer.compare(firstMember[a], firstMember[b]));
+        for (int i = 0; i < rootCount; i++) {
+            ready.add(roots[i]);
+        }
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                int v = members[m];
+                int level = base[c] + offset[v];
+                for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                    int d = component[targets[e]];
+                    if (d != c) {
+                        base[d] = Math.max(base[d], level + 1);
+                        if (--inDegree[d] == 0) {
+                            ready.add(d);
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] levels = new int[n];
+        for (int v = 0; v < n; v++) {
+            levels[v] = base[component[v]] + offset[v];
+        }
+        return levels;
+    }
+
+    /**
+     * 迭代版 Tarjan 强连通分量算法，避免大图递归导致栈溢出
+     *
+     * @return 每个顶点所属分量的编号
+     */
+    static int[] stronglyConnectedComponents(int n, int[] edgeStart, int[] targets) {
+        int[] indexOf = new int[n];
+        int[] lowLink = new int[n];
+        int[] component = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(indexOf, -1);
+
+        int[] stack = new int[n];
+        int stackSize = 0;
+        // 模拟递归的调用栈：顶点和下一条待访问的边
+        int[] callVertex = new int[n];
+        int[] callEdge = new int[n];
+
+        int nextIndex = 0;
+        int componentCount = 0;
+        for (int root = 0; root < n; root++) {
+            if (indexOf[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callVertex[0] = root;
+            callEdge[0] = edgeStart[root];
+            indexOf[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int v = callVertex[depth];
+                if (callEdge[depth] < edgeStart[v + 1]) {
+                    int w = targets[callEdge[depth]++];
+                    if (indexOf[w] == -1) {
+                        indexOf[w] = lowLink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        depth++;
+                        callVertex[depth] = w;
+                        callEdge[depth] = edgeStart[w];
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], indexOf[w]);
+                    }
+                } else {
+                    if (lowLink[v] == indexOf[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            component[w] = componentCount;
+                        } while (w != v);
+                        componentCount++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callVertex[depth];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+}
@@ -1,5 +1,6 @@
 package com.huq.idea.flow.util;
 
+import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.FlowGraphData;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
@@ -7,16 +8,7 @@ import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.mxgraph.layout.hierarchical.mxHierarchicalLayout;
-import com.mxgraph.model.mxGeometry;
-import com.mxgraph.swing.mxGraphComponent;
-import com.mxgraph.util.mxConstants;
-import com.mxgraph.util.mxRectangle;
-import com.mxgraph.view.mxGraph;
-import com.mxgraph.view.mxPerimeter;
-import com.mxgraph.view.mxStylesheet;
 import org.jgrapht.Graph;
-import org.jgrapht.ext.JGraphXAdapter;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.builder.GraphTypeBuilder;
 
@@ -31,11 +23,13 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * 使用JGraphT实现的流程图渲染器
@@ -55,87 +49,116 @@ public class JGraphTRenderer {
      */
     public static JComponent createFlowDiagramComponent(String jsonData, Project project) {
         FlowGraphData graphData = FlowGraphData.fromJson(jsonData);
-        return new FlowGraphPanel(graphData, project);
+        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+        return new FlowGraphPanel(graphData, LayoutCache.getInstance(), settings.getLodLabelZoomPercent(),
+                settings.getLodClusterZoomPercent(), node -> navigateToCode(project, node));
     }
 
     /**
-     * 流程图面板，使用JGraphT和自定义绘制实现
+     * 导航到节点对应的代码
      */
-    private static class FlowGraphPanel extends JPanel {
+    private static void navigateToCode(Project project, FlowGraphData.Node node) {
+        if (node.getFilePath() == null || node.getFilePath().isEmpty()) {
+            return;
+        }
+
+        try {
+            File file = new File(node.getFilePath());
+            if (!file.exists()) {
+                LOG.error("File not found: " + node.getFilePath());
+                return;
+            }
+
+            VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByIoFile(file);
+            if (virtualFile != null) {
+                int line = Math.max(0, node.getLineNumber() - 1); // 转换为0-based行号
+                OpenFileDescriptor descriptor = new OpenFileDescriptor(project, virtualFile, line, 0);
+                FileEditorManager.getInstance(project).openEditor(descriptor, true);
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to navigate to code", e);
+        }
+    }
+
+    /**
+     * 流程图面板，使用JGraphT构建图，分层布局后自定义绘制，拖动平移、滚轮缩放
+     *
+     * <p>布局在后台线程计算，完成后在 EDT 上建立节点和边的空间索引，绘制和双击命中测试都只查询索引
+     */
+    static class FlowGraphPanel extends JPanel {
+        // 边包围盒的外扩距离，覆盖箭头和线宽
+        private static final double EDGE_MARGIN = 12;
+        // 估算边标签尺寸
+        private static final double LABEL_HEIGHT = 20;
+        private static final double LABEL_CHAR_WIDTH = 12;
+        // 层间距、同层节点间距和图的外边距
+        private static final double LAYER_SPACING = 80;
+        private static final double NODE_SPACING = 60;
+        private static final double MARGIN = 25;
+        // 布局缓存标识，修改布局参数或节点尺寸时需要同步修改
+        private static final String LAYOUT_PROFILE = "jgrapht-sugiyama-v2";
+        // 折点单独缓存，边序号按图中边的迭代顺序
+        private static final String BEND_PROFILE = LAYOUT_PROFILE + "-bends";
+
         private final FlowGraphData graphData;
-        private final Project project;
         private final Graph<FlowGraphData.Node, DefaultEdge> graph;
-        private final Map<String, FlowGraphData.Node> nodeMap = new HashMap<>();
+        // 双击节点时调用
+        private final Consumer<FlowGraphData.Node> navigator;
         private final Map<FlowGraphData.Node, Rectangle2D> nodePositions = new HashMap<>();
+        // 跨层边经过的折点
+        private final Map<DefaultEdge, List<Point2D>> edgeBends = new HashMap<>();
+        // 节点和边的空间索引，布局完成后建立，用于视口裁剪和命中测试
+        private QuadTree<FlowGraphData.Node> nodeIndex;
+        private QuadTree<DefaultEdge> edgeIndex;
+        // 按类聚合后的节点和边，缩小到聚合阈值以下时使用，布局后延迟计算
+        private LevelOfDetail.Clusters clusters;
+        // 细节层次阈值（百分比）
+        private final int lodLabelZoomPercent;
+        private final int lodClusterZoomPercent;
 
         private double scale = 1.0;
         private Point2D offset = new Point2D.Double(0, 0);
         private Point dragStart = null;
-        private final mxGraphComponent graphComponent;
-        private final JScrollPane scrollPane;
 
-        public FlowGraphPanel(FlowGraphData graphData, Project project) {
+        FlowGraphPanel(FlowGraphData graphData, LayoutCache layoutCache, int lodLabelZoomPercent,
+                       int lodClusterZoomPercent, Consumer<FlowGraphData.Node> navigator) {
             this.graphData = graphData;
-            this.project = project;
             this.graph = buildGraph(graphData);
-
+            this.navigator = navigator;
+            this.lodLabelZoomPercent = lodLabelZoomPercent;
+            this.lodClusterZoomPercent = lodClusterZoomPercent;
 
             // 设置面板布局为BorderLayout
             setLayout(new BorderLayout());
+            setBackground(Color.WHITE);
+            setPreferredSize(new Dimension(800, 600));
+
+            // 布局在后台线程计算，期间显示占位提示
+            JLabel loadingLabel = new JLabel("正在布局流程图...", SwingConstants.CENTER);
+            loadingLabel.setFont(new Font(Font.SANS_SERIF, Font.ITALIC, 14));
+            add(loadingLabel, BorderLayout.CENTER);
 
-            // 使用JGraphX适配器
-            JGraphXAdapter<FlowGraphData.Node, DefaultEdge> graphAdapter = new JGraphXAdapter<>(graph);
-            mxGraph mxGraph = graphAdapter.getView().getGraph();
-
-            // 创建样式
-            registerGraphStyles(mxGraph);
-            // 应用样式到节点和边
-
-            applyStyles(mxGraph, graphAdapter, graphData);
-
-            // 使用分层布局
-            mxHierarchicalLayout layout = new mxHierarchicalLayout(mxGraph);
-            layout.setInterRankCellSpacing(80.0);
-            layout.setInterHierarchySpacing(60.0);
-            layout.setParallelEdgeSpacing(15.0);
-            layout.setDisableEdgeStyle(false);
-            layout.execute(mxGraph.getDefaultParent());
-
-            // 自动调整视图大小
-            mxRectangle bounds = mxGraph.getGraphBounds();
-            double width = bounds.getWidth() + 50;
-            double height = bounds.getHeight() + 50;
-            mxGraph.getModel().setGeometry(mxGraph.getDefaultParent(),
-                    new mxGeometry(0, 0, width, height));
-
-            // 创建图形组件
-            graphComponent = new mxGraphComponent(mxGraph);
-            graphComponent.setConnectable(false);
-            graphComponent.getGraph().setAllowDanglingEdges(false);
-            graphComponent.setBackground(Color.WHITE);
-            graphComponent.setGridVisible(true);
-            graphComponent.getViewport().setBackground(Color.WHITE);
-            // 启用自动调整大小
-            graphComponent.setAutoExtend(true);
-            graphComponent.setAutoScroll(true);
-            // 设置缩放策略
-//            graphComponent.getZoomHandler().setEnabled(true);
-            graphComponent.setCenterZoom(true);
-
-
-            // 创建滚动面板并添加图形组件
-            scrollPane = new JScrollPane(graphComponent);
-            scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-            scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-
-            // 设置滚动面板的首选大小
-            scrollPane.setPreferredSize(new Dimension(800, 600));
-            // 添加滚动面板到主面板
-            add(scrollPane, BorderLayout.CENTER);
-
-            // 设置滚动速率
-            scrollPane.getVerticalScrollBar().setUnitIncrement(16);
-            scrollPane.getHorizontalScrollBar().setUnitIncrement(16);
+            SwingWorker<Layout, Void> worker = new SwingWorker<>() {
+                @Override
+                protected Layout doInBackground() {
+                    return computeLayout(layoutCache);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        applyLayout(get());
+                        FlowGraphPanel.this.remove(loadingLabel);
+                        FlowGraphPanel.this.revalidate();
+                        FlowGraphPanel.this.repaint();
+                    } catch (Exception e) {
+                        LOG.error("Failed to layout flow graph", e);
+                        loadingLabel.setText("布局流程图时出错: " + e.getMessage());
+                        loadingLabel.setForeground(Color.RED);
+                    }
+                }
+            };
+            worker.execute();
 
             // 添加鼠标事件处理
             addMouseListener(new MouseAdapter() {
@@ -195,55 +218,157 @@ public class JGraphTRenderer {
         }
 
         /**
-         * 处理双击事件，跳转到相关代码
+         * 布局结果：节点位置和跨层边的折点
          */
-        private void handleDoubleClick(Point point) {
-            // 转换点坐标到图形坐标系
-            Point2D graphPoint = new Point2D.Double(
-                    (point.x / scale) - offset.getX(),
-                    (point.y / scale) - offset.getY()
-            );
+        private static final class Layout {
+            private final Map<FlowGraphData.Node, Rectangle2D> bounds;
+            private final Map<DefaultEdge, List<Point2D>> bends;
 
-            // 查找被点击的节点
-            for (Map.Entry<FlowGraphData.Node, Rectangle2D> entry : nodePositions.entrySet()) {
-                if (entry.getValue().contains(graphPoint)) {
-                    FlowGraphData.Node node = entry.getKey();
-                    navigateToCode(node);
-                    break;
-                }
+            private Layout(Map<FlowGraphData.Node, Rectangle2D> bounds, Map<DefaultEdge, List<Point2D>> bends) {
+                this.bounds = bounds;
+                this.bends = bends;
             }
         }
 
         /**
-         * 导航到节点对应的代码
+         * 计算节点位置和跨层边的折点，在后台线程调用，不修改面板状态。
+         * 结构未变化的图直接复用缓存的节点位置和折点，跳过分层布局
          */
-        private void navigateToCode(FlowGraphData.Node node) {
-            if (node.getFilePath() == null || node.getFilePath().isEmpty()) {
-                return;
+        private Layout computeLayout(LayoutCache layoutCache) {
+            String layoutKey = LayoutCache.structuralHash(LAYOUT_PROFILE, graphData);
+            String bendKey = LayoutCache.structuralHash(BEND_PROFILE, graphData);
+            Map<String, Rectangle2D> cached = layoutCache.get(layoutKey);
+            Map<String, Rectangle2D> cachedBends = LayoutCache.covers(cached, graphData) ? layoutCache.get(bendKey) : null;
+            if (cachedBends != null) {
+                Map<FlowGraphData.Node, Rectangle2D> bounds = new LinkedHashMap<>();
+                for (FlowGraphData.Node node : graph.vertexSet()) {
+                    Rectangle2D rect = cached.get(node.getId());
+                    if (rect != null) {
+                        bounds.put(node, rect);
+                    }
+                }
+                return new Layout(bounds, decodeBends(cachedBends));
             }
 
-            try {
-                File file = new File(node.getFilePath());
-                if (!file.exists()) {
-                    LOG.error("File not found: " + node.getFilePath());
-                    return;
+            // 分层布局：去环、分层（GraphLayering 的 O(V+E) 最长路径分层）、交叉消减和 Brandes–Köpf 坐标分配
+            SugiyamaLayout.Result<FlowGraphData.Node, DefaultEdge> result = new SugiyamaLayout<>(graph)
+                    .setNodeSize(FlowGraphPanel::nodeWidth, FlowGraphPanel::nodeHeight)
+                    .setLayerSpacing(LAYER_SPACING)
+                    .setNodeSpacing(NODE_SPACING)
+                    .setOrigin(MARGIN, MARGIN)
+                    .layout();
+
+            Map<DefaultEdge, List<Point2D>> bends = new HashMap<>();
+            for (DefaultEdge edge : graph.edgeSet()) {
+                List<Point2D> points = result.getBendPoints(edge);
+                if (!points.isEmpty()) {
+                    bends.put(edge, points);
                 }
+            }
 
-                VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByIoFile(file);
-                if (virtualFile != null) {
-                    int line = Math.max(0, node.getLineNumber() - 1); // 转换为0-based行号
-                    OpenFileDescriptor descriptor = new OpenFileDescriptor(project, virtualFile, line, 0);
-                    FileEditorManager.getInstance(project).openEditor(descriptor, true);
+            Map<String, Rectangle2D> geometries = new HashMap<>();
+            for (Map.Entry<FlowGraphData.Node, Rectangle2D> entry : result.getBounds().entrySet()) {
+                if (entry.getKey().getId() != null) {
+                    geometries.put(entry.getKey().getId(), entry.getValue());
                 }
-            } catch (Exception e) {
-                LOG.error("Failed to navigate to code", e);
+            }
+            layoutCache.put(bendKey, encodeBends(bends));
+            layoutCache.put(layoutKey, geometries);
+            return new Layout(result.getBounds(), bends);
+        }
+
+        private Map<String, Rectangle2D> encodeBends(Map<DefaultEdge, List<Point2D>> bends) {
+            List<List<Point2D>> ordered = new ArrayList<>(graph.edgeSet().size());
+            for (DefaultEdge edge : graph.edgeSet()) {
+                ordered.add(bends.getOrDefault(edge, List.of()));
+            }
+            return LayoutCache.encodeBends(ordered);
+        }
+
+        private Map<DefaultEdge, List<Point2D>> decodeBends(Map<String, Rectangle2D> encoded) {
+            Map<DefaultEdge, List<Point2D>> bends = new HashMap<>();
+            int index = 0;
+            for (DefaultEdge edge : graph.edgeSet()) {
+                List<Point2D> points = LayoutCache.decodeBends(encoded, index++);
+                if (!points.isEmpty()) {
+                    bends.put(edge, points);
+                }
+            }
+            return bends;
+        }
+
+        /**
+         * 使用布局结果并重建空间索引，必须在 EDT 上调用
+         */
+        private void applyLayout(Layout layout) {
+            nodePositions.clear();
+            nodePositions.putAll(layout.bounds);
+            edgeBends.clear();
+            edgeBends.putAll(layout.bends);
+            rebuildSpatialIndex();
+        }
+
+        /**
+         * 布局是否已经完成
+         */
+        boolean isLaidOut() {
+            return nodeIndex != null;
+        }
+
+        /**
+         * 节点的布局位置（图坐标），布局完成前返回 null
+         */
+        Rectangle2D getNodeBounds(FlowGraphData.Node node) {
+            return nodePositions.get(node);
+        }
+
+        /**
+         * source 到 target 的边经过的折点，不跨层的边返回空列表
+         */
+        List<Point2D> getBendPoints(FlowGraphData.Node source, FlowGraphData.Node target) {
+            DefaultEdge edge = graph.getEdge(source, target);
+            return edge == null ? List.of() : edgeBends.getOrDefault(edge, List.of());
+        }
+
+        /**
+         * 面板坐标转换为图坐标
+         */
+        private Rectangle2D toGraph(Rectangle rect) {
+            return new Rectangle2D.Double(rect.x / scale - offset.getX(), rect.y / scale - offset.getY(),
+                    rect.width / scale, rect.height / scale);
+        }
+
+        /**
+         * 与面板上的矩形区域相交的节点
+         */
+        List<FlowGraphData.Node> nodesIn(Rectangle rect) {
+            return nodeIndex == null ? Collections.emptyList() : nodeIndex.query(toGraph(rect));
+        }
+
+        /**
+         * 面板上某一点处的节点，没有则返回 null
+         */
+        FlowGraphData.Node nodeAt(Point point) {
+            if (nodeIndex == null) {
+                return null;
+            }
+            return nodeIndex.findAt(new Point2D.Double(point.x / scale - offset.getX(), point.y / scale - offset.getY()));
+        }
+
+        /**
+         * 处理双击事件，跳转到相关代码
+         */
+        private void handleDoubleClick(Point point) {
+            FlowGraphData.Node node = nodeAt(point);
+            if (node != null) {
+                navigator.accept(node);
             }
         }
 
         /**
          * 构建JGraphT图形
          */
-        private Graph<FlowGraphData.Node, DefaultEdge> buildGraph(FlowGraphData graphData) {
+        private static Graph<FlowGraphData.Node, DefaultEdge> buildGraph(FlowGraphData graphData) {
             Graph<FlowGraphData.Node, DefaultEdge> graph = GraphTypeBuilder
                     .<FlowGraphData.Node, DefaultEdge>directed()
                     .allowingMultipleEdges(true)
@@ -255,13 +380,12 @@ public class JGraphTRenderer {
             // 添加节点
             for (FlowGraphData.Node node : graphData.getNodes()) {
                 graph.addVertex(node);
-                nodeMap.put(node.getId(), node);
             }
 
             // 添加边
             for (FlowGraphData.Edge edge : graphData.getEdges()) {
-                FlowGraphData.Node source = nodeMap.get(edge.getSource());
-                FlowGraphData.Node target = nodeMap.get(edge.getTarget());
+                FlowGraphData.Node source = graphData.getNode(edge.getSource());
+                FlowGraphData.Node target = graphData.getNode(edge.getTarget());
                 if (source != null && target != null) {
                     graph.addEdge(source, target);
                 }
@@ -270,577 +394,115 @@ public class JGraphTRenderer {
             return graph;
         }
 
-
-        /**
-         * 注册JGraphX时序图和流程图所需的所有节点和连线样式
-         *
-         * @param graph mxGraph实例
-         */
-        public static void registerGraphStyles(mxGraph graph) {
-            mxStylesheet stylesheet = graph.getStylesheet();
-
-            // ================= 流程图节点样式 =================
-
-            // 流程（Process）- 圆角矩形
-            Map<String, Object> processStyle = new HashMap<>();
-            processStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            processStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            processStyle.put(mxConstants.STYLE_ROUNDED, true);
-            processStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFFFFF");
-            processStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            processStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            processStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("process", processStyle);
-
-            // 判断条件（Decision）- 菱形
-            Map<String, Object> decisionStyle = new HashMap<>();
-            decisionStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RHOMBUS);
-            decisionStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RhombusPerimeter);
-            decisionStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFFFCC");
-            decisionStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            decisionStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            decisionStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("decision", decisionStyle);
-            stylesheet.putCellStyle("condition", decisionStyle); // 别名
-
-            // 开始/结束（Start/End）- 椭圆
-            Map<String, Object> terminatorStyle = new HashMap<>();
-            terminatorStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_ELLIPSE);
-            terminatorStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            terminatorStyle.put(mxConstants.STYLE_FILLCOLOR, "#E6FFCC");
-            terminatorStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            terminatorStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            terminatorStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("terminator", terminatorStyle);
-
-            // 数据（Data）- 平行四边形
-            Map<String, Object> dataStyle = new HashMap<>();
-//        dataStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_PARALLELOGRAM);
-            dataStyle.put(mxConstants.STYLE_SHAPE, "parallelogram");
-            dataStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RhombusPerimeter);
-            dataStyle.put(mxConstants.STYLE_FILLCOLOR, "#DAE8FC");
-            dataStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            dataStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            dataStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("data", dataStyle);
-
-            // 预定义流程（Predefined Process）- 双边矩形
-            Map<String, Object> predefinedProcessStyle = new HashMap<>();
-            predefinedProcessStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            predefinedProcessStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            predefinedProcessStyle.put(mxConstants.STYLE_FILLCOLOR, "#F5F5F5");
-            predefinedProcessStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            predefinedProcessStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            predefinedProcessStyle.put(mxConstants.STYLE_STROKEWIDTH, 3);
-            stylesheet.putCellStyle("predefinedProcess", predefinedProcessStyle);
-
-            // 文档（Document）- 文档形状
-            Map<String, Object> documentStyle = new HashMap<>();
-            documentStyle.put(mxConstants.STYLE_SHAPE, "document");
-            documentStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            documentStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFF2CC");
-            documentStyle.put(mxConstants.STYLE_STROKECOLOR, "#D6B656");
-            documentStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            documentStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("document", documentStyle);
-
-            // 多文档（Multiple Document）
-            Map<String, Object> multiDocumentStyle = new HashMap<>();
-            multiDocumentStyle.put(mxConstants.STYLE_SHAPE, "mxgraph.flowchart.multi-document");
-            multiDocumentStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            multiDocumentStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFF2CC");
-            multiDocumentStyle.put(mxConstants.STYLE_STROKECOLOR, "#D6B656");
-            multiDocumentStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            multiDocumentStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("multiDocument", multiDocumentStyle);
-
-            // 手动输入（Manual Input）- 梯形
-            Map<String, Object> manualInputStyle = new HashMap<>();
-            manualInputStyle.put(mxConstants.STYLE_SHAPE, "mxgraph.flowchart.manual_input");
-            manualInputStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RhombusPerimeter);
-            manualInputStyle.put(mxConstants.STYLE_FILLCOLOR, "#F8CECC");
-            manualInputStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            manualInputStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            manualInputStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("manualInput", manualInputStyle);
-
-            // 准备（Preparation）- 六边形
-            Map<String, Object> preparationStyle = new HashMap<>();
-            preparationStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_HEXAGON);
-            preparationStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.HexagonPerimeter);
-            preparationStyle.put(mxConstants.STYLE_FILLCOLOR, "#E1D5E7");
-            preparationStyle.put(mxConstants.STYLE_STROKECOLOR, "#9673A6");
-            preparationStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            preparationStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("preparation", preparationStyle);
-
-            // 数据库（Database）
-            Map<String, Object> databaseStyle = new HashMap<>();
-            databaseStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_CYLINDER);
-            databaseStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            databaseStyle.put(mxConstants.STYLE_FILLCOLOR, "#D5E8D4");
-            databaseStyle.put(mxConstants.STYLE_STROKECOLOR, "#82B366");
-            databaseStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            databaseStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("database", databaseStyle);
-
-            // 注释（Comment/Note）
-            Map<String, Object> noteStyle = new HashMap<>();
-            noteStyle.put(mxConstants.STYLE_SHAPE, "note");
-            noteStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            noteStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFF4C3");
-            noteStyle.put(mxConstants.STYLE_STROKECOLOR, "#D9A741");
-            noteStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            noteStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("note", noteStyle);
-            stylesheet.putCellStyle("comment", noteStyle); // 别名
-
-            // 云（Cloud）- 外部系统
-            Map<String, Object> cloudStyle = new HashMap<>();
-            cloudStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_CLOUD);
-            cloudStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            cloudStyle.put(mxConstants.STYLE_FILLCOLOR, "#F5F5F5");
-            cloudStyle.put(mxConstants.STYLE_STROKECOLOR, "#666666");
-            cloudStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            cloudStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("cloud", cloudStyle);
-
-            // 延迟（Delay）
-            Map<String, Object> delayStyle = new HashMap<>();
-            delayStyle.put(mxConstants.STYLE_SHAPE, "mxgraph.flowchart.delay");
-            delayStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            delayStyle.put(mxConstants.STYLE_FILLCOLOR, "#F8CECC");
-            delayStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            delayStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            delayStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("delay", delayStyle);
-
-            // 显示（Display）
-            Map<String, Object> displayStyle = new HashMap<>();
-            displayStyle.put(mxConstants.STYLE_SHAPE, "mxgraph.flowchart.display");
-            displayStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            displayStyle.put(mxConstants.STYLE_FILLCOLOR, "#D5E8D4");
-            displayStyle.put(mxConstants.STYLE_STROKECOLOR, "#82B366");
-            displayStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            displayStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("display", displayStyle);
-
-            // 人物（Actor）
-            Map<String, Object> actorStyle = new HashMap<>();
-            actorStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_ACTOR);
-            actorStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.EllipsePerimeter);
-            actorStyle.put(mxConstants.STYLE_FILLCOLOR, "#E1D5E7");
-            actorStyle.put(mxConstants.STYLE_STROKECOLOR, "#9673A6");
-            actorStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            actorStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            stylesheet.putCellStyle("actor", actorStyle);
-
-            // 泳道（Swimlane）
-            Map<String, Object> swimlaneStyle = new HashMap<>();
-            swimlaneStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_SWIMLANE);
-            swimlaneStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            swimlaneStyle.put(mxConstants.STYLE_FILLCOLOR, "#F5F5F5");
-            swimlaneStyle.put(mxConstants.STYLE_STROKECOLOR, "#999999");
-            swimlaneStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            swimlaneStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            swimlaneStyle.put(mxConstants.STYLE_STARTSIZE, 30); // 标题高度
-            swimlaneStyle.put(mxConstants.STYLE_FONTSIZE, 14);
-            swimlaneStyle.put(mxConstants.STYLE_FONTSTYLE, 1); // 粗体
-            stylesheet.putCellStyle("swimlane", swimlaneStyle);
-
-            // ================= 时序图节点样式 =================
-
-            // 对象（Object/Lifeline）- 时序图中的顶部对象
-            Map<String, Object> objectStyle = new HashMap<>();
-            objectStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            objectStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            objectStyle.put(mxConstants.STYLE_FILLCOLOR, "#E1D5E7");
-            objectStyle.put(mxConstants.STYLE_STROKECOLOR, "#9673A6");
-            objectStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            objectStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            objectStyle.put(mxConstants.STYLE_DASHED, false);
-            stylesheet.putCellStyle("object", objectStyle);
-
-            // 生命线（Lifeline）- 时序图中的虚线
-            Map<String, Object> lifelineStyle = new HashMap<>();
-            lifelineStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_LINE);
-            lifelineStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            lifelineStyle.put(mxConstants.STYLE_STROKECOLOR, "#666666");
-            lifelineStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            lifelineStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            lifelineStyle.put(mxConstants.STYLE_DASHED, true);
-            lifelineStyle.put(mxConstants.STYLE_VERTICAL_ALIGN, mxConstants.ALIGN_TOP);
-            stylesheet.putCellStyle("lifeline", lifelineStyle);
-
-            // 激活（Activation）- 时序图中的执行块
-            Map<String, Object> activationStyle = new HashMap<>();
-            activationStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            activationStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            activationStyle.put(mxConstants.STYLE_FILLCOLOR, "#E1D5E7");
-            activationStyle.put(mxConstants.STYLE_STROKECOLOR, "#9673A6");
-            activationStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            activationStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            stylesheet.putCellStyle("activation", activationStyle);
-
-            // 自调用（Self-call）- 激活块上的小框
-            Map<String, Object> selfCallStyle = new HashMap<>();
-            selfCallStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            selfCallStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            selfCallStyle.put(mxConstants.STYLE_FILLCOLOR, "#F8CECC");
-            selfCallStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            selfCallStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            selfCallStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            stylesheet.putCellStyle("selfCall", selfCallStyle);
-
-            // 对象创建（Create）- 虚线上的对象
-            Map<String, Object> createObjectStyle = new HashMap<>();
-            createObjectStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            createObjectStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            createObjectStyle.put(mxConstants.STYLE_FILLCOLOR, "#D5E8D4");
-            createObjectStyle.put(mxConstants.STYLE_STROKECOLOR, "#82B366");
-            createObjectStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            createObjectStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            createObjectStyle.put(mxConstants.STYLE_DASHED, false);
-            stylesheet.putCellStyle("createObject", createObjectStyle);
-
-            // 破坏（Destroy）- X标记
-            Map<String, Object> destroyStyle = new HashMap<>();
-            destroyStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
-            destroyStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            destroyStyle.put(mxConstants.STYLE_FILLCOLOR, "#F8CECC");
-            destroyStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            destroyStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            destroyStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.5);
-            destroyStyle.put(mxConstants.STYLE_DASHED, false);
-            stylesheet.putCellStyle("destroy", destroyStyle);
-
-            // 注释框（Note）- 时序图中的注释
-            Map<String, Object> sequenceNoteStyle = new HashMap<>();
-            sequenceNoteStyle.put(mxConstants.STYLE_SHAPE, "note");
-            sequenceNoteStyle.put(mxConstants.STYLE_PERIMETER, mxPerimeter.RectanglePerimeter);
-            sequenceNoteStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFF4C3");
-            sequenceNoteStyle.put(mxConstants.STYLE_STROKECOLOR, "#D9A741");
-            sequenceNoteStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            sequenceNoteStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            stylesheet.putCellStyle("sequenceNote", sequenceNoteStyle);
-
-            // ================= 连线样式 =================
-
-            // 默认边样式（Default Edge）
-            Map<String, Object> defaultEdgeStyle = new HashMap<>();
-            defaultEdgeStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_CONNECTOR);
-            defaultEdgeStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            defaultEdgeStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            defaultEdgeStyle.put(mxConstants.STYLE_FONTCOLOR, "#446299");
-            defaultEdgeStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            defaultEdgeStyle.put(mxConstants.STYLE_ROUNDED, true);
-            stylesheet.putCellStyle("defaultEdge", defaultEdgeStyle);
-
-            // 实线箭头（Solid Arrow）
-            Map<String, Object> solidArrowStyle = new HashMap<>();
-            solidArrowStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            solidArrowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            solidArrowStyle.put(mxConstants.STYLE_FONTCOLOR, "#446299");
-            solidArrowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            solidArrowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            stylesheet.putCellStyle("solidArrow", solidArrowStyle);
-
-            // 虚线箭头（Dashed Arrow）
-            Map<String, Object> dashedArrowStyle = new HashMap<>();
-            dashedArrowStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            dashedArrowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            dashedArrowStyle.put(mxConstants.STYLE_FONTCOLOR, "#446299");
-            dashedArrowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            dashedArrowStyle.put(mxConstants.STYLE_DASHED, true);
-            dashedArrowStyle.put(mxConstants.STYLE_DASH_PATTERN, "3 3");
-            dashedArrowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            stylesheet.putCellStyle("dashedArrow", dashedArrowStyle);
-
-            // 无箭头连线（No Arrow）
-            Map<String, Object> noArrowStyle = new HashMap<>();
-            noArrowStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            noArrowStyle.put(mxConstants.STYLE_FONTCOLOR, "#446299");
-            noArrowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            noArrowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.NONE);
-            noArrowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            stylesheet.putCellStyle("noArrow", noArrowStyle);
-
-            // 双向箭头（Bidirectional Arrow）
-            Map<String, Object> bidirectionalArrowStyle = new HashMap<>();
-            bidirectionalArrowStyle.put(mxConstants.STYLE_STROKECOLOR, "#6482B9");
-            bidirectionalArrowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            bidirectionalArrowStyle.put(mxConstants.STYLE_STARTARROW, mxConstants.ARROW_CLASSIC);
-            bidirectionalArrowStyle.put(mxConstants.STYLE_FONTCOLOR, "#446299");
-            bidirectionalArrowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            bidirectionalArrowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            stylesheet.putCellStyle("bidirectionalArrow", bidirectionalArrowStyle);
-
-            // 时序图调用箭头（Sequence Call）
-            Map<String, Object> sequenceCallStyle = new HashMap<>();
-            sequenceCallStyle.put(mxConstants.STYLE_STROKECOLOR, "#000000");
-            sequenceCallStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_BLOCK);
-            sequenceCallStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            sequenceCallStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            sequenceCallStyle.put(mxConstants.STYLE_ROUNDED, false);
-            sequenceCallStyle.put(mxConstants.STYLE_DASHED, false);
-            stylesheet.putCellStyle("sequenceCall", sequenceCallStyle);
-
-            // 时序图返回箭头（Sequence Return）
-            Map<String, Object> sequenceReturnStyle = new HashMap<>();
-            sequenceReturnStyle.put(mxConstants.STYLE_STROKECOLOR, "#999999");
-            sequenceReturnStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_OPEN);
-            sequenceReturnStyle.put(mxConstants.STYLE_FONTCOLOR, "#999999");
-            sequenceReturnStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            sequenceReturnStyle.put(mxConstants.STYLE_ROUNDED, false);
-            sequenceReturnStyle.put(mxConstants.STYLE_DASHED, true);
-            sequenceReturnStyle.put(mxConstants.STYLE_DASH_PATTERN, "2 2");
-            stylesheet.putCellStyle("sequenceReturn", sequenceReturnStyle);
-
-            // 时序图创建箭头（Sequence Create）
-            Map<String, Object> sequenceCreateStyle = new HashMap<>();
-            sequenceCreateStyle.put(mxConstants.STYLE_STROKECOLOR, "#82B366");
-            sequenceCreateStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_BLOCK);
-            sequenceCreateStyle.put(mxConstants.STYLE_FONTCOLOR, "#82B366");
-            sequenceCreateStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            sequenceCreateStyle.put(mxConstants.STYLE_ROUNDED, false);
-            sequenceCreateStyle.put(mxConstants.STYLE_DASHED, true);
-            stylesheet.putCellStyle("sequenceCreate", sequenceCreateStyle);
-
-            // 时序图销毁箭头（Sequence Destroy）
-            Map<String, Object> sequenceDestroyStyle = new HashMap<>();
-            sequenceDestroyStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            sequenceDestroyStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_BLOCK);
-            sequenceDestroyStyle.put(mxConstants.STYLE_FONTCOLOR, "#B85450");
-            sequenceDestroyStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            sequenceDestroyStyle.put(mxConstants.STYLE_ROUNDED, false);
-            sequenceDestroyStyle.put(mxConstants.STYLE_DASHED, false);
-            stylesheet.putCellStyle("sequenceDestroy", sequenceDestroyStyle);
-
-            // 自调用箭头（Self Call Arrow）
-            Map<String, Object> selfCallArrowStyle = new HashMap<>();
-            selfCallArrowStyle.put(mxConstants.STYLE_STROKECOLOR, "#000000");
-            selfCallArrowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_BLOCK);
-            selfCallArrowStyle.put(mxConstants.STYLE_FONTCOLOR, "#000000");
-            selfCallArrowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            selfCallArrowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            selfCallArrowStyle.put(mxConstants.STYLE_EDGE, mxConstants.EDGESTYLE_ENTITY_RELATION);
-            stylesheet.putCellStyle("selfCallArrow", selfCallArrowStyle);
-
-            // 条件流（Yes/No）- 流程图中的条件流
-            Map<String, Object> conditionFlowStyle = new HashMap<>();
-            conditionFlowStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_CONNECTOR);
-            conditionFlowStyle.put(mxConstants.STYLE_STROKECOLOR, "#82B366");
-            conditionFlowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            conditionFlowStyle.put(mxConstants.STYLE_FONTCOLOR, "#82B366");
-            conditionFlowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            conditionFlowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            conditionFlowStyle.put(mxConstants.STYLE_FONTSIZE, 12);
-            conditionFlowStyle.put(mxConstants.STYLE_FONTSTYLE, 1); // 粗体
-            stylesheet.putCellStyle("conditionFlow", conditionFlowStyle);
-
-            // 异常流（Exception）- 流程图中的异常流
-            Map<String, Object> exceptionFlowStyle = new HashMap<>();
-            exceptionFlowStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_CONNECTOR);
-            exceptionFlowStyle.put(mxConstants.STYLE_STROKECOLOR, "#B85450");
-            exceptionFlowStyle.put(mxConstants.STYLE_ENDARROW, mxConstants.ARROW_CLASSIC);
-            exceptionFlowStyle.put(mxConstants.STYLE_FONTCOLOR, "#B85450");
-            exceptionFlowStyle.put(mxConstants.STYLE_STROKEWIDTH, 1);
-            exceptionFlowStyle.put(mxConstants.STYLE_ROUNDED, true);
-            exceptionFlowStyle.put(mxConstants.STYLE_DASHED, true);
-            stylesheet.putCellStyle("exceptionFlow", exceptionFlowStyle);
-        }
-
-        private static void applyStyles(mxGraph graph, JGraphXAdapter<FlowGraphData.Node, DefaultEdge> graphAdapter,
-                                        FlowGraphData graphData) {
-            Object parent = graph.getDefaultParent();
-            List<FlowGraphData.Node> nodes = graphData.getNodes();
-            List<FlowGraphData.Edge> edges = graphData.getEdges();
-
-            // 设置图形布局参数
-            mxHierarchicalLayout layout = new mxHierarchicalLayout(graph);
-            layout.setInterRankCellSpacing(80.0);  // 垂直间距
-            layout.setInterHierarchySpacing(60.0); // 水平间距
-            layout.setParallelEdgeSpacing(15.0);   // 平行边间距
-            layout.setOrientation(SwingConstants.NORTH); // 方向：从上到下
-
-            // 应用节点样式和几何形状
-            for (FlowGraphData.Node node : nodes) {
-                Object cell = graphAdapter.getVertexToCellMap().get(node);
-                if (cell != null) {
-                    // 设置节点几何形状
-                    mxGeometry geometry = createNodeGeometry(node);
-                    graph.getModel().setGeometry(cell, geometry);
-
-                    // 应用节点样式
-                    applyCellStyle(graph, cell, node);
-                }
-            }
-
-            // 应用边的样式
-            applyEdgeStyles(graph, graphAdapter, edges);
-
-            // 执行布局
-            layout.execute(graph.getDefaultParent());
-
-            // 自动调整视图大小
-            mxRectangle bounds = graph.getGraphBounds();
-            double width = bounds.getWidth() + 50;
-            double height = bounds.getHeight() + 50;
-            graph.getModel().setGeometry(graph.getDefaultParent(),
-                    new mxGeometry(0, 0, width, height));
-        }
-
-        private static mxGeometry createNodeGeometry(FlowGraphData.Node node) {
-            mxGeometry geometry;
+        private static double nodeWidth(FlowGraphData.Node node) {
             if ("condition".equals(node.getType())) {
-                geometry = new mxGeometry(0, 0, 160, 80);
+                return 160;
             } else if ("start".equals(node.getType()) || "end".equals(node.getType())) {
-                geometry = new mxGeometry(0, 0, 120, 50);
-            } else {
-                geometry = new mxGeometry(0, 0, 180, 60);
+                return 120;
             }
-            return geometry;
+            return 180;
         }
 
-        private static void applyCellStyle(mxGraph graph, Object cell, FlowGraphData.Node node) {
-            StringBuilder style = new StringBuilder();
-
-            // 基础样式
-            style.append(node.getType())
-                    .append(";rounded=1;shadow=1;glass=1;")
-                    .append("fontSize=12;spacing=10;");
-
-            // 根据节点类型设置特定样式
-            switch (node.getType()) {
-                case "start" -> style.append("fillColor=#dae8fc;strokeColor=#6c8ebf;");
-                case "end" -> style.append("fillColor=#f8cecc;strokeColor=#b85450;");
-                case "condition" -> style.append("fillColor=#fff2cc;strokeColor=#d6b656;shape=rhombus;");
-                case "process" -> style.append("fillColor=#d5e8d4;strokeColor=#82b366;");
-                default -> style.append("fillColor=#e1d5e7;strokeColor=#9673a6;");
-            }
-
-            graph.setCellStyle(style.toString(), new Object[]{cell});
-        }
-
-        private static void applyEdgeStyles(mxGraph graph, JGraphXAdapter<FlowGraphData.Node, DefaultEdge> graphAdapter,
-                                            List<FlowGraphData.Edge> edges) {
-            for (FlowGraphData.Edge edge : edges) {
-                Object cell = graphAdapter.getEdgeToCellMap().get(edge);
-                if (cell != null) {
-                    StringBuilder style = new StringBuilder();
-
-                    // 基础边样式
-                    style.append("edgeStyle=orthogonalEdgeStyle;rounded=1;orthogonalLoop=1;")
-                            .append("strokeWidth=1.5;fontSize=11;");
-
-                    // 根据边类型设置特定样式
-                    switch (edge.getType()) {
-                        case "condition" -> {
-                            style.append("strokeColor=#82B366;")
-                                    .append("fontColor=#82B366;")
-                                    .append("fontStyle=1;");
-                        }
-                        case "exception" -> {
-                            style.append("strokeColor=#B85450;")
-                                    .append("fontColor=#B85450;")
-                                    .append("dashed=1;dashPattern=3 3;");
-                        }
-                        default -> {
-                            style.append("strokeColor=#6482B9;")
-                                    .append("fontColor=#446299;");
-                        }
-                    }
-
-                    graph.setCellStyle(style.toString(), new Object[]{cell});
-                }
+        private static double nodeHeight(FlowGraphData.Node node) {
+            if ("condition".equals(node.getType())) {
+                return 80;
+            } else if ("start".equals(node.getType()) || "end".equals(node.getType())) {
+                return 50;
             }
+            return 60;
         }
 
-
         /**
-         * 计算节点位置
+         * 根据节点位置重建节点和边的空间索引
          */
-        private void layoutGraph() {
-
-            // 简单的层次布局
-            Map<FlowGraphData.Node, Integer> levels = new HashMap<>();
-            Map<Integer, Integer> levelCounts = new HashMap<>();
-
-            // 计算每个节点的层级
-            for (FlowGraphData.Node node : graph.vertexSet()) {
-                int level = calculateLevel(node);
-                levels.put(node, level);
-                levelCounts.put(level, levelCounts.getOrDefault(level, 0) + 1);
+        private void rebuildSpatialIndex() {
+            clusters = null;
+            Rectangle2D extent = null;
+            for (Rectangle2D bounds : nodePositions.values()) {
+                if (extent == null) {
+                    extent = bounds.getBounds2D();
+                } else {
+                    extent.add(bounds);
+                }
+            }
+            if (extent == null) {
+                extent = new Rectangle2D.Double(0, 0, 1, 1);
             }
 
-            // 计算每个节点的位置
-            int nodeWidth = 150;
-            int nodeHeight = 50;
-            int horizontalGap = 50;
-            int verticalGap = 100;
-
-            Map<Integer, Integer> currentPositions = new HashMap<>();
-
+            nodeIndex = new QuadTree<>(extent);
             for (FlowGraphData.Node node : graph.vertexSet()) {
-                int level = levels.get(node);
-                int count = levelCounts.get(level);
-                int position = currentPositions.getOrDefault(level, 0);
-
-                double x = (position * (nodeWidth + horizontalGap)) +
-                        ((800 - count * (nodeWidth + horizontalGap)) / 2);
-                double y = level * (nodeHeight + verticalGap) + 50;
-
-                nodePositions.put(node, new Rectangle2D.Double(x, y, nodeWidth, nodeHeight));
-                currentPositions.put(level, position + 1);
+                Rectangle2D bounds = nodePositions.get(node);
+                if (bounds != null) {
+                    nodeIndex.insert(node, bounds);
+                }
             }
-        }
 
-        /**
-         * 计算节点的层级
-         */
-        private int calculateLevel(FlowGraphData.Node node) {
-            return calculateLevel(node, new HashSet<>());
+            edgeIndex = new QuadTree<>(extent);
+            for (DefaultEdge edge : graph.edgeSet()) {
+                Rectangle2D bounds = edgeBounds(edge);
+                if (bounds != null) {
+                    edgeIndex.insert(edge, bounds);
+                }
+            }
         }
 
         /**
-         * 计算节点的层级（带访问记录）
-         *
-         * @param node    当前节点
-         * @param visited 已访问的节点集合
-         * @return 节点层级
+         * 边的绘制范围：连线、箭头、标签和自环
          */
-        private int calculateLevel(FlowGraphData.Node node, Set<FlowGraphData.Node> visited) {
-            // 如果节点已被访问，说明存在循环，返回当前深度
-            if (!visited.add(node)) {
-                return visited.size() - 1;
+        private Rectangle2D edgeBounds(DefaultEdge edge) {
+            FlowGraphData.Node source = graph.getEdgeSource(edge);
+            FlowGraphData.Node target = graph.getEdgeTarget(edge);
+            Rectangle2D sourceRect = nodePositions.get(source);
+            Rectangle2D targetRect = nodePositions.get(target);
+            if (sourceRect == null || targetRect == null) {
+                return null;
             }
 
-            // 如果没有入边，则为第一层
-            if (graph.inDegreeOf(node) == 0) {
-                visited.remove(node);
-                return 0;
+            if (source.equals(target)) {
+                Rectangle2D bounds = sourceRect.getBounds2D();
+                double loopWidth = sourceRect.getWidth() * 0.6;
+                double loopHeight = sourceRect.getHeight() * 1.2;
+                bounds.add(new Rectangle2D.Double(sourceRect.getMaxX(), sourceRect.getMinY() - loopHeight * 0.5,
+                        loopWidth, loopHeight));
+                return bounds;
             }
 
-            // 否则，取所有前驱节点的最大层级 + 1
-            int maxLevel = 0;
-            for (DefaultEdge edge : graph.incomingEdgesOf(node)) {
-                FlowGraphData.Node source = graph.getEdgeSource(edge);
-                int sourceLevel = calculateLevel(source, new HashSet<>(visited));
-                maxLevel = Math.max(maxLevel, sourceLevel);
+            double x1 = sourceRect.getCenterX();
+            double y1 = sourceRect.getMaxY();
+            double x2 = targetRect.getCenterX();
+            double y2 = targetRect.getMinY();
+            Rectangle2D bounds = new Rectangle2D.Double(Math.min(x1, x2) - EDGE_MARGIN, Math.min(y1, y2) - EDGE_MARGIN,
+                    Math.abs(x2 - x1) + EDGE_MARGIN * 2, Math.abs(y2 - y1) + EDGE_MARGIN * 2);
+            List<Point2D> bends = edgeBends.getOrDefault(edge, List.of());
+            for (Point2D bend : bends) {
+                bounds.add(new Rectangle2D.Double(bend.getX() - EDGE_MARGIN, bend.getY() - EDGE_MARGIN,
+                        EDGE_MARGIN * 2, EDGE_MARGIN * 2));
             }
-
-            visited.remove(node);
-            return maxLevel + 1;
+            String label = graphData.getEdgeLabel(source.getId(), target.getId());
+            if (label != null && !label.isEmpty()) {
+                // 标签绘制在第一段中点右上方，按字号粗略估算宽度
+                double midX = (x1 + (bends.isEmpty() ? x2 : bends.get(0).getX())) / 2;
+                double midY = (y1 + (bends.isEmpty() ? y2 : bends.get(0).getY())) / 2;
+                bounds.add(new Rectangle2D.Double(midX, midY - LABEL_HEIGHT, label.length() * LABEL_CHAR_WIDTH + 5, LABEL_HEIGHT));
+            }
+            return bounds;
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
+            if (nodeIndex == null) {
+                // 布局尚未完成
+                return;
+            }
             Graphics2D g2 = (Graphics2D) g.create();
 
-            // 启用抗锯齿
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            LevelOfDetail.Level level = LevelOfDetail.levelFor(scale, lodLabelZoomPercent, lodClusterZoomPercent);
+            if (level == LevelOfDetail.Level.FULL) {
+                // 启用抗锯齿
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            }
 
             // 应用缩放和平移
             AffineTransform transform = new AffineTransform();
@@ -848,22 +510,42 @@ public class JGraphTRenderer {
             transform.scale(scale, scale);
             g2.transform(transform);
 
+            // 当前可见区域（图坐标），只绘制与之相交的元素
+            Rectangle clip = g.getClipBounds();
+            Rectangle2D visible = clip == null ? null : toGraph(clip);
+
+            if (level == LevelOfDetail.Level.CLUSTERED) {
+                LevelOfDetail.paintClusters(g2, getClusters(), visible, scale);
+                g2.dispose();
+                return;
+            }
+
+            boolean detailed = level == LevelOfDetail.Level.FULL;
             // 绘制边
-            drawEdges(g2);
+            drawEdges(g2, visible, detailed);
 
             // 绘制节点
-            drawNodes(g2);
+            drawNodes(g2, visible, detailed);
 
             g2.dispose();
         }
 
+        private LevelOfDetail.Clusters getClusters() {
+            if (clusters == null) {
+                clusters = LevelOfDetail.cluster(graph.vertexSet(), FlowGraphData.Node::getClassName, nodePositions::get,
+                        graph.edgeSet(), graph::getEdgeSource, graph::getEdgeTarget);
+            }
+            return clusters;
+        }
+
         /**
-         * 绘制所有边
+         * 绘制可见区域内的边，visible 为 null 时绘制所有边；detailed 为 false 时不绘制箭头和标签
          */
-        private void drawEdges(Graphics2D g2) {
+        private void drawEdges(Graphics2D g2, Rectangle2D visible, boolean detailed) {
             g2.setStroke(new BasicStroke(1.5f));
 
-            for (DefaultEdge edge : graph.edgeSet()) {
+            Iterable<DefaultEdge> edges = edgeIndex != null && visible != null ? edgeIndex.query(visible) : graph.edgeSet();
+            for (DefaultEdge edge : edges) {
                 FlowGraphData.Node source = graph.getEdgeSource(edge);
                 FlowGraphData.Node target = graph.getEdgeTarget(edge);
 
@@ -873,7 +555,9 @@ public class JGraphTRenderer {
                 if (sourceRect != null && targetRect != null) {
                     // 检查是否是回环（自环）
                     if (source.equals(target)) {
-                        drawSelfLoop(g2, source, sourceRect, findEdgeLabel(source, target));
+                        if (detailed) {
+                            drawSelfLoop(g2, source, sourceRect, graphData.getEdgeLabel(source.getId(), target.getId()));
+                        }
                     } else {
                         // 计算连接点
                         Point2D sourcePoint = new Point2D.Double(
@@ -886,22 +570,30 @@ public class JGraphTRenderer {
                                 targetRect.getMinY()
                         );
 
-                        // 绘制边
+                        // 绘制边，跨层的边依次经过折点
+                        List<Point2D> bends = edgeBends.getOrDefault(edge, List.of());
                         g2.setColor(Color.DARK_GRAY);
-                        g2.drawLine(
-                                (int) sourcePoint.getX(), (int) sourcePoint.getY(),
-                                (int) targetPoint.getX(), (int) targetPoint.getY()
-                        );
+                        Point2D from = sourcePoint;
+                        for (Point2D bend : bends) {
+                            g2.draw(new java.awt.geom.Line2D.Double(from, bend));
+                            from = bend;
+                        }
+                        g2.draw(new java.awt.geom.Line2D.Double(from, targetPoint));
+
+                        if (!detailed) {
+                            continue;
+                        }
 
                         // 绘制箭头
-                        drawArrow(g2, sourcePoint, targetPoint);
+                        drawArrow(g2, from, targetPoint);
 
                         // 查找边标签
-                        String label = findEdgeLabel(source, target);
+                        String label = graphData.getEdgeLabel(source.getId(), target.getId());
                         if (label != null && !label.isEmpty()) {
+                            Point2D labelEnd = bends.isEmpty() ? targetPoint : bends.get(0);
                             Point2D midPoint = new Point2D.Double(
-                                    (sourcePoint.getX() + targetPoint.getX()) / 2,
-                                    (sourcePoint.getY() + targetPoint.getY()) / 2
+                                    (sourcePoint.getX() + labelEnd.getX()) / 2,
+                                    (sourcePoint.getY() + labelEnd.getY()) / 2
                             );
 
                             g2.setColor(Color.BLACK);
@@ -949,18 +641,6 @@ public class JGraphTRenderer {
             }
         }
 
-        /**
-         * 查找边的标签
-         */
-        private String findEdgeLabel(FlowGraphData.Node source, FlowGraphData.Node target) {
-            for (FlowGraphData.Edge edge : graphData.getEdges()) {
-                if (edge.getSource().equals(source.getId()) && edge.getTarget().equals(target.getId())) {
-                    return edge.getLabel();
-                }
-            }
-            return null;
-        }
-
         /**
          * 绘制箭头
          */
@@ -986,12 +666,16 @@ public class JGraphTRenderer {
         }
 
         /**
-         * 绘制所有节点
+         * 绘制可见区域内的节点，visible 为 null 时绘制所有节点；detailed 为 false 时只绘制色块
          */
-        private void drawNodes(Graphics2D g2) {
-            for (FlowGraphData.Node node : graph.vertexSet()) {
+        private void drawNodes(Graphics2D g2, Rectangle2D visible, boolean detailed) {
+            Iterable<FlowGraphData.Node> nodes = nodeIndex != null && visible != null ? nodeIndex.query(visible) : graph.vertexSet();
+            for (FlowGraphData.Node node : nodes) {
                 Rectangle2D bounds = nodePositions.get(node);
-                if (bounds != null) {
+                if (bounds != null && !detailed) {
+                    g2.setColor(getNodeColor(node));
+                    g2.fill(bounds);
+                } else if (bounds != null) {
                     // 根据节点类型选择颜色
                     Color fillColor = getNodeColor(node);
                     Shape shape = getNodeShape(node, bounds);
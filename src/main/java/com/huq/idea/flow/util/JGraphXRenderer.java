@@ -1,7 +1,8 @@
 package com.huq.idea.flow.util;
 
+import com.huq.idea.flow.config.config.IdeaSettings;
 import com.huq.idea.flow.model.CallStack;
-import com.huq.idea.flow.model.MethodDescription;
+import com.huq.idea.flow.model.CompactFlowGraph;
 import com.huq.idea.flow.model.FlowGraphData;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
@@ -9,10 +10,11 @@ import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.mxgraph.layout.hierarchical.mxHierarchicalLayout;
 import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGeometry;
 import com.mxgraph.swing.mxGraphComponent;
 import com.mxgraph.util.mxConstants;
+import com.mxgraph.util.mxPoint;
 import com.mxgraph.util.mxRectangle;
 import com.mxgraph.view.mxGraph;
 import com.mxgraph.view.mxStylesheet;
@@ -21,8 +23,13 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,11 +42,14 @@ public class JGraphXRenderer {
     private static final Logger LOG = Logger.getInstance(JGraphXRenderer.class);
 
     // 节点宽度
-    private static final int NODE_WIDTH = 200;
+    static final int NODE_WIDTH = 200;
     // 节点高度
-    private static final int NODE_HEIGHT = 40;
+    static final int NODE_HEIGHT = 40;
     // 节点间距
-    private static final int NODE_SPACING = 60;
+    static final int NODE_SPACING = 60;
+    // 布局缓存标识，修改布局参数或节点尺寸时需要同步修改
+    private static final String LAYOUT_PROFILE = "jgraphx-json-sugiyama-v1";
+    private static final String BEND_PROFILE = LAYOUT_PROFILE + "-bends";
 
     /**
      * 创建一个显示JGraphX流程图的组件（从CallStack数据）
@@ -61,36 +71,41 @@ public class JGraphXRenderer {
                 @Override
                 protected mxGraphComponent doInBackground() {
                     try {
-                        // 创建图形组件
-                        mxGraph graph = new mxGraph();
-                        Object parent = graph.getDefaultParent();
+                        // 只创建前几层调用，更深的调用在点击占位节点时才创建
+                        LazyCallGraph callGraph = new LazyCallGraph(callStack,
+                                IdeaSettings.getInstance().getState().getCallGraphInitialDepth());
+                        mxGraph graph = callGraph.getGraph();
 
                         // 配置图形样式
                         configureGraphStyles(graph);
-
-                        // 开始更新图形
-                        graph.getModel().beginUpdate();
-
-                        try {
-                            // 创建节点和边
-                            Map<String, Object> vertexMap = new HashMap<>();
-                            buildGraphFromCallStack(graph, parent, callStack, vertexMap, 0, 0);
-                        } finally {
-                            // 结束更新
-                            graph.getModel().endUpdate();
-                        }
+                        callGraph.materialize();
 
                         // 创建图形组件
                         mxGraphComponent graphComponent = new mxGraphComponent(graph);
                         graphComponent.setConnectable(false);
+                        graphComponent.setToolTips(true);
                         graphComponent.getViewport().setOpaque(true);
                         graphComponent.getViewport().setBackground(Color.WHITE);
-
-                        // 应用布局
-                        mxHierarchicalLayout layout = new mxHierarchicalLayout(graph);
-                        layout.setInterRankCellSpacing(NODE_SPACING);
-                        layout.setIntraCellSpacing(NODE_SPACING);
-                        layout.execute(parent);
+                        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+                        LevelOfDetail.install(graphComponent, settings.getLodLabelZoomPercent(), settings.getLodClusterZoomPercent(),
+                                cell -> {
+                                    CallStack call = callGraph.getCall(cell);
+                                    return call != null ? call.getMethodDescription().getClassName() : null;
+                                });
+
+                        // 单击占位节点展开，双击调用节点折叠或展开
+                        graphComponent.getGraphControl().addMouseListener(new MouseAdapter() {
+                            @Override
+                            public void mouseClicked(MouseEvent e) {
+                                Object cell = graphComponent.getCellAt(e.getX(), e.getY());
+                                if (cell == null) {
+                                    return;
+                                }
+                                if (e.getClickCount() == (callGraph.isStub(cell) ? 1 : 2)) {
+                                    callGraph.toggle(cell);
+                                }
+                            }
+                        });
 
                         // 自动调整大小以适应内容
                         mxRectangle bounds = graph.getGraphBounds();
@@ -143,7 +158,7 @@ public class JGraphXRenderer {
     /**
      * 配置图形样式
      */
-    private static void configureGraphStyles(mxGraph graph) {
+    static void configureGraphStyles(mxGraph graph) {
         mxStylesheet stylesheet = graph.getStylesheet();
 
         // 服务层样式
@@ -214,131 +229,17 @@ public class JGraphXRenderer {
         selfLoopStyle.put(mxConstants.STYLE_EDGE, "orthogonalEdgeStyle");
 //        selfLoopStyle.put(mxConstants.STYLE_CURVED, true);
         stylesheet.putCellStyle("selfLoop", selfLoopStyle);
-    }
-
-    /**
-     * 递归构建调用栈的图形表示
-     */
-    private static void buildGraphFromCallStack(mxGraph graph, Object parent, CallStack callStack,
-                                               Map<String, Object> vertexMap, int x, int y) {
-        if (callStack == null || callStack.getMethodDescription() == null) {
-            return;
-        }
-
-        MethodDescription methodDesc = callStack.getMethodDescription();
-        String className = methodDesc.getClassName();
-        String methodName = methodDesc.getName();
-        String returnType = methodDesc.getReturnType();
-
-        // 创建节点标签
-        String label = methodName;
-        if (returnType != null && !returnType.equals("void")) {
-            label += ": " + returnType;
-        }
 
-        // 确定节点样式
-        String style = determineNodeStyle(className);
-
-        // 创建或获取节点
-        String nodeId = className + "." + methodName;
-        Object vertex;
-
-        if (vertexMap.containsKey(nodeId)) {
-            // 如果节点已存在，使用现有节点
-            vertex = vertexMap.get(nodeId);
-        } else {
-            // 创建新节点
-            vertex = graph.insertVertex(parent, null, label, x, y, NODE_WIDTH, NODE_HEIGHT, style);
-            vertexMap.put(nodeId, vertex);
-
-            // 设置工具提示
-            String tooltip = createTooltip(methodDesc);
-//            ((mxCell) vertex).setToolTipText(tooltip);
-        }
-
-        // 处理父节点关系
-        if (callStack.getParent() != null && callStack.getParent().getMethodDescription() != null) {
-            MethodDescription parentDesc = callStack.getParent().getMethodDescription();
-            String parentNodeId = parentDesc.getClassName() + "." + parentDesc.getName();
-
-            // 如果父节点存在于图中，创建边
-            if (vertexMap.containsKey(parentNodeId)) {
-                Object parentVertex = vertexMap.get(parentNodeId);
-
-                // 创建边标签（如果有参数）
-                String parameters = methodDesc.getAttr("parameters", "");
-                String edgeLabel = parameters.isEmpty() ? "" : "(" + parameters + ")";
-
-                // 检查是否是回环（自环）
-                if (parentVertex == vertex) {
-                    // 对于回环，使用特殊的样式
-                    graph.insertEdge(parent, null, edgeLabel, parentVertex, vertex, "selfLoop");
-                } else {
-                    // 插入普通边
-                    graph.insertEdge(parent, null, edgeLabel, parentVertex, vertex, "edge");
-                }
-            }
-        }
-
-        // 递归处理子节点
-        int childX = x + NODE_WIDTH + NODE_SPACING;
-        int childY = y;
-
-        for (CallStack child : callStack.getChildren()) {
-            buildGraphFromCallStack(graph, parent, child, vertexMap, childX, childY);
-            childY += NODE_HEIGHT + NODE_SPACING;
-        }
-    }
-
-    /**
-     * 根据类名确定节点样式
-     */
-    private static String determineNodeStyle(String className) {
-        if (className.contains("Service") || className.contains("Manager")) {
-            return "service";
-        } else if (className.contains("Controller") || className.contains("Api")) {
-            return "controller";
-        } else if (className.contains("Repository") || className.contains("Dao")) {
-            return "dao";
-        } else if (className.contains("Impl")) {
-            return "impl";
-        } else {
-            return "default";
-        }
-    }
-
-    /**
-     * 创建节点工具提示
-     */
-    private static String createTooltip(MethodDescription methodDesc) {
-        StringBuilder tooltip = new StringBuilder();
-        tooltip.append("<html>");
-        tooltip.append("<b>类:</b> ").append(methodDesc.getClassName()).append("<br>");
-        tooltip.append("<b>方法:</b> ").append(methodDesc.getName()).append("<br>");
-
-        String parameters = methodDesc.getAttr("parameters", "");
-        if (!parameters.isEmpty()) {
-            tooltip.append("<b>参数:</b> ").append(parameters).append("<br>");
-        }
-
-        String returnType = methodDesc.getReturnType();
-        if (returnType != null && !returnType.equals("void")) {
-            tooltip.append("<b>返回类型:</b> ").append(returnType).append("<br>");
-        }
-
-        String docComment = methodDesc.getDocComment() != null ? methodDesc.getDocComment().getText() : "";
-        if (docComment != null && !docComment.isEmpty()) {
-            // 清理JavaDoc注释
-            docComment = docComment.replaceAll("/\\*\\*|\\*/|\\*", "").trim();
-            docComment = docComment.replaceAll("@[a-zA-Z]+[^@]*", "").trim();
-
-            if (!docComment.isEmpty()) {
-                tooltip.append("<b>描述:</b> ").append(docComment).append("<br>");
-            }
-        }
-
-        tooltip.append("</html>");
-        return tooltip.toString();
+        // 未展开调用的占位节点样式
+        Map<String, Object> stubStyle = new HashMap<>();
+        stubStyle.put(mxConstants.STYLE_SHAPE, mxConstants.SHAPE_RECTANGLE);
+        stubStyle.put(mxConstants.STYLE_ROUNDED, true);
+        stubStyle.put(mxConstants.STYLE_DASHED, true);
+        stubStyle.put(mxConstants.STYLE_FILLCOLOR, "#FFFFFF");
+        stubStyle.put(mxConstants.STYLE_STROKECOLOR, "#7F8C8D");
+        stubStyle.put(mxConstants.STYLE_FONTCOLOR, "#566573");
+        stubStyle.put(mxConstants.STYLE_STROKEWIDTH, 1.0);
+        stylesheet.putCellStyle(LazyCallGraph.STUB_STYLE, stubStyle);
     }
 
     /**
@@ -357,16 +258,24 @@ public class JGraphXRenderer {
             loadingLabel.setFont(new Font(Font.SANS_SERIF, Font.ITALIC, 14));
             panel.add(loadingLabel, BorderLayout.CENTER);
 
-            // 解析JSON数据
-            FlowGraphData graphData = FlowGraphData.fromJson(jsonData);
-
             // 在后台线程中渲染图像
             SwingWorker<mxGraphComponent, Void> worker = new SwingWorker<>() {
                 @Override
                 protected mxGraphComponent doInBackground() {
                     try {
+                        // 直接把JSON解析为紧凑表示，不保留完整的节点对象
+                        CompactFlowGraph graphData = CompactFlowGraph.fromJson(jsonData);
+
                         // 创建图形组件
-                        mxGraph graph = new mxGraph();
+                        // 单元格到节点下标的映射，双击时直接定位节点，悬停时生成工具提示
+                        Map<Object, Integer> cellToIndex = new IdentityHashMap<>();
+                        mxGraph graph = new mxGraph() {
+                            @Override
+                            public String getToolTipForCell(Object cell) {
+                                Integer index = cellToIndex.get(cell);
+                                return index != null ? createTooltipFromNode(graphData, index) : null;
+                            }
+                        };
                         Object parent = graph.getDefaultParent();
 
                         // 配置图形样式
@@ -377,8 +286,7 @@ public class JGraphXRenderer {
 
                         try {
                             // 创建节点和边
-                            Map<String, Object> vertexMap = new HashMap<>();
-                            buildGraphFromJsonData(graph, parent, graphData, vertexMap);
+                            buildGraphFromJsonData(graph, parent, graphData, cellToIndex);
                         } finally {
                             // 结束更新
                             graph.getModel().endUpdate();
@@ -387,8 +295,15 @@ public class JGraphXRenderer {
                         // 创建图形组件
                         mxGraphComponent graphComponent = new mxGraphComponent(graph);
                         graphComponent.setConnectable(false);
+                        graphComponent.setToolTips(true);
                         graphComponent.getViewport().setOpaque(true);
                         graphComponent.getViewport().setBackground(Color.WHITE);
+                        IdeaSettings.State settings = IdeaSettings.getInstance().getState();
+                        LevelOfDetail.install(graphComponent, settings.getLodLabelZoomPercent(), settings.getLodClusterZoomPercent(),
+                                cell -> {
+                                    Integer index = cellToIndex.get(cell);
+                                    return index != null ? graphData.getClassName(index) : null;
+                                });
 
                         // 添加双击事件处理
                         graphComponent.getGraphControl().addMouseListener(new MouseAdapter() {
@@ -397,23 +312,17 @@ public class JGraphXRenderer {
                                 if (e.getClickCount() == 2) {
                                     mxCell cell = (mxCell) graphComponent.getCellAt(e.getX(), e.getY());
                                     if (cell != null && cell.isVertex()) {
-                                        // 查找对应的节点
-                                        for (FlowGraphData.Node node : graphData.getNodes()) {
-                                            if (node.getLabel().equals(cell.getValue().toString())) {
-                                                navigateToCode(project, node);
-                                                break;
-                                            }
+                                        Integer index = cellToIndex.get(cell);
+                                        if (index != null) {
+                                            navigateToCode(project, graphData, index);
                                         }
                                     }
                                 }
                             }
                         });
 
-                        // 应用布局
-                        mxHierarchicalLayout layout = new mxHierarchicalLayout(graph);
-                        layout.setInterRankCellSpacing(NODE_SPACING);
-                        layout.setIntraCellSpacing(NODE_SPACING);
-                        layout.execute(parent);
+                        // 应用布局，结构未变化时复用缓存的节点位置
+                        layoutWithCache(graph, parent, graphData, cellToIndex);
 
                         // 自动调整大小以适应内容
                         mxRectangle bounds = graph.getGraphBounds();
@@ -464,55 +373,101 @@ public class JGraphXRenderer {
     }
 
     /**
-     * 从JSON数据构建图形
+     * 执行分层布局；命中布局缓存时直接设置节点位置和边的折点
      */
-    private static void buildGraphFromJsonData(mxGraph graph, Object parent, FlowGraphData graphData,
-                                              Map<String, Object> vertexMap) {
-        // 添加所有节点
-        for (FlowGraphData.Node node : graphData.getNodes()) {
-            String nodeId = node.getId();
-            String label = node.getLabel();
-            String type = node.getType();
-
-            // 确定节点样式
-            String style = determineNodeStyleFromType(type);
+    private static void layoutWithCache(mxGraph graph, Object parent, CompactFlowGraph graphData,
+                                        Map<Object, Integer> cellToIndex) {
+        LayoutCache layoutCache = LayoutCache.getInstance();
+        String layoutKey = LayoutCache.structuralHash(LAYOUT_PROFILE, graphData);
+        String bendKey = LayoutCache.structuralHash(BEND_PROFILE, graphData);
+        Map<String, Rectangle2D> cached = layoutCache.get(layoutKey);
+        Map<String, Rectangle2D> cachedBends = LayoutCache.covers(cached, graphData) ? layoutCache.get(bendKey) : null;
+        // 边单元格按插入顺序排列，与紧凑表示中的边顺序一致
+        Object[] edges = graph.getChildEdges(parent);
+        if (cachedBends != null) {
+            graph.getModel().beginUpdate();
+            try {
+                for (Map.Entry<Object, Integer> entry : cellToIndex.entrySet()) {
+                    Rectangle2D rect = cached.get(graphData.getId(entry.getValue()));
+                    if (rect != null) {
+                        graph.getModel().setGeometry(entry.getKey(),
+                                new mxGeometry(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+                    }
+                }
+                for (int e = 0; e < edges.length; e++) {
+                    List<Point2D> bends = LayoutCache.decodeBends(cachedBends, e);
+                    mxGeometry geometry = graph.getModel().getGeometry(edges[e]);
+                    if (bends.isEmpty() || geometry == null) {
+                        continue;
+                    }
+                    List<mxPoint> points = new ArrayList<>(bends.size());
+                    for (Point2D bend : bends) {
+                        points.add(new mxPoint(bend.getX(), bend.getY()));
+                    }
+                    geometry = (mxGeometry) geometry.clone();
+                    geometry.setPoints(points);
+                    graph.getModel().setGeometry(edges[e], geometry);
+                }
+            } finally {
+                graph.getModel().endUpdate();
+            }
+            return;
+        }
 
-            // 创建节点
-            Object vertex = graph.insertVertex(parent, nodeId, label, 0, 0, NODE_WIDTH, NODE_HEIGHT, style);
-            vertexMap.put(nodeId, vertex);
+        Map<Object, Rectangle2D> cellBounds = SugiyamaLayout.layoutCells(graph, parent, NODE_SPACING, NODE_SPACING);
 
-            // 设置工具提示
-            String tooltip = createTooltipFromNode(node);
-            ((mxCell) vertex).setAttribute("tooltip",tooltip);
+        Map<String, Rectangle2D> geometries = new HashMap<>();
+        for (Map.Entry<Object, Integer> entry : cellToIndex.entrySet()) {
+            Rectangle2D rect = cellBounds.get(entry.getKey());
+            String id = graphData.getId(entry.getValue());
+            if (rect != null && id != null) {
+                geometries.put(id, rect);
+            }
         }
-
-        // 添加所有边
-        for (FlowGraphData.Edge edge : graphData.getEdges()) {
-            String sourceId = edge.getSource();
-            String targetId = edge.getTarget();
-            String label = edge.getLabel();
-
-            // 获取源节点和目标节点
-            Object sourceVertex = vertexMap.get(sourceId);
-            Object targetVertex = vertexMap.get(targetId);
-
-            if (sourceVertex != null && targetVertex != null) {
-                // 检查是否是回环（自环）
-                if (sourceId.equals(targetId)) {
-                    // 对于回环，使用特殊的样式
-                    graph.insertEdge(parent, null, label != null ? label : "", sourceVertex, targetVertex, "selfLoop");
-                } else {
-                    // 插入普通边
-                    graph.insertEdge(parent, null, label != null ? label : "", sourceVertex, targetVertex, "edge");
+        List<List<Point2D>> bends = new ArrayList<>(edges.length);
+        for (Object edge : edges) {
+            List<Point2D> points = new ArrayList<>();
+            mxGeometry geometry = graph.getModel().getGeometry(edge);
+            if (geometry != null && geometry.getPoints() != null) {
+                for (mxPoint point : geometry.getPoints()) {
+                    points.add(new Point2D.Double(point.getX(), point.getY()));
                 }
             }
+            bends.add(points);
+        }
+        layoutCache.put(bendKey, LayoutCache.encodeBends(bends));
+        layoutCache.put(layoutKey, geometries);
+    }
+
+    /**
+     * 从JSON数据构建图形，边的端点直接使用 {@link CompactFlowGraph} 中的节点下标，不再按 id 查找，
+     * 也不为节点创建 {@link FlowGraphData.Node} 对象
+     */
+    private static void buildGraphFromJsonData(mxGraph graph, Object parent, CompactFlowGraph compact,
+                                              Map<Object, Integer> cellToIndex) {
+        // 添加所有节点
+        Object[] vertices = new Object[compact.getNodeCount()];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = graph.insertVertex(parent, compact.getId(i), compact.getLabel(i), 0, 0, NODE_WIDTH, NODE_HEIGHT,
+                    determineNodeStyleFromType(compact.getType(i)));
+            cellToIndex.put(vertices[i], i);
+        }
+
+        // 添加所有边，端点不存在的边在构建紧凑表示时已丢弃
+        for (int e = 0; e < compact.getEdgeCount(); e++) {
+            int source = compact.getEdgeSource(e);
+            int target = compact.getEdgeTarget(e);
+            String label = compact.getEdgeLabel(e);
+            // 对于回环（自环），使用特殊的样式
+            graph.insertEdge(parent, null, label != null ? label : "", vertices[source], vertices[target],
+                    source == target ? "selfLoop" : "edge");
         }
     }
 
     /**
      * 根据节点类型确定样式
      */
-    private static String determineNodeStyleFromType(String type) {
+    static String determineNodeStyleFromType(String type) {
         if (type == null) {
             return "default";
         }
@@ -532,6 +487,10 @@ public class JGraphXRenderer {
     /**
      * 从节点创建工具提示
      */
+    private static String createTooltipFromNode(CompactFlowGraph graphData, int index) {
+        return createTooltipFromNode(graphData.getNode(index));
+    }
+
     private static String createTooltipFromNode(FlowGraphData.Node node) {
         StringBuilder tooltip = new StringBuilder();
         tooltip.append("<html>");
@@ -563,6 +522,10 @@ public class JGraphXRenderer {
     /**
      * 导航到节点对应的代码
      */
+    private static void navigateToCode(Project project, CompactFlowGraph graphData, int index) {
+        navigateToCode(project, graphData.getNode(index));
+    }
+
     private static void navigateToCode(Project project, FlowGraphData.Node node) {
         if (node.getFilePath() == null || node.getFilePath().isEmpty()) {
             return;
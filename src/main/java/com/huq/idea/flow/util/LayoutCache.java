@@ -0,0 +1,307 @@
+package com.huq.idea.flow.util;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.huq.idea.flow.model.CompactFlowGraph;
+import com.huq.idea.flow.model.FlowGraphData;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程图布局缓存，按图结构哈希保存节点几何信息
+ *
+ * <p>内存中保留最近使用的若干个布局，同时写入 IDE 系统目录下的磁盘缓存，
+ * 重新打开或重新渲染结构未变化的流程图时可以直接复用，跳过布局计算。
+ * 磁盘缓存有文件数上限，写入时按最后使用时间删除最旧的文件。
+ * 磁盘读写失败只记录日志，不影响渲染。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class LayoutCache {
+
+    private static final Logger LOG = Logger.getInstance(LayoutCache.class);
+
+    private static final int MEMORY_LIMIT = 32;
+    // 单个布局文件通常只有几 KB，500 个文件约占几 MB
+    private static final int DISK_LIMIT = 500;
+    private static final Type GEOMETRY_TYPE = new TypeToken<LinkedHashMap<String, double[]>>() {
+    }.getType();
+
+    private static volatile LayoutCache instance;
+
+    private final Path directory;
+    private final int diskLimit;
+    private final Gson gson = new Gson();
+    private final Map<String, Map<String, Rectangle2D>> memory;
+
+    public LayoutCache(Path directory, int memoryLimit) {
+        this(directory, memoryLimit, DISK_LIMIT);
+    }
+
+    public LayoutCache(Path directory, int memoryLimit, int diskLimit) {
+        this.directory = directory;
+        this.diskLimit = diskLimit;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Rectangle2D>> eldest) {
+                return size() > memoryLimit;
+            }
+        };
+    }
+
+    public static LayoutCache getInstance() {
+        LayoutCache current = instance;
+        if (current == null) {
+            synchronized (LayoutCache.class) {
+                current = instance;
+                if (current == null) {
+                    current = new LayoutCache(Paths.get(PathManager.getSystemPath(), "ai-generate-flow", "layout-cache"), MEMORY_LIMIT);
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 计算图的结构哈希：节点顺序、类型、文本和边都参与计算
+     *
+     * @param profile 布局方式和参数的标识，不同渲染器的布局互不复用
+     */
+    public static String structuralHash(String profile, FlowGraphData graphData) {
+        StringBuilder text = new StringBuilder(profile).append('\n');
+        for (FlowGraphData.Node node : graphData.getNodes()) {
+            text.append("N\u0001").append(node.getId())
+                    .append('\u0001').append(node.getType())
+                    .append('\u0001').append(node.getLabel())
+                    .append('\u0001').append(node.getDescription())
+                    .append('\n');
+        }
+        for (FlowGraphData.Edge edge : graphData.getEdges()) {
+            text.append("E\u0001").append(edge.getSource())
+                    .append('\u0001').append(edge.getTarget())
+                    .append('\u0001').append(edge.getType())
+                    .append('\u0001').append(edge.getLabel())
+                    .append('\n');
+        }
+        return sha256(text);
+    }
+
+    /**
+     * 与 {@link #structuralHash(String, FlowGraphData)} 相同，直接读取紧凑表示的列
+     */
+    public static String structuralHash(String profile, CompactFlowGraph graph) {
+        StringBuilder text = new StringBuilder(profile).append('\n');
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            text.append("N\u0001").append(graph.getId(node))
+                    .append('\u0001').append(graph.getType(node))
+                    .append('\u0001').append(graph.getLabel(node))
+                    .append('\u0001').append(graph.getDescription(node))
+                    .append('\n');
+        }
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            text.append("E\u0001").append(graph.getId(graph.getEdgeSource(edge)))
+                    .append('\u0001').append(graph.getId(graph.getEdgeTarget(edge)))
+                    .append('\u0001').append(graph.getEdgeType(edge))
+                    .append('\u0001').append(graph.getEdgeLabel(edge))
+                    .append('\n');
+        }
+        return sha256(text);
+    }
+
+    private static String sha256(CharSequence text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 读取缓存的节点几何信息（节点 id 到位置和尺寸），未命中返回 null
+     */
+    public synchronized Map<String, Rectangle2D> get(String hash) {
+        Map<String, Rectangle2D> geometries = memory.get(hash);
+        if (geometries != null) {
+            return geometries;
+        }
+
+        Path file = directory.resolve(hash + ".json");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            Map<String, double[]> stored = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), GEOMETRY_TYPE);
+            if (stored == null) {
+                return null;
+            }
+            Map<String, Rectangle2D> result = new LinkedHashMap<>();
+            for (Map.Entry<String, double[]> entry : stored.entrySet()) {
+                double[] value = entry.getValue();
+                if (value == null || value.length != 4) {
+                    return null;
+                }
+                result.put(entry.getKey(), new Rectangle2D.Double(value[0], value[1], value[2], value[3]));
+            }
+            result = Collections.unmodifiableMap(result);
+            memory.put(hash, result);
+            // 更新最后使用时间，清理时优先保留仍在使用的布局
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (Exception e) {
+            LOG.warn("读取布局缓存失败: " + file + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存节点几何信息到内存和磁盘
+     */
+    public synchronized void put(String hash, Map<String, Rectangle2D> geometries) {
+        Map<String, Rectangle2D> copy = new LinkedHashMap<>();
+        Map<String, double[]> stored = new LinkedHashMap<>();
+        for (Map.Entry<String, Rectangle2D> entry : geometries.entrySet()) {
+            Rectangle2D rect = entry.getValue();
+            copy.put(entry.getKey(), new Rectangle2D.Double(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+            stored.put(entry.getKey(), new double[]{rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()});
+        }
+        memory.put(hash, Collections.unmodifiableMap(copy));
+
+        try {
+            Files.createDirectories(directory);
+            // 先写临时文件再移动，避免并发读到半个文件
+            Path temp = Files.createTempFile(directory, hash, ".tmp");
+            Files.writeString(temp, gson.toJson(stored), StandardCharsets.UTF_8);
+            Files.move(temp, directory.resolve(hash + ".json"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.warn("写入布局缓存失败: " + e.getMessage());
+            return;
+        }
+        prune();
+    }
+
+    /**
+     * 磁盘缓存文件数超过上限时，删除最后使用时间最早的文件
+     */
+    private void prune() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            LOG.warn("清理布局缓存失败: " + e.getMessage());
+            return;
+        }
+        if (files.size() <= diskLimit) {
+            return;
+        }
+
+        Map<Path, Long> lastModified = new HashMap<>();
+        for (Path file : files) {
+            try {
+                lastModified.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                lastModified.put(file, 0L);
+            }
+        }
+        files.sort(Comparator.comparingLong(lastModified::get));
+        int deleted = 0;
+        for (Path file : files.subList(0, files.size() - diskLimit)) {
+            try {
+                Files.deleteIfExists(file);
+                deleted++;
+            } catch (IOException e) {
+                LOG.warn("删除布局缓存失败: " + file + ", " + e.getMessage());
+            }
+        }
+        LOG.info("布局缓存超过 " + diskLimit + " 个文件，已删除 " + deleted + " 个最旧的文件");
+    }
+
+    /**
+     * 把每条边的折点编码为可缓存的几何信息，键为 "边序号/折点序号"，位置保存在矩形的 x、y 中
+     *
+     * @param bends 按边的固定顺序排列的折点，没有折点的边对应空列表
+     */
+    public static Map<String, Rectangle2D> encodeBends(List<List<Point2D>> bends) {
+        Map<String, Rectangle2D> encoded = new LinkedHashMap<>();
+        for (int edge = 0; edge < bends.size(); edge++) {
+            List<Point2D> points = bends.get(edge);
+            for (int k = 0; k < points.size(); k++) {
+                encoded.put(edge + "/" + k, new Rectangle2D.Double(points.get(k).getX(), points.get(k).getY(), 0, 0));
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * 读取 {@link #encodeBends(List)} 编码的第 edge 条边的折点
+     */
+    public static List<Point2D> decodeBends(Map<String, Rectangle2D> encoded, int edge) {
+        List<Point2D> points = new ArrayList<>();
+        Rectangle2D point = encoded.get(edge + "/0");
+        while (point != null) {
+            points.add(new Point2D.Double(point.getX(), point.getY()));
+            point = encoded.get(edge + "/" + points.size());
+        }
+        return points;
+    }
+
+    /**
+     * 检查缓存是否覆盖了图中所有节点，节点 id 缺失或重复时不使用缓存
+     */
+    public static boolean covers(Map<String, Rectangle2D> geometries, FlowGraphData graphData) {
+        if (geometries == null || geometries.size() != graphData.getNodes().size()) {
+            return false;
+        }
+        for (FlowGraphData.Node node : graphData.getNodes()) {
+            if (node.getId() == null || !geometries.containsKey(node.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 {@link #covers(Map, FlowGraphData)} 相同，直接读取紧凑表示的列
+     */
+    public static boolean covers(Map<String, Rectangle2D> geometries, CompactFlowGraph graph) {
+        if (geometries == null || geometries.size() != graph.getNodeCount()) {
+            return false;
+        }
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            String id = graph.getId(node);
+            if (id == null || !geometries.containsKey(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
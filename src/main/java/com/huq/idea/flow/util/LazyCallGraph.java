@@ -0,0 +1,301 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.MethodDescription;
+import com.mxgraph.layout.mxCompactTreeLayout;
+import com.mxgraph.view.mxGraph;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按需创建单元格的调用图
+ *
+ * <p>打开时只为调用栈的前 N 层创建节点，更深的调用用一个 "+k calls" 占位节点代替。
+ * 点击占位节点时才为下一层调用创建单元格，展开的节点也可以重新折叠回占位节点。
+ * 单元格数量和内存只与当前可见的部分成正比，工具提示在鼠标悬停时才生成。
+ *
+ * <p>每次调用都对应一个独立的节点，调用图是一棵树，折叠时可以直接删除整个子树。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class LazyCallGraph {
+
+    public static final String STUB_STYLE = "stub";
+
+    private final CallStack root;
+    private final int initialDepth;
+    private final mxGraph graph;
+
+    // 已创建的调用节点
+    private final Map<CallStack, Object> vertexOf = new IdentityHashMap<>();
+    private final Map<Object, CallStack> callOf = new IdentityHashMap<>();
+    // 子调用尚未创建的节点对应的占位单元格
+    private final Map<CallStack, Object> stubOf = new IdentityHashMap<>();
+    private final Map<Object, CallStack> stubOwner = new IdentityHashMap<>();
+    // 超出展开上限的实现对应的 "+N more" 单元格
+    private final Map<CallStack, Object> moreOf = new IdentityHashMap<>();
+
+    public LazyCallGraph(CallStack root, int initialDepth) {
+        this.root = root;
+        this.initialDepth = Math.max(1, initialDepth);
+        this.graph = new mxGraph() {
+            @Override
+            public String getToolTipForCell(Object cell) {
+                return tooltipFor(cell);
+            }
+        };
+    }
+
+    public mxGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * 创建前 N 层调用的单元格并布局
+     */
+    public void materialize() {
+        if (root == null || root.getMethodDescription() == null) {
+            return;
+        }
+        graph.getModel().beginUpdate();
+        try {
+            addCall(root, null, initialDepth);
+            layout();
+        } finally {
+            graph.getModel().endUpdate();
+        }
+    }
+
+    /**
+     * 展开占位节点或折叠已展开的调用节点
+     *
+     * @return 图是否发生变化
+     */
+    public boolean toggle(Object cell) {
+        CallStack owner = stubOwner.get(cell);
+        if (owner != null) {
+            return expand(owner);
+        }
+        CallStack call = callOf.get(cell);
+        if (call == null) {
+            return false;
+        }
+        return stubOf.containsKey(call) ? expand(call) : collapse(call);
+    }
+
+    public boolean isStub(Object cell) {
+        return stubOwner.containsKey(cell);
+    }
+
+    public CallStack getCall(Object cell) {
+        return callOf.get(cell);
+    }
+
+    /**
+     * 已创建的单元格数量（节点、占位节点和 "+N more" 节点）
+     */
+    public int getMaterializedCount() {
+        return vertexOf.size() + stubOf.size() + moreOf.size();
+    }
+
+    private boolean expand(CallStack call) {
+        Object stub = stubOf.remove(call);
+        if (stub == null) {
+            return false;
+        }
+        stubOwner.remove(stub);
+        graph.getModel().beginUpdate();
+        try {
+            graph.removeCells(new Object[]{stub}, true);
+            addChildren(call, vertexOf.get(call), 1);
+            layout();
+        } finally {
+            graph.getModel().endUpdate();
+        }
+        return true;
+    }
+
+    private boolean collapse(CallStack call) {
+        if (call.getChildren().isEmpty()) {
+            return false;
+        }
+        List<Object> cells = new ArrayList<>();
+        removeDescendants(call, cells);
+        graph.getModel().beginUpdate();
+        try {
+            graph.removeCells(cells.toArray(), true);
+            addStub(call, vertexOf.get(call));
+            layout();
+        } finally {
+            graph.getModel().endUpdate();
+        }
+        return true;
+    }
+
+    /**
+     * 收集已创建的后代单元格并清除映射，只遍历已创建的部分
+     */
+    private void removeDescendants(CallStack call, List<Object> cells) {
+        Object more = moreOf.remove(call);
+        if (more != null) {
+            cells.add(more);
+        }
+        Object stub = stubOf.remove(call);
+        if (stub != null) {
+            stubOwner.remove(stub);
+            cells.add(stub);
+            return;
+        }
+        for (CallStack child : call.getChildren()) {
+            Object vertex = vertexOf.remove(child);
+            if (vertex == null) {
+                continue;
+            }
+            callOf.remove(vertex);
+            cells.add(vertex);
+            removeDescendants(child, cells);
+        }
+    }
+
+    private void addCall(CallStack call, Object parentVertex, int remaining) {
+        if (call.getMethodDescription() == null) {
+            return;
+        }
+        MethodDescription methodDesc = call.getMethodDescription();
+        Object parent = graph.getDefaultParent();
+        Object vertex = graph.insertVertex(parent, null, labelFor(methodDesc), 0, 0,
+                JGraphXRenderer.NODE_WIDTH, JGraphXRenderer.NODE_HEIGHT, styleFor(methodDesc.getClassName()));
+        vertexOf.put(call, vertex);
+        callOf.put(vertex, call);
+
+        if (parentVertex != null) {
+            // 创建边标签（如果有参数）
+            String parameters = methodDesc.getAttr("parameters", "");
+            String edgeLabel = parameters.isEmpty() ? "" : "(" + parameters + ")";
+            graph.insertEdge(parent, null, edgeLabel, parentVertex, vertex, "edge");
+        }
+
+        if (remaining <= 1 && !call.getChildren().isEmpty()) {
+            addStub(call, vertex);
+        } else {
+            addChildren(call, vertex, remaining - 1);
+        }
+    }
+
+    private void addChildren(CallStack call, Object vertex, int remaining) {
+        for (CallStack child : call.getChildren()) {
+            addCall(child, vertex, remaining);
+        }
+        // 超出展开上限的实现显示为一个 "+N more" 节点
+        if (!call.getOmittedImplementations().isEmpty()) {
+            Object parent = graph.getDefaultParent();
+            Object more = graph.insertVertex(parent, null, "+" + call.getOmittedImplementations().size() + " more",
+                    0, 0, JGraphXRenderer.NODE_WIDTH, JGraphXRenderer.NODE_HEIGHT, "default");
+            graph.insertEdge(parent, null, "", vertex, more, "edge");
+            moreOf.put(call, more);
+        }
+    }
+
+    private void addStub(CallStack call, Object vertex) {
+        Object parent = graph.getDefaultParent();
+        Object stub = graph.insertVertex(parent, null, "+" + call.getChildren().size() + " calls",
+                0, 0, JGraphXRenderer.NODE_WIDTH / 2.0, JGraphXRenderer.NODE_HEIGHT, STUB_STYLE);
+        graph.insertEdge(parent, null, "", vertex, stub, "edge");
+        stubOf.put(call, stub);
+        stubOwner.put(stub, call);
+    }
+
+    /**
+     * 调用图是一棵树，使用线性时间的树布局，从上到下排列
+     */
+    private void layout() {
+        Object rootVertex = vertexOf.get(root);
+        if (rootVertex == null) {
+            return;
+        }
+        mxCompactTreeLayout layout = new mxCompactTreeLayout(graph, false);
+        layout.setLevelDistance(JGraphXRenderer.NODE_SPACING);
+        layout.setNodeDistance(JGraphXRenderer.NODE_SPACING / 2);
+        layout.setEdgeRouting(false);
+        layout.execute(graph.getDefaultParent(), rootVertex);
+    }
+
+    /**
+     * 悬停时生成工具提示
+     */
+    String tooltipFor(Object cell) {
+        CallStack owner = stubOwner.get(cell);
+        if (owner != null) {
+            return "点击展开 " + owner.getChildren().size() + " 个调用";
+        }
+        CallStack call = callOf.get(cell);
+        if (call == null) {
+            return null;
+        }
+        return createTooltip(call.getMethodDescription());
+    }
+
+    static String labelFor(MethodDescription methodDesc) {
+        String label = methodDesc.getName();
+        String returnType = methodDesc.getReturnType();
+        if (returnType != null && !returnType.equals("void")) {
+            label += ": " + returnType;
+        }
+        return label;
+    }
+
+    /**
+     * 根据类名确定节点样式
+     */
+    static String styleFor(String className) {
+        if (className.contains("Service") || className.contains("Manager")) {
+            return "service";
+        } else if (className.contains("Controller") || className.contains("Api")) {
+            return "controller";
+        } else if (className.contains("Repository") || className.contains("Dao")) {
+            return "dao";
+        } else if (className.contains("Impl")) {
+            return "impl";
+        } else {
+            return "default";
+        }
+    }
+
+    /**
+     * 创建节点工具提示
+     */
+    private static String createTooltip(MethodDescription methodDesc) {
+        StringBuilder tooltip = new StringBuilder();
+        tooltip.append("<html>");
+        tooltip.append("<b>类:</b> ").append(methodDesc.getClassName()).append("<br>");
+        tooltip.append("<b>方法:</b> ").append(methodDesc.getName()).append("<br>");
+
+        String parameters = methodDesc.getAttr("parameters", "");
+        if (!parameters.isEmpty()) {
+            tooltip.append("<b>参数:</b> ").append(parameters).append("<br>");
+        }
+
+        String returnType = methodDesc.getReturnType();
+        if (returnType != null && !returnType.equals("void")) {
+            tooltip.append("<b>返回类型:</b> ").append(returnType).append("<br>");
+        }
+
+        String docComment = methodDesc.getDocComment() != null ? methodDesc.getDocComment().getText() : "";
+        if (docComment != null && !docComment.isEmpty()) {
+            // 清理JavaDoc注释
+            docComment = docComment.replaceAll("/\\*\\*|\\*/|\\*", "").trim();
+            docComment = docComment.replaceAll("@[a-zA-Z]+[^@]*", "").trim();
+
+            if (!docComment.isEmpty()) {
+                tooltip.append("<b>描述:</b> ").append(docComment).append("<br>");
+            }
+        }
+
+        tooltip.append("</html>");
+        return tooltip.toString();
+    }
+}
@@ -0,0 +1,382 @@
+package com.huq.idea.flow.util;
+
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.swing.mxGraphComponent;
+import com.mxgraph.util.mxConstants;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventSource;
+import com.mxgraph.view.mxGraph;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 大图的细节层次（LOD）渲染
+ *
+ * <ul>
+ *     <li>{@link Level#FULL}：完整绘制</li>
+ *     <li>{@link Level#SIMPLIFIED}：缩放比例低于标签阈值时，不绘制文字和箭头</li>
+ *     <li>{@link Level#CLUSTERED}：缩放比例低于聚合阈值时，同一类的节点合并为一个方框，
+ *     类之间的边合并为一条按数量加粗的连线</li>
+ * </ul>
+ * 自定义绘制的面板使用 {@link #paintClusters}，JGraphX 面板使用 {@link #install} 在模型中折叠单元格。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public final class LevelOfDetail {
+
+    public enum Level {
+        FULL, SIMPLIFIED, CLUSTERED
+    }
+
+    private static final Color CLUSTER_FILL = new Color(212, 230, 241);
+    private static final Color CLUSTER_BORDER = new Color(108, 142, 191);
+    private static final Color BUNDLE_COLOR = new Color(140, 140, 140);
+    // 聚合边的最大线宽（屏幕像素）
+    private static final int MAX_BUNDLE_WIDTH = 8;
+    // JGraphX 聚合单元格的样式
+    static final String CLUSTER_STYLE = "shape=rectangle;fillColor=#D4E6F1;strokeColor=#6C8EBF;fontColor=#000000;"
+            + "align=left;verticalAlign=top;spacingLeft=4";
+    static final String BUNDLE_STYLE = "strokeColor=#8C8C8C;endArrow=none;edgeStyle=none";
+
+    private LevelOfDetail() {
+    }
+
+    /**
+     * 根据缩放比例确定细节层次，阈值为百分比，0 表示禁用对应层次
+     */
+    public static Level levelFor(double scale, int labelZoomPercent, int clusterZoomPercent) {
+        double percent = scale * 100;
+        if (clusterZoomPercent > 0 && percent < clusterZoomPercent) {
+            return Level.CLUSTERED;
+        }
+        if (labelZoomPercent > 0 && percent < labelZoomPercent) {
+            return Level.SIMPLIFIED;
+        }
+        return Level.FULL;
+    }
+
+    /**
+     * 按 key 聚合节点，并把节点之间的边合并为聚合块之间的带权边
+     *
+     * @param nodes    节点
+     * @param keyOf    聚合键，例如类名；返回 null 的节点单独成块
+     * @param boundsOf 节点位置，返回 null 的节点忽略
+     * @param edges    边
+     * @param sourceOf 边的起点
+     * @param targetOf 边的终点
+     */
+    public static <N, E> Clusters cluster(Collection<N> nodes, Function<N, String> keyOf, Function<N, Rectangle2D> boundsOf,
+                                          Iterable<E> edges, Function<E, N> sourceOf, Function<E, N> targetOf) {
+        Map<String, Cluster> byKey = new LinkedHashMap<>();
+        Map<N, Cluster> clusterOf = new HashMap<>(nodes.size() * 2);
+        int anonymous = 0;
+        for (N node : nodes) {
+            Rectangle2D bounds = boundsOf.apply(node);
+            if (bounds == null) {
+                continue;
+            }
+            String key = keyOf.apply(node);
+            if (key == null) {
+                key = "\u0000" + anonymous++;
+            }
+            Cluster cluster = byKey.get(key);
+            if (cluster == null) {
+                cluster = new Cluster(key, byKey.size(), bounds.getBounds2D());
+                byKey.put(key, cluster);
+            } else {
+                cluster.bounds.add(bounds);
+            }
+            cluster.size++;
+            clusterOf.put(node, cluster);
+        }
+
+        List<Cluster> clusters = new ArrayList<>(byKey.values());
+        Map<Long, Bundle> bundles = new LinkedHashMap<>();
+        for (E edge : edges) {
+            Cluster source = clusterOf.get(sourceOf.apply(edge));
+            Cluster target = clusterOf.get(targetOf.apply(edge));
+            if (source == null || target == null || source == target) {
+                continue;
+            }
+            long pair = ((long) source.index << 32) | target.index;
+            bundles.computeIfAbsent(pair, key -> new Bundle(source, target)).count++;
+        }
+        return new Clusters(clusters, new ArrayList<>(bundles.values()));
+    }
+
+    /**
+     * 绘制聚合后的图，只绘制与可见区域相交的元素
+     *
+     * @param visible 可见区域（图坐标），null 表示全部绘制
+     * @param scale   当前缩放比例，用于保持线宽和文字在屏幕上的大小
+     */
+    public static void paintClusters(Graphics2D g2, Clusters clusters, Rectangle2D visible, double scale) {
+        float unit = (float) (1 / Math.max(scale, 0.01));
+        // 线宽按整数像素分档复用，不透明颜色避免逐像素混合
+        BasicStroke[] strokes = new BasicStroke[MAX_BUNDLE_WIDTH + 1];
+        g2.setColor(BUNDLE_COLOR);
+        for (Bundle bundle : clusters.getBundles()) {
+            Rectangle2D source = bundle.source.bounds;
+            Rectangle2D target = bundle.target.bounds;
+            Line2D line = new Line2D.Double(source.getCenterX(), source.getCenterY(), target.getCenterX(), target.getCenterY());
+            if (visible != null && !line.intersects(visible) && !visible.contains(line.getP1())) {
+                continue;
+            }
+            // 线宽随合并的边数按对数增长
+            int width = Math.min(MAX_BUNDLE_WIDTH, 1 + (int) Math.log(bundle.count));
+            if (strokes[width] == null) {
+                strokes[width] = new BasicStroke(unit * width);
+            }
+            g2.setStroke(strokes[width]);
+            g2.draw(line);
+        }
+
+        g2.setStroke(new BasicStroke(unit));
+        Font font = g2.getFont().deriveFont(12 * unit);
+        g2.setFont(font);
+        FontMetrics metrics = g2.getFontMetrics();
+        for (Cluster cluster : clusters.getClusters()) {
+            Rectangle2D bounds = cluster.bounds;
+            if (visible != null && !QuadTree.overlaps(bounds, visible)) {
+                continue;
+            }
+            g2.setColor(CLUSTER_FILL);
+            g2.fill(bounds);
+            g2.setColor(CLUSTER_BORDER);
+            g2.draw(bounds);
+
+            // 只在屏幕上足够大时绘制类名和节点数
+            if (bounds.getWidth() * scale > 60 && bounds.getHeight() * scale > 16) {
+                String text = cluster.getLabel() + " (" + cluster.size + ")";
+                g2.setColor(Color.BLACK);
+                g2.drawString(text, (float) (bounds.getX() + 4 * unit), (float) (bounds.getY() + metrics.getAscent() + 2 * unit));
+            }
+        }
+    }
+
+    /**
+     * 为 JGraphX 组件安装细节层次：低于标签阈值时隐藏标签、箭头并关闭抗锯齿；
+     * 低于聚合阈值时在模型中折叠单元格，见 {@link ModelClusters}
+     *
+     * @param classOf 顶点单元格对应的类名，返回 null 的顶点单独成块
+     */
+    public static void install(mxGraphComponent graphComponent, int labelZoomPercent, int clusterZoomPercent,
+                               Function<Object, String> classOf) {
+        mxGraph graph = graphComponent.getGraph();
+        // 记录所有带箭头的样式，恢复完整细节时还原；样式内容会被修改，只能按引用作为键
+        Map<Map<String, Object>, Object> arrows = new IdentityHashMap<>();
+        for (Map<String, Object> style : graph.getStylesheet().getStyles().values()) {
+            Object endArrow = style.get(mxConstants.STYLE_ENDARROW);
+            if (endArrow != null && !mxConstants.NONE.equals(endArrow)) {
+                arrows.put(style, endArrow);
+            }
+        }
+        boolean[] simplified = {false};
+        ModelClusters modelClusters = new ModelClusters(graph, classOf);
+
+        mxEventSource.mxIEventListener listener = (sender, evt) -> {
+            double scale = graph.getView().getScale();
+            boolean shouldCluster = levelFor(scale, 0, clusterZoomPercent) == Level.CLUSTERED;
+            if (shouldCluster != modelClusters.isFolded()) {
+                if (shouldCluster) {
+                    modelClusters.fold(scale);
+                } else {
+                    modelClusters.unfold();
+                }
+            }
+
+            boolean shouldSimplify = levelFor(scale, labelZoomPercent, 0) != Level.FULL;
+            if (shouldSimplify == simplified[0]) {
+                return;
+            }
+            simplified[0] = shouldSimplify;
+            graph.setLabelsVisible(!shouldSimplify);
+            for (Map.Entry<Map<String, Object>, Object> entry : arrows.entrySet()) {
+                entry.getKey().put(mxConstants.STYLE_ENDARROW, shouldSimplify ? mxConstants.NONE : entry.getValue());
+            }
+            graphComponent.setAntiAlias(!shouldSimplify);
+            graphComponent.setTextAntiAlias(!shouldSimplify);
+            graph.refresh();
+        };
+        graph.getView().addListener(mxEvent.SCALE, listener);
+        graph.getView().addListener(mxEvent.SCALE_AND_TRANSLATE, listener);
+    }
+
+    /**
+     * 在 mxGraph 模型中按类折叠单元格
+     *
+     * <p>折叠时隐藏默认父节点下所有可见的顶点和边，每个类插入一个覆盖其节点包围盒的聚合顶点，
+     * 类之间的边合并为一条聚合边，线宽随边数按对数增长。展开时删除聚合单元格并恢复被隐藏的单元格。
+     * 聚合单元格不对应任何节点，工具提示和双击导航会忽略它们。
+     */
+    static final class ModelClusters {
+        private final mxGraph graph;
+        private final Function<Object, String> classOf;
+        private final List<Object> hidden = new ArrayList<>();
+        private final List<Object> aggregates = new ArrayList<>();
+        private boolean folded;
+
+        ModelClusters(mxGraph graph, Function<Object, String> classOf) {
+            this.graph = graph;
+            this.classOf = classOf;
+        }
+
+        boolean isFolded() {
+            return folded;
+        }
+
+        /**
+         * @param scale 当前缩放比例，聚合单元格的线宽和字号按它换算，在屏幕上保持固定大小
+         */
+        void fold(double scale) {
+            mxIGraphModel model = graph.getModel();
+            Object parent = graph.getDefaultParent();
+            Object[] vertices = graph.getChildVertices(parent);
+            Object[] edges = graph.getChildEdges(parent);
+            Clusters clusters = cluster(Arrays.asList(vertices), classOf, cell -> {
+                mxGeometry geometry = model.getGeometry(cell);
+                return geometry == null ? null
+                        : new Rectangle2D.Double(geometry.getX(), geometry.getY(), geometry.getWidth(), geometry.getHeight());
+            }, Arrays.asList(edges), edge -> model.getTerminal(edge, true), edge -> model.getTerminal(edge, false));
+
+            double unit = 1 / Math.max(scale, 0.01);
+            model.beginUpdate();
+            try {
+                for (Object cell : vertices) {
+                    model.setVisible(cell, false);
+                    hidden.add(cell);
+                }
+                for (Object cell : edges) {
+                    model.setVisible(cell, false);
+                    hidden.add(cell);
+                }
+
+                Object[] clusterCells = new Object[clusters.getClusters().size()];
+                for (Cluster cluster : clusters.getClusters()) {
+                    Rectangle2D bounds = cluster.bounds;
+                    String style = CLUSTER_STYLE + ";" + mxConstants.STYLE_FONTSIZE + "=" + (int) Math.ceil(12 * unit)
+                            + ";" + mxConstants.STYLE_STROKEWIDTH + "=" + unit;
+                    clusterCells[cluster.index] = graph.insertVertex(parent, null, cluster.getLabel() + " (" + cluster.size + ")",
+                            bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight(), style);
+                    aggregates.add(clusterCells[cluster.index]);
+                }
+                for (Bundle bundle : clusters.getBundles()) {
+                    int width = Math.min(MAX_BUNDLE_WIDTH, 1 + (int) Math.log(bundle.count));
+                    String style = BUNDLE_STYLE + ";" + mxConstants.STYLE_STROKEWIDTH + "=" + width * unit;
+                    aggregates.add(graph.insertEdge(parent, null, null,
+                            clusterCells[bundle.source.index], clusterCells[bundle.target.index], style));
+                }
+            } finally {
+                model.endUpdate();
+            }
+            folded = true;
+        }
+
+        void unfold() {
+            mxIGraphModel model = graph.getModel();
+            model.beginUpdate();
+            try {
+                graph.removeCells(aggregates.toArray(), true);
+                for (Object cell : hidden) {
+                    model.setVisible(cell, true);
+                }
+            } finally {
+                model.endUpdate();
+            }
+            aggregates.clear();
+            hidden.clear();
+            folded = false;
+        }
+    }
+
+    /**
+     * 聚合结果
+     */
+    public static class Clusters {
+        private final List<Cluster> clusters;
+        private final List<Bundle> bundles;
+
+        Clusters(List<Cluster> clusters, List<Bundle> bundles) {
+            this.clusters = clusters;
+            this.bundles = bundles;
+        }
+
+        public List<Cluster> getClusters() {
+            return clusters;
+        }
+
+        public List<Bundle> getBundles() {
+            return bundles;
+        }
+    }
+
+    /**
+     * 聚合块：同一个 key 的所有节点的包围盒
+     */
+    public static class Cluster {
+        private final String key;
+        private final int index;
+        private final Rectangle2D bounds;
+        private int size;
+
+        Cluster(String key, int index, Rectangle2D bounds) {
+            this.key = key;
+            this.index = index;
+            this.bounds = bounds;
+        }
+
+        public String getLabel() {
+            if (key.startsWith("\u0000")) {
+                return "";
+            }
+            return key.substring(key.lastIndexOf('.') + 1);
+        }
+
+        public Rectangle2D getBounds() {
+            return bounds;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * 两个聚合块之间合并后的边
+     */
+    public static class Bundle {
+        private final Cluster source;
+        private final Cluster target;
+        private int count;
+
+        Bundle(Cluster source, Cluster target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        public Cluster getSource() {
+            return source;
+        }
+
+        public Cluster getTarget() {
+            return target;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
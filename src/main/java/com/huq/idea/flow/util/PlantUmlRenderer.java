@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.function.Consumer;
 
 /**
  * Utility class for rendering PlantUML diagrams
@@ -31,6 +32,16 @@ public class PlantUmlRenderer {
      * @return 包含图表的JPanel，如果渲染失败则返回带有错误消息的JPanel
      */
     public static JPanel createPlantUmlPanel(String plantUmlCode) {
+        return createPlantUmlPanel(plantUmlCode, null);
+    }
+
+    /**
+     * 创建一个显示PlantUML图表的JPanel，渲染成功后把PNG数据交给回调
+     *
+     * @param plantUmlCode PlantUML代码
+     * @param onRendered   在后台线程中接收渲染结果，可以为 null
+     */
+    public static JPanel createPlantUmlPanel(String plantUmlCode, Consumer<byte[]> onRendered) {
         JPanel panel = new JPanel(new BorderLayout());
 
         try {
@@ -47,6 +58,9 @@ public class PlantUmlRenderer {
                     try {
                         // 使用本地PlantUML渲染图像
                         byte[] imageData = renderPlantUmlToPng(plantUmlCode);
+                        if (onRendered != null && imageData != null) {
+                            onRendered.accept(imageData);
+                        }
                         return new ImageIcon(imageData);
                     } catch (PlantUmlRenderException e) {
                         LOG.error("Failed to render PlantUML diagram", e);
@@ -110,6 +124,17 @@ public class PlantUmlRenderer {
     }
 
 
+    /**
+     * 直接显示已渲染好的PNG图像，不调用PlantUML
+     */
+    public static JPanel createImagePanel(byte[] pngData) {
+        JPanel panel = new JPanel(new BorderLayout());
+        JScrollPane scrollPane = new JScrollPane(new JLabel(new ImageIcon(pngData)));
+        scrollPane.setPreferredSize(new Dimension(800, 600));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+
     /**
      * 将PlantUML代码渲染为PNG图像的字节数组
      *
@@ -0,0 +1,198 @@
+package com.huq.idea.flow.util;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 存放矩形包围盒的四叉树，用于绘制时的视口裁剪和鼠标命中测试
+ *
+ * <p>跨越多个子象限的元素保存在父节点上；超出根节点范围的元素保存在根节点上，
+ * 因此任意包围盒都可以插入；宽或高为 0 的包围盒（例如垂直的边）同样参与查询。查询结果按插入顺序返回，保证绘制顺序与不使用索引时一致。
+ * 非线程安全，应在 EDT 上构建和查询。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class QuadTree<T> {
+
+    private static final int MAX_ITEMS = 16;
+    private static final int MAX_DEPTH = 16;
+
+    private final Cell<T> root;
+    private int size;
+
+    public QuadTree(Rectangle2D bounds) {
+        this.root = new Cell<>(bounds.getBounds2D(), 0);
+    }
+
+    /**
+     * 插入元素
+     *
+     * @param item   元素
+     * @param bounds 元素的包围盒，插入后不应再修改
+     */
+    public void insert(T item, Rectangle2D bounds) {
+        root.insert(new Entry<>(item, bounds, size++));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查询与指定区域相交的元素，按插入顺序回调
+     */
+    public void query(Rectangle2D area, Consumer<T> consumer) {
+        List<Entry<T>> result = new ArrayList<>();
+        root.collect(area, result);
+        result.sort(Comparator.comparingInt(entry -> entry.sequence));
+        for (Entry<T> entry : result) {
+            consumer.accept(entry.item);
+        }
+    }
+
+    /**
+     * 查询与指定区域相交的元素，按插入顺序返回
+     */
+    public List<T> query(Rectangle2D area) {
+        List<T> result = new ArrayList<>();
+        query(area, result::add);
+        return result;
+    }
+
+    /**
+     * 查找包含指定点的元素；多个元素重叠时返回最后插入（即绘制在最上层）的那个
+     */
+    public T findAt(Point2D point) {
+        Entry<T> found = root.findAt(point, null);
+        return found != null ? found.item : null;
+    }
+
+    /**
+     * 闭区间相交判断；Rectangle2D.intersects 会把宽或高为 0 的矩形视为空
+     */
+    static boolean overlaps(Rectangle2D a, Rectangle2D b) {
+        return a.getMinX() <= b.getMaxX() && b.getMinX() <= a.getMaxX()
+                && a.getMinY() <= b.getMaxY() && b.getMinY() <= a.getMaxY();
+    }
+
+    private static boolean contains(Rectangle2D outer, Rectangle2D inner) {
+        return outer.getMinX() <= inner.getMinX() && inner.getMaxX() <= outer.getMaxX()
+                && outer.getMinY() <= inner.getMinY() && inner.getMaxY() <= outer.getMaxY();
+    }
+
+    private static boolean contains(Rectangle2D rect, Point2D point) {
+        return rect.getMinX() <= point.getX() && point.getX() <= rect.getMaxX()
+                && rect.getMinY() <= point.getY() && point.getY() <= rect.getMaxY();
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final Rectangle2D bounds;
+        private final int sequence;
+
+        private Entry(T item, Rectangle2D bounds, int sequence) {
+            this.item = item;
+            this.bounds = bounds;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Cell<T> {
+        private final Rectangle2D bounds;
+        private final int depth;
+        private final List<Entry<T>> entries = new ArrayList<>();
+        private Cell<T>[] children;
+
+        private Cell(Rectangle2D bounds, int depth) {
+            this.bounds = bounds;
+            this.depth = depth;
+        }
+
+        private void insert(Entry<T> entry) {
+            if (children == null) {
+                entries.add(entry);
+                if (entries.size() > MAX_ITEMS && depth < MAX_DEPTH) {
+                    split();
+                }
+                return;
+            }
+            Cell<T> child = childContaining(entry.bounds);
+            if (child != null) {
+                child.insert(entry);
+            } else {
+                entries.add(entry);
+            }
+        }
+
+        private void split() {
+            double halfWidth = bounds.getWidth() / 2;
+            double halfHeight = bounds.getHeight() / 2;
+            double x = bounds.getX();
+            double y = bounds.getY();
+            // 泛型数组只能以 raw 类型创建，抑制范围限定在这一个局部变量上
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Cell<T>[] cells = new Cell[4];
+            cells[0] = new Cell<>(new Rectangle2D.Double(x, y, halfWidth, halfHeight), depth + 1);
+            cells[1] = new Cell<>(new Rectangle2D.Double(x + halfWidth, y, halfWidth, halfHeight), depth + 1);
+            cells[2] = new Cell<>(new Rectangle2D.Double(x, y + halfHeight, halfWidth, halfHeight), depth + 1);
+            cells[3] = new Cell<>(new Rectangle2D.Double(x + halfWidth, y + halfHeight, halfWidth, halfHeight), depth + 1);
+            children = cells;
+
+            List<Entry<T>> existing = new ArrayList<>(entries);
+            entries.clear();
+            for (Entry<T> entry : existing) {
+                Cell<T> child = childContaining(entry.bounds);
+                if (child != null) {
+                    child.insert(entry);
+                } else {
+                    entries.add(entry);
+                }
+            }
+        }
+
+        private Cell<T> childContaining(Rectangle2D rect) {
+            for (Cell<T> child : children) {
+                if (contains(child.bounds, rect)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private void collect(Rectangle2D area, List<Entry<T>> result) {
+            for (Entry<T> entry : entries) {
+                if (overlaps(entry.bounds, area)) {
+                    result.add(entry);
+                }
+            }
+            if (children != null) {
+                for (Cell<T> child : children) {
+                    if (overlaps(child.bounds, area)) {
+                        child.collect(area, result);
+                    }
+                }
+            }
+        }
+
+        private Entry<T> findAt(Point2D point, Entry<T> best) {
+            for (Entry<T> entry : entries) {
+                if (contains(entry.bounds, point) && (best == null || entry.sequence > best.sequence)) {
+                    best = entry;
+                }
+            }
+            if (children != null) {
+                for (Cell<T> child : children) {
+                    if (contains(child.bounds, point)) {
+                        best = child.findAt(point, best);
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,874 @@
+package com.huq.idea.flow.util;
+
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.util.mxPoint;
+import com.mxgraph.view.mxGraph;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DirectedPseudograph;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 面向调用图和流程图的分层（Sugiyama）布局
+ *
+ * <ol>
+ *     <li>去环：从没有前驱的顶点开始深度优先遍历，把回边反向</li>
+ *     <li>分层：最长路径分层，没有前驱的顶点再下移到紧贴后继的一层</li>
+ *     <li>跨越多层的边拆分为虚拟节点链</li>
+ *     <li>交叉消减：重心法上下交替扫描，扫描轮数有上限，保留交叉数最少的顺序</li>
+ *     <li>横坐标：Brandes–Köpf 四个方向的对齐与紧凑，取中间两个值的平均</li>
+ * </ol>
+ *
+ * <p>全部基于数组邻接表实现，每轮扫描的开销约为 O(E' log E')，E' 为拆分后的边数。
+ * 结果只包含节点位置和边的折点，JGraphX 和自绘面板都可以直接使用。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class SugiyamaLayout<V, E> {
+
+    private final Graph<V, E> graph;
+
+    private ToDoubleFunction<V> widthOf = vertex -> 150;
+    private ToDoubleFunction<V> heightOf = vertex -> 50;
+    private double layerSpacing = 80;
+    private double nodeSpacing = 50;
+    private int maxSweeps = 8;
+    private double originX = 0;
+    private double originY = 0;
+
+    // 一次布局的工作数据：0..n-1 为真实顶点，n..total-1 为虚拟节点
+    private int n;
+    private int total;
+    private double[] width;
+    private int[] rank;
+    private int[][] layers;
+    private int[] pos;
+    private int[][] upper;
+    private int[][] lower;
+
+    public SugiyamaLayout(Graph<V, E> graph) {
+        this.graph = graph;
+    }
+
+    public SugiyamaLayout<V, E> setNodeSize(ToDoubleFunction<V> widthOf, ToDoubleFunction<V> heightOf) {
+        this.widthOf = widthOf;
+        this.heightOf = heightOf;
+        return this;
+    }
+
+    public SugiyamaLayout<V, E> setLayerSpacing(double layerSpacing) {
+        this.layerSpacing = layerSpacing;
+        return this;
+    }
+
+    public SugiyamaLayout<V, E> setNodeSpacing(double nodeSpacing) {
+        this.nodeSpacing = nodeSpacing;
+        return this;
+    }
+
+    /**
+     * 交叉消减的最大扫描轮数，每轮包含一次向下和一次向上的扫描
+     */
+    public SugiyamaLayout<V, E> setMaxSweeps(int maxSweeps) {
+        this.maxSweeps = Math.max(0, maxSweeps);
+        return this;
+    }
+
+    public SugiyamaLayout<V, E> setOrigin(double x, double y) {
+        this.originX = x;
+        this.originY = y;
+        return this;
+    }
+
+    /**
+     * 对 JGraphX 图中 parent 下的顶点和边执行布局，节点尺寸取单元格当前尺寸，
+     * 跨层的边设置折点
+     *
+     * @return 顶点单元格到布局后位置的映射
+     */
+    public static Map<Object, Rectangle2D> layoutCells(mxGraph graph, Object parent, double layerSpacing, double nodeSpacing) {
+        mxIGraphModel model = graph.getModel();
+        Graph<Object, Object> cells = new DirectedPseudograph<>(null, null, false);
+        for (Object vertex : graph.getChildVertices(parent)) {
+            cells.addVertex(vertex);
+        }
+        for (Object edge : graph.getChildEdges(parent)) {
+            Object source = model.getTerminal(edge, true);
+            Object target = model.getTerminal(edge, false);
+            if (cells.containsVertex(source) && cells.containsVertex(target)) {
+                cells.addEdge(source, target, edge);
+            }
+        }
+
+        Result<Object, Object> result = new SugiyamaLayout<>(cells)
+                .setNodeSize(cell -> model.getGeometry(cell).getWidth(), cell -> model.getGeometry(cell).getHeight())
+                .setLayerSpacing(layerSpacing)
+                .setNodeSpacing(nodeSpacing)
+                .layout();
+
+        model.beginUpdate();
+        try {
+            for (Map.Entry<Object, Rectangle2D> entry : result.getBounds().entrySet()) {
+                Rectangle2D rect = entry.getValue();
+                model.setGeometry(entry.getKey(), new mxGeometry(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+            }
+            for (Object edge : cells.edgeSet()) {
+                List<Point2D> bends = result.getBendPoints(edge);
+                mxGeometry geometry = model.getGeometry(edge);
+                if (geometry == null || (bends.isEmpty() && geometry.getPoints() == null)) {
+                    continue;
+                }
+                geometry = (mxGeometry) geometry.clone();
+                List<mxPoint> points = new ArrayList<>(bends.size());
+                for (Point2D bend : bends) {
+                    points.add(new mxPoint(bend.getX(), bend.getY()));
+                }
+                geometry.setPoints(points.isEmpty() ? null : points);
+                model.setGeometry(edge, geometry);
+            }
+        } finally {
+            model.endUpdate();
+        }
+        return result.getBounds();
+    }
+
+    /**
+     * 执行布局
+     */
+    public Result<V, E> layout() {
+        List<V> vertices = new ArrayList<>(graph.vertexSet());
+        n = vertices.size();
+        if (n == 0) {
+            return new Result<>(Collections.emptyMap(), Collections.emptyMap(), 0, 0);
+        }
+        Map<V, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(vertices.get(i), i);
+        }
+
+        // 有向邻接表，去掉自环并合并重边
+        List<E> edges = new ArrayList<>(graph.edgeSet());
+        Set<Long> pairs = new HashSet<>(edges.size() * 2);
+        List<int[]> simpleEdges = new ArrayList<>();
+        for (E edge : edges) {
+            int s = index.get(graph.getEdgeSource(edge));
+            int t = index.get(graph.getEdgeTarget(edge));
+            if (s != t && pairs.add(key(s, t))) {
+                simpleEdges.add(new int[]{s, t});
+            }
+        }
+        int[][] csr = csr(n, simpleEdges);
+
+        // 1. 去环
+        Set<Long> backEdges = removeCycles(csr[0], csr[1]);
+        Set<Long> dagPairs = new HashSet<>(simpleEdges.size() * 2);
+        List<int[]> dagEdges = new ArrayList<>(simpleEdges.size());
+        for (int[] edge : simpleEdges) {
+            boolean back = backEdges.contains(key(edge[0], edge[1]));
+            int from = back ? edge[1] : edge[0];
+            int to = back ? edge[0] : edge[1];
+            if (dagPairs.add(key(from, to))) {
+                dagEdges.add(new int[]{from, to});
+            }
+        }
+
+        // 2. 分层
+        int[][] dag = csr(n, dagEdges);
+        int[] levels = GraphLayering.computeLevels(n, dag[0], dag[1]);
+        pullDownSources(levels, dagEdges);
+
+        // 3. 虚拟节点
+        Map<Long, int[]> chains = insertDummies(vertices, levels, dagEdges);
+
+        // 4. 交叉消减
+        initialOrder();
+        int crossings = reduceCrossings();
+
+        // 5. 坐标
+        double[] x = assignCoordinates();
+        double[] layerTop = new double[layers.length];
+        double[] layerHeight = new double[layers.length];
+        double[] vertexHeight = new double[n];
+        for (int v = 0; v < n; v++) {
+            vertexHeight[v] = heightOf.applyAsDouble(vertices.get(v));
+            layerHeight[rank[v]] = Math.max(layerHeight[rank[v]], vertexHeight[v]);
+        }
+        double y = 0;
+        for (int r = 0; r < layers.length; r++) {
+            layerTop[r] = y;
+            y += layerHeight[r] + layerSpacing;
+        }
+
+        double minX = Double.MAX_VALUE;
+        for (int v = 0; v < total; v++) {
+            minX = Math.min(minX, x[v] - width[v] / 2);
+        }
+        double dx = originX - minX;
+
+        Map<V, Rectangle2D> bounds = new LinkedHashMap<>(n * 2);
+        for (int v = 0; v < n; v++) {
+            int r = rank[v];
+            bounds.put(vertices.get(v), new Rectangle2D.Double(x[v] - width[v] / 2 + dx,
+                    originY + layerTop[r] + (layerHeight[r] - vertexHeight[v]) / 2, width[v], vertexHeight[v]));
+        }
+
+        Map<E, List<Point2D>> bendPoints = new LinkedHashMap<>();
+        for (E edge : edges) {
+            int s = index.get(graph.getEdgeSource(edge));
+            int t = index.get(graph.getEdgeTarget(edge));
+            if (s == t) {
+                continue;
+            }
+            boolean back = backEdges.contains(key(s, t));
+            int[] chain = chains.get(back ? key(t, s) : key(s, t));
+            if (chain == null || chain.length == 0) {
+                continue;
+            }
+            List<Point2D> points = new ArrayList<>(chain.length);
+            for (int dummy : chain) {
+                int r = rank[dummy];
+                points.add(new Point2D.Double(x[dummy] + dx, originY + layerTop[r] + layerHeight[r] / 2));
+            }
+            if (back) {
+                Collections.reverse(points);
+            }
+            bendPoints.put(edge, points);
+        }
+        return new Result<>(bounds, bendPoints, crossings, layers.length);
+    }
+
+    /**
+     * 迭代深度优先遍历找出回边，优先从没有前驱的顶点开始，使流程的入口位于顶部
+     */
+    private Set<Long> removeCycles(int[] start, int[] targets) {
+        int[] inDegree = new int[n];
+        for (int target : targets) {
+            inDegree[target]++;
+        }
+        int[] roots = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            if (inDegree[v] == 0) {
+                roots[count++] = v;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (inDegree[v] != 0) {
+                roots[count++] = v;
+            }
+        }
+
+        Set<Long> back = new HashSet<>();
+        byte[] state = new byte[n];
+        int[] next = new int[n];
+        int[] stack = new int[n];
+        for (int root : roots) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int sp = 0;
+            stack[sp++] = root;
+            state[root] = 1;
+            next[root] = start[root];
+            while (sp > 0) {
+                int v = stack[sp - 1];
+                if (next[v] < start[v + 1]) {
+                    int w = targets[next[v]++];
+                    if (state[w] == 1) {
+                        back.add(key(v, w));
+                    } else if (state[w] == 0) {
+                        state[w] = 1;
+                        next[w] = start[w];
+                        stack[sp++] = w;
+                    }
+                } else {
+                    state[v] = 2;
+                    sp--;
+                }
+            }
+        }
+        return back;
+    }
+
+    /**
+     * 最长路径分层会把入口较多的辅助调用放在顶层，把没有前驱的顶点下移到紧贴其后继的位置，缩短边长
+     */
+    private void pullDownSources(int[] levels, List<int[]> dagEdges) {
+        boolean[] hasPredecessor = new boolean[n];
+        int[] minSuccessor = new int[n];
+        Arrays.fill(minSuccessor, Integer.MAX_VALUE);
+        for (int[] edge : dagEdges) {
+            hasPredecessor[edge[1]] = true;
+            minSuccessor[edge[0]] = Math.min(minSuccessor[edge[0]], levels[edge[1]]);
+        }
+        for (int v = 0; v < n; v++) {
+            if (!hasPredecessor[v] && minSuccessor[v] != Integer.MAX_VALUE) {
+                levels[v] = minSuccessor[v] - 1;
+            }
+        }
+        // 层号从 0 开始连续
+        int min = Integer.MAX_VALUE;
+        for (int level : levels) {
+            min = Math.min(min, level);
+        }
+        for (int v = 0; v < n; v++) {
+            levels[v] -= min;
+        }
+    }
+
+    /**
+     * 把跨越多层的边拆分为虚拟节点链，建立相邻两层之间的邻接表
+     *
+     * @return 有向边到虚拟节点链的映射
+     */
+    private Map<Long, int[]> insertDummies(List<V> vertices, int[] levels, List<int[]> dagEdges) {
+        int dummies = 0;
+        int height = 0;
+        for (int[] edge : dagEdges) {
+            dummies += levels[edge[1]] - levels[edge[0]] - 1;
+        }
+        total = n + dummies;
+        rank = Arrays.copyOf(levels, total);
+        width = new double[total];
+        for (int v = 0; v < n; v++) {
+            width[v] = widthOf.applyAsDouble(vertices.get(v));
+            height = Math.max(height, levels[v] + 1);
+        }
+
+        Map<Long, int[]> chains = new HashMap<>();
+        List<int[]> proper = new ArrayList<>(dagEdges.size() + dummies);
+        int nextDummy = n;
+        for (int[] edge : dagEdges) {
+            int span = levels[edge[1]] - levels[edge[0]];
+            int[] chain = new int[span - 1];
+            int previous = edge[0];
+            for (int i = 0; i < chain.length; i++) {
+                int dummy = nextDummy++;
+                rank[dummy] = levels[edge[0]] + i + 1;
+                chain[i] = dummy;
+                proper.add(new int[]{previous, dummy});
+                previous = dummy;
+            }
+            proper.add(new int[]{previous, edge[1]});
+            chains.put(key(edge[0], edge[1]), chain);
+        }
+
+        int[][] down = csr(total, proper);
+        lower = split(down[0], down[1]);
+        List<int[]> reversed = new ArrayList<>(proper.size());
+        for (int[] edge : proper) {
+            reversed.add(new int[]{edge[1], edge[0]});
+        }
+        int[][] up = csr(total, reversed);
+        upper = split(up[0], up[1]);
+        layers = new int[height][];
+        return chains;
+    }
+
+    /**
+     * 初始顺序：从顶层顶点开始深度优先遍历，同一子树的节点在各层中相邻
+     */
+    private void initialOrder() {
+        int[] layerSize = new int[layers.length];
+        for (int v = 0; v < total; v++) {
+            layerSize[rank[v]]++;
+        }
+        for (int r = 0; r < layers.length; r++) {
+            layers[r] = new int[layerSize[r]];
+        }
+        int[] filled = new int[layers.length];
+        pos = new int[total];
+
+        boolean[] visited = new boolean[total];
+        int[] stack = new int[total];
+        int[] next = new int[total];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int root = 0; root < total; root++) {
+                // 第一遍只从没有前驱的顶点出发，第二遍补上剩余节点
+                if (visited[root] || (pass == 0 && upper[root].length > 0)) {
+                    continue;
+                }
+                int sp = 0;
+                stack[sp++] = root;
+                visited[root] = true;
+                place(root, filled);
+                while (sp > 0) {
+                    int v = stack[sp - 1];
+                    if (next[v] < lower[v].length) {
+                        int w = lower[v][next[v]++];
+                        if (!visited[w]) {
+                            visited[w] = true;
+                            place(w, filled);
+                            stack[sp++] = w;
+                        }
+                    } else {
+                        sp--;
+                    }
+                }
+            }
+        }
+    }
+
+    private void place(int v, int[] filled) {
+        int r = rank[v];
+        pos[v] = filled[r];
+        layers[r][filled[r]++] = v;
+    }
+
+    /**
+     * 重心法上下交替扫描，交叉数连续两轮没有减少时提前结束
+     */
+    private int reduceCrossings() {
+        int best = countCrossings();
+        int[][] bestLayers = copyLayers();
+        int stale = 0;
+        double[] barycenter = new double[total];
+        for (int sweep = 0; sweep < maxSweeps && best > 0 && stale < 2; sweep++) {
+            for (int r = 1; r < layers.length; r++) {
+                reorder(layers[r], upper, barycenter);
+            }
+            for (int r = layers.length - 2; r >= 0; r--) {
+                reorder(layers[r], lower, barycenter);
+            }
+            int crossings = countCrossings();
+            if (crossings < best) {
+                best = crossings;
+                bestLayers = copyLayers();
+                stale = 0;
+            } else {
+                stale++;
+            }
+        }
+        layers = bestLayers;
+        for (int[] layer : layers) {
+            for (int i = 0; i < layer.length; i++) {
+                pos[layer[i]] = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 按相邻层邻居位置的平均值重新排序，没有邻居的节点保持原位置
+     */
+    private void reorder(int[] layer, int[][] neighbors, double[] barycenter) {
+        Integer[] order = new Integer[layer.length];
+        for (int i = 0; i < layer.length; i++) {
+            int v = layer[i];
+            int[] adjacent = neighbors[v];
+            if (adjacent.length == 0) {
+                barycenter[v] = pos[v];
+            } else {
+                double sum = 0;
+                for (int w : adjacent) {
+                    sum += pos[w];
+                }
+                barycenter[v] = sum / adjacent.length;
+            }
+            order[i] = v;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int result = Double.compare(barycenter[a], barycenter[b]);
+            return result != 0 ? result : Integer.compare(pos[a], pos[b]);
+        });
+        for (int i = 0; i < layer.length; i++) {
+            layer[i] = order[i];
+            pos[order[i]] = i;
+        }
+    }
+
+    private int[][] copyLayers() {
+        int[][] copy = new int[layers.length][];
+        for (int r = 0; r < layers.length; r++) {
+            copy[r] = layers[r].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * 统计所有相邻层之间的交叉数：按上端位置排序后，下端位置序列的逆序对数即交叉数
+     */
+    int countCrossings() {
+        long crossings = 0;
+        for (int r = 0; r + 1 < layers.length; r++) {
+            int size = 0;
+            for (int v : layers[r]) {
+                size += lower[v].length;
+            }
+            int[] sequence = new int[size];
+            int k = 0;
+            for (int v : layers[r]) {
+                int from = k;
+                for (int w : lower[v]) {
+                    sequence[k++] = pos[w];
+                }
+                Arrays.sort(sequence, from, k);
+            }
+            crossings += inversions(sequence, new int[size], 0, size);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, crossings);
+    }
+
+    private static long inversions(int[] a, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return 0;
+        }
+        int mid = (from + to) >>> 1;
+        long count = inversions(a, buffer, from, mid) + inversions(a, buffer, mid, to);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            if (a[i] <= a[j]) {
+                buffer[k++] = a[i++];
+            } else {
+                count += mid - i;
+                buffer[k++] = a[j++];
+            }
+        }
+        while (i < mid) {
+            buffer[k++] = a[i++];
+        }
+        while (j < to) {
+            buffer[k++] = a[j++];
+        }
+        System.arraycopy(buffer, from, a, from, to - from);
+        return count;
+    }
+
+    /**
+     * Brandes–Köpf 横坐标分配，返回每个节点的中心横坐标
+     */
+    private double[] assignCoordinates() {
+        for (int v = 0; v < total; v++) {
+            sortByPos(upper[v]);
+            sortByPos(lower[v]);
+        }
+        Set<Long> conflicts = markTypeOneConflicts();
+
+        double[][] candidates = new double[4][];
+        double[] minOf = new double[4];
+        double[] maxOf = new double[4];
+        int narrowest = 0;
+        for (int d = 0; d < 4; d++) {
+            boolean down = d < 2;
+            boolean left = d % 2 == 0;
+            candidates[d] = placeDirection(down, left, conflicts);
+            minOf[d] = Double.MAX_VALUE;
+            maxOf[d] = -Double.MAX_VALUE;
+            for (int v = 0; v < total; v++) {
+                minOf[d] = Math.min(minOf[d], candidates[d][v] - width[v] / 2);
+                maxOf[d] = Math.max(maxOf[d], candidates[d][v] + width[v] / 2);
+            }
+            if (maxOf[d] - minOf[d] < maxOf[narrowest] - minOf[narrowest]) {
+                narrowest = d;
+            }
+        }
+
+        // 向左的结果左边界对齐到最窄的结果，向右的结果右边界对齐
+        for (int d = 0; d < 4; d++) {
+            double shift = d % 2 == 0 ? minOf[narrowest] - minOf[d] : maxOf[narrowest] - maxOf[d];
+            for (int v = 0; v < total; v++) {
+                candidates[d][v] += shift;
+            }
+        }
+
+        double[] x = new double[total];
+        double[] values = new double[4];
+        for (int v = 0; v < total; v++) {
+            for (int d = 0; d < 4; d++) {
+                values[d] = candidates[d][v];
+            }
+            Arrays.sort(values);
+            x[v] = (values[1] + values[2]) / 2;
+        }
+
+        // 取平均后可能出现重叠，按层从左到右保证最小间距
+        for (int[] layer : layers) {
+            for (int i = 1; i < layer.length; i++) {
+                x[layer[i]] = Math.max(x[layer[i]], x[layer[i - 1]] + separation(layer[i - 1], layer[i]));
+            }
+        }
+        return x;
+    }
+
+    private void sortByPos(int[] nodes) {
+        if (nodes.length < 2) {
+            return;
+        }
+        long[] keyed = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            keyed[i] = ((long) pos[nodes[i]] << 32) | nodes[i];
+        }
+        Arrays.sort(keyed);
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = (int) keyed[i];
+        }
+    }
+
+    /**
+     * 标记与内部线段（两个虚拟节点之间的边）交叉的非内部线段，对齐时优先保持长边竖直
+     */
+    private Set<Long> markTypeOneConflicts() {
+        Set<Long> conflicts = new HashSet<>();
+        for (int r = 0; r + 1 < layers.length; r++) {
+            int[] top = layers[r];
+            int[] bottom = layers[r + 1];
+            int k0 = 0;
+            int l = 0;
+            for (int l1 = 0; l1 < bottom.length; l1++) {
+                int inner = innerUpper(bottom[l1]);
+                if (l1 == bottom.length - 1 || inner >= 0) {
+                    int k1 = inner >= 0 ? pos[inner] : top.length - 1;
+                    for (; l <= l1; l++) {
+                        int u = bottom[l];
+                        for (int w : upper[u]) {
+                            if ((pos[w] < k0 || pos[w] > k1) && !(isDummy(w) && isDummy(u))) {
+                                conflicts.add(key(w, u));
+                            }
+                        }
+                    }
+                    k0 = k1;
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private int innerUpper(int v) {
+        if (isDummy(v)) {
+            for (int w : upper[v]) {
+                if (isDummy(w)) {
+                    return w;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean isDummy(int v) {
+        return v >= n;
+    }
+
+    /**
+     * 单个方向的垂直对齐和水平紧凑
+     *
+     * @param down 是否从上往下对齐（与上一层的邻居对齐）
+     * @param left 是否从左往右紧凑
+     */
+    private double[] placeDirection(boolean down, boolean left, Set<Long> conflicts) {
+        int[] root = new int[total];
+        int[] align = new int[total];
+        for (int v = 0; v < total; v++) {
+            root[v] = v;
+            align[v] = v;
+        }
+
+        // 垂直对齐：每个节点尝试与相邻层的中位数邻居对齐，对齐线之间不交叉
+        int h = layers.length;
+        for (int i = 1; i < h; i++) {
+            int[] layer = layers[down ? i : h - 1 - i];
+            int bound = -1;
+            for (int k = 0; k < layer.length; k++) {
+                int v = layer[left ? k : layer.length - 1 - k];
+                int[] adjacent = down ? upper[v] : lower[v];
+                int d = adjacent.length;
+                if (d == 0) {
+                    continue;
+                }
+                int first = left ? (d - 1) / 2 : d / 2;
+                int second = left ? d / 2 : (d - 1) / 2;
+                for (int m : first == second ? new int[]{first} : new int[]{first, second}) {
+                    if (align[v] != v) {
+                        break;
+                    }
+                    int u = adjacent[m];
+                    int uPos = left ? pos[u] : layers[rank[u]].length - 1 - pos[u];
+                    if (!conflicts.contains(down ? key(u, v) : key(v, u)) && bound < uPos) {
+                        align[u] = v;
+                        root[v] = root[u];
+                        align[v] = root[v];
+                        bound = uPos;
+                    }
+                }
+            }
+        }
+
+        // 水平紧凑：按块放置，块内节点共享横坐标
+        double[] x = new double[total];
+        Arrays.fill(x, Double.NaN);
+        int[] sink = new int[total];
+        double[] shift = new double[total];
+        for (int v = 0; v < total; v++) {
+            sink[v] = v;
+            shift[v] = Double.POSITIVE_INFINITY;
+        }
+        int[] cursor = new int[total];
+        int[] stack = new int[total];
+        for (int[] layer : layers) {
+            for (int k = 0; k < layer.length; k++) {
+                int v = layer[left ? k : layer.length - 1 - k];
+                if (root[v] == v && Double.isNaN(x[v])) {
+                    placeBlock(v, left, root, align, sink, shift, x, cursor, stack);
+                }
+            }
+        }
+
+        double[] result = new double[total];
+        for (int v = 0; v < total; v++) {
+            int r = root[v];
+            double value = x[r];
+            double s = shift[sink[r]];
+            if (s < Double.POSITIVE_INFINITY) {
+                value += s;
+            }
+            // 从右往左时在镜像坐标中计算
+            result[v] = left ? value : -value;
+        }
+        return result;
+    }
+
+    /**
+     * 迭代版 place_block，避免长链递归过深
+     */
+    private void placeBlock(int start, boolean left, int[] root, int[] align, int[] sink, double[] shift,
+                            double[] x, int[] cursor, int[] stack) {
+        int sp = 0;
+        x[start] = 0;
+        cursor[start] = start;
+        stack[sp++] = start;
+        while (sp > 0) {
+            int block = stack[sp - 1];
+            int w = cursor[block];
+            if (w < 0) {
+                sp--;
+                continue;
+            }
+            int neighbor = predecessor(w, left);
+            if (neighbor >= 0) {
+                int u = root[neighbor];
+                if (Double.isNaN(x[u])) {
+                    // 先放置左侧的块，之后重新处理当前节点
+                    x[u] = 0;
+                    cursor[u] = u;
+                    stack[sp++] = u;
+                    continue;
+                }
+                if (sink[block] == block) {
+                    sink[block] = sink[u];
+                }
+                double separation = separation(neighbor, w);
+                if (sink[block] != sink[u]) {
+                    shift[sink[u]] = Math.min(shift[sink[u]], x[block] - x[u] - separation);
+                } else {
+                    x[block] = Math.max(x[block], x[u] + separation);
+                }
+            }
+            int next = align[w];
+            cursor[block] = next == block ? -1 : next;
+        }
+    }
+
+    private int predecessor(int v, boolean left) {
+        int[] layer = layers[rank[v]];
+        int p = pos[v];
+        if (left) {
+            return p > 0 ? layer[p - 1] : -1;
+        }
+        return p < layer.length - 1 ? layer[p + 1] : -1;
+    }
+
+    /**
+     * 同层相邻两个节点中心之间的最小距离，虚拟节点之间排得更紧凑
+     */
+    private double separation(int a, int b) {
+        double gap = isDummy(a) || isDummy(b) ? nodeSpacing / 2 : nodeSpacing;
+        return (width[a] + width[b]) / 2 + gap;
+    }
+
+    private static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 边列表转 CSR 邻接表，保持边的输入顺序
+     */
+    private static int[][] csr(int size, List<int[]> edges) {
+        int[] start = new int[size + 1];
+        for (int[] edge : edges) {
+            start[edge[0] + 1]++;
+        }
+        for (int v = 0; v < size; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] targets = new int[edges.size()];
+        int[] fill = Arrays.copyOf(start, size);
+        for (int[] edge : edges) {
+            targets[fill[edge[0]]++] = edge[1];
+        }
+        return new int[][]{start, targets};
+    }
+
+    private static int[][] split(int[] start, int[] targets) {
+        int[][] result = new int[start.length - 1][];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = Arrays.copyOfRange(targets, start[v], start[v + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * 布局结果
+     */
+    public static class Result<V, E> {
+        private final Map<V, Rectangle2D> bounds;
+        private final Map<E, List<Point2D>> bendPoints;
+        private final int crossings;
+        private final int layerCount;
+
+        Result(Map<V, Rectangle2D> bounds, Map<E, List<Point2D>> bendPoints, int crossings, int layerCount) {
+            this.bounds = bounds;
+            this.bendPoints = bendPoints;
+            this.crossings = crossings;
+            this.layerCount = layerCount;
+        }
+
+        /**
+         * 节点的位置和尺寸，保持图中顶点的迭代顺序
+         */
+        public Map<V, Rectangle2D> getBounds() {
+            return bounds;
+        }
+
+        /**
+         * 跨越多层的边经过的折点（按边的方向排列），不跨层的边和自环没有折点
+         */
+        public List<Point2D> getBendPoints(E edge) {
+            return bendPoints.getOrDefault(edge, Collections.emptyList());
+        }
+
+        /**
+         * 分层图中相邻层之间的边交叉数
+         */
+        public int getCrossings() {
+            return crossings;
+        }
+
+        public int getLayerCount() {
+            return layerCount;
+        }
+    }
+}
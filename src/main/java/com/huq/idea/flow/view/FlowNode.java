@@ -13,6 +13,9 @@ public class FlowNode {
     private Rectangle bounds;
     private java.util.List<FlowNode> children;
     private boolean collapsed;
+    private FlowNode parent;
+    // 当前可见子树占用的行数，由 FlowTreeLayout 维护
+    private int rowSpan = 1;
 
     public FlowNode(String name, int x, int y) {
         this.name = name;
@@ -22,9 +25,30 @@ public class FlowNode {
     }
 
     public void addChild(FlowNode child) {
+        child.parent = this;
         children.add(child);
     }
 
+    public FlowNode getParent() {
+        return parent;
+    }
+
+    void setParent(FlowNode parent) {
+        this.parent = parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getRowSpan() {
+        return rowSpan;
+    }
+
+    void setRowSpan(int rowSpan) {
+        this.rowSpan = rowSpan;
+    }
+
     public List<FlowNode> getChildren() {
         return children;
     }
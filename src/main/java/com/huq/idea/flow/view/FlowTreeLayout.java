@@ -0,0 +1,173 @@
+package com.huq.idea.flow.view;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * {@link FlowNode} 树的增量布局
+ *
+ * <p>布局规则：第一个子节点位于父节点右侧同一行，后续兄弟节点排在前一个兄弟的整个可见子树下方；
+ * 多个主流程按同样的规则纵向排列。每个节点记录可见子树占用的行数。
+ *
+ * <p>折叠或展开某个节点时，只重新计算该节点子树的位置，沿祖先链更新行数，
+ * 再把排在它后面的兄弟子树和主流程整体平移，不需要重新布局整棵树。
+ *
+ * <p>用户通过 {@link #move(FlowNode, int, int)} 拖动节点后，节点位置不再满足布局规则：
+ * 查找不再按行剪枝，折叠或展开时按实际位置平移下方的节点。
+ *
+ * @author huqiang
+ * @since 2024/8/10
+ */
+public class FlowTreeLayout {
+
+    public static final int ORIGIN_X = 100;
+    public static final int ORIGIN_Y = 100;
+    // 父节点与第一个子节点的水平距离
+    public static final int COLUMN_GAP = 150;
+    // 每一行的高度
+    public static final int ROW_HEIGHT = 80;
+
+    private final List<FlowNode> roots;
+    // 用户拖动过节点，节点位置不再满足布局规则
+    private boolean edited;
+
+    public FlowTreeLayout(List<FlowNode> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * 完整布局所有主流程
+     */
+    public void layoutAll() {
+        edited = false;
+        int y = ORIGIN_Y;
+        for (FlowNode root : roots) {
+            root.setParent(null);
+            y += layoutSubtree(root, ORIGIN_X, y) * ROW_HEIGHT;
+        }
+    }
+
+    /**
+     * 切换节点的折叠状态并增量更新布局
+     */
+    public void toggle(FlowNode node) {
+        int oldSpan = node.getRowSpan();
+        node.toggleCollapse();
+        Rectangle bounds = node.getBounds();
+        int delta = layoutSubtree(node, bounds.x, bounds.y) - oldSpan;
+        if (delta == 0) {
+            return;
+        }
+
+        int dy = delta * ROW_HEIGHT;
+        FlowNode child = node;
+        FlowNode parent = node.getParent();
+        while (parent != null) {
+            parent.setRowSpan(parent.getRowSpan() + delta);
+            if (!edited) {
+                shiftFollowing(parent.getChildren(), child, dy);
+            }
+            child = parent;
+            parent = parent.getParent();
+        }
+        if (!edited) {
+            shiftFollowing(roots, child, dy);
+            return;
+        }
+        // 拖动后兄弟节点不一定排在后面，按实际位置平移节点下方的可见节点
+        for (FlowNode root : roots) {
+            shiftBelow(root, node, bounds.y, dy);
+        }
+    }
+
+    /**
+     * 拖动节点及其可见子树，之后的查找和折叠按实际位置处理
+     */
+    public void move(FlowNode node, int dx, int dy) {
+        node.move(dx, dy);
+        edited = true;
+    }
+
+    /**
+     * 查找包含指定点的可见节点
+     */
+    public FlowNode findAt(Point point) {
+        for (FlowNode root : roots) {
+            FlowNode found = findAt(root, point);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private FlowNode findAt(FlowNode node, Point point) {
+        if (node.getBounds().contains(point)) {
+            return node;
+        }
+        if (node.isCollapsed()) {
+            return null;
+        }
+        for (FlowNode child : node.getChildren()) {
+            // 子树只会出现在子节点所在行及以下，跳过已经在点上方结束的子树，拖动过节点后不再成立
+            Rectangle bounds = child.getBounds();
+            if (!edited && point.y < bounds.y) {
+                break;
+            }
+            if (!edited && point.y >= bounds.y + child.getRowSpan() * ROW_HEIGHT) {
+                continue;
+            }
+            FlowNode found = findAt(child, point);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 布局节点的可见子树，返回占用的行数
+     */
+    private int layoutSubtree(FlowNode node, int x, int y) {
+        Rectangle bounds = node.getBounds();
+        bounds.setLocation(x, y);
+        int span = 1;
+        if (!node.isCollapsed() && node.hasChildren()) {
+            span = 0;
+            for (FlowNode child : node.getChildren()) {
+                child.setParent(node);
+                span += layoutSubtree(child, x + COLUMN_GAP, y + span * ROW_HEIGHT);
+            }
+        }
+        node.setRowSpan(span);
+        return span;
+    }
+
+    /**
+     * 平移位于 y 下方的可见节点，跳过 skip 的子树
+     */
+    private static void shiftBelow(FlowNode node, FlowNode skip, int y, int dy) {
+        if (node == skip) {
+            return;
+        }
+        Rectangle bounds = node.getBounds();
+        if (bounds.y > y) {
+            bounds.translate(0, dy);
+        }
+        if (!node.isCollapsed()) {
+            for (FlowNode child : node.getChildren()) {
+                shiftBelow(child, skip, y, dy);
+            }
+        }
+    }
+
+    /**
+     * 把 siblings 中位于 node 之后的节点及其可见子树整体平移
+     */
+    private static void shiftFollowing(List<FlowNode> siblings, FlowNode node, int dy) {
+        int index = siblings.indexOf(node);
+        for (int i = index + 1; i < siblings.size(); i++) {
+            siblings.get(i).move(0, dy);
+        }
+    }
+}
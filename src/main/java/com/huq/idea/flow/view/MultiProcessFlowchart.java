@@ -9,27 +9,30 @@ import java.util.List;
 
 public class MultiProcessFlowchart extends JPanel {
     private List<FlowNode> mainProcesses;
+    private final FlowTreeLayout layout;
     private FlowNode draggedNode;
     private Point dragOffset;
 
     public MultiProcessFlowchart(List<FlowNode> mainProcesses) {
         this.mainProcesses = mainProcesses;
 //        createFlowchart();
+        // 只在创建时完整布局一次，折叠/展开时增量更新
+        this.layout = new FlowTreeLayout(mainProcesses);
+        layout.layoutAll();
 
         MouseAdapter mouseAdapter = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                for (FlowNode node : mainProcesses) {
-                    if (node.getBounds().contains(e.getPoint())) {
-                        if (SwingUtilities.isLeftMouseButton(e)) {
-                            // 切换折叠/展开状态
-                            node.toggleCollapse();
-                            repaint();
-                        } else {
-                            // 开始拖拽
-                            draggedNode = node;
-                            dragOffset = e.getPoint();
-                        }
+                FlowNode node = layout.findAt(e.getPoint());
+                if (node != null) {
+                    if (SwingUtilities.isLeftMouseButton(e)) {
+                        // 切换折叠/展开状态
+                        layout.toggle(node);
+                        repaint();
+                    } else {
+                        // 开始拖拽
+                        draggedNode = node;
+                        dragOffset = e.getPoint();
                     }
                 }
             }
@@ -39,7 +42,7 @@ public class MultiProcessFlowchart extends JPanel {
                 if (draggedNode != null) {
                     int dx = e.getX() - dragOffset.x;
                     int dy = e.getY() - dragOffset.y;
-                    draggedNode.move(dx, dy);
+                    layout.move(draggedNode, dx, dy);
                     dragOffset = e.getPoint();
                     repaint();
                 }
@@ -84,14 +87,9 @@ public class MultiProcessFlowchart extends JPanel {
         // 设置抗锯齿
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        // 绘制主流程和连接线
-        int startX = 100;
-        int startY = 100;
+        // 绘制主流程和连接线，节点位置由 FlowTreeLayout 维护
         for (FlowNode node : mainProcesses) {
-            node.getBounds().x = startX;
-            node.getBounds().y = startY;
             node.draw(g2d);
-            startY += 80;
             drawConnection(g2d, node);
         }
     }
@@ -112,9 +110,6 @@ public class MultiProcessFlowchart extends JPanel {
         FlowNode lastChild = null;
         for (FlowNode child : parent.getChildren()) {
             if (lastChild == null) {
-                child.getBounds().x = parent.getBounds().x + 150;
-                child.getBounds().y = parent.getBounds().y;
-
                 g2d.drawLine(startX, startY,
                         child.getBounds().x,
                         child.getBounds().y + child.getBounds().height / 2);
@@ -122,9 +117,6 @@ public class MultiProcessFlowchart extends JPanel {
                 startX = lastChild.getBounds().x + child.getBounds().width/2;
                 startY = lastChild.getBounds().y + lastChild.getBounds().height;
 
-                child.getBounds().x = lastChild.getBounds().x;
-                child.getBounds().y = lastChild.getBounds().y + 80;
-
                 g2d.drawLine(startX, startY,
                         child.getBounds().x + child.getBounds().width/2,
                         child.getBounds().y);
@@ -0,0 +1,125 @@
+package com.huq.idea.flow.apidoc;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassDependencyCrawlerTest {
+
+    @Test
+    public void testExpandsEachClassAtItsShallowestDepth() {
+        // Order -> Customer -> Address，Order 同时直接引用 Address，Address -> Country
+        Map<String, List<String>> graph = new HashMap<>();
+        graph.put("Order", List.of("Customer", "Address"));
+        graph.put("Customer", List.of("Address"));
+        graph.put("Address", List.of("Country"));
+        graph.put("Country", List.of());
+
+        ClassDependencyCrawler.Result<String> result = ClassDependencyCrawler.crawl("Order", 2, 100, 1,
+                node -> graph.get(node), () -> {
+                });
+
+        // 深度优先时 Address 先在第 2 层被访问，不会再扩展出 Country
+        assertEquals(List.of("Order", "Customer", "Address", "Country"), result.getNodes());
+        assertEquals(1, result.getDepth("Address"));
+        assertEquals(2, result.getDepth("Country"));
+        assertEquals(3, result.getExpandedCount());
+        assertFalse(result.isTruncated());
+    }
+
+    @Test
+    public void testNodeBudgetAndDeterminism() {
+        Map<String, List<String>> graph = randomDomainModel(2000, 6, 7);
+        Function<String, List<String>> dependencies = graph::get;
+
+        ClassDependencyCrawler.Result<String> sequential = ClassDependencyCrawler.crawl("C0", 4, 300, 1, dependencies, () -> {
+        });
+        ClassDependencyCrawler.Result<String> parallel = ClassDependencyCrawler.crawl("C0", 4, 300, 4, dependencies, () -> {
+        });
+
+        assertEquals(300, sequential.getNodes().size());
+        assertTrue(sequential.isTruncated());
+        assertEquals(sequential.getNodes(), parallel.getNodes());
+    }
+
+    /**
+     * 2000 个类的领域模型，每次解析模拟 0.2 ms 的类型解析开销：
+     * 旧的深度优先扫描与新的广度优先扫描的解析次数和耗时
+     */
+    @Test
+    @Tag("benchmark")
+    public void testCrawlTime(TestReporter reporter) {
+        Map<String, List<String>> graph = randomDomainModel(2000, 6, 11);
+        int maxDepth = 4;
+
+        AtomicInteger dfsResolutions = new AtomicInteger();
+        long start = System.nanoTime();
+        Set<String> dfsCollected = new HashSet<>();
+        depthFirst("C0", 0, maxDepth, graph, dfsCollected, dfsResolutions);
+        long dfsMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<String, Integer> bfsResolutions = new ConcurrentHashMap<>();
+        start = System.nanoTime();
+        ClassDependencyCrawler.Result<String> result = ClassDependencyCrawler.crawl("C0", maxDepth, 5000, 4, node -> {
+            bfsResolutions.merge(node, 1, Integer::sum);
+            return resolve(graph, node);
+        }, () -> {
+        });
+        long bfsMillis = (System.nanoTime() - start) / 1_000_000;
+
+        reporter.publishEntry("depthFirst", dfsCollected.size() + " classes, " + dfsResolutions.get() + " resolutions, " + dfsMillis + " ms");
+        reporter.publishEntry("breadthFirst", result.getNodes().size() + " classes, " + result.getExpandedCount() + " resolutions, " + bfsMillis + " ms");
+
+        // 每个类最多解析一次，且不会漏掉深度优先扫描找到的类
+        assertTrue(bfsResolutions.values().stream().allMatch(count -> count == 1));
+        assertTrue(result.getNodes().containsAll(dfsCollected));
+        assertTrue(bfsMillis < dfsMillis);
+    }
+
+    /**
+     * 旧实现：collected.contains 作为访问标记的深度优先扫描，每次扩展都重新解析类型
+     */
+    private static void depthFirst(String node, int depth, int maxDepth, Map<String, List<String>> graph,
+                                   Set<String> collected, AtomicInteger resolutions) {
+        if (depth > maxDepth || collected.contains(node)) {
+            return;
+        }
+        collected.add(node);
+        resolutions.incrementAndGet();
+        for (String dependency : resolve(graph, node)) {
+            depthFirst(dependency, depth + 1, maxDepth, graph, collected, resolutions);
+        }
+    }
+
+    private static List<String> resolve(Map<String, List<String>> graph, String node) {
+        LockSupport.parkNanos(200_000);
+        return graph.get(node);
+    }
+
+    private static Map<String, List<String>> randomDomainModel(int classCount, int referencesPerClass, long seed) {
+        Random random = new Random(seed);
+        Map<String, List<String>> graph = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            List<String> references = new ArrayList<>();
+            for (int r = 0; r < referencesPerClass; r++) {
+                references.add("C" + random.nextInt(classCount));
+            }
+            graph.put("C" + i, references);
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,120 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.ClassSourcePruner.ClassOutline;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassSourcePrunerTest {
+
+    private static final String PAY_BODY = "{\n        if (status != OrderStatus.CREATED) {\n            throw new IllegalStateException();\n        }\n        status = OrderStatus.PAID;\n    }";
+
+    @Test
+    public void testKeepsDeclarationsAndStateBodies() {
+        ClassOutline order = new ClassOutline("com.demo.Order", "public class Order extends BaseEntity", 500)
+                .addField("private OrderStatus status = OrderStatus.CREATED;")
+                .addField("private List<OrderLine> lines;")
+                .addMethod("public void pay(BigDecimal amount)", PAY_BODY, true)
+                .addMethod("public BigDecimal total()", "{\n        return lines.stream().map(OrderLine::amount).reduce(BigDecimal.ZERO, BigDecimal::add);\n    }", false)
+                .addOmittedInnerClass("Builder");
+        ClassOutline status = new ClassOutline("com.demo.OrderStatus", "public enum OrderStatus", 80)
+                .addEnumConstant("CREATED(\"已创建\")")
+                .addEnumConstant("PAID(\"已支付\")")
+                .addField("private final String label;");
+        ClassOutline repository = new ClassOutline("com.demo.OrderRepository", "public interface OrderRepository", 60)
+                .addMethod("Order findById(Long id);", null, false);
+
+        ClassSourcePruner.Result result = ClassSourcePruner.render(List.of(order, status, repository), 10_000);
+        String code = result.getCode();
+
+        assertTrue(code.startsWith("\n\n// ===="), code);
+        assertTrue(result.getSummary().startsWith("源码精简: 约 "));
+        assertTrue(code.contains("// Class: com.demo.Order\n"));
+        assertTrue(code.contains("public class Order extends BaseEntity {\n"
+                + "    private OrderStatus status = OrderStatus.CREATED;\n"
+                + "    private List<OrderLine> lines;\n\n"
+                + "    public void pay(BigDecimal amount) " + PAY_BODY + "\n"
+                + "    public BigDecimal total() { ... }\n"
+                + "    // 内部类 Builder 已省略\n"
+                + "}\n"), code);
+        assertTrue(code.contains("public enum OrderStatus {\n    CREATED(\"已创建\"),\n    PAID(\"已支付\");\n\n    private final String label;\n"), code);
+        assertTrue(code.contains("public interface OrderRepository {\n    Order findById(Long id);\n}\n"));
+        assertEquals(1, result.getKeptBodies());
+        assertEquals(0, result.getDroppedBodies());
+    }
+
+    @Test
+    public void testDropsStateBodiesOverBudget() {
+        ClassOutline order = new ClassOutline("com.demo.Order", "public class Order", 5000);
+        for (int i = 0; i < 10; i++) {
+            order.addMethod("public void transition" + i + "()", PAY_BODY, true);
+        }
+        int declarationsOnly = ClassSourcePruner.render(List.of(order), 0).getTokens();
+        int bodyTokens = ClassSourcePruner.estimateTokens(PAY_BODY);
+
+        // 分段估算的取整误差最多 1 个 token
+        int budget = declarationsOnly + 3 * bodyTokens + 2;
+        ClassSourcePruner.Result result = ClassSourcePruner.render(List.of(order), budget);
+
+        assertEquals(3, result.getKeptBodies());
+        assertEquals(7, result.getDroppedBodies());
+        assertTrue(result.getTokens() <= budget);
+        // 预算内按顺序保留
+        assertTrue(result.getCode().contains("transition2() {"));
+        assertTrue(result.getCode().contains("transition3() { ... }"));
+        assertTrue(result.getSummary().endsWith("超出预算省略 7 个"), result.getSummary());
+    }
+
+    @Test
+    public void testEstimateTokens() {
+        assertEquals(0, ClassSourcePruner.estimateTokens(""));
+        assertEquals(4, ClassSourcePruner.estimateTokens("status = PAID"));
+        assertEquals(4, ClassSourcePruner.estimateTokens("订单状态"));
+    }
+
+    /**
+     * 80 个类的领域包：完整源码与精简后源码的 token 数量
+     */
+    @Test
+    @Tag("benchmark")
+    public void testReductionRatio(TestReporter reporter) {
+        List<ClassOutline> outlines = new ArrayList<>();
+        for (int c = 0; c < 80; c++) {
+            StringBuilder source = new StringBuilder("/**\n * 领域对象 ").append(c).append("\n */\npublic class Entity").append(c).append(" {\n");
+            List<String[]> methods = new ArrayList<>();
+            for (int m = 0; m < 12; m++) {
+                StringBuilder body = new StringBuilder("{\n");
+                for (int line = 0; line < 10; line++) {
+                    body.append("        total = total.add(items.get(").append(line).append(").getPrice().multiply(rate").append(line).append("));\n");
+                }
+                body.append(m == 0 ? "        status = Status.DONE;\n" : "").append("    }");
+                String signature = "public void step" + m + "(Order order)";
+                methods.add(new String[]{signature, body.toString()});
+                source.append("    /**\n     * 第 ").append(m).append(" 步\n     */\n    ").append(signature).append(' ').append(body).append("\n\n");
+            }
+            source.append("}\n");
+            ClassOutline outline = new ClassOutline("com.demo.Entity" + c, "public class Entity" + c, ClassSourcePruner.estimateTokens(source.toString()))
+                    .addField("private Status status;");
+            for (int m = 0; m < methods.size(); m++) {
+                outline.addMethod(methods.get(m)[0], methods.get(m)[1], m == 0);
+            }
+            outlines.add(outline);
+        }
+
+        long start = System.nanoTime();
+        ClassSourcePruner.Result result = ClassSourcePruner.render(outlines, 24_000);
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        reporter.publishEntry("summary", result.getSummary());
+        reporter.publishEntry("renderMillis", String.format("%.2f", millis));
+        assertEquals(80, result.getKeptBodies() + result.getDroppedBodies());
+        assertTrue(result.getDroppedBodies() > 0);
+        assertTrue(result.getTokens() <= 24_000);
+        assertTrue(result.getReductionRatio() > 0.8);
+    }
+}
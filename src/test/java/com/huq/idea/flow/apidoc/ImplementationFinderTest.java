@@ -0,0 +1,116 @@
+package com.huq.idea.flow.apidoc;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImplementationFinderTest {
+
+    private final Map<PsiMethod, Integer> proximity = new HashMap<>();
+    private final Map<PsiMethod, Integer> usages = new HashMap<>();
+
+    @Test
+    public void testKeepsAllImplementationsWithinLimit() {
+        List<PsiMethod> implementations = List.of(impl("a.AImpl", 2, 0), impl("b.BImpl", 0, 0));
+
+        ImplementationFinder.Result result = rank(implementations, 2);
+        // 未超过上限时只按类名排序
+        assertEquals(implementations, result.getIncluded());
+        assertTrue(result.getOmitted().isEmpty());
+        // 上限不大于 0 时不限制
+        assertEquals(implementations, rank(implementations, 0).getIncluded());
+    }
+
+    @Test
+    public void testRanksByModuleProximityThenUsages() {
+        List<PsiMethod> implementations = List.of(
+                impl("other.RarelyUsed", 2, 1),
+                impl("dep.Popular", 1, 50),
+                impl("same.Unused", 0, 0),
+                impl("dep.LessPopular", 1, 10),
+                impl("other.Popular", 2, 90));
+
+        ImplementationFinder.Result result = rank(implementations, 3);
+        assertEquals(List.of("same.Unused", "dep.Popular", "dep.LessPopular"), names(result.getIncluded()));
+        assertEquals(List.of("other.Popular", "other.RarelyUsed"), names(result.getOmitted()));
+        assertEquals(List.of("other.Popular", "other.RarelyUsed"), result.getOmittedClassNames());
+    }
+
+    @Test
+    public void testTiesBreakByClassName() {
+        List<PsiMethod> implementations = List.of(impl("x.Charlie", 1, 5), impl("x.Alpha", 1, 5), impl("x.Bravo", 1, 5));
+
+        // 搜索顺序不同时结果相同
+        for (List<PsiMethod> order : List.of(implementations, List.of(implementations.get(2), implementations.get(0), implementations.get(1)))) {
+            ImplementationFinder.Result result = rank(order, 2);
+            assertEquals(List.of("x.Alpha", "x.Bravo"), names(result.getIncluded()));
+            assertEquals(List.of("x.Charlie"), names(result.getOmitted()));
+            assertEquals(List.of("x.Alpha", "x.Bravo", "x.Charlie"), names(rank(order, 5).getIncluded()));
+        }
+    }
+
+    @Test
+    public void testOmittedNamesFallBackForLocalAndAnonymousClasses() {
+        ImplementationFinder.Result result = new ImplementationFinder.Result(List.of(), List.of(
+                method(psiClass("com.demo.NamedImpl", "NamedImpl")),
+                method(psiClass(null, "LocalImpl")),
+                method(psiClass(null, null))));
+
+        assertEquals(List.of("com.demo.NamedImpl", "LocalImpl"), result.getOmittedClassNames());
+    }
+
+    private ImplementationFinder.Result rank(List<PsiMethod> implementations, int topK) {
+        return ImplementationFinder.rank(implementations, topK, proximity::get, usages::get);
+    }
+
+    private PsiMethod impl(String className, int moduleProximity, int usageCount) {
+        PsiMethod method = method(psiClass(className, className.substring(className.lastIndexOf('.') + 1)));
+        proximity.put(method, moduleProximity);
+        usages.put(method, usageCount);
+        return method;
+    }
+
+    private static List<String> names(List<PsiMethod> methods) {
+        return methods.stream().map(m -> m.getContainingClass().getQualifiedName()).collect(Collectors.toList());
+    }
+
+    private static PsiMethod method(PsiClass containingClass) {
+        return (PsiMethod) Proxy.newProxyInstance(ImplementationFinderTest.class.getClassLoader(), new Class<?>[]{PsiMethod.class},
+                (proxy, m, args) -> m.getName().equals("getContainingClass") ? containingClass : identity(proxy, m.getName(), args));
+    }
+
+    private static PsiClass psiClass(String qualifiedName, String name) {
+        return (PsiClass) Proxy.newProxyInstance(ImplementationFinderTest.class.getClassLoader(), new Class<?>[]{PsiClass.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getQualifiedName":
+                            return qualifiedName;
+                        case "getName":
+                            return name;
+                        default:
+                            return identity(proxy, m.getName(), args);
+                    }
+                });
+    }
+
+    private static Object identity(Object proxy, String name, Object[] args) {
+        switch (name) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "proxy@" + System.identityHashCode(proxy);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
+import com.huq.idea.flow.model.MethodDescription;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalDiagramUpdaterTest {
+
+    private static final String SERVICE = "com.demo.OrderService";
+
+    private static final String DIAGRAM = """
+            @startuml
+            ' @method com.demo.OrderService#save()
+            Client -> OrderService : save
+            ' @method com.demo.OrderService#validate()
+            OrderService -> OrderService : validate
+            ' @method com.demo.OrderService#check()
+            OrderService -> Checker : check
+            ' @end com.demo.OrderService#check()
+            ' @end com.demo.OrderService#validate()
+            ' @method com.demo.OrderService#insert()
+            OrderService -> OrderDao : insert
+            ' @end com.demo.OrderService#insert()
+            ' @end com.demo.OrderService#save()
+            @enduml""";
+
+    @Test
+    public void testRegeneratesOnlyTheChangedSection() {
+        CallStack before = orderChain("void check() { checker.check(); }", "");
+        CallStack after = orderChain("void check() { checker.check(); audit(); }", "");
+
+        IncrementalDiagramUpdater.Plan plan = plan(before, after, DIAGRAM);
+
+        assertNotNull(plan);
+        assertEquals(Set.of(SERVICE + "#check()"), plan.getTargets());
+        String prompt = plan.getPrompt();
+        assertTrue(prompt.contains("OrderService -> Checker : check"));
+        assertTrue(prompt.contains("audit();"));
+        assertFalse(prompt.contains("OrderDao"), prompt);
+
+        String updated = plan.splice("""
+                好的，更新后的片段如下：
+                ' @method com.demo.OrderService#check()
+                OrderService -> Checker : check
+                OrderService -> Auditor : audit
+                ' @end com.demo.OrderService#check()
+                """);
+        assertEquals(DIAGRAM.replace("OrderService -> Checker : check\n",
+                "OrderService -> Checker : check\nOrderService -> Auditor : audit\n"), updated);
+        // 片段缺失时不替换
+        assertNull(plan.splice("OrderService -> Checker : check"));
+    }
+
+    @Test
+    public void testNewCalleeIsCoveredByItsCallerSection() {
+        CallStack before = orderChain("void check() { checker.check(); }", "");
+        CallStack after = orderChain("void check() { checker.check(); }", "notify();");
+        // validate 新调用了没有片段的 notify
+        CallStack validate = after.getChildren().get(0);
+        validate.addChild(new CallStack(method("notify", "void notify() { mq.send(); }"), validate));
+
+        IncrementalDiagramUpdater.Plan plan = plan(before, after, DIAGRAM);
+
+        assertNotNull(plan);
+        assertEquals(Set.of(SERVICE + "#validate()"), plan.getTargets());
+        assertEquals(Set.of(SERVICE + "#validate()", SERVICE + "#notify()"), plan.getChangedMethods());
+        assertTrue(plan.getPrompt().contains("mq.send();"));
+        // 没有变化的 check 只作为旧片段出现，不重复发送源码
+        assertFalse(plan.getPrompt().contains("checker.check();"));
+    }
+
+    @Test
+    public void testFallsBackToFullRegeneration() {
+        CallStack before = orderChain("void check() { checker.check(); }", "");
+        CallStack rootChanged = orderChain("void check() { checker.check(); }", "");
+        rootChanged.setMethodDescription(method("save", "public void save() { validate(); insert(); log(); }"));
+
+        assertNull(plan(before, rootChanged, DIAGRAM));
+        assertNull(plan(before, orderChain("void check() { }", ""), "@startuml\nA -> B\n@enduml"));
+        assertNull(plan(before, orderChain("void check() { checker.check(); }", ""), DIAGRAM));
+    }
+
+    @Test
+    public void testOnlyFlowAndSequenceDiagramsSupportSections() {
+        assertTrue(IncrementalDiagramUpdater.supports("flow"));
+        assertTrue(IncrementalDiagramUpdater.supports("sequence"));
+        assertFalse(IncrementalDiagramUpdater.supports("class"));
+        assertFalse(IncrementalDiagramUpdater.supports(null));
+    }
+
+    /**
+     * 40 个方法的调用链中修改一个深层方法：完整生成与增量更新的提示词大小对比
+     */
+    @Test
+    @Tag("benchmark")
+    public void testIncrementalPromptSize(TestReporter reporter) {
+        String[] bodies = new String[40];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = methodBody(i, "");
+        }
+        CallStack before = deepChain(bodies);
+        StringBuilder diagram = new StringBuilder("@startuml\n");
+        for (int i = 0; i < bodies.length; i++) {
+            diagram.append("' @method ").append(SERVICE).append("#step").append(i).append("()\n")
+                    .append("Step").append(i).append(" -> Step").append(i + 1).append(" : step").append(i + 1).append('\n');
+        }
+        for (int i = bodies.length - 1; i >= 0; i--) {
+            diagram.append("' @end ").append(SERVICE).append("#step").append(i).append("()\n");
+        }
+        diagram.append("@enduml");
+
+        bodies[31] = methodBody(31, "audit(order);");
+        CallStack after = deepChain(bodies);
+        Map<String, CallStackFingerprint.MethodEntry> methods = CallStackFingerprint.methodEntries(after);
+        String fullPrompt = CallStackCodeCollector.collect(after) + IncrementalDiagramUpdater.sectionInstruction(methods);
+
+        long start = System.nanoTime();
+        IncrementalDiagramUpdater.Plan plan = IncrementalDiagramUpdater.plan(after,
+                CallStackFingerprint.methodEntries(before), methods, diagram.toString());
+        String incrementalPrompt = plan.getPrompt();
+        double planMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        reporter.publishEntry("fullPromptChars", String.valueOf(fullPrompt.length()));
+        reporter.publishEntry("incrementalPromptChars", String.valueOf(incrementalPrompt.length()));
+        reporter.publishEntry("planMillis", String.format("%.2f", planMillis));
+        assertEquals(Set.of(SERVICE + "#step31()"), plan.getTargets());
+        assertTrue(incrementalPrompt.length() * 4 < fullPrompt.length());
+    }
+
+    private static IncrementalDiagramUpdater.Plan plan(CallStack before, CallStack after, String diagram) {
+        return IncrementalDiagramUpdater.plan(after, CallStackFingerprint.methodEntries(before),
+                CallStackFingerprint.methodEntries(after), diagram);
+    }
+
+    private static CallStack orderChain(String checkBody, String validateExtra) {
+        CallStack save = new CallStack(method("save", "public void save() { validate(); insert(); }"));
+        CallStack validate = new CallStack(method("validate", "void validate() { check(); " + validateExtra + "}"), save);
+        save.addChild(validate);
+        validate.addChild(new CallStack(method("check", checkBody), validate));
+        save.addChild(new CallStack(method("insert", "void insert() { dao.insert(); }"), save));
+        return save;
+    }
+
+    private static CallStack deepChain(String[] bodies) {
+        CallStack root = new CallStack(method("step0", bodies[0]));
+        CallStack current = root;
+        for (int i = 1; i < bodies.length; i++) {
+            CallStack next = new CallStack(method("step" + i, bodies[i]), current);
+            current.addChild(next);
+            current = next;
+        }
+        return root;
+    }
+
+    private static String methodBody(int index, String extra) {
+        StringBuilder body = new StringBuilder("public void step").append(index).append("(Order order) {\n");
+        for (int line = 0; line < 25; line++) {
+            body.append("    order.setField").append(line).append("(repository.load").append(line).append("(order.getId()));\n");
+        }
+        return body.append("    ").append(extra).append("step").append(index + 1).append("(order);\n}").toString();
+    }
+
+    private static MethodDescription method(String name, String text) {
+        return new MethodDescription(null, SERVICE, text, name, null, "void");
+    }
+}
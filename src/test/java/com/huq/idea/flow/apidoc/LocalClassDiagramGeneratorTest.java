@@ -0,0 +1,144 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.LocalClassDiagramGenerator.ClassInfo;
+import com.huq.idea.flow.apidoc.LocalClassDiagramGenerator.Kind;
+import com.huq.idea.flow.apidoc.LocalClassDiagramGenerator.RelationType;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalClassDiagramGeneratorTest {
+
+    @Test
+    public void testRendersClassesAndRelations() {
+        ClassInfo order = new ClassInfo("com.demo.order.Order", "Order", "com.demo.order", Kind.CLASS)
+                .addField("- id : Long")
+                .addField("- lines : List<OrderLine>")
+                .addField("- customer : Customer")
+                .addMethod("+ submit(Customer) : void")
+                .addRelation(RelationType.EXTENDS, "com.demo.order.BaseEntity", null, false)
+                .addRelation(RelationType.IMPLEMENTS, "com.demo.order.Payable", null, false)
+                .addRelation(RelationType.ASSOCIATION, "com.demo.order.OrderLine", "lines", true)
+                .addRelation(RelationType.ASSOCIATION, "com.demo.customer.Customer", "customer", false)
+                // 已经有关联关系，不再输出依赖
+                .addRelation(RelationType.DEPENDENCY, "com.demo.customer.Customer", null, false)
+                .addRelation(RelationType.DEPENDENCY, "com.demo.order.OrderStatus", null, false);
+        ClassInfo status = new ClassInfo("com.demo.order.OrderStatus", "OrderStatus", "com.demo.order", Kind.ENUM)
+                .addEnumConstant("NEW")
+                .addEnumConstant("PAID");
+        List<ClassInfo> classes = List.of(order,
+                new ClassInfo("com.demo.order.BaseEntity", "BaseEntity", "com.demo.order", Kind.ABSTRACT_CLASS),
+                new ClassInfo("com.demo.order.Payable", "Payable", "com.demo.order", Kind.INTERFACE),
+                new ClassInfo("com.demo.order.OrderLine", "OrderLine", "com.demo.order", Kind.CLASS),
+                status,
+                new ClassInfo("com.demo.customer.Customer", "Customer", "com.demo.customer", Kind.CLASS));
+
+        String uml = LocalClassDiagramGenerator.render(classes);
+
+        assertTrue(uml.startsWith("@startuml\n"));
+        assertTrue(uml.endsWith("@enduml"));
+        assertTrue(uml.contains("package com.demo.order {\n  class Order {\n    - id : Long\n"), uml);
+        assertTrue(uml.contains("    - customer : Customer\n    --\n    + submit(Customer) : void\n  }"), uml);
+        assertTrue(uml.contains("  abstract class BaseEntity\n"));
+        assertTrue(uml.contains("  interface Payable\n"));
+        assertTrue(uml.contains("  enum OrderStatus {\n    NEW\n    PAID\n  }"));
+        assertTrue(uml.contains("package com.demo.customer {\n  class Customer\n}"));
+        assertTrue(uml.contains("BaseEntity <|-- Order\n"));
+        assertTrue(uml.contains("Payable <|.. Order\n"));
+        assertTrue(uml.contains("Order --> \"*\" OrderLine : lines\n"));
+        assertTrue(uml.contains("Order --> Customer : customer\n"));
+        assertTrue(uml.contains("Order ..> OrderStatus\n"));
+        assertFalse(uml.contains("Order ..> Customer"));
+    }
+
+    @Test
+    public void testAliasesDuplicateNamesAndFoldsLargeClasses() {
+        ClassInfo line = new ClassInfo("com.demo.order.Line", "Line", "com.demo.order", Kind.CLASS);
+        for (int i = 0; i < LocalClassDiagramGenerator.MAX_MEMBERS + 5; i++) {
+            line.addMethod("+ step" + i + "()");
+        }
+        ClassInfo otherLine = new ClassInfo("com.demo.invoice.Line", "Line", "com.demo.invoice", Kind.RECORD)
+                .addRelation(RelationType.ASSOCIATION, "com.demo.order.Line", "source", false)
+                // 不在类图中的类不输出关系
+                .addRelation(RelationType.ASSOCIATION, "java.lang.String", "text", false);
+
+        String uml = LocalClassDiagramGenerator.render(List.of(line, otherLine));
+
+        assertTrue(uml.contains("class \"Line\" as com_demo_order_Line {"), uml);
+        assertTrue(uml.contains("class \"Line\" as com_demo_invoice_Line <<record>>\n"), uml);
+        assertTrue(uml.contains("com_demo_invoice_Line --> com_demo_order_Line : source\n"));
+        assertFalse(uml.contains("String"));
+        assertTrue(uml.contains("+ step29()\n    .. 另有 5 项 ..\n"), uml);
+        assertFalse(uml.contains("step30"));
+    }
+
+    @Test
+    public void testAccessorsAndSummaries() {
+        Set<String> fields = Set.of("name", "enabled", "isDefault");
+        assertTrue(LocalClassDiagramGenerator.isAccessor("getName", 0, fields));
+        assertTrue(LocalClassDiagramGenerator.isAccessor("setName", 1, fields));
+        assertTrue(LocalClassDiagramGenerator.isAccessor("isEnabled", 0, fields));
+        assertTrue(LocalClassDiagramGenerator.isAccessor("isDefault", 0, fields));
+        assertFalse(LocalClassDiagramGenerator.isAccessor("getName", 1, fields));
+        assertFalse(LocalClassDiagramGenerator.isAccessor("getTotal", 0, fields));
+        assertFalse(LocalClassDiagramGenerator.isAccessor("get", 0, fields));
+
+        assertEquals("订单聚合根", LocalClassDiagramGenerator.firstSentence("/**\n * 订单聚合根。负责下单和支付\n *\n * @author huqiang\n */"));
+        assertEquals("Order aggregate root", LocalClassDiagramGenerator.firstSentence("/** Order <b>aggregate</b> root. Handles payment. */"));
+        assertNull(LocalClassDiagramGenerator.firstSentence("/**\n * @since 2024/8/10\n */"));
+    }
+
+    /**
+     * 150 个类的领域模型：本地生成类图的耗时，以及 AI 补充说明与发送完整源码的提示词大小对比
+     */
+    @Test
+    @Tag("benchmark")
+    public void testLocalGenerationTime(TestReporter reporter) {
+        List<ClassInfo> classes = new ArrayList<>();
+        StringBuilder sources = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            String name = "Entity" + i;
+            ClassInfo info = new ClassInfo("com.demo.domain" + (i % 6) + "." + name, name, "com.demo.domain" + (i % 6), Kind.CLASS);
+            info.setSummary("领域对象 " + i);
+            sources.append("/**\n * 领域对象 ").append(i).append("\n */\npublic class ").append(name).append(" {\n");
+            for (int f = 0; f < 8; f++) {
+                info.addField("- field" + f + " : String");
+                sources.append("    private String field").append(f).append(";\n\n")
+                        .append("    public String getField").append(f).append("() {\n        return field").append(f).append(";\n    }\n\n")
+                        .append("    public void setField").append(f).append("(String field").append(f).append(") {\n        this.field")
+                        .append(f).append(" = field").append(f).append(";\n    }\n\n");
+            }
+            for (int m = 0; m < 5; m++) {
+                info.addMethod("+ process" + m + "(Entity" + ((i + 1) % 150) + ") : boolean");
+                sources.append("    public boolean process").append(m).append("(Entity").append((i + 1) % 150).append(" other) {\n")
+                        .append("        if (other == null || field0 == null) {\n            return false;\n        }\n")
+                        .append("        field").append(m).append(" = other.getField").append(m).append("();\n        return true;\n    }\n\n");
+            }
+            sources.append("}\n\n");
+            info.addRelation(RelationType.ASSOCIATION, "com.demo.domain" + ((i + 1) % 6) + ".Entity" + ((i + 1) % 150), "next", false);
+            info.addRelation(RelationType.DEPENDENCY, "com.demo.domain" + ((i + 7) % 6) + ".Entity" + ((i + 7) % 150), null, false);
+            classes.add(info);
+        }
+
+        LocalClassDiagramGenerator.render(classes);
+        long start = System.nanoTime();
+        String uml = LocalClassDiagramGenerator.render(classes);
+        double renderMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        String fullPrompt = String.format(IdeaSettings.DEFAULT_CLASS_DIAGRAM_PROMPT, sources);
+        String enhancePrompt = String.format(IdeaSettings.DEFAULT_CLASS_DIAGRAM_ENHANCE_PROMPT, LocalClassDiagramGenerator.describe(classes, uml));
+
+        reporter.publishEntry("renderMillis", String.format("%.2f", renderMillis));
+        reporter.publishEntry("fullPromptChars", String.valueOf(fullPrompt.length()));
+        reporter.publishEntry("enhancePromptChars", String.valueOf(enhancePrompt.length()));
+        assertEquals(150, uml.lines().filter(l -> l.contains("class Entity")).count());
+        assertTrue(enhancePrompt.length() * 2 < fullPrompt.length());
+    }
+}
@@ -0,0 +1,275 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.service.MethodResolveCache;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.MethodDescription;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.FileViewProvider;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionList;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.testFramework.LightVirtualFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodChainVisitorTest {
+
+    private static final int CALL_SITES = 500;
+
+    private Disposable testDisposable;
+
+    @BeforeEach
+    public void setUp() {
+        // 轻量分析模式下调用点只读取 stub 信息，开销全部来自源码片段的记录
+        IdeaSettings settings = new IdeaSettings();
+        settings.getState().setStubOnlyAnalysis(true);
+        Map<String, Function<Object[], ?>> answers = new HashMap<>();
+        answers.put("getService", args -> settings);
+        testDisposable = Disposer.newDisposable();
+        ApplicationManager.setApplication(psi(Application.class, answers), testDisposable);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Disposer.dispose(testDisposable);
+    }
+
+    /**
+     * 一个方法体内有 500 个内部调用点：访问器不应再为每个调用点重新生成方法体文本，
+     * 每个调用点的分配量应远小于一份方法体
+     */
+    @Test
+    @Tag("benchmark")
+    public void testInternalCallsAllocateLessThanBodyPerCallSite(TestReporter reporter) {
+        // 预热，避免类加载和 JIT 干扰统计
+        for (int i = 0; i < 3; i++) {
+            CallSiteFixture warmup = new CallSiteFixture();
+            MethodChainVisitor visitor = new MethodChainVisitor();
+            visitor.generateMethodChains(null, warmup.root());
+            warmup.visit(visitor);
+        }
+
+        CallSiteFixture fixture = new CallSiteFixture();
+        MethodChainVisitor visitor = new MethodChainVisitor();
+        CallStack root = fixture.root();
+        visitor.generateMethodChains(null, root);
+        long bytes = allocatedBytes(() -> fixture.visit(visitor));
+        reporter.publishEntry("allocatedBytes", String.valueOf(bytes));
+        reporter.publishEntry("bodyLength", String.valueOf(fixture.bodyLength()));
+
+        assertEquals(CALL_SITES, root.getChildren().size());
+        assertEquals(0, fixture.bodyTextReads.get(), "method body text should not be rebuilt per call site");
+        if (bytes > 0) {
+            assertTrue(bytes < (long) CALL_SITES * fixture.bodyLength(),
+                    "each call site should allocate less than one body copy: allocated=" + bytes);
+        }
+
+        // 片段解析出的文本与源码一致
+        int previousEnd = fixture.bodyStart;
+        for (int i = 0; i < CALL_SITES; i++) {
+            MethodDescription call = root.getChildren().get(i).getMethodDescription();
+            TextRange statement = fixture.statements.get(i);
+            assertEquals("false", call.getAttr("external"));
+            assertEquals(statement.substring(fixture.contents), call.getAttr("parentStatement"));
+            assertEquals(fixture.contents.substring(previousEnd, statement.getEndOffset()), call.getAttr("expression.subBody"));
+            assertEquals(fixture.contents.substring(statement.getStartOffset(), statement.getEndOffset() - 1), call.getAttr("expression.text"));
+            previousEnd = statement.getEndOffset();
+        }
+    }
+
+    /**
+     * 一个 Java 文件：OrderController.handle() 依次调用 500 次 OrderServiceImpl.process()
+     */
+    private static class CallSiteFixture {
+        private final String contents;
+        private final int bodyStart;
+        private final int bodyEnd;
+        private final List<TextRange> statements = new ArrayList<>();
+        private final List<PsiMethodCallExpression> calls = new ArrayList<>();
+        private final AtomicInteger bodyTextReads = new AtomicInteger();
+
+        private final PsiFile file;
+        private final PsiMethod caller;
+        private PsiCodeBlock body;
+        private final Project project;
+
+        CallSiteFixture() {
+            StringBuilder text = new StringBuilder("package demo;\n\nclass OrderController {\n    void handle() ");
+            bodyStart = text.length();
+            text.append("{\n");
+            for (int i = 0; i < CALL_SITES; i++) {
+                text.append("        ");
+                int start = text.length();
+                text.append("orderService.process(request, context").append(i).append(");");
+                statements.add(new TextRange(start, text.length()));
+                text.append('\n');
+            }
+            text.append("    }");
+            bodyEnd = text.length();
+            text.append("\n}\n");
+            contents = text.toString();
+
+            Map<String, Function<Object[], ?>> viewProviderAnswers = new HashMap<>();
+            viewProviderAnswers.put("getContents", args -> contents);
+            FileViewProvider viewProvider = psi(FileViewProvider.class, viewProviderAnswers);
+            file = javaFile("OrderController.java", viewProvider);
+
+            Map<String, Function<Object[], ?>> projectAnswers = new HashMap<>();
+            project = psi(Project.class, projectAnswers);
+            MethodResolveCache resolveCache = new MethodResolveCache(project);
+            projectAnswers.put("getService", args -> args[0] == PsiModificationTracker.class
+                    ? psi(PsiModificationTracker.class, Map.of()) : resolveCache);
+
+            PsiMethod callee = callee();
+            Map<String, Function<Object[], ?>> callerAnswers = new HashMap<>();
+            callerAnswers.put("getBody", args -> body);
+            callerAnswers.put("getName", args -> "handle");
+            callerAnswers.put("getContainingFile", args -> file);
+            caller = psi(PsiMethod.class, callerAnswers);
+
+            Map<String, Function<Object[], ?>> bodyAnswers = new HashMap<>();
+            bodyAnswers.put("getTextRange", args -> new TextRange(bodyStart, bodyEnd));
+            bodyAnswers.put("getText", args -> {
+                // 真实 PSI 的 getText() 每次都会重新拼出整段文本
+                bodyTextReads.incrementAndGet();
+                return new String(contents.substring(bodyStart, bodyEnd).toCharArray());
+            });
+            bodyAnswers.put("getParent", args -> caller);
+            bodyAnswers.put("getContainingFile", args -> file);
+            body = psi(PsiCodeBlock.class, bodyAnswers);
+
+            for (TextRange range : statements) {
+                calls.add(callSite(range, callee));
+            }
+        }
+
+        int bodyLength() {
+            return bodyEnd - bodyStart;
+        }
+
+        CallStack root() {
+            return new CallStack(MethodDescription.lazy(caller, "demo.OrderController", "handle", "void", null, false));
+        }
+
+        void visit(MethodChainVisitor visitor) {
+            for (PsiMethodCallExpression call : calls) {
+                visitor.visitMethodCallExpression(call);
+            }
+        }
+
+        private PsiMethodCallExpression callSite(TextRange statementRange, PsiMethod callee) {
+            Map<String, Function<Object[], ?>> statementAnswers = new HashMap<>();
+            statementAnswers.put("getTextRange", args -> statementRange);
+            statementAnswers.put("getText", args -> statementRange.substring(contents));
+            statementAnswers.put("getParent", args -> body);
+            statementAnswers.put("getContainingFile", args -> file);
+            PsiStatement statement = psi(PsiStatement.class, statementAnswers);
+
+            PsiExpressionList arguments = psi(PsiExpressionList.class, Map.of("getExpressions", args -> new PsiExpression[0]));
+            PsiReferenceExpression methodExpression = psi(PsiReferenceExpression.class, Map.of("getReferenceName", args -> "process"));
+            TextRange expressionRange = new TextRange(statementRange.getStartOffset(), statementRange.getEndOffset() - 1);
+
+            Map<String, Function<Object[], ?>> callAnswers = new HashMap<>();
+            callAnswers.put("getTextRange", args -> expressionRange);
+            callAnswers.put("getText", args -> expressionRange.substring(contents));
+            callAnswers.put("getParent", args -> statement);
+            callAnswers.put("getContainingFile", args -> file);
+            callAnswers.put("getProject", args -> project);
+            callAnswers.put("resolveMethod", args -> callee);
+            callAnswers.put("getArgumentList", args -> arguments);
+            callAnswers.put("getMethodExpression", args -> methodExpression);
+            return psi(PsiMethodCallExpression.class, callAnswers);
+        }
+
+        private static PsiMethod callee() {
+            PsiFile serviceFile = javaFile("OrderServiceImpl.java", null);
+            Map<String, Function<Object[], ?>> classAnswers = new HashMap<>();
+            classAnswers.put("getName", args -> "OrderServiceImpl");
+            classAnswers.put("getQualifiedName", args -> "demo.OrderServiceImpl");
+            classAnswers.put("getContainingFile", args -> serviceFile);
+            PsiClass serviceClass = psi(PsiClass.class, classAnswers);
+
+            Map<String, Function<Object[], ?>> methodAnswers = new HashMap<>();
+            methodAnswers.put("getName", args -> "process");
+            methodAnswers.put("getContainingClass", args -> serviceClass);
+            methodAnswers.put("getContainingFile", args -> serviceFile);
+            return psi(PsiMethod.class, methodAnswers);
+        }
+
+        private static PsiFile javaFile(String name, FileViewProvider viewProvider) {
+            LightVirtualFile virtualFile = new LightVirtualFile(name);
+            Map<String, Function<Object[], ?>> answers = new HashMap<>();
+            answers.put("getVirtualFile", args -> virtualFile);
+            answers.put("getViewProvider", args -> viewProvider);
+            return psi(PsiFile.class, answers);
+        }
+    }
+
+    private static <T> T psi(Class<T> type, Map<String, Function<Object[], ?>> answers) {
+        return type.cast(Proxy.newProxyInstance(MethodChainVisitorTest.class.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            switch (m.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + System.identityHashCode(proxy);
+                default:
+                    Function<Object[], ?> answer = answers.get(m.getName());
+                    if (answer != null) {
+                        return answer.apply(args);
+                    }
+                    if (m.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    if (m.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    if (m.getReturnType() == long.class) {
+                        return 0L;
+                    }
+                    return null;
+            }
+        }));
+    }
+
+    private static long allocatedBytes(Runnable runnable) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            runnable.run();
+            return 0;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,120 @@
+package com.huq.idea.flow.apidoc;
+
+import com.huq.idea.flow.apidoc.StateMachineExtractor.StateMachine;
+import com.huq.idea.flow.config.config.IdeaSettings;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateMachineExtractorTest {
+
+    private static final String PAY = "public void pay(BigDecimal amount) {\n"
+            + "    if (status != OrderStatus.CREATED) {\n"
+            + "        throw new IllegalStateException(\"not payable\");\n"
+            + "    }\n"
+            + "    this.status = OrderStatus.PAID;\n"
+            + "}";
+
+    @Test
+    public void testRendersDraftStateDiagram() {
+        StateMachine machine = orderMachine();
+
+        String uml = StateMachineExtractor.render(List.of(machine));
+
+        assertTrue(uml.startsWith("@startuml\n"));
+        assertTrue(uml.endsWith("@enduml"));
+        assertTrue(uml.contains("[*] --> CREATED\n"), uml);
+        assertTrue(uml.contains("CREATED --> PAID : pay\\n[!(status != OrderStatus.CREATED)]\n"), uml);
+        // 多个起始状态各输出一条转换
+        assertTrue(uml.contains("PAID --> SHIPPED : ship\n"));
+        assertTrue(uml.contains("CREATED --> SHIPPED : ship\n"));
+        // 无法确定起始状态
+        assertTrue(uml.contains("state \"任意状态\" as AnyState\n"));
+        assertTrue(uml.contains("AnyState --> CANCELLED : cancel\n"));
+        // 只有转入没有转出的状态是结束状态，没有转换的状态单独声明
+        assertTrue(uml.contains("SHIPPED --> [*]\n"));
+        assertTrue(uml.contains("CANCELLED --> [*]\n"));
+        assertTrue(uml.contains("state \"REFUNDED\" as REFUNDED\n"));
+        assertFalse(uml.contains("PAID --> [*]"));
+    }
+
+    @Test
+    public void testSeparatesMultipleMachines() {
+        StateMachine payment = new StateMachine("com.demo.Payment", "state", "PaymentState", List.of("CREATED", "DONE"))
+                .addTransition(List.of(StateMachineExtractor.INITIAL), "CREATED", "Payment", null)
+                .addTransition(List.of("CREATED"), "DONE", "complete", "amount.signum() > 0 && gateway.isOnline() && !fraudCheck.isSuspicious(order)");
+
+        String uml = StateMachineExtractor.render(List.of(orderMachine(), payment));
+
+        assertTrue(uml.contains("state \"Order.status\" as S1 {\n"), uml);
+        assertTrue(uml.contains("state \"Payment.state\" as S2 {\n"));
+        // 同名状态通过前缀区分
+        assertTrue(uml.contains("  S1_CREATED --> S1_PAID : pay"));
+        assertTrue(uml.contains("  [*] --> S2_CREATED : Payment\n"));
+        assertTrue(uml.contains("  S2_CREATED --> S2_DONE : complete\\n[amount.signum() > 0 && gateway.isOnline() && !fraudCheck.isS...]\n"), uml);
+    }
+
+    @Test
+    public void testDescribesTransitionTableAndSnippets() {
+        StateMachine machine = orderMachine();
+        // 同一方法的重复转换只记录一次
+        machine.addTransition(List.of(), "CANCELLED", "cancel", null);
+        assertEquals(3, machine.getTransitions().size());
+
+        String text = StateMachineExtractor.describe(List.of(machine));
+
+        assertTrue(text.contains("### com.demo.Order.status (OrderStatus): CREATED, PAID, SHIPPED, CANCELLED, REFUNDED\n初始状态: CREATED\n"), text);
+        assertTrue(text.contains("| CREATED | PAID | pay | !(status != OrderStatus.CREATED) |\n"));
+        assertTrue(text.contains("| PAID, CREATED | SHIPPED | ship |  |\n"));
+        assertTrue(text.contains("| 任意 | CANCELLED | cancel |  |\n"));
+        assertTrue(text.contains("// Order#pay\n" + PAY + "\n"));
+    }
+
+    /**
+     * 37 个方法的订单类中只有少数方法修改状态：静态提取的输入与发送完整源码的提示词大小对比
+     */
+    @Test
+    @Tag("benchmark")
+    public void testPromptSize(TestReporter reporter) {
+        StringBuilder source = new StringBuilder("public class Order {\n    private OrderStatus status = OrderStatus.CREATED;\n\n");
+        for (int i = 0; i < 36; i++) {
+            source.append("    /**\n     * 计算第 ").append(i).append(" 项金额\n     */\n")
+                    .append("    public BigDecimal amount").append(i).append("() {\n");
+            for (int line = 0; line < 12; line++) {
+                source.append("        total = total.add(items.get(").append(line).append(").getPrice().multiply(rate").append(line).append("));\n");
+            }
+            source.append("        return total;\n    }\n\n");
+        }
+        source.append(PAY).append("\n}\n");
+        String fullPrompt = String.format(IdeaSettings.DEFAULT_STATE_DIAGRAM_PROMPT, source);
+
+        long start = System.nanoTime();
+        StateMachine machine = orderMachine();
+        String uml = StateMachineExtractor.render(List.of(machine));
+        String extractedPrompt = String.format(IdeaSettings.DEFAULT_STATE_DIAGRAM_PROMPT, StateMachineExtractor.describe(List.of(machine)));
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        reporter.publishEntry("draftMillis", String.format("%.2f", millis));
+        reporter.publishEntry("fullPromptChars", String.valueOf(fullPrompt.length()));
+        reporter.publishEntry("extractedPromptChars", String.valueOf(extractedPrompt.length()));
+        assertTrue(uml.contains("CREATED --> PAID"));
+        assertTrue(extractedPrompt.length() * 5 < fullPrompt.length());
+    }
+
+    private static StateMachine orderMachine() {
+        StateMachine machine = new StateMachine("com.demo.Order", "status", "OrderStatus",
+                List.of("CREATED", "PAID", "SHIPPED", "CANCELLED", "REFUNDED"));
+        machine.setInitial("CREATED");
+        machine.addTransition(List.of("CREATED"), "PAID", "pay", "!(status != OrderStatus.CREATED)")
+                .addSnippet("Order#pay", PAY)
+                .addTransition(List.of("PAID", "CREATED"), "SHIPPED", "ship", null)
+                .addSnippet("Order#ship", "public void ship() {\n    switch (status) {\n        case PAID, CREATED -> status = OrderStatus.SHIPPED;\n    }\n}")
+                .addTransition(List.of(), "CANCELLED", "cancel", null)
+                .addSnippet("Order#cancel", "public void cancel() {\n    status = OrderStatus.CANCELLED;\n}");
+        return machine;
+    }
+}
@@ -0,0 +1,21 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchDiagramGeneratorTest {
+
+    @Test
+    public void testThroughputPerMinute() {
+        assertEquals(30.0, BatchDiagramGenerator.throughput(15, 30_000), 1e-9);
+        assertEquals(1.5, BatchDiagramGenerator.throughput(3, 120_000), 1e-9);
+        assertEquals(0.0, BatchDiagramGenerator.throughput(0, 10_000), 1e-9);
+    }
+
+    @Test
+    public void testThroughputBeforeAnyTimeElapsed() {
+        assertEquals(0.0, BatchDiagramGenerator.throughput(5, 0), 1e-9);
+        assertEquals(0.0, BatchDiagramGenerator.throughput(5, -1), 1e-9);
+    }
+}
@@ -0,0 +1,48 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchEntryPointFinderTest {
+
+    @Test
+    public void testFileNameIsReadable() {
+        String name = BatchEntryPointFinder.toFileName("com.demo.UserController#getUser(Long)");
+        assertTrue(name.matches("com\\.demo\\.UserController\\.getUser_Long-[0-9a-f]{8}"), name);
+        assertTrue(BatchEntryPointFinder.toFileName("com.demo.Job#run()").startsWith("com.demo.Job.run-"));
+        assertEquals(name, BatchEntryPointFinder.toFileName("com.demo.UserController#getUser(Long)"));
+    }
+
+    @Test
+    public void testOverloadsGetDistinctFileNames() {
+        List<String> ids = List.of(
+                "com.demo.Foo#get(int)",
+                "com.demo.Foo#get(int[])",
+                "com.demo.Foo#get(int...)",
+                "com.demo.Foo#get(int[][])",
+                "com.demo.Foo#get(List<String>)",
+                "com.demo.Foo#get(List<Integer>)",
+                "com.demo.Foo#get(Map<String,Long>)",
+                "com.demo.Foo#get(Map<String, Long>)",
+                "com.demo.Foo#get()");
+        Set<String> names = new HashSet<>();
+        for (String id : ids) {
+            assertTrue(names.add(BatchEntryPointFinder.toFileName(id)), id);
+        }
+        assertTrue(BatchEntryPointFinder.toFileName("com.demo.Foo#get(int[])").startsWith("com.demo.Foo.get_intArr-"));
+        assertTrue(BatchEntryPointFinder.toFileName("com.demo.Foo#get(int...)").startsWith("com.demo.Foo.get_intVar-"));
+    }
+
+    @Test
+    public void testNamesDifferingOnlyInCaseDoNotCollide() {
+        String lower = BatchEntryPointFinder.toFileName("com.demo.Foo#getid()");
+        String upper = BatchEntryPointFinder.toFileName("com.demo.Foo#getId()");
+        assertNotEquals(lower.toLowerCase(Locale.ROOT), upper.toLowerCase(Locale.ROOT));
+    }
+}
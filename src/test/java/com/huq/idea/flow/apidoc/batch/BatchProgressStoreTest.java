@@ -0,0 +1,53 @@
+package com.huq.idea.flow.apidoc.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchProgressStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final BatchEntry save = entry("com.demo.OrderService#save(Order)");
+    private final BatchEntry find = entry("com.demo.OrderService#find(Long)");
+
+    @Test
+    public void testResumesFromProgressFile() throws Exception {
+        BatchProgressStore store = new BatchProgressStore(tempDir);
+        assertEquals(0, store.size());
+        store.markCompleted(BatchDiagramKind.FLOW, save);
+        store.markCompleted(BatchDiagramKind.SEQUENCE, find);
+        // 重复标记不会重复写入
+        store.markCompleted(BatchDiagramKind.FLOW, save);
+
+        assertEquals(2, Files.readAllLines(tempDir.resolve(BatchProgressStore.FILE_NAME), StandardCharsets.UTF_8).size());
+
+        BatchProgressStore resumed = new BatchProgressStore(tempDir);
+        assertEquals(2, resumed.size());
+        assertTrue(resumed.isCompleted(BatchDiagramKind.FLOW, save));
+        assertTrue(resumed.isCompleted(BatchDiagramKind.SEQUENCE, find));
+        // 同一入口的其他图表类型仍需生成
+        assertFalse(resumed.isCompleted(BatchDiagramKind.SEQUENCE, save));
+        assertFalse(resumed.isCompleted(BatchDiagramKind.FLOW, find));
+    }
+
+    @Test
+    public void testIgnoresBlankLines() throws Exception {
+        Files.writeString(tempDir.resolve(BatchProgressStore.FILE_NAME),
+                "flow|com.demo.OrderService#save(Order)\n\n  \n", StandardCharsets.UTF_8);
+
+        BatchProgressStore store = new BatchProgressStore(tempDir);
+        assertEquals(1, store.size());
+        assertTrue(store.isCompleted(BatchDiagramKind.FLOW, save));
+    }
+
+    private static BatchEntry entry(String id) {
+        return new BatchEntry(id, id, BatchEntryPointFinder.toFileName(id), null);
+    }
+}
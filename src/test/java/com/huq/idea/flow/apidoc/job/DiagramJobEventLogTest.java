@@ -0,0 +1,53 @@
+package com.huq.idea.flow.apidoc.job;
+
+import com.huq.idea.flow.apidoc.job.DiagramJobContext.Priority;
+import com.huq.idea.flow.apidoc.job.DiagramJobEventLog.Event;
+import com.huq.idea.flow.apidoc.job.DiagramJobEventLog.Type;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagramJobEventLogTest {
+
+    private final DiagramJob<Void> job = new DiagramJob<>(7, new DiagramJobContext("test", "key", "流程图: Order.pay", Priority.INTERACTIVE),
+            DiagramPipeline.of(DiagramJob.Stage.AI, (input, j) -> null), j -> {
+    });
+
+    @Test
+    public void testReturnsEventsAfterSequence() {
+        DiagramJobEventLog log = new DiagramJobEventLog(10);
+        assertEquals(0, log.getLastSequence());
+        assertTrue(log.since(0).isEmpty());
+
+        log.add(Type.SUBMITTED, job, null, null);
+        log.add(Type.STAGE_STARTED, job, DiagramJob.Stage.AI, null);
+        log.add(Type.STAGE_FINISHED, job, DiagramJob.Stage.AI, "120 ms");
+
+        assertEquals(3, log.getLastSequence());
+        List<Event> events = log.since(1);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(0).getSequence());
+        assertEquals(Type.STAGE_FINISHED, events.get(1).getType());
+        assertEquals(7, events.get(1).getJobId());
+        assertTrue(events.get(1).toString().endsWith("#7 流程图: Order.pay  完成 AI生成: 120 ms"), events.get(1).toString());
+        assertTrue(log.since(3).isEmpty());
+    }
+
+    @Test
+    public void testKeepsOnlyLatestEvents() {
+        DiagramJobEventLog log = new DiagramJobEventLog(4);
+        for (int i = 0; i < 10; i++) {
+            log.add(Type.STAGE_FINISHED, job, DiagramJob.Stage.AI, String.valueOf(i));
+        }
+
+        List<Event> events = log.since(0);
+        assertEquals(4, events.size());
+        assertEquals(7, events.get(0).getSequence());
+        assertEquals("6", events.get(0).getMessage());
+        assertEquals(10, events.get(3).getSequence());
+        assertEquals(List.of(9L, 10L), events.subList(2, 4).stream().map(Event::getSequence).toList());
+        assertEquals(1, log.since(9).size());
+    }
+}
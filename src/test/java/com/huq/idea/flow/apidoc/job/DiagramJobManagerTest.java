@@ -0,0 +1,282 @@
+package com.huq.idea.flow.apidoc.job;
+
+import com.huq.idea.flow.apidoc.job.DiagramJob.Stage;
+import com.huq.idea.flow.apidoc.job.DiagramJob.Status;
+import com.huq.idea.flow.apidoc.job.DiagramJobContext.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagramJobManagerTest {
+
+    private DiagramJobManager manager;
+
+    @AfterEach
+    public void tearDown() {
+        if (manager != null) {
+            manager.dispose();
+        }
+    }
+
+    @Test
+    public void testRunsStagesInOrderAndRecordsTimings() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 2);
+        DiagramPipeline<String> pipeline = DiagramPipeline
+                .of(Stage.ANALYSIS, (input, job) -> "code")
+                .then(Stage.PROMPT, (code, job) -> "prompt(" + code + ")")
+                .then(Stage.AI, (prompt, job) -> {
+                    Thread.sleep(30);
+                    return "uml(" + prompt + ")";
+                })
+                .then(Stage.RENDER, (uml, job) -> "png(" + uml + ")");
+
+        DiagramJob<String> job = manager.submit(context("a", Priority.INTERACTIVE), pipeline);
+
+        assertEquals("png(uml(prompt(code)))", job.getResult().get(5, TimeUnit.SECONDS));
+        assertEquals(Status.SUCCEEDED, job.getStatus());
+        assertEquals(Stage.RENDER, job.getStage());
+        assertEquals(List.of(Stage.ANALYSIS, Stage.PROMPT, Stage.AI, Stage.RENDER), new ArrayList<>(job.getStageMillis().keySet()));
+        assertTrue(job.getStageMillis().get(Stage.AI) >= 25, job.toString());
+        assertTrue(manager.getActiveJobs().isEmpty());
+    }
+
+    @Test
+    public void testDeduplicatesInFlightJobs() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        DiagramPipeline<Integer> pipeline = DiagramPipeline.of(Stage.AI, (input, job) -> {
+            release.await();
+            return runs.incrementAndGet();
+        });
+
+        DiagramJob<Integer> first = manager.submit(context("same", Priority.INTERACTIVE), pipeline);
+        DiagramJob<Integer> second = manager.submit(context("same", Priority.INTERACTIVE), pipeline);
+        DiagramJob<Integer> other = manager.submit(context("other", Priority.INTERACTIVE), pipeline);
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, manager.getActiveJobs().size());
+
+        release.countDown();
+        first.getResult().get(5, TimeUnit.SECONDS);
+        other.getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(2, runs.get());
+
+        // 结束后再次提交会重新执行
+        DiagramJob<Integer> again = manager.submit(context("same", Priority.INTERACTIVE), pipeline);
+        assertNotSame(first, again);
+        assertEquals(3, again.getResult().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInteractiveJobsOvertakeQueuedBatchJobs() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 1, stage -> 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        DiagramJob<String> blocker = manager.submit(context("blocker", Priority.BATCH), DiagramPipeline.of(Stage.AI, (input, job) -> {
+            release.await();
+            return "blocker";
+        }));
+        waitUntilRunning(blocker);
+        List<DiagramJob<String>> jobs = new ArrayList<>();
+        for (String name : List.of("batch1", "batch2", "interactive1", "batch3", "interactive2")) {
+            Priority priority = name.startsWith("batch") ? Priority.BATCH : Priority.INTERACTIVE;
+            jobs.add(manager.submit(context(name, priority), DiagramPipeline.of(Stage.AI, (input, job) -> {
+                order.add(name);
+                return name;
+            })));
+        }
+        // 批量线程池已满时交互式任务不需要排队
+        jobs.get(2).getResult().get(5, TimeUnit.SECONDS);
+        jobs.get(4).getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(Status.QUEUED, jobs.get(0).getStatus());
+        release.countDown();
+        for (DiagramJob<String> job : jobs) {
+            job.getResult().get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("interactive1", "interactive2", "batch1", "batch2", "batch3"), order);
+    }
+
+    @Test
+    public void testCancelsRunningAndQueuedJobs() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 1);
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        DiagramJob<String> running = manager.submit(context("running", Priority.INTERACTIVE), DiagramPipeline
+                .of(Stage.AI, (input, job) -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return "uml";
+                })
+                .then(Stage.RENDER, (uml, job) -> {
+                    renders.incrementAndGet();
+                    return uml;
+                }));
+        waitUntilRunning(running);
+        AtomicInteger queuedRuns = new AtomicInteger();
+        DiagramJob<String> queued = manager.submit(context("queued", Priority.INTERACTIVE),
+                DiagramPipeline.of(Stage.AI, (input, job) -> "queued" + queuedRuns.incrementAndGet()));
+
+        assertTrue(queued.cancel());
+        assertTrue(running.cancel());
+        assertFalse(running.cancel());
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(running.getResult().isCancelled());
+        assertEquals(Status.CANCELLED, running.getStatus());
+        assertThrows(CancellationException.class, () -> queued.getResult().get(5, TimeUnit.SECONDS));
+
+        // 线程池中的下一个任务不受中断影响
+        DiagramJob<String> next = manager.submit(context("next", Priority.INTERACTIVE), DiagramPipeline.of(Stage.AI, (input, job) -> {
+            Thread.sleep(20);
+            return "next";
+        }));
+        assertEquals("next", next.getResult().get(5, TimeUnit.SECONDS));
+        assertEquals(0, queuedRuns.get());
+        assertEquals(0, renders.get());
+        assertTrue(manager.getActiveJobs().isEmpty());
+    }
+
+    @Test
+    public void testFailureStopsPipeline() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 1);
+        AtomicInteger renders = new AtomicInteger();
+        DiagramJob<String> job = manager.submit(context("failing", Priority.INTERACTIVE), DiagramPipeline
+                .of(Stage.AI, (input, j) -> {
+                    throw new IllegalStateException("rate limited");
+                })
+                .then(Stage.RENDER, (uml, j) -> {
+                    renders.incrementAndGet();
+                    return "png";
+                }));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> job.getResult().get(5, TimeUnit.SECONDS));
+        assertEquals("rate limited", error.getCause().getMessage());
+        assertEquals(Status.FAILED, job.getStatus());
+        assertEquals(Stage.AI, job.getStage());
+        assertEquals(0, renders.get());
+    }
+
+    @Test
+    public void testRecordsEventsAndMetrics() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 1);
+        CountDownLatch release = new CountDownLatch(1);
+        DiagramPipeline<String> pipeline = DiagramPipeline
+                .of(Stage.PROMPT, (input, job) -> "prompt")
+                .then(Stage.AI, (prompt, job) -> {
+                    release.await();
+                    job.recordAiCall(40, 1200, 300);
+                    return "uml";
+                });
+
+        DiagramJob<String> job = manager.submit(context("metrics", Priority.INTERACTIVE), pipeline);
+        assertSame(job, manager.submit(context("metrics", Priority.INTERACTIVE), pipeline));
+        release.countDown();
+        job.getResult().get(5, TimeUnit.SECONDS);
+
+        assertEquals(40, job.getAiFirstByteMillis());
+        assertEquals(1200, job.getInputTokens());
+        assertEquals(300, job.getOutputTokens());
+        assertEquals(1, job.getCacheHits());
+        assertEquals(List.of(job), manager.getRecentJobs());
+
+        List<String> events = new ArrayList<>();
+        for (DiagramJobEventLog.Event event : manager.getEvents().since(0)) {
+            events.add(event.getType() + (event.getStage() != null ? ":" + event.getStage() : ""));
+        }
+        // 复用事件可能在阶段开始前后，只检查相对顺序
+        assertTrue(events.contains("REUSED"), events.toString());
+        events.remove("REUSED");
+        assertEquals(List.of("SUBMITTED", "STAGE_STARTED:PROMPT", "STAGE_FINISHED:PROMPT",
+                "STAGE_STARTED:AI", "STAGE_FINISHED:AI", "FINISHED"), events);
+    }
+
+    @Test
+    public void testRetryMovesResultHandlersToNewJob() throws Exception {
+        manager = new DiagramJobManager(null, stage -> 1);
+        AtomicInteger attempts = new AtomicInteger();
+        DiagramPipeline<String> pipeline = DiagramPipeline.of(Stage.AI, (input, job) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("timeout");
+            }
+            return "uml";
+        });
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+        DiagramJob<String> failed = manager.submit(context("retry", Priority.INTERACTIVE), pipeline);
+        failed.onResult((result, error) -> results.add(error != null ? "error: " + error.getMessage() : result));
+        assertThrows(ExecutionException.class, () -> failed.getResult().get(5, TimeUnit.SECONDS));
+
+        DiagramJob<String> retried = manager.retry(failed);
+        assertNotSame(failed, retried);
+        assertEquals("uml", retried.getResult().get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("error: timeout", "uml"), results);
+        assertEquals(List.of(retried, failed), manager.getRecentJobs());
+        assertThrows(IllegalArgumentException.class, () -> manager.retry(retried));
+    }
+
+    /**
+     * 8 个任务的 AI 阶段各耗时 50ms：按动作逐个执行与交给任务管理器（AI 并发 4）执行的总耗时
+     */
+    @Test
+    @Tag("benchmark")
+    public void testOverlappingJobs(TestReporter reporter) throws Exception {
+        manager = new DiagramJobManager(null, stage -> stage == Stage.AI ? 4 : 2);
+        int jobCount = 8;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < jobCount; i++) {
+            Thread.sleep(50);
+        }
+        double sequentialMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        start = System.nanoTime();
+        List<DiagramJob<String>> jobs = new ArrayList<>();
+        for (int i = 0; i < jobCount; i++) {
+            jobs.add(manager.submit(context("job" + i, i % 2 == 0 ? Priority.INTERACTIVE : Priority.BATCH), DiagramPipeline
+                    .of(Stage.ANALYSIS, (input, job) -> "code")
+                    .then(Stage.AI, (code, job) -> {
+                        Thread.sleep(50);
+                        return "uml";
+                    })));
+        }
+        for (DiagramJob<String> job : jobs) {
+            job.getResult().get(5, TimeUnit.SECONDS);
+        }
+        double concurrentMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        reporter.publishEntry("sequentialMillis", String.format("%.0f", sequentialMillis));
+        reporter.publishEntry("concurrentMillis", String.format("%.0f", concurrentMillis));
+        assertTrue(concurrentMillis < sequentialMillis * 0.75);
+    }
+
+    private static DiagramJobContext context(String key, Priority priority) {
+        return new DiagramJobContext("test", key, key, priority);
+    }
+
+    private static void waitUntilRunning(DiagramJob<?> job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getStatus() != Status.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Status.RUNNING, job.getStatus());
+    }
+}
@@ -0,0 +1,113 @@
+package com.huq.idea.flow.apidoc.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagramHistoryTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    @Test
+    public void testReleasesLeastRecentlyViewedOverCountLimit() {
+        DiagramHistory<String> history = new DiagramHistory<>();
+        for (String key : List.of("a", "b", "c", "d")) {
+            history.add(key, MB, true);
+        }
+        history.touch("a");
+
+        assertEquals(List.of("b", "c"), history.evict(2, Long.MAX_VALUE, "d"));
+        assertEquals(2, history.getLiveCount());
+        assertEquals(2 * MB, history.getLiveBytes());
+        assertFalse(history.touch("b").isLive());
+        assertTrue(history.touch("a").isLive());
+        assertTrue(history.evict(2, Long.MAX_VALUE, "d").isEmpty());
+    }
+
+    @Test
+    public void testReleasesOverMemoryBudget() {
+        DiagramHistory<String> history = new DiagramHistory<>();
+        history.add("large", 80 * MB, true);
+        history.add("small", 5 * MB, true);
+        history.add("current", 30 * MB, true);
+
+        assertEquals(List.of("large"), history.evict(10, 64 * MB, "current"));
+        assertEquals(35 * MB, history.getLiveBytes());
+
+        // 异步渲染后估算变大
+        history.resize("small", 40 * MB);
+        assertEquals(List.of("small"), history.evict(10, 64 * MB, "current"));
+        // 只剩选中的图表时即使超出预算也保留
+        history.resize("current", 100 * MB);
+        assertTrue(history.evict(10, 64 * MB, "current").isEmpty());
+    }
+
+    @Test
+    public void testKeepsPinnedAndNonReopenableEntries() {
+        DiagramHistory<String> history = new DiagramHistory<>();
+        history.add("review", MB, false);
+        history.add("flow", MB, true);
+        history.add("selected", MB, true);
+
+        assertEquals(List.of("flow"), history.evict(1, Long.MAX_VALUE, "selected"));
+        assertTrue(history.touch("review").isLive());
+        assertTrue(history.touch("selected").isLive());
+    }
+
+    @Test
+    public void testRehydrateAndTrimRecords() {
+        DiagramHistory<String> history = new DiagramHistory<>();
+        for (int i = 0; i < 5; i++) {
+            history.add("d" + i, MB, true);
+        }
+        assertEquals(List.of("d0", "d1", "d2", "d3"), history.evict(1, Long.MAX_VALUE, null));
+
+        // 重新打开 d1 后它成为最近访问的图表，d4 被释放
+        history.touch("d1");
+        history.rehydrated("d1", 2 * MB);
+        assertEquals(List.of("d4"), history.evict(1, Long.MAX_VALUE, "d1"));
+        assertEquals(2 * MB, history.getLiveBytes());
+
+        assertEquals(List.of("d0", "d2"), history.trimRecords(2));
+        assertEquals(3, history.size());
+        assertNull(history.touch("d0"));
+        assertTrue(history.trimRecords(2).isEmpty());
+
+        history.remove("d1");
+        assertEquals(0, history.getLiveCount());
+    }
+
+    /**
+     * 模拟一天生成 200 个图表（每个图片 2000x1500 像素），按默认设置保留 8 个完整面板：
+     * 不释放时累计的估算内存与有界历史中的估算内存
+     */
+    @Test
+    @Tag("benchmark")
+    public void testBoundedFootprintOverADay(TestReporter reporter) {
+        DiagramHistory<Integer> history = new DiagramHistory<>();
+        long imageBytes = 2000L * 1500L * 4;
+        long unbounded = 0;
+        long peak = 0;
+        int released = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            history.add(i, imageBytes, true);
+            unbounded += imageBytes;
+            released += history.evict(8, 256 * MB, i).size();
+            history.trimRecords(50);
+            peak = Math.max(peak, history.getLiveBytes());
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+        reporter.publishEntry("unboundedMB", String.valueOf(unbounded / MB));
+        reporter.publishEntry("boundedPeakMB", String.valueOf(peak / MB));
+        assertEquals(8, history.getLiveCount());
+        assertEquals(58, history.size());
+        assertTrue(peak <= 9 * imageBytes);
+    }
+}
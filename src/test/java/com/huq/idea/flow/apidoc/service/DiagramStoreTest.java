@@ -0,0 +1,172 @@
+package com.huq.idea.flow.apidoc.service;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CallStackFingerprint;
+import com.huq.idea.flow.model.MethodDescription;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiagramStoreTest {
+
+    private static final String SAVE = "public void save(Order order) { validate(order); dao.insert(order); }";
+    private static final String VALIDATE = "void validate(Order order) { check(order); }";
+
+    @TempDir
+    Path tempDir;
+
+    // 模拟当前源码中每个方法的结构哈希，不存在的方法返回 null
+    private final Map<String, String> currentSource = new HashMap<>();
+
+    private final DiagramStore.MethodHashResolver resolver = (signatureKey, entry) -> {
+        String text = currentSource.get(signatureKey);
+        return text == null ? null : CallStackFingerprint.methodHash(text);
+    };
+
+    @Test
+    public void testStoresAndReloadsDiagramWithImage() {
+        DiagramStore store = new DiagramStore(tempDir, resolver);
+        DiagramStore.Source source = DiagramStore.Source.of("sequence", chain(SAVE, VALIDATE));
+        DiagramStore.StoredDiagram diagram = new DiagramStore.StoredDiagram(source, "UML时序图: save", "@startuml\nA -> B\n@enduml");
+        store.put(diagram);
+        store.putImage(diagram, new byte[]{1, 2, 3});
+
+        DiagramStore reopened = new DiagramStore(tempDir, resolver);
+        DiagramStore.StoredDiagram loaded = reopened.findFresh(DiagramStore.Source.of("sequence", chain(SAVE, VALIDATE)));
+        assertNotNull(loaded);
+        assertEquals("@startuml\nA -> B\n@enduml", loaded.getOutput());
+        assertArrayEquals(new byte[]{1, 2, 3}, reopened.getImage(loaded));
+        assertEquals(2, loaded.getMethods().size());
+        // 类型不同的图表互不影响
+        assertNull(reopened.get("flow", source.getRootKey()));
+        // 调用链中的方法变化后不再命中
+        assertNull(reopened.findFresh(DiagramStore.Source.of("sequence", chain(SAVE, "void validate(Order order) { }"))));
+
+        // 重新生成后旧图像被删除
+        reopened.put(new DiagramStore.StoredDiagram(source, "UML时序图: save", "@startuml\nB -> A\n@enduml"));
+        assertNull(reopened.getImage(reopened.get("sequence", source.getRootKey())));
+    }
+
+    @Test
+    public void testLookupLoadsDiagramAndImageTogether() {
+        DiagramStore.Source source = DiagramStore.Source.of("flow", chain(SAVE, VALIDATE));
+        DiagramStore store = new DiagramStore(tempDir, resolver);
+        assertNull(store.lookup(source).getStored());
+
+        DiagramStore.StoredDiagram diagram = new DiagramStore.StoredDiagram(source, "UML流程图: save", "@startuml\n@enduml");
+        store.put(diagram);
+        store.putImage(diagram, new byte[]{4, 5});
+
+        DiagramStore.Lookup lookup = new DiagramStore(tempDir, resolver).lookup(source);
+        assertSame(source, lookup.getSource());
+        assertEquals("@startuml\n@enduml", lookup.getStored().getOutput());
+        assertArrayEquals(new byte[]{4, 5}, lookup.getImage());
+    }
+
+    @Test
+    public void testFlagsExactlyTheDiagramsUsingChangedMethods() {
+        currentSource.put("com.demo.OrderService#save()", SAVE);
+        currentSource.put("com.demo.OrderService#validate()", VALIDATE);
+        currentSource.put("com.demo.OrderService#cancel()", "public void cancel() { dao.delete(); }");
+
+        DiagramStore store = new DiagramStore(tempDir, resolver);
+        DiagramStore.Source saveSource = DiagramStore.Source.of("sequence", chain(SAVE, VALIDATE));
+        CallStack cancel = new CallStack(new MethodDescription(null, "com.demo.OrderService",
+                currentSource.get("com.demo.OrderService#cancel()"), "cancel", null, "void"));
+        DiagramStore.Source cancelSource = DiagramStore.Source.of("sequence", cancel);
+        store.put(new DiagramStore.StoredDiagram(saveSource, "save", "@startuml\n@enduml"));
+        store.put(new DiagramStore.StoredDiagram(cancelSource, "cancel", "@startuml\n@enduml"));
+
+        // 只改格式不算变化
+        currentSource.put("com.demo.OrderService#validate()", "void validate(Order order) {\n    check(order); // 注释\n}");
+        assertTrue(store.checkStaleness(null).isEmpty());
+
+        currentSource.put("com.demo.OrderService#validate()", "void validate(Order order) { check(order); log(order); }");
+        List<DiagramStore.StoredDiagram> stale = store.checkStaleness(null);
+        assertEquals(1, stale.size());
+        assertEquals("save", stale.get(0).getTitle());
+        assertEquals(List.of("com.demo.OrderService#validate()"), stale.get(0).getChangedMethods());
+        assertNull(store.findFresh(saveSource));
+        assertNotNull(store.findFresh(cancelSource));
+
+        // 过期标记持久化
+        DiagramStore reopened = new DiagramStore(tempDir, resolver);
+        assertEquals(1, reopened.getStaleDiagrams().size());
+        // 与图表无关的文件变化不会重新检查
+        assertTrue(reopened.checkStaleness(Set.of("/tmp/Other.java")).isEmpty());
+        assertEquals(1, reopened.getStaleDiagrams().size());
+
+        // 删除方法同样过期，改回原样后恢复
+        currentSource.remove("com.demo.OrderService#cancel()");
+        currentSource.put("com.demo.OrderService#validate()", VALIDATE);
+        reopened.checkStaleness(null);
+        assertEquals(List.of("cancel"), reopened.getStaleDiagrams().stream().map(DiagramStore.StoredDiagram::getTitle).toList());
+    }
+
+    @Test
+    public void testTrackedFilesSnapshot() throws Exception {
+        Files.writeString(tempDir.resolve("order.json"), "{\"kind\":\"flow\",\"rootKey\":\"com.demo.OrderService#save()\",\"output\":\"@startuml\\n@enduml\","
+                + "\"methods\":{\"com.demo.OrderService#save()\":{\"className\":\"com.demo.OrderService\",\"name\":\"save\",\"hash\":\"h\",\"file\":\"/src/OrderService.java\"}}}");
+        DiagramStore store = new DiagramStore(tempDir, resolver);
+
+        // 还没有加载时不触发检查，也不读取磁盘
+        assertFalse(store.isTracked(Set.of("/src/OrderService.java")));
+        DiagramStore.StoredDiagram diagram = store.get("flow", "com.demo.OrderService#save()");
+        assertNotNull(diagram);
+        assertTrue(store.isTracked(List.of("/src/Other.java", "/src/OrderService.java")));
+        assertFalse(store.isTracked(Set.of("/src/Other.java")));
+
+        store.remove(diagram);
+        assertFalse(store.isTracked(Set.of("/src/OrderService.java")));
+    }
+
+    /**
+     * 打开已保存图表的耗时：从磁盘加载全部记录并按指纹查找
+     */
+    @Test
+    @Tag("benchmark")
+    public void testReopenTime(TestReporter reporter) {
+        DiagramStore store = new DiagramStore(tempDir, resolver);
+        StringBuilder output = new StringBuilder("@startuml\n");
+        for (int i = 0; i < 200; i++) {
+            output.append("OrderService -> OrderDao : insert").append(i).append("()\n");
+        }
+        String uml = output.append("@enduml").toString();
+        for (int i = 0; i < 500; i++) {
+            store.put(new DiagramStore.StoredDiagram(DiagramStore.Source.of("sequence", chain(SAVE.replace("save", "save" + i), VALIDATE)), "save" + i, uml));
+        }
+
+        long start = System.nanoTime();
+        DiagramStore reopened = new DiagramStore(tempDir, resolver);
+        DiagramStore.StoredDiagram found = reopened.findFresh(DiagramStore.Source.of("sequence", chain(SAVE.replace("save", "save250"), VALIDATE)));
+        long firstMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < 500; i++) {
+            assertNotNull(reopened.findFresh(DiagramStore.Source.of("sequence", chain(SAVE.replace("save", "save" + i), VALIDATE))));
+        }
+        double perLookup = (System.nanoTime() - start) / 500 / 1_000_000.0;
+
+        reporter.publishEntry("firstLookupMillis", String.valueOf(firstMillis));
+        reporter.publishEntry("lookupMillis", String.format("%.3f", perLookup));
+        assertNotNull(found);
+        assertEquals(500, reopened.getDiagrams().size());
+    }
+
+    private static CallStack chain(String rootText, String childText) {
+        String rootName = rootText.substring(rootText.indexOf("void ") + 5, rootText.indexOf('('));
+        CallStack root = new CallStack(new MethodDescription(null, "com.demo.OrderService", rootText, rootName, null, "void"));
+        root.addChild(new CallStack(new MethodDescription(null, "com.demo.OrderService", childText, "validate", null, "void"), root));
+        return root;
+    }
+}
@@ -0,0 +1,148 @@
+package com.huq.idea.flow.apidoc.service;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodResolveCacheTest {
+
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final MethodResolveCache cache = new MethodResolveCache(modificationCount::get);
+
+    @Test
+    public void testCachesResolvedAndUnresolvedCallSites() {
+        PsiMethod target = method();
+        AtomicInteger resolves = new AtomicInteger();
+        PsiMethodCallExpression call = call(target, resolves);
+        PsiMethodCallExpression unresolved = call(null, resolves);
+
+        assertSame(target, cache.resolveMethod(call));
+        assertSame(target, cache.resolveMethod(call));
+        assertNull(cache.resolveMethod(unresolved));
+        assertNull(cache.resolveMethod(unresolved));
+        assertEquals(2, resolves.get());
+        assertTrue(cache.getStatistics().contains("命中 2/4"), cache.getStatistics());
+    }
+
+    @Test
+    public void testPsiModificationClearsCache() {
+        AtomicInteger resolves = new AtomicInteger();
+        PsiMethodCallExpression call = call(method(), resolves);
+
+        cache.resolveMethod(call);
+        modificationCount.incrementAndGet();
+        cache.resolveMethod(call);
+        cache.resolveMethod(call);
+
+        assertEquals(2, resolves.get());
+    }
+
+    @Test
+    public void testCachesUsageCountsPerClassUntilPsiChanges() {
+        PsiClass first = psiClass();
+        PsiClass second = psiClass();
+        AtomicInteger searches = new AtomicInteger();
+        ToIntFunction<PsiClass> counter = psiClass -> {
+            searches.incrementAndGet();
+            return psiClass == first ? 7 : 3;
+        };
+
+        assertEquals(7, cache.countUsages(first, counter));
+        assertEquals(3, cache.countUsages(second, counter));
+        assertEquals(7, cache.countUsages(first, counter));
+        assertEquals(3, cache.countUsages(second, counter));
+        assertEquals(2, searches.get());
+
+        modificationCount.incrementAndGet();
+        assertEquals(7, cache.countUsages(first, counter));
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    public void testDoesNotKeepCallSitesOrTargetsAlive() throws InterruptedException {
+        AtomicInteger resolves = new AtomicInteger();
+        PsiMethod target = method();
+        PsiMethodCallExpression call = call(target, resolves);
+        cache.resolveMethod(call);
+        WeakReference<Object> callReference = new WeakReference<>(call);
+        WeakReference<Object> targetReference = new WeakReference<>(target);
+        call = null;
+        target = null;
+
+        for (int i = 0; i < 50 && (callReference.get() != null || targetReference.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(callReference.get(), "缓存不应强引用调用点");
+        assertNull(targetReference.get(), "缓存不应强引用解析出的方法");
+
+        // 下一次写入时移除已回收的条目
+        PsiMethodCallExpression other = call(method(), resolves);
+        cache.resolveMethod(other);
+        assertEquals(1, cache.callSiteCount());
+    }
+
+    @Test
+    public void testCollectedTargetCountsAsMiss() throws InterruptedException {
+        AtomicInteger resolves = new AtomicInteger();
+        // 每次解析都返回新的方法对象，缓存中只有弱引用
+        PsiMethodCallExpression call = (PsiMethodCallExpression) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PsiMethodCallExpression.class}, (proxy, m, args) -> {
+                    if (m.getName().equals("resolveMethod")) {
+                        resolves.incrementAndGet();
+                        return method();
+                    }
+                    return defaultValue(proxy, m.getName(), args);
+                });
+        cache.resolveMethod(call);
+        for (int i = 0; i < 50 && resolves.get() < 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+            assertNotNull(cache.resolveMethod(call));
+        }
+        assertEquals(2, resolves.get());
+    }
+
+    private static PsiMethodCallExpression call(PsiMethod target, AtomicInteger resolves) {
+        return (PsiMethodCallExpression) Proxy.newProxyInstance(MethodResolveCacheTest.class.getClassLoader(),
+                new Class<?>[]{PsiMethodCallExpression.class}, (proxy, m, args) -> {
+                    if (m.getName().equals("resolveMethod")) {
+                        resolves.incrementAndGet();
+                        return target;
+                    }
+                    return defaultValue(proxy, m.getName(), args);
+                });
+    }
+
+    private static PsiClass psiClass() {
+        return (PsiClass) Proxy.newProxyInstance(MethodResolveCacheTest.class.getClassLoader(),
+                new Class<?>[]{PsiClass.class}, (proxy, m, args) -> defaultValue(proxy, m.getName(), args));
+    }
+
+    private static PsiMethod method() {
+        return (PsiMethod) Proxy.newProxyInstance(MethodResolveCacheTest.class.getClassLoader(),
+                new Class<?>[]{PsiMethod.class}, (proxy, m, args) -> defaultValue(proxy, m.getName(), args));
+    }
+
+    private static Object defaultValue(Object proxy, String name, Object[] args) {
+        switch (name) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "proxy@" + System.identityHashCode(proxy);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.huq.idea.flow.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CallStackFingerprintTest {
+
+    private static final String BODY = """
+            public void save(Order order) {
+                // 校验订单
+                validate(order);
+                /* 保存 */
+                dao.insert(order, "a  b // 不是注释");
+            }
+            """;
+
+    @Test
+    public void testMethodHashIgnoresFormattingAndComments() {
+        String reformatted = "public   void save(Order order){validate(order);\n\n"
+                + "dao.insert(order, \"a  b // 不是注释\"); // 新注释\n}";
+
+        assertEquals(CallStackFingerprint.methodHash(BODY), CallStackFingerprint.methodHash(reformatted));
+        // 字符串内容和标识符之间的空白都有意义
+        assertNotEquals(CallStackFingerprint.methodHash(BODY), CallStackFingerprint.methodHash(BODY.replace("a  b", "a b")));
+        assertNotEquals(CallStackFingerprint.methodHash("int a;"), CallStackFingerprint.methodHash("inta;"));
+        assertEquals("x=\"/* 保留 */\"+'\\'';", CallStackFingerprint.normalize("x = \"/* 保留 */\" + '\\'';"));
+    }
+
+    @Test
+    public void testFingerprintTracksBodiesAndStructure() {
+        CallStack root = chain(BODY, "void validate(Order order) { check(order); }");
+        Map<String, CallStackFingerprint.MethodEntry> entries = CallStackFingerprint.methodEntries(root);
+        String fingerprint = CallStackFingerprint.fingerprint(root, entries);
+
+        assertEquals(2, entries.size());
+        assertTrue(entries.containsKey("com.demo.OrderService#save()"));
+        assertEquals(fingerprint, CallStackFingerprint.fingerprint(chain(BODY.replace("// 校验订单", ""), "void validate(Order order) { check(order); }")));
+
+        CallStack changed = chain(BODY, "void validate(Order order) { check(order); log(order); }");
+        Map<String, CallStackFingerprint.MethodEntry> changedEntries = CallStackFingerprint.methodEntries(changed);
+        assertNotEquals(fingerprint, CallStackFingerprint.fingerprint(changed, changedEntries));
+        assertEquals(Set.of("com.demo.OrderService#validate()"), CallStackFingerprint.changedMethods(entries, changedEntries));
+
+        // 只改变调用关系也会改变指纹
+        CallStack reordered = chain(BODY, "void validate(Order order) { check(order); }");
+        reordered.addOmittedImplementation("com.demo.OtherService");
+        assertNotEquals(fingerprint, CallStackFingerprint.fingerprint(reordered));
+    }
+
+    static CallStack chain(String rootText, String childText) {
+        CallStack root = new CallStack(new MethodDescription(null, "com.demo.OrderService", rootText, "save", null, "void"));
+        root.addChild(new CallStack(new MethodDescription(null, "com.demo.OrderService", childText, "validate", null, "void"), root));
+        return root;
+    }
+}
@@ -0,0 +1,204 @@
+package com.huq.idea.flow.model;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactFlowGraphTest {
+
+    @Test
+    public void testLookupsAndAdjacency() {
+        FlowGraphData data = new FlowGraphData();
+        List<FlowGraphData.Node> nodes = new ArrayList<>();
+        nodes.add(node("a", "com.demo.OrderService"));
+        nodes.add(node("b", "com.demo.OrderService"));
+        nodes.add(node("c", "com.demo.OrderDao"));
+        // 重复 id 保留第一个
+        nodes.add(node("a", "com.demo.Duplicate"));
+        data.setNodes(nodes);
+        List<FlowGraphData.Edge> edges = new ArrayList<>();
+        edges.add(edge("a", "b", "调用"));
+        edges.add(edge("a", "c", null));
+        edges.add(edge("b", "c", "调用"));
+        edges.add(edge("c", "missing", "丢弃"));
+        data.setEdges(edges);
+
+        CompactFlowGraph graph = CompactFlowGraph.of(data);
+
+        assertEquals(4, graph.getNodeCount());
+        assertEquals(3, graph.getEdgeCount());
+        int a = graph.indexOf("a");
+        int b = graph.indexOf("b");
+        int c = graph.indexOf("c");
+        assertEquals(0, a);
+        assertEquals(-1, graph.indexOf("missing"));
+        assertEquals(-1, graph.indexOf(null));
+        assertEquals("com.demo.OrderService", graph.getClassName(b));
+        // 相同的类名和边标签只保存一份
+        assertTrue(graph.getStringCount() < 4 * 3 + 3);
+
+        assertEquals(2, graph.getOutDegree(a));
+        assertEquals(b, graph.getEdgeTarget(graph.getOutEdge(a, 0)));
+        assertEquals(c, graph.getEdgeTarget(graph.getOutEdge(a, 1)));
+        assertEquals(2, graph.getInDegree(c));
+        assertEquals(0, graph.getOutDegree(c));
+        assertEquals("调用", graph.getEdgeLabel(b, c));
+        assertNull(graph.getEdgeLabel(a, c));
+        assertNull(graph.getEdgeLabel(c, a));
+
+        FlowGraphData restored = graph.toFlowGraphData();
+        assertEquals(4, restored.getNodes().size());
+        assertEquals(3, restored.getEdges().size());
+        assertEquals("com.demo.OrderService", restored.getNode("a").getClassName());
+        assertEquals(12, graph.nodes().get(2).getLineNumber());
+        assertEquals("b", graph.edges().get(2).getSource());
+    }
+
+    @Test
+    public void testFromJsonMatchesParsedData() {
+        // 说明文字、代码块标记、先于节点出现的边、端点不存在的边、重复 id 和截断的最后一个节点
+        String json = """
+                下面是流程图：
+                ```json
+                {
+                  "edges": [
+                    {"source": "a", "target": "b", "label": "调用"},
+                    {"source": "b", "target": "missing"}
+                  ],
+                  "nodes": [
+                    {"id": "a", "label": "create()", "className": "com.demo.OrderService", "lineNumber": 3},
+                    {"id": "b", "label": "insert()", "className": "com.demo.OrderDao"},
+                    {"id": "a", "label": "duplicate()"},
+                    {"id": "c", "label": "notify()", "className": "com.demo.Noti""";
+
+        CompactFlowGraph streamed = CompactFlowGraph.fromJson(json);
+        CompactFlowGraph parsed = CompactFlowGraph.of(FlowGraphData.fromJson(json));
+
+        assertEquals(4, streamed.getNodeCount());
+        assertEquals(1, streamed.getEdgeCount());
+        assertEquals(parsed.getNodeCount(), streamed.getNodeCount());
+        assertEquals(parsed.getEdgeCount(), streamed.getEdgeCount());
+        for (int i = 0; i < streamed.getNodeCount(); i++) {
+            assertEquals(parsed.getId(i), streamed.getId(i));
+            assertEquals(parsed.getLabel(i), streamed.getLabel(i));
+            assertEquals(parsed.getClassName(i), streamed.getClassName(i));
+            assertEquals(parsed.getLineNumber(i), streamed.getLineNumber(i));
+        }
+        assertEquals(0, streamed.indexOf("a"));
+        assertEquals("c", streamed.getId(3));
+        assertEquals(streamed.indexOf("b"), streamed.getEdgeTarget(0));
+        assertEquals("调用", streamed.getEdgeLabel(0));
+        assertEquals(0, CompactFlowGraph.fromJson("").getNodeCount());
+    }
+
+    @Test
+    public void testBuilderGrowsAndBuildsOnce() {
+        CompactFlowGraph.Builder builder = new CompactFlowGraph.Builder(1, 1);
+        for (int i = 0; i < 100; i++) {
+            builder.onNode(node("n" + i, "com.demo.Node"));
+            if (i > 0) {
+                builder.onEdge(edge("n" + (i - 1), "n" + i, null));
+            }
+        }
+        CompactFlowGraph graph = builder.build();
+
+        assertEquals(100, graph.getNodeCount());
+        assertEquals(99, graph.getEdgeCount());
+        assertEquals(1, graph.getOutDegree(graph.indexOf("n42")));
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+
+    /**
+     * 5 万个节点的 AI 流程图：解析后的 FlowGraphData（含索引）与紧凑表示的内存占用对比
+     */
+    @Test
+    @Tag("benchmark")
+    public void testMemoryFor50kNodes(TestReporter reporter) throws Exception {
+        long baseline = usedMemory();
+        // JSON 文本在生成方法内解析后即可回收，只留下解析结果
+        FlowGraphData data = FlowGraphData.fromJson(generateJson(50_000, 60_000));
+        long dataBytes = usedMemory() - baseline;
+        assertEquals(50_000, data.getNodes().size());
+
+        CompactFlowGraph graph = CompactFlowGraph.of(data);
+        String sampleClass = data.getNodes().get(123).getClassName();
+        int edgeCount = data.getEdges().size();
+        data = null;
+        long compactBytes = usedMemory() - baseline;
+
+        reporter.publishEntry("flowGraphDataMB", String.format("%.1f", dataBytes / 1048576.0));
+        reporter.publishEntry("compactMB", String.format("%.1f", compactBytes / 1048576.0));
+
+        assertEquals(sampleClass, graph.getClassName(graph.indexOf("node123")));
+        assertEquals(edgeCount, graph.getEdgeCount());
+        assertTrue(compactBytes < dataBytes / 2, "compact " + compactBytes + " bytes, original " + dataBytes + " bytes");
+    }
+
+    private static String generateJson(int nodeCount, int edgeCount) {
+        Random random = new Random(41);
+        String[] types = {"start", "process", "condition", "end"};
+        String[] methods = {"create", "update", "delete", "query", "validate", "save", "load", "notify"};
+        List<FlowGraphData.Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            int cls = random.nextInt(200);
+            String method = methods[random.nextInt(methods.length)];
+            FlowGraphData.Node node = new FlowGraphData.Node();
+            node.setId("node" + i);
+            node.setLabel(method + "()");
+            node.setType(types[random.nextInt(types.length)]);
+            node.setClassName("com.demo.order.service.OrderService" + cls);
+            node.setMethodName(method);
+            node.setDescription("调用 OrderService" + cls + "." + method + " 处理订单");
+            node.setCode("orderService" + cls + "." + method + "(request);");
+            node.setFilePath("/home/dev/project/src/main/java/com/demo/order/service/OrderService" + cls + ".java");
+            node.setLineNumber(random.nextInt(500));
+            nodes.add(node);
+        }
+        List<FlowGraphData.Edge> edges = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int target = 1 + random.nextInt(nodeCount - 1);
+            FlowGraphData.Edge edge = new FlowGraphData.Edge();
+            edge.setSource("node" + random.nextInt(target));
+            edge.setTarget("node" + target);
+            edge.setLabel(random.nextBoolean() ? "是" : "否");
+            edge.setType("normal");
+            edges.add(edge);
+        }
+        FlowGraphData data = new FlowGraphData();
+        data.setNodes(nodes);
+        data.setEdges(edges);
+        return new Gson().toJson(data);
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static FlowGraphData.Node node(String id, String className) {
+        FlowGraphData.Node node = new FlowGraphData.Node();
+        node.setId(id);
+        node.setClassName(className);
+        node.setLineNumber(12);
+        return node;
+    }
+
+    private static FlowGraphData.Edge edge(String source, String target, String label) {
+        FlowGraphData.Edge edge = new FlowGraphData.Edge();
+        edge.setSource(source);
+        edge.setTarget(target);
+        edge.setLabel(label);
+        return edge;
+    }
+}
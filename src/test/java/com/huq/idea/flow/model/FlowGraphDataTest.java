@@ -1,6 +1,12 @@
 package com.huq.idea.flow.model;
 
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FlowGraphDataTest {
@@ -81,4 +87,86 @@ public class FlowGraphDataTest {
         assertTrue(data.getNodes().isEmpty());
         assertTrue(data.getEdges().isEmpty());
     }
+
+    @Test
+    public void testIndexLookups() {
+        String json = """
+                {
+                  "nodes": [
+                    {"id": "a", "label": "A"},
+                    {"id": "b", "label": "B"},
+                    {"id": "c", "label": "C"}
+                  ],
+                  "edges": [
+                    {"source": "a", "target": "b", "label": "yes"},
+                    {"source": "a", "target": "b", "label": "retry"},
+                    {"source": "a", "target": "c", "label": "no"},
+                    {"source": "b", "target": "c"}
+                  ]
+                }
+                """;
+
+        FlowGraphData data = FlowGraphData.fromJson(json);
+
+        assertEquals("B", data.getNode("b").getLabel());
+        assertNull(data.getNode("missing"));
+        assertNull(data.getNode(null));
+        assertEquals(List.of("yes", "retry"), data.getEdgeLabels("a", "b"));
+        assertEquals("yes", data.getEdgeLabel("a", "b"));
+        assertNull(data.getEdgeLabel("b", "c"));
+        assertNull(data.getEdgeLabel("c", "a"));
+        assertEquals(3, data.getOutgoingEdges("a").size());
+        assertEquals(2, data.getIncomingEdges("c").size());
+        assertTrue(data.getOutgoingEdges("c").isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> data.getOutgoingEdges("a").clear());
+    }
+
+    @Test
+    public void testIndexRebuiltAfterSetters() {
+        FlowGraphData data = new FlowGraphData();
+        assertNull(data.getNode("a"));
+
+        FlowGraphData.Node node = new FlowGraphData.Node();
+        node.setId("a");
+        List<FlowGraphData.Node> nodes = new ArrayList<>();
+        nodes.add(node);
+        data.setNodes(nodes);
+
+        assertSame(node, data.getNode("a"));
+    }
+
+    /**
+     * 10000 条边的图上，每条边查一次标签：旧的线性扫描是 O(E²)，索引后应当在毫秒级完成
+     */
+    @Test
+    @Tag("benchmark")
+    public void testEdgeLabelLookupOnLargeGraph(TestReporter reporter) {
+        int size = 10_000;
+        List<FlowGraphData.Node> nodes = new ArrayList<>(size);
+        List<FlowGraphData.Edge> edges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            FlowGraphData.Node node = new FlowGraphData.Node();
+            node.setId("n" + i);
+            nodes.add(node);
+            FlowGraphData.Edge edge = new FlowGraphData.Edge();
+            edge.setSource("n" + i);
+            edge.setTarget("n" + ((i + 1) % size));
+            edge.setLabel("e" + i);
+            edges.add(edge);
+        }
+        FlowGraphData data = new FlowGraphData();
+        data.setNodes(nodes);
+        data.setEdges(edges);
+
+        long start = System.nanoTime();
+        for (int repaint = 0; repaint < 10; repaint++) {
+            for (FlowGraphData.Edge edge : edges) {
+                assertEquals(edge.getLabel(), data.getEdgeLabel(edge.getSource(), edge.getTarget()));
+                assertNotNull(data.getNode(edge.getTarget()));
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        reporter.publishEntry("lookupMillis", String.valueOf(elapsedMillis));
+        assertTrue(elapsedMillis < 2_000, "lookups took " + elapsedMillis + " ms");
+    }
 }
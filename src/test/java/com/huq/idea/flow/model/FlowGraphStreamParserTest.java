@@ -0,0 +1,108 @@
+package com.huq.idea.flow.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowGraphStreamParserTest {
+
+    private static final String GRAPH = """
+            下面是生成的流程图：
+            ```json
+            {
+              "nodes": [
+                {"id": "start", "label": "开始 {", "type": "start"},
+                {"id": "check", "label": "检查 \\"库存\\" }]", "type": "condition",},
+                {"id": "end", "label": "结束", "type": "end"}
+              ],
+              "edges": [
+                {"source": "start", "target": "check"},
+                {"source": "check", "target": "end", "label": "是"},
+              ]
+            }
+            ```
+            """;
+
+    @Test
+    public void testEmitsEachObjectAsSoonAsItCloses() {
+        List<String> events = new ArrayList<>();
+        FlowGraphStreamParser parser = new FlowGraphStreamParser(new FlowGraphStreamParser.Listener() {
+            @Override
+            public void onNode(FlowGraphData.Node node) {
+                events.add("node:" + node.getId());
+            }
+
+            @Override
+            public void onEdge(FlowGraphData.Edge edge) {
+                events.add("edge:" + edge.getSource() + "->" + edge.getTarget());
+            }
+        });
+
+        // 按单个字符喂入，模拟 AI 的逐 token 输出
+        int firstNodeEnd = GRAPH.indexOf("\"start\"},") + "\"start\"}".length();
+        for (int i = 0; i < firstNodeEnd; i++) {
+            parser.feed(String.valueOf(GRAPH.charAt(i)));
+        }
+        assertEquals(List.of("node:start"), events);
+
+        parser.feed(GRAPH.substring(firstNodeEnd));
+        assertEquals(List.of("node:start", "node:check", "node:end", "edge:start->check", "edge:check->end"), events);
+
+        FlowGraphData data = parser.finish();
+        assertEquals(3, data.getNodes().size());
+        assertEquals("开始 {", data.getNode("start").getLabel());
+        assertEquals("检查 \"库存\" }]", data.getNode("check").getLabel());
+        assertEquals("是", data.getEdgeLabel("check", "end"));
+        assertEquals(0, parser.getSkippedCount());
+    }
+
+    @Test
+    public void testRecoversTruncatedOutput() {
+        String truncated = """
+                {"nodes": [
+                  {"id": "a", "label": "A"},
+                  {"id": "b", "label": "B", "description": "被截断的描述
+                """;
+
+        FlowGraphData data = FlowGraphStreamParser.parse(truncated);
+
+        assertEquals(2, data.getNodes().size());
+        assertEquals("A", data.getNode("a").getLabel());
+        // 最后一个节点保留已完整的字段
+        assertEquals("B", data.getNode("b").getLabel());
+        assertNull(data.getNode("b").getDescription());
+    }
+
+    @Test
+    public void testSkipsMalformedAndIncompleteObjects() {
+        String json = """
+                {"nodes": [
+                  {"id": "a"},
+                  {"id": "b", "lineNumber": "not a number"},
+                  {"label": "没有 id"},
+                  {"id": "c"}
+                ],
+                "edges": [{"source": "a"}, {"source": "a", "target": "c"}]}
+                """;
+        FlowGraphStreamParser parser = new FlowGraphStreamParser(null);
+        parser.feed(json);
+        FlowGraphData data = parser.finish();
+
+        assertEquals(2, data.getNodes().size());
+        assertNotNull(data.getNode("c"));
+        assertEquals(1, data.getEdges().size());
+        assertEquals(3, parser.getSkippedCount());
+    }
+
+    @Test
+    public void testFromJsonFallsBackToStreamingParser() {
+        FlowGraphData data = FlowGraphData.fromJson("```json\n" + GRAPH + "\n```");
+
+        assertEquals(3, data.getNodes().size());
+        assertEquals(2, data.getEdges().size());
+        assertEquals(1, data.getOutgoingEdges("start").size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.huq.idea.flow.model;
+
+import com.huq.idea.flow.config.config.IdeaSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodDescriptionTest {
+
+    @Test
+    public void testEagerDescriptionKeepsGivenSource() {
+        MethodDescription description = new MethodDescription(null, "com.demo.OrderService", "void save() {}", "save", null, "void");
+
+        assertEquals("void save() {}", description.getText());
+        assertNull(description.getDocComment());
+        assertEquals("com.demo.OrderService#save()", description.getSignatureKey());
+        assertNull(description.getSourceFilePath());
+        assertEquals("OrderService", description.getSimpleClassName());
+    }
+
+    @Test
+    public void testLazyDescriptionWithoutPsiLoadsNothing() {
+        MethodDescription description = MethodDescription.lazy(null, "com.demo.OrderService", "save", "void", null, false);
+
+        assertEquals("", description.getText());
+        assertNull(description.getDocComment());
+        assertEquals("com.demo.OrderService#save()", description.getSignatureKey());
+    }
+
+    /**
+     * 延迟加载的读取方法不能在持有对象锁时进入读操作，否则与写操作形成锁顺序问题
+     */
+    @Test
+    public void testLazyGettersDoNotUseInstanceMonitor() throws Exception {
+        MethodDescription description = MethodDescription.lazy(null, "com.demo.OrderService", "save", "void", null, false);
+
+        CompletableFuture<String> result;
+        synchronized (description) {
+            result = CompletableFuture.supplyAsync(() -> description.getText() + description.getDocComment()
+                    + description.getSignatureKey() + description.getSourceFilePath());
+            assertEquals("nullcom.demo.OrderService#save()null", result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testSlicesResolveOnRead() {
+        MethodDescription description = new MethodDescription(null, "com.demo.OrderService", "", "save", null, "void");
+        String source = "class A { void save() { dao.insert(order); } }";
+        description.putSlice("body", new TextSlice(source, source.indexOf("dao"), source.indexOf(";") + 1));
+
+        assertEquals("dao.insert(order);", description.getAttr("body"));
+        description.put("body", "replaced");
+        assertEquals("replaced", description.getAttr().get("body"));
+        assertEquals("", description.getAttr("missing"));
+    }
+
+    @Test
+    public void testStubOnlyAnalysisIsOffByDefault() {
+        assertFalse(new IdeaSettings.State().isStubOnlyAnalysis());
+    }
+}
@@ -0,0 +1,26 @@
+package com.huq.idea.flow.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextSliceTest {
+
+    @Test
+    public void testSliceResolvesToSameTextAsSubstring() {
+        String text = "void run() { a.call(); b.call(); }";
+        TextSlice slice = new TextSlice(text, 13, 22);
+
+        assertEquals("a.call();", slice.toString());
+        assertEquals(9, slice.length());
+        assertEquals('a', slice.charAt(0));
+        assertEquals("call", slice.subSequence(2, 6).toString());
+    }
+
+    @Test
+    public void testInvalidRangeRejected() {
+        assertThrows(IndexOutOfBoundsException.class, () -> new TextSlice("abc", 2, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> new TextSlice("abc", 2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> new TextSlice("abc", 0, 3).charAt(3));
+    }
+}
@@ -0,0 +1,50 @@
+package com.huq.idea.flow.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComponentFootprintTest {
+
+    @Test
+    public void testEstimatesImagesAndText() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JScrollPane(new JLabel(new ImageIcon(new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB)))), BorderLayout.CENTER);
+        panel.add(new JTextArea("@startuml\n@enduml"), BorderLayout.NORTH);
+
+        long expected = ComponentFootprint.BYTES_PER_PANEL + 400L * 300L * 4 + "@startuml\n@enduml".length() * 2L;
+        assertEquals(expected, ComponentFootprint.estimateBytes(panel));
+    }
+
+    @Test
+    public void testThumbnailUsesLargestImage() {
+        JPanel panel = new JPanel();
+        assertNull(ComponentFootprint.thumbnail(panel, 240));
+
+        panel.add(new JLabel(new ImageIcon(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB))));
+        panel.add(new JLabel(new ImageIcon(new BufferedImage(1200, 600, BufferedImage.TYPE_INT_ARGB))));
+
+        Image thumbnail = ComponentFootprint.thumbnail(panel, 240);
+        assertEquals(240, thumbnail.getWidth(null));
+        assertEquals(120, thumbnail.getHeight(null));
+    }
+
+    @Test
+    public void testReleaseClearsImagesAndChildren() {
+        JLabel image = new JLabel(new ImageIcon(new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB)));
+        JPanel inner = new JPanel();
+        inner.add(image);
+        JPanel panel = new JPanel();
+        panel.add(inner);
+
+        ComponentFootprint.release(panel);
+
+        assertNull(image.getIcon());
+        assertEquals(0, panel.getComponentCount());
+        assertEquals(ComponentFootprint.BYTES_PER_PANEL, ComponentFootprint.estimateBytes(panel));
+    }
+}
@@ -0,0 +1,159 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.CompactFlowGraph;
+import com.huq.idea.flow.model.FlowGraphData;
+import com.huq.idea.flow.model.MethodDescription;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.w3c.dom.Document;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphExporterTest {
+
+    @Test
+    public void testSvgIsWellFormedAndEscaped() throws Exception {
+        FlowGraphData data = new FlowGraphData();
+        List<FlowGraphData.Node> nodes = new ArrayList<>();
+        nodes.add(node("start", "开始", "start"));
+        nodes.add(node("check", "a < b && c > \"d\"", "condition"));
+        nodes.add(node("end", "结束", "end"));
+        data.setNodes(nodes);
+        List<FlowGraphData.Edge> edges = new ArrayList<>();
+        edges.add(edge("start", "check", null));
+        edges.add(edge("check", "end", "是 & 否"));
+        edges.add(edge("check", "check", "重试"));
+        edges.add(edge("end", "start", "循环"));
+        data.setEdges(edges);
+
+        GraphExporter.Diagram diagram = GraphExporter.layout(CompactFlowGraph.of(data));
+        assertEquals(3, diagram.getNodeCount());
+        assertEquals(4, diagram.getEdgeCount());
+
+        StringWriter svg = new StringWriter();
+        GraphExporter.writeSvg(diagram, svg);
+        Document document = parse(svg.toString());
+        // 背景加三个节点
+        assertEquals(4, document.getElementsByTagName("rect").getLength());
+        assertEquals(4, document.getElementsByTagName("polyline").getLength());
+        assertTrue(svg.toString().contains("a &lt; b &amp;&amp; c &gt; &quot;d&quot;"));
+    }
+
+    @Test
+    public void testPngFromCallStack() throws Exception {
+        CallStack root = new CallStack(method("com.demo.OrderController", "create"));
+        CallStack service = root.methodCall(method("com.demo.OrderService", "create"));
+        service.methodCall(method("com.demo.OrderDao", "insert"));
+        service.addOmittedImplementation("com.demo.OtherServiceImpl");
+
+        GraphExporter.Diagram diagram = GraphExporter.layout(root);
+        assertEquals(4, diagram.getNodeCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphExporter.write(diagram, GraphExporter.Format.PNG, out);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(image);
+        assertEquals((int) Math.ceil(diagram.getWidth()), image.getWidth());
+        assertEquals((int) Math.ceil(diagram.getHeight()), image.getHeight());
+    }
+
+    @Test
+    public void testFitLabel() {
+        assertEquals("", GraphExporter.fitLabel(null, 200));
+        assertEquals("create", GraphExporter.fitLabel("create", 200));
+        String fitted = GraphExporter.fitLabel("x".repeat(100), 200);
+        assertTrue(fitted.endsWith("…"));
+        assertTrue(fitted.length() < 30);
+    }
+
+    /**
+     * 连续导出 100 个 80 节点的流程图（SVG 和 PNG 各一份），统计吞吐量
+     */
+    @Test
+    @Tag("benchmark")
+    public void testExportThroughput(TestReporter reporter) throws Exception {
+        Random random = new Random(39);
+        List<CompactFlowGraph> graphs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            graphs.add(CompactFlowGraph.of(randomGraph(random, 80)));
+        }
+        // 预热
+        export(graphs.get(0));
+
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (CompactFlowGraph graph : graphs) {
+            bytes += export(graph);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        reporter.publishEntry("diagramsPerMinute", String.format("%.0f", 100 / seconds * 60));
+        reporter.publishEntry("outputKB", String.valueOf(bytes / 1024));
+
+        assertTrue(seconds < 60, "exported 100 diagrams in " + seconds + " s");
+    }
+
+    private static long export(CompactFlowGraph graph) throws Exception {
+        GraphExporter.Diagram diagram = GraphExporter.layout(graph);
+        ByteArrayOutputStream svg = new ByteArrayOutputStream();
+        GraphExporter.write(diagram, GraphExporter.Format.SVG, svg);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        GraphExporter.write(diagram, GraphExporter.Format.PNG, png);
+        return svg.size() + png.size();
+    }
+
+    private static FlowGraphData randomGraph(Random random, int size) {
+        FlowGraphData data = new FlowGraphData();
+        List<FlowGraphData.Node> nodes = new ArrayList<>();
+        List<FlowGraphData.Edge> edges = new ArrayList<>();
+        String[] types = {"method", "condition", "loop", "process"};
+        for (int i = 0; i < size; i++) {
+            nodes.add(node("n" + i, "步骤 " + i + " processOrder()", types[random.nextInt(types.length)]));
+            if (i > 0) {
+                edges.add(edge("n" + random.nextInt(i), "n" + i, random.nextBoolean() ? "是" : null));
+            }
+        }
+        for (int i = 0; i < size / 4; i++) {
+            edges.add(edge("n" + random.nextInt(size), "n" + random.nextInt(size), "回到"));
+        }
+        data.setNodes(nodes);
+        data.setEdges(edges);
+        return data;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    private static FlowGraphData.Node node(String id, String label, String type) {
+        FlowGraphData.Node node = new FlowGraphData.Node();
+        node.setId(id);
+        node.setLabel(label);
+        node.setType(type);
+        return node;
+    }
+
+    private static FlowGraphData.Edge edge(String source, String target, String label) {
+        FlowGraphData.Edge edge = new FlowGraphData.Edge();
+        edge.setSource(source);
+        edge.setTarget(target);
+        edge.setLabel(label);
+        return edge;
+    }
+
+    private static MethodDescription method(String className, String name) {
+        return new MethodDescription(null, className, null, name, null, "void");
+    }
+}
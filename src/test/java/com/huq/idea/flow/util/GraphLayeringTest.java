@@ -0,0 +1,182 @@
+package com.huq.idea.flow.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphLayeringTest {
+
+    @Test
+    public void testChainAndDiamondUseLongestPath() {
+        Map<String, List<String>> graph = new LinkedHashMap<>();
+        graph.put("start", Arrays.asList("a", "b"));
+        graph.put("a", Collections.singletonList("c"));
+        graph.put("b", Collections.singletonList("end"));
+        graph.put("c", Collections.singletonList("end"));
+        graph.put("end", Collections.emptyList());
+
+        Map<String, Integer> levels = GraphLayering.computeLevels(graph.keySet(), graph::get);
+
+        assertEquals(0, levels.get("start"));
+        assertEquals(1, levels.get("a"));
+        assertEquals(1, levels.get("b"));
+        assertEquals(2, levels.get("c"));
+        assertEquals(3, levels.get("end"));
+    }
+
+    @Test
+    public void testCycleIsUnrolledFromItsEntry() {
+        // start -> check -> body -> check（循环），check -> end
+        Map<String, List<String>> graph = new LinkedHashMap<>();
+        graph.put("start", Collections.singletonList("check"));
+        graph.put("check", Arrays.asList("body", "end"));
+        graph.put("body", Collections.singletonList("check"));
+        graph.put("end", Collections.emptyList());
+
+        Map<String, Integer> levels = GraphLayering.computeLevels(graph.keySet(), graph::get);
+
+        assertEquals(0, levels.get("start"));
+        assertEquals(1, levels.get("check"));
+        assertEquals(2, levels.get("body"));
+        // 出口与循环体同为 check 的后继，位于同一层
+        assertEquals(2, levels.get("end"));
+    }
+
+    @Test
+    public void testGraphWithoutRootsAndSelfLoop() {
+        Map<String, List<String>> graph = new LinkedHashMap<>();
+        graph.put("a", Arrays.asList("a", "b"));
+        graph.put("b", Collections.singletonList("a"));
+
+        Map<String, Integer> levels = GraphLayering.computeLevels(graph.keySet(), graph::get);
+
+        assertEquals(0, levels.get("a"));
+        assertEquals(1, levels.get("b"));
+    }
+
+    @Test
+    public void testEdgesToUnknownVerticesAreIgnored() {
+        Map<String, List<String>> graph = new LinkedHashMap<>();
+        graph.put("a", Arrays.asList("b", "missing"));
+        graph.put("b", Collections.emptyList());
+
+        Map<String, Integer> levels = GraphLayering.computeLevels(graph.keySet(), graph::get);
+
+        assertEquals(2, levels.size());
+        assertEquals(1, levels.get("b"));
+    }
+
+    @Test
+    public void testResultIsStable() {
+        int[][] graph = randomGraph(2_000, 3, 0.05, 42);
+        int[] first = layer(graph);
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(first, layer(graph));
+        }
+    }
+
+    /**
+     * 100 到 20000 个节点的随机图（含回边），旧的递归算法在几百个节点时就已经无法完成
+     */
+    @Test
+    @Tag("benchmark")
+    public void testBenchmarkLinearScaling(TestReporter reporter) {
+        int[] sizes = {100, 1_000, 5_000, 10_000, 20_000};
+        for (int i = 0; i < 3; i++) {
+            layer(randomGraph(5_000, 3, 0.05, i));
+        }
+
+        for (int size : sizes) {
+            int[][] graph = randomGraph(size, 3, 0.05, size);
+            long start = System.nanoTime();
+            int[] levels = layer(graph);
+            long elapsedMicros = (System.nanoTime() - start) / 1_000;
+            reporter.publishEntry(size + " nodes", elapsedMicros + " us");
+
+            assertLevelsRespectForwardEdges(graph, levels);
+            assertTrue(elapsedMicros < 2_000_000, size + " nodes took " + elapsedMicros + " us");
+        }
+    }
+
+    @Test
+    public void testDeepChainDoesNotOverflowStack() {
+        int size = 200_000;
+        int[][] graph = new int[size][];
+        for (int i = 0; i < size; i++) {
+            graph[i] = i + 1 < size ? new int[]{i + 1} : new int[0];
+        }
+        // 首尾相连形成一个超大的环
+        graph[size - 1] = new int[]{0};
+
+        int[] levels = layer(graph);
+
+        assertEquals(0, levels[0]);
+        assertEquals(size - 1, levels[size - 1]);
+    }
+
+    /**
+     * 跨强连通分量的边必须从低层级指向高层级
+     */
+    private static void assertLevelsRespectForwardEdges(int[][] graph, int[] levels) {
+        int n = graph.length;
+        int[] edgeStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            edgeStart[v + 1] = edgeStart[v] + graph[v].length;
+        }
+        int[] targets = new int[edgeStart[n]];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(graph[v], 0, targets, edgeStart[v], graph[v].length);
+        }
+        int[] component = GraphLayering.stronglyConnectedComponents(n, edgeStart, targets);
+        for (int v = 0; v < n; v++) {
+            for (int w : graph[v]) {
+                if (component[v] != component[w]) {
+                    assertTrue(levels[w] > levels[v], "edge " + v + " -> " + w);
+                }
+            }
+        }
+    }
+
+    private static int[] layer(int[][] graph) {
+        int n = graph.length;
+        int[] edgeStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            edgeStart[v + 1] = edgeStart[v] + graph[v].length;
+        }
+        int[] targets = new int[edgeStart[n]];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(graph[v], 0, targets, edgeStart[v], graph[v].length);
+        }
+        return GraphLayering.computeLevels(n, edgeStart, targets);
+    }
+
+    /**
+     * 以前向边为主的随机流程图，按比例加入指向较小编号的回边模拟循环
+     */
+    private static int[][] randomGraph(int size, int maxOutDegree, double backEdgeRatio, long seed) {
+        Random random = new Random(seed);
+        int[][] graph = new int[size][];
+        for (int v = 0; v < size; v++) {
+            int degree = v == size - 1 ? 0 : 1 + random.nextInt(maxOutDegree);
+            int[] successors = new int[degree];
+            for (int i = 0; i < degree; i++) {
+                if (v > 0 && random.nextDouble() < backEdgeRatio) {
+                    successors[i] = random.nextInt(v);
+                } else {
+                    successors[i] = v + 1 + random.nextInt(Math.min(10, size - v - 1));
+                }
+            }
+            graph[v] = successors;
+        }
+        return graph;
+    }
+}
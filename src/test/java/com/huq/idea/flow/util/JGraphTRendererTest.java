@@ -0,0 +1,137 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.FlowGraphData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JGraphTRendererTest {
+
+    private static final String JSON = """
+            {
+              "nodes": [
+                {"id": "start", "label": "开始", "type": "start", "description": "开始"},
+                {"id": "check", "label": "校验", "type": "condition", "description": "校验参数"},
+                {"id": "save", "label": "保存", "type": "process", "description": "保存订单"},
+                {"id": "end", "label": "结束", "type": "end", "description": "结束"}
+              ],
+              "edges": [
+                {"source": "start", "target": "check"},
+                {"source": "check", "target": "save", "label": "通过"},
+                {"source": "save", "target": "end"},
+                {"source": "check", "target": "end", "label": "失败"}
+              ]
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testVisibleQueryAndDoubleClickHitNodes() throws Exception {
+        FlowGraphData graphData = FlowGraphData.fromJson(JSON);
+        List<FlowGraphData.Node> navigated = new ArrayList<>();
+        JGraphTRenderer.FlowGraphPanel panel = createPanel(graphData, new LayoutCache(tempDir, 4), navigated);
+
+        onEdt(() -> {
+            // 视口内能查到所有节点，视口外查不到
+            assertEquals(4, panel.nodesIn(new Rectangle(0, 0, 2000, 2000)).size());
+            assertTrue(panel.nodesIn(new Rectangle(50_000, 50_000, 800, 600)).isEmpty());
+
+            FlowGraphData.Node save = graphData.getNode("save");
+            Rectangle2D bounds = panel.getNodeBounds(save);
+            Point center = new Point((int) bounds.getCenterX(), (int) bounds.getCenterY());
+            assertEquals(List.of(save), panel.nodesIn(new Rectangle(center.x, center.y, 1, 1)));
+
+            // 双击通过面板自身的鼠标监听器命中节点
+            panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_PRESSED, 0, 0, center.x, center.y, 2, false));
+            panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_RELEASED, 0, 0, center.x, center.y, 2, false));
+            assertEquals(List.of(save), navigated);
+
+            // 拖动平移后命中测试跟随偏移
+            panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_PRESSED, 0, 0, 10, 10, 1, false));
+            panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_DRAGGED, 0, 0, 110, 10, 1, false));
+            panel.dispatchEvent(new MouseEvent(panel, MouseEvent.MOUSE_RELEASED, 0, 0, 110, 10, 1, false));
+            assertEquals(save, panel.nodeAt(new Point(center.x + 100, center.y)));
+            assertNull(panel.nodeAt(new Point(-500, -500)));
+
+            // 按裁剪区域绘制
+            panel.setSize(800, 600);
+            BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            panel.paint(g);
+            g.dispose();
+        });
+    }
+
+    @Test
+    public void testCachedLayoutIsReused() throws Exception {
+        LayoutCache cache = new LayoutCache(tempDir, 4);
+        FlowGraphData first = FlowGraphData.fromJson(JSON);
+        JGraphTRenderer.FlowGraphPanel firstPanel = createPanel(first, cache, new ArrayList<>());
+        FlowGraphData second = FlowGraphData.fromJson(JSON);
+        JGraphTRenderer.FlowGraphPanel secondPanel = createPanel(second, cache, new ArrayList<>());
+
+        onEdt(() -> {
+            for (FlowGraphData.Node node : first.getNodes()) {
+                assertEquals(firstPanel.getNodeBounds(node), secondPanel.getNodeBounds(second.getNode(node.getId())));
+            }
+            // check -> end 跨过 save 所在的层，折点随布局一起缓存
+            List<Point2D> bends = firstPanel.getBendPoints(first.getNode("check"), first.getNode("end"));
+            assertFalse(bends.isEmpty());
+            assertEquals(bends, secondPanel.getBendPoints(second.getNode("check"), second.getNode("end")));
+            assertTrue(secondPanel.getBendPoints(second.getNode("start"), second.getNode("check")).isEmpty());
+            assertEquals(4, secondPanel.nodesIn(new Rectangle(0, 0, 2000, 2000)).size());
+        });
+    }
+
+    @Test
+    public void testLayersFollowGraphLayering() throws Exception {
+        FlowGraphData graphData = FlowGraphData.fromJson(JSON);
+        JGraphTRenderer.FlowGraphPanel panel = createPanel(graphData, new LayoutCache(tempDir, 4), new ArrayList<>());
+        Map<FlowGraphData.Node, Integer> levels = GraphLayering.computeLevels(graphData.getNodes(),
+                node -> graphData.getOutgoingEdges(node.getId()).stream().map(edge -> graphData.getNode(edge.getTarget())).toList());
+
+        onEdt(() -> {
+            for (FlowGraphData.Node a : graphData.getNodes()) {
+                for (FlowGraphData.Node b : graphData.getNodes()) {
+                    if (levels.get(a) < levels.get(b)) {
+                        assertTrue(panel.getNodeBounds(a).getMaxY() < panel.getNodeBounds(b).getMinY(),
+                                a.getId() + " should be above " + b.getId());
+                    }
+                }
+            }
+        });
+    }
+
+    private static JGraphTRenderer.FlowGraphPanel createPanel(FlowGraphData graphData, LayoutCache cache,
+                                                              List<FlowGraphData.Node> navigated) throws Exception {
+        JGraphTRenderer.FlowGraphPanel[] panel = new JGraphTRenderer.FlowGraphPanel[1];
+        onEdt(() -> panel[0] = new JGraphTRenderer.FlowGraphPanel(graphData, cache, 50, 25, navigated::add));
+        // 等待后台布局完成并在 EDT 上建立索引
+        long deadline = System.currentTimeMillis() + 10_000;
+        boolean[] laidOut = {false};
+        while (!laidOut[0]) {
+            assertTrue(System.currentTimeMillis() < deadline, "layout did not finish");
+            Thread.sleep(10);
+            onEdt(() -> laidOut[0] = panel[0].isLaidOut());
+        }
+        return panel[0];
+    }
+
+    private static void onEdt(Runnable runnable) throws Exception {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+}
@@ -0,0 +1,127 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.CompactFlowGraph;
+import com.huq.idea.flow.model.FlowGraphData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LayoutCacheTest {
+
+    private static final String JSON = """
+            {
+              "nodes": [
+                {"id": "start", "label": "开始", "type": "start"},
+                {"id": "check", "label": "校验", "type": "condition"},
+                {"id": "end", "label": "结束", "type": "end"}
+              ],
+              "edges": [
+                {"source": "start", "target": "check"},
+                {"source": "check", "target": "end", "label": "通过"}
+              ]
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testStructuralHashIsStableAndSensitiveToStructure() {
+        String hash = LayoutCache.structuralHash("test", FlowGraphData.fromJson(JSON));
+
+        assertEquals(hash, LayoutCache.structuralHash("test", FlowGraphData.fromJson(JSON)));
+        assertNotEquals(hash, LayoutCache.structuralHash("other", FlowGraphData.fromJson(JSON)));
+        assertNotEquals(hash, LayoutCache.structuralHash("test", FlowGraphData.fromJson(JSON.replace("通过", "失败"))));
+        assertNotEquals(hash, LayoutCache.structuralHash("test", FlowGraphData.fromJson(JSON.replace("\"condition\"", "\"process\""))));
+        // 紧凑表示与完整数据得到同一个哈希
+        assertEquals(hash, LayoutCache.structuralHash("test", CompactFlowGraph.fromJson(JSON)));
+    }
+
+    @Test
+    public void testGeometriesSurviveRestart() {
+        FlowGraphData graphData = FlowGraphData.fromJson(JSON);
+        String hash = LayoutCache.structuralHash("test", graphData);
+        Map<String, Rectangle2D> geometries = new LinkedHashMap<>();
+        geometries.put("start", new Rectangle2D.Double(10, 20, 120, 50));
+        geometries.put("check", new Rectangle2D.Double(10, 150, 160, 80));
+        geometries.put("end", new Rectangle2D.Double(10, 310, 120, 50));
+
+        LayoutCache cache = new LayoutCache(tempDir, 4);
+        assertNull(cache.get(hash));
+        cache.put(hash, geometries);
+        assertEquals(geometries, cache.get(hash));
+
+        // 新实例只能从磁盘读取
+        LayoutCache reopened = new LayoutCache(tempDir, 4);
+        Map<String, Rectangle2D> loaded = reopened.get(hash);
+        assertEquals(geometries, loaded);
+        assertTrue(LayoutCache.covers(loaded, graphData));
+        assertTrue(LayoutCache.covers(loaded, CompactFlowGraph.fromJson(JSON)));
+    }
+
+    @Test
+    public void testCoversRequiresEveryNode() {
+        FlowGraphData graphData = FlowGraphData.fromJson(JSON);
+        Map<String, Rectangle2D> partial = new LinkedHashMap<>();
+        partial.put("start", new Rectangle2D.Double(0, 0, 1, 1));
+
+        assertFalse(LayoutCache.covers(null, graphData));
+        assertFalse(LayoutCache.covers(partial, graphData));
+        assertFalse(LayoutCache.covers(partial, CompactFlowGraph.fromJson(JSON)));
+    }
+
+    @Test
+    public void testBendsRoundTrip() {
+        List<List<Point2D>> bends = List.of(
+                List.of(),
+                List.of(new Point2D.Double(10, 20), new Point2D.Double(10, 120)),
+                List.of(new Point2D.Double(-5.5, 40)));
+
+        Map<String, Rectangle2D> encoded = LayoutCache.encodeBends(bends);
+
+        assertEquals(3, encoded.size());
+        for (int edge = 0; edge < bends.size(); edge++) {
+            assertEquals(bends.get(edge), LayoutCache.decodeBends(encoded, edge));
+        }
+        assertTrue(LayoutCache.decodeBends(encoded, 3).isEmpty());
+    }
+
+    @Test
+    public void testCorruptDiskEntryIsIgnored() throws Exception {
+        Files.writeString(tempDir.resolve("broken.json"), "{ not json");
+        Files.writeString(tempDir.resolve("short.json"), "{\"a\": [1, 2]}");
+
+        LayoutCache cache = new LayoutCache(tempDir, 4);
+        assertNull(cache.get("broken"));
+        assertNull(cache.get("short"));
+    }
+
+    @Test
+    public void testDiskCachePrunesOldestFiles() throws Exception {
+        Map<String, Rectangle2D> geometries = Map.of("start", new Rectangle2D.Double(0, 0, 1, 1));
+        LayoutCache cache = new LayoutCache(tempDir, 1, 3);
+        for (int i = 0; i < 3; i++) {
+            cache.put("h" + i, geometries);
+            Files.setLastModifiedTime(tempDir.resolve("h" + i + ".json"), FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+
+        // 从磁盘读取 h0 会刷新它的使用时间，h1 成为最旧的文件
+        assertNotNull(new LayoutCache(tempDir, 1, 3).get("h0"));
+        cache.put("h3", geometries);
+
+        assertTrue(Files.exists(tempDir.resolve("h0.json")));
+        assertFalse(Files.exists(tempDir.resolve("h1.json")));
+        assertTrue(Files.exists(tempDir.resolve("h2.json")));
+        assertTrue(Files.exists(tempDir.resolve("h3.json")));
+    }
+}
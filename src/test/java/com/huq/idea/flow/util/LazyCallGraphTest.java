@@ -0,0 +1,132 @@
+package com.huq.idea.flow.util;
+
+import com.huq.idea.flow.model.CallStack;
+import com.huq.idea.flow.model.MethodDescription;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyCallGraphTest {
+
+    @Test
+    public void testOnlyFirstLevelsAreMaterialized() {
+        CallStack root = call("com.demo.OrderController", "create");
+        CallStack service = root.methodCall(method("com.demo.OrderService", "create"));
+        CallStack dao = service.methodCall(method("com.demo.OrderDao", "insert"));
+        dao.methodCall(method("com.demo.IdGenerator", "next"));
+        dao.methodCall(method("com.demo.Clock", "now"));
+
+        LazyCallGraph callGraph = new LazyCallGraph(root, 2);
+        callGraph.materialize();
+
+        // root、service 和 service 下的 "+1 calls" 占位节点
+        assertEquals(3, callGraph.getMaterializedCount());
+        Object stub = findStub(callGraph);
+        assertEquals("+1 calls", callGraph.getGraph().getModel().getValue(stub));
+        assertEquals("点击展开 1 个调用", callGraph.getGraph().getToolTipForCell(stub));
+
+        assertTrue(callGraph.toggle(stub));
+        // 展开一层：dao 出现，dao 的两个调用变成新的占位节点
+        assertEquals(4, callGraph.getMaterializedCount());
+        assertEquals("+2 calls", callGraph.getGraph().getModel().getValue(findStub(callGraph)));
+    }
+
+    @Test
+    public void testCollapseRemovesMaterializedSubtree() {
+        CallStack root = call("com.demo.A", "a");
+        CallStack b = root.methodCall(method("com.demo.B", "b"));
+        b.methodCall(method("com.demo.C", "c"));
+        root.methodCall(method("com.demo.D", "d"));
+
+        LazyCallGraph callGraph = new LazyCallGraph(root, 5);
+        callGraph.materialize();
+        assertEquals(4, callGraph.getMaterializedCount());
+
+        Object rootVertex = vertexOf(callGraph, root);
+        assertTrue(callGraph.toggle(rootVertex));
+        // 只剩 root 和一个 "+2 calls"
+        assertEquals(2, callGraph.getMaterializedCount());
+        assertEquals(3, callGraph.getGraph().getChildCells(callGraph.getGraph().getDefaultParent()).length);
+
+        // 再次双击 root 只展开一层
+        assertTrue(callGraph.toggle(rootVertex));
+        assertEquals(4, callGraph.getMaterializedCount());
+        assertNotNull(findStub(callGraph));
+    }
+
+    @Test
+    public void testTooltipIsComputedOnHover() {
+        CallStack root = call("com.demo.OrderService", "create");
+        root.getMethodDescription().put("parameters", "String id");
+
+        LazyCallGraph callGraph = new LazyCallGraph(root, 3);
+        callGraph.materialize();
+
+        String tooltip = callGraph.getGraph().getToolTipForCell(vertexOf(callGraph, root));
+        assertTrue(tooltip.contains("com.demo.OrderService"));
+        assertTrue(tooltip.contains("String id"));
+    }
+
+    /**
+     * 10 万层的调用链和 10 万个子调用的宽树，打开时都只创建少量单元格
+     */
+    @Test
+    @Tag("benchmark")
+    public void testHugeCallChainOpensWithBoundedCells(TestReporter reporter) {
+        CallStack chain = call("com.demo.Chain", "m0");
+        CallStack current = chain;
+        for (int i = 1; i < 100_000; i++) {
+            // 直接挂接子节点，methodCall 的递归检查会沿父链回溯，10 万层时是平方复杂度
+            CallStack next = new CallStack(method("com.demo.Chain" + i, "m" + i), current);
+            current.addChild(next);
+            current = next;
+        }
+        CallStack wide = call("com.demo.Fanout", "root");
+        for (int i = 0; i < 1_000; i++) {
+            CallStack child = wide.methodCall(method("com.demo.Child" + i, "m"));
+            for (int j = 0; j < 100; j++) {
+                child.methodCall(method("com.demo.Leaf" + j, "m"));
+            }
+        }
+
+        long start = System.nanoTime();
+        LazyCallGraph chainGraph = new LazyCallGraph(chain, 3);
+        chainGraph.materialize();
+        LazyCallGraph wideGraph = new LazyCallGraph(wide, 2);
+        wideGraph.materialize();
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        reporter.publishEntry("openMillis", String.format("%.2f", millis));
+
+        assertEquals(4, chainGraph.getMaterializedCount());
+        // root、1000 个子调用，以及每个子调用的占位节点
+        assertEquals(2_001, wideGraph.getMaterializedCount());
+    }
+
+    private static Object findStub(LazyCallGraph callGraph) {
+        for (Object cell : callGraph.getGraph().getChildVertices(callGraph.getGraph().getDefaultParent())) {
+            if (callGraph.isStub(cell)) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    private static Object vertexOf(LazyCallGraph callGraph, CallStack call) {
+        for (Object cell : callGraph.getGraph().getChildVertices(callGraph.getGraph().getDefaultParent())) {
+            if (callGraph.getCall(cell) == call) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    private static CallStack call(String className, String name) {
+        return new CallStack(method(className, name));
+    }
+
+    private static MethodDescription method(String className, String name) {
+        return new MethodDescription(null, className, null, name, null, "void");
+    }
+}
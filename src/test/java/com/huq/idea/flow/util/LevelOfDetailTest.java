@@ -0,0 +1,212 @@
+package com.huq.idea.flow.util;
+
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.view.mxGraph;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LevelOfDetailTest {
+
+    @Test
+    public void testLevelForThresholds() {
+        assertEquals(LevelOfDetail.Level.FULL, LevelOfDetail.levelFor(1.0, 50, 25));
+        assertEquals(LevelOfDetail.Level.FULL, LevelOfDetail.levelFor(0.5, 50, 25));
+        assertEquals(LevelOfDetail.Level.SIMPLIFIED, LevelOfDetail.levelFor(0.4, 50, 25));
+        assertEquals(LevelOfDetail.Level.CLUSTERED, LevelOfDetail.levelFor(0.2, 50, 25));
+        // 0 表示禁用
+        assertEquals(LevelOfDetail.Level.SIMPLIFIED, LevelOfDetail.levelFor(0.1, 50, 0));
+        assertEquals(LevelOfDetail.Level.FULL, LevelOfDetail.levelFor(0.1, 0, 0));
+    }
+
+    @Test
+    public void testClusterMergesNodesAndBundlesEdges() {
+        List<SyntheticNode> nodes = List.of(
+                new SyntheticNode("com.a.Order", 0, 0),
+                new SyntheticNode("com.a.Order", 0, 100),
+                new SyntheticNode("com.a.User", 300, 0),
+                new SyntheticNode(null, 600, 0),
+                new SyntheticNode(null, 600, 100));
+        List<SyntheticNode[]> edges = List.of(
+                new SyntheticNode[]{nodes.get(0), nodes.get(2)},
+                new SyntheticNode[]{nodes.get(1), nodes.get(2)},
+                new SyntheticNode[]{nodes.get(0), nodes.get(1)},
+                new SyntheticNode[]{nodes.get(3), nodes.get(4)});
+
+        LevelOfDetail.Clusters clusters = cluster(nodes, edges);
+
+        assertEquals(4, clusters.getClusters().size());
+        LevelOfDetail.Cluster order = clusters.getClusters().get(0);
+        assertEquals("Order", order.getLabel());
+        assertEquals(2, order.getSize());
+        assertEquals(new Rectangle2D.Double(0, 0, 120, 150), order.getBounds());
+
+        // 同类之间的边被吸收，Order -> User 合并为一条
+        assertEquals(2, clusters.getBundles().size());
+        LevelOfDetail.Bundle bundle = clusters.getBundles().get(0);
+        assertEquals("Order", bundle.getSource().getLabel());
+        assertEquals("User", bundle.getTarget().getLabel());
+        assertEquals(2, bundle.getCount());
+        assertEquals("", clusters.getClusters().get(2).getLabel());
+    }
+
+    @Test
+    public void testJGraphXModelFoldsByClass() {
+        mxGraph graph = new mxGraph();
+        Object parent = graph.getDefaultParent();
+        Map<Object, String> classOf = new HashMap<>();
+        Object order1 = graph.insertVertex(parent, null, "create", 0, 0, 120, 50);
+        Object order2 = graph.insertVertex(parent, null, "save", 0, 100, 120, 50);
+        Object user = graph.insertVertex(parent, null, "find", 300, 0, 120, 50);
+        classOf.put(order1, "com.a.Order");
+        classOf.put(order2, "com.a.Order");
+        classOf.put(user, "com.a.User");
+        graph.insertEdge(parent, null, null, order1, user);
+        graph.insertEdge(parent, null, null, order2, user);
+        graph.insertEdge(parent, null, null, order1, order2);
+        LevelOfDetail.ModelClusters modelClusters = new LevelOfDetail.ModelClusters(graph, classOf::get);
+
+        // 原单元格隐藏，每个类一个聚合顶点，Order -> User 的两条边合并为一条
+        modelClusters.fold(0.2);
+        assertTrue(modelClusters.isFolded());
+        Object[] vertices = graph.getChildVertices(parent);
+        assertEquals(2, vertices.length);
+        assertEquals("Order (2)", graph.getModel().getValue(vertices[0]));
+        assertEquals(new mxGeometry(0, 0, 120, 150).getRectangle(), graph.getModel().getGeometry(vertices[0]).getRectangle());
+        assertEquals("User (1)", graph.getModel().getValue(vertices[1]));
+        Object[] edges = graph.getChildEdges(parent);
+        assertEquals(1, edges.length);
+        assertSame(vertices[0], graph.getModel().getTerminal(edges[0], true));
+        assertFalse(graph.getModel().isVisible(order1));
+
+        // 展开后恢复原来的单元格
+        modelClusters.unfold();
+        assertFalse(modelClusters.isFolded());
+        assertArrayEquals(new Object[]{order1, order2, user}, graph.getChildVertices(parent));
+        assertEquals(3, graph.getChildEdges(parent).length);
+        assertEquals(6, graph.getModel().getChildCount(parent));
+    }
+
+    /**
+     * 20000 个节点的合成图，在 10% 缩放下对比完整绘制和聚合绘制的单帧耗时
+     */
+    @Test
+    @Tag("benchmark")
+    public void testFrameTimeOn20kNodes(TestReporter reporter) {
+        Random random = new Random(5);
+        List<SyntheticNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int column = i % 200;
+            int row = i / 200;
+            nodes.add(new SyntheticNode("com.demo.Service" + (i / 40), column * 200, row * 150));
+        }
+        List<SyntheticNode[]> edges = new ArrayList<>();
+        for (int i = 1; i < nodes.size(); i++) {
+            edges.add(new SyntheticNode[]{nodes.get(i - 1), nodes.get(i)});
+            // 调用大多发生在相邻的类之间
+            edges.add(new SyntheticNode[]{nodes.get(Math.max(0, i - 1 - random.nextInt(400))), nodes.get(i)});
+        }
+
+        double scale = 0.1;
+        BufferedImage image = new BufferedImage(4000, 1500, BufferedImage.TYPE_INT_ARGB);
+
+        LevelOfDetail.Clusters clusters = cluster(nodes, edges);
+        assertEquals(500, clusters.getClusters().size());
+
+        // 预热
+        for (int i = 0; i < 2; i++) {
+            paintFull(image, nodes, edges, scale);
+            paintClustered(image, clusters, scale);
+        }
+
+        int frames = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            paintFull(image, nodes, edges, scale);
+        }
+        double fullMillis = (System.nanoTime() - start) / 1_000_000.0 / frames;
+
+        start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            paintClustered(image, clusters, scale);
+        }
+        double clusteredMillis = (System.nanoTime() - start) / 1_000_000.0 / frames;
+        reporter.publishEntry("fullFrameMillis", String.format("%.2f", fullMillis));
+        reporter.publishEntry("clusteredFrameMillis", String.format("%.2f", clusteredMillis));
+
+        assertTrue(clusteredMillis < fullMillis, "clustered " + clusteredMillis + " ms, full " + fullMillis + " ms");
+    }
+
+    private static LevelOfDetail.Clusters cluster(List<SyntheticNode> nodes, List<SyntheticNode[]> edges) {
+        return LevelOfDetail.cluster(nodes, node -> node.className, node -> node.bounds,
+                edges, edge -> edge[0], edge -> edge[1]);
+    }
+
+    private static void paintClustered(BufferedImage image, LevelOfDetail.Clusters clusters, double scale) {
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.scale(scale, scale);
+            LevelOfDetail.paintClusters(g2, clusters, null, scale);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * 完整细节的参考绘制：抗锯齿、节点形状、文字和箭头
+     */
+    private static void paintFull(BufferedImage image, List<SyntheticNode> nodes, List<SyntheticNode[]> edges, double scale) {
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.scale(scale, scale);
+            g2.setStroke(new BasicStroke(1.5f));
+            for (SyntheticNode[] edge : edges) {
+                Rectangle2D source = edge[0].bounds;
+                Rectangle2D target = edge[1].bounds;
+                g2.setColor(Color.GRAY);
+                g2.draw(new Line2D.Double(source.getCenterX(), source.getMaxY(), target.getCenterX(), target.getY()));
+                Polygon arrow = new Polygon();
+                arrow.addPoint((int) target.getCenterX(), (int) target.getY());
+                arrow.addPoint((int) target.getCenterX() - 5, (int) target.getY() - 10);
+                arrow.addPoint((int) target.getCenterX() + 5, (int) target.getY() - 10);
+                g2.fill(arrow);
+            }
+            for (SyntheticNode node : nodes) {
+                Rectangle2D bounds = node.bounds;
+                g2.setColor(new Color(212, 230, 241));
+                g2.fillRoundRect((int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight(), 10, 10);
+                g2.setColor(Color.BLACK);
+                g2.drawRoundRect((int) bounds.getX(), (int) bounds.getY(), (int) bounds.getWidth(), (int) bounds.getHeight(), 10, 10);
+                g2.drawString(node.label, (float) bounds.getX() + 5, (float) bounds.getCenterY());
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private static class SyntheticNode {
+        private final String className;
+        private final String label;
+        private final Rectangle2D bounds;
+
+        SyntheticNode(String className, double x, double y) {
+            this.className = className;
+            this.label = className == null ? "node" : className + ".method()";
+            this.bounds = new Rectangle2D.Double(x, y, 120, 50);
+        }
+    }
+}
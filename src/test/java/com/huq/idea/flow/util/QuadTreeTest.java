@@ -0,0 +1,108 @@
+package com.huq.idea.flow.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuadTreeTest {
+
+    @Test
+    public void testQueryMatchesBruteForceInInsertionOrder() {
+        Random random = new Random(7);
+        List<Rectangle2D> rects = randomRects(random, 5_000, 10_000);
+        QuadTree<Integer> tree = new QuadTree<>(new Rectangle2D.Double(0, 0, 10_000, 10_000));
+        for (int i = 0; i < rects.size(); i++) {
+            tree.insert(i, rects.get(i));
+        }
+
+        for (int q = 0; q < 200; q++) {
+            Rectangle2D area = new Rectangle2D.Double(random.nextDouble() * 10_000, random.nextDouble() * 10_000,
+                    random.nextDouble() * 2_000, random.nextDouble() * 2_000);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < rects.size(); i++) {
+                if (QuadTree.overlaps(rects.get(i), area)) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, tree.query(area));
+        }
+    }
+
+    @Test
+    public void testDegenerateAndOutOfRangeBounds() {
+        QuadTree<String> tree = new QuadTree<>(new Rectangle2D.Double(0, 0, 100, 100));
+        // 垂直的边，宽度为 0
+        tree.insert("vertical", new Rectangle2D.Double(50, 10, 0, 80));
+        // 超出根节点范围
+        tree.insert("outside", new Rectangle2D.Double(500, 500, 10, 10));
+
+        assertEquals(List.of("vertical"), tree.query(new Rectangle2D.Double(40, 40, 20, 20)));
+        assertEquals(List.of("outside"), tree.query(new Rectangle2D.Double(490, 490, 20, 20)));
+        assertEquals(2, tree.size());
+    }
+
+    @Test
+    public void testFindAtReturnsTopmost() {
+        QuadTree<String> tree = new QuadTree<>(new Rectangle2D.Double(0, 0, 100, 100));
+        tree.insert("bottom", new Rectangle2D.Double(10, 10, 50, 50));
+        tree.insert("top", new Rectangle2D.Double(30, 30, 50, 50));
+
+        assertEquals("top", tree.findAt(new Point2D.Double(40, 40)));
+        assertEquals("bottom", tree.findAt(new Point2D.Double(15, 15)));
+        assertNull(tree.findAt(new Point2D.Double(95, 5)));
+    }
+
+    /**
+     * 5 万个节点的图：每帧只查询 800x600 的视口，单帧查询耗时应远低于 16ms（60fps）
+     */
+    @Test
+    @Tag("benchmark")
+    public void testViewportQueryOnLargeGraph(TestReporter reporter) {
+        int columns = 250;
+        int rows = 200;
+        QuadTree<Integer> tree = new QuadTree<>(new Rectangle2D.Double(0, 0, columns * 200, rows * 150));
+        for (int i = 0; i < columns * rows; i++) {
+            tree.insert(i, new Rectangle2D.Double((i % columns) * 200, (i / columns) * 150, 150, 50));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            tree.query(new Rectangle2D.Double(random.nextDouble() * columns * 200, random.nextDouble() * rows * 150, 800, 600));
+        }
+
+        int frames = 600;
+        int visible = 0;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            // 模拟平移
+            double x = (frame * 37) % (columns * 200 - 800);
+            double y = (frame * 23) % (rows * 150 - 600);
+            visible += tree.query(new Rectangle2D.Double(x, y, 800, 600)).size();
+            tree.findAt(new Point2D.Double(x + 400, y + 300));
+        }
+        double millisPerFrame = (System.nanoTime() - start) / 1_000_000.0 / frames;
+        reporter.publishEntry("frameMillis", String.format("%.3f", millisPerFrame));
+        reporter.publishEntry("visiblePerFrame", String.valueOf(visible / frames));
+
+        assertTrue(visible / frames < 100, "viewport should only return nearby nodes");
+        assertTrue(millisPerFrame < 4, "viewport query took " + millisPerFrame + " ms");
+    }
+
+    private static List<Rectangle2D> randomRects(Random random, int count, double extent) {
+        List<Rectangle2D> rects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double width = random.nextInt(10) == 0 ? 0 : random.nextDouble() * 300;
+            rects.add(new Rectangle2D.Double(random.nextDouble() * extent, random.nextDouble() * extent,
+                    width, random.nextDouble() * 100));
+        }
+        return rects;
+    }
+}
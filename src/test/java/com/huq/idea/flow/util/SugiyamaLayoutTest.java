@@ -0,0 +1,263 @@
+package com.huq.idea.flow.util;
+
+import com.mxgraph.layout.hierarchical.mxHierarchicalLayout;
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.util.mxPoint;
+import com.mxgraph.view.mxGraph;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedPseudograph;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SugiyamaLayoutTest {
+
+    @Test
+    public void testTreeHasNoCrossingsAndFlowsDownward() {
+        Graph<String, DefaultEdge> graph = graph("a->b", "a->c", "b->d", "b->e", "c->f", "c->g");
+
+        SugiyamaLayout.Result<String, DefaultEdge> result = new SugiyamaLayout<>(graph).layout();
+
+        assertEquals(0, result.getCrossings());
+        assertEquals(3, result.getLayerCount());
+        for (DefaultEdge edge : graph.edgeSet()) {
+            assertTrue(result.getBounds().get(graph.getEdgeSource(edge)).getMaxY()
+                    < result.getBounds().get(graph.getEdgeTarget(edge)).getMinY());
+        }
+        assertNoOverlap(result.getBounds());
+        // 父节点位于两个子节点之间
+        Map<String, Rectangle2D> bounds = result.getBounds();
+        assertTrue(bounds.get("b").getCenterX() > bounds.get("d").getCenterX());
+        assertTrue(bounds.get("b").getCenterX() < bounds.get("e").getCenterX());
+    }
+
+    @Test
+    public void testCyclesAndSelfLoopsAreLaidOut() {
+        Graph<String, DefaultEdge> graph = graph("start->check", "check->body", "body->check", "check->end",
+                "body->body", "end->start");
+
+        SugiyamaLayout.Result<String, DefaultEdge> result = new SugiyamaLayout<>(graph).layout();
+
+        assertEquals(4, result.getBounds().size());
+        Map<String, Rectangle2D> bounds = result.getBounds();
+        // 入口在顶部，循环回边被反向，不影响主流程方向
+        assertTrue(bounds.get("start").getY() < bounds.get("check").getY());
+        assertTrue(bounds.get("check").getY() < bounds.get("body").getY());
+        assertNoOverlap(bounds);
+    }
+
+    @Test
+    public void testLongEdgesGetBendPointsBetweenLayers() {
+        Graph<String, DefaultEdge> graph = graph("a->b", "b->c", "c->d", "a->d");
+        DefaultEdge longEdge = graph.getEdge("a", "d");
+
+        SugiyamaLayout.Result<String, DefaultEdge> result = new SugiyamaLayout<>(graph)
+                .setOrigin(10, 20)
+                .layout();
+
+        List<Point2D> points = result.getBendPoints(longEdge);
+        assertEquals(2, points.size());
+        Map<String, Rectangle2D> bounds = result.getBounds();
+        assertEquals(bounds.get("b").getCenterY(), points.get(0).getY(), 1e-6);
+        assertEquals(bounds.get("c").getCenterY(), points.get(1).getY(), 1e-6);
+        assertTrue(result.getBendPoints(graph.getEdge("a", "b")).isEmpty());
+        assertEquals(20, bounds.get("a").getY(), 1e-6);
+        double minX = bounds.values().stream().mapToDouble(Rectangle2D::getMinX).min().orElse(0);
+        assertTrue(minX >= 10 - 1e-6);
+    }
+
+    @Test
+    public void testCrossingReductionUntanglesLayers() {
+        // 初始顺序会产生交叉：a1 连 b2，a2 连 b1
+        Graph<String, DefaultEdge> graph = graph("r->a1", "r->a2", "a1->b2", "a2->b1", "r->b1", "r->b2");
+
+        SugiyamaLayout.Result<String, DefaultEdge> result = new SugiyamaLayout<>(graph).layout();
+
+        assertEquals(0, result.getCrossings());
+    }
+
+    /**
+     * 与 mxHierarchicalLayout 对比耗时和边交叉数，交叉数按绘制出的折线几何计算
+     */
+    @Test
+    @Tag("benchmark")
+    public void testBenchmarkAgainstHierarchicalLayout(TestReporter reporter) {
+        for (int size : new int[]{500, 2_000}) {
+            Graph<Integer, DefaultEdge> graph = randomCallGraph(new Random(size), size);
+
+            // 预热
+            new SugiyamaLayout<>(graph).layout();
+
+            long start = System.nanoTime();
+            SugiyamaLayout.Result<Integer, DefaultEdge> result = new SugiyamaLayout<>(graph).layout();
+            double sugiyamaMillis = (System.nanoTime() - start) / 1_000_000.0;
+            List<List<Point2D>> sugiyamaLines = new ArrayList<>();
+            for (DefaultEdge edge : graph.edgeSet()) {
+                sugiyamaLines.add(polyline(result.getBounds().get(graph.getEdgeSource(edge)),
+                        result.getBendPoints(edge), result.getBounds().get(graph.getEdgeTarget(edge))));
+            }
+            assertNoOverlap(result.getBounds());
+
+            mxGraph mxGraph = new mxGraph();
+            Map<Integer, Object> cells = new HashMap<>();
+            List<Object> edgeCells = new ArrayList<>();
+            mxGraph.getModel().beginUpdate();
+            try {
+                for (Integer vertex : graph.vertexSet()) {
+                    cells.put(vertex, mxGraph.insertVertex(mxGraph.getDefaultParent(), null, "", 0, 0, 150, 50));
+                }
+                for (DefaultEdge edge : graph.edgeSet()) {
+                    edgeCells.add(mxGraph.insertEdge(mxGraph.getDefaultParent(), null, "",
+                            cells.get(graph.getEdgeSource(edge)), cells.get(graph.getEdgeTarget(edge))));
+                }
+            } finally {
+                mxGraph.getModel().endUpdate();
+            }
+            start = System.nanoTime();
+            mxHierarchicalLayout layout = new mxHierarchicalLayout(mxGraph);
+            layout.setInterRankCellSpacing(80);
+            layout.setIntraCellSpacing(50);
+            layout.execute(mxGraph.getDefaultParent());
+            double hierarchicalMillis = (System.nanoTime() - start) / 1_000_000.0;
+            List<List<Point2D>> hierarchicalLines = new ArrayList<>();
+            for (Object edgeCell : edgeCells) {
+                mxGeometry source = mxGraph.getModel().getGeometry(mxGraph.getModel().getTerminal(edgeCell, true));
+                mxGeometry target = mxGraph.getModel().getGeometry(mxGraph.getModel().getTerminal(edgeCell, false));
+                List<Point2D> points = new ArrayList<>();
+                List<mxPoint> controlPoints = mxGraph.getModel().getGeometry(edgeCell).getPoints();
+                if (controlPoints != null) {
+                    for (mxPoint point : controlPoints) {
+                        points.add(new Point2D.Double(point.getX(), point.getY()));
+                    }
+                }
+                // 反向边的控制点按布局方向保存，统一为从起点到终点
+                Rectangle2D sourceRect = toRect(source);
+                if (points.size() > 1 && points.get(0).distance(sourceRect.getCenterX(), sourceRect.getCenterY())
+                        > points.get(points.size() - 1).distance(sourceRect.getCenterX(), sourceRect.getCenterY())) {
+                    Collections.reverse(points);
+                }
+                // mxHierarchicalLayout 的控制点已经包含端口位置，直接作为折线
+                hierarchicalLines.add(points.size() > 1 ? points : polyline(sourceRect, points, toRect(target)));
+            }
+
+            reporter.publishEntry(size + " vertices", String.format("SugiyamaLayout %.1f ms, %d crossings; mxHierarchicalLayout %.1f ms, %d crossings",
+                    sugiyamaMillis, geometricCrossings(sugiyamaLines), hierarchicalMillis, geometricCrossings(hierarchicalLines)));
+            assertTrue(sugiyamaMillis < hierarchicalMillis,
+                    "sugiyama " + sugiyamaMillis + " ms, hierarchical " + hierarchicalMillis + " ms");
+        }
+    }
+
+    private static Graph<String, DefaultEdge> graph(String... edges) {
+        Graph<String, DefaultEdge> graph = new DirectedPseudograph<>(DefaultEdge.class);
+        for (String edge : edges) {
+            String[] parts = edge.split("->");
+            graph.addVertex(parts[0]);
+            graph.addVertex(parts[1]);
+            graph.addEdge(parts[0], parts[1]);
+        }
+        return graph;
+    }
+
+    /**
+     * 随机调用图：以树为主干，附加少量跨层调用和回调
+     */
+    private static Graph<Integer, DefaultEdge> randomCallGraph(Random random, int size) {
+        Graph<Integer, DefaultEdge> graph = new DirectedPseudograph<>(DefaultEdge.class);
+        graph.addVertex(0);
+        for (int v = 1; v < size; v++) {
+            graph.addVertex(v);
+            graph.addEdge(Math.max(0, v - 1 - random.nextInt(Math.min(v, 8))), v);
+        }
+        for (int i = 0; i < size / 2; i++) {
+            int from = random.nextInt(size);
+            int to = Math.min(size - 1, from + 1 + random.nextInt(30));
+            graph.addEdge(from, to);
+        }
+        for (int i = 0; i < size / 50; i++) {
+            int to = random.nextInt(size);
+            graph.addEdge(Math.min(size - 1, to + random.nextInt(20)), to);
+        }
+        return graph;
+    }
+
+    private static Rectangle2D toRect(mxGeometry geometry) {
+        return new Rectangle2D.Double(geometry.getX(), geometry.getY(), geometry.getWidth(), geometry.getHeight());
+    }
+
+    /**
+     * 从起点底边中点经过折点到终点顶边中点的折线
+     */
+    private static List<Point2D> polyline(Rectangle2D source, List<Point2D> bends, Rectangle2D target) {
+        List<Point2D> points = new ArrayList<>();
+        points.add(new Point2D.Double(source.getCenterX(), source.getMaxY()));
+        points.addAll(bends);
+        points.add(new Point2D.Double(target.getCenterX(), target.getMinY()));
+        return points;
+    }
+
+    /**
+     * 统计折线之间的真实交叉，只计算两条线段严格穿过对方的情况，端点相接不算
+     */
+    private static int geometricCrossings(List<List<Point2D>> lines) {
+        List<Line2D> segments = new ArrayList<>();
+        List<Integer> owner = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            List<Point2D> line = lines.get(i);
+            for (int k = 0; k + 1 < line.size(); k++) {
+                segments.add(new Line2D.Double(line.get(k), line.get(k + 1)));
+                owner.add(i);
+            }
+        }
+        int crossings = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Line2D a = segments.get(i);
+            for (int j = i + 1; j < segments.size(); j++) {
+                Line2D b = segments.get(j);
+                if (!owner.get(i).equals(owner.get(j)) && properlyCross(a, b)) {
+                    crossings++;
+                }
+            }
+        }
+        return crossings;
+    }
+
+    private static boolean properlyCross(Line2D a, Line2D b) {
+        int d1 = a.relativeCCW(b.getP1());
+        int d2 = a.relativeCCW(b.getP2());
+        int d3 = b.relativeCCW(a.getP1());
+        int d4 = b.relativeCCW(a.getP2());
+        return d1 * d2 < 0 && d3 * d4 < 0
+                && Math.abs(cross(a, b.getP1())) > 1e-6 && Math.abs(cross(a, b.getP2())) > 1e-6
+                && Math.abs(cross(b, a.getP1())) > 1e-6 && Math.abs(cross(b, a.getP2())) > 1e-6;
+    }
+
+    private static double cross(Line2D line, Point2D point) {
+        return (line.getX2() - line.getX1()) * (point.getY() - line.getY1())
+                - (line.getY2() - line.getY1()) * (point.getX() - line.getX1());
+    }
+
+    private static <V> void assertNoOverlap(Map<V, Rectangle2D> bounds) {
+        List<Rectangle2D> rects = new ArrayList<>(bounds.values());
+        rects.sort((a, b) -> Double.compare(a.getX(), b.getX()));
+        for (int i = 0; i < rects.size(); i++) {
+            for (int j = i + 1; j < rects.size() && rects.get(j).getX() < rects.get(i).getMaxX(); j++) {
+                Rectangle2D a = rects.get(i);
+                Rectangle2D b = rects.get(j);
+                assertFalse(a.getY() < b.getMaxY() && b.getY() < a.getMaxY(), a + " overlaps " + b);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.huq.idea.flow.view;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowTreeLayoutTest {
+
+    @Test
+    public void testFirstChildRightAndSiblingsBelowSubtree() {
+        FlowNode root = new FlowNode("root", 0, 0);
+        FlowNode a = new FlowNode("a", 0, 0);
+        FlowNode a1 = new FlowNode("a1", 0, 0);
+        FlowNode a2 = new FlowNode("a2", 0, 0);
+        FlowNode b = new FlowNode("b", 0, 0);
+        root.addChild(a);
+        root.addChild(b);
+        a.addChild(a1);
+        a.addChild(a2);
+        FlowNode second = new FlowNode("second", 0, 0);
+        List<FlowNode> roots = new ArrayList<>(List.of(root, second));
+
+        new FlowTreeLayout(roots).layoutAll();
+
+        int x = FlowTreeLayout.ORIGIN_X;
+        int y = FlowTreeLayout.ORIGIN_Y;
+        int gap = FlowTreeLayout.COLUMN_GAP;
+        int row = FlowTreeLayout.ROW_HEIGHT;
+        assertEquals(new Point(x, y), root.getBounds().getLocation());
+        assertEquals(new Point(x + gap, y), a.getBounds().getLocation());
+        assertEquals(new Point(x + gap * 2, y), a1.getBounds().getLocation());
+        assertEquals(new Point(x + gap * 2, y + row), a2.getBounds().getLocation());
+        // b 排在 a 的整个子树下方
+        assertEquals(new Point(x + gap, y + row * 2), b.getBounds().getLocation());
+        assertEquals(new Point(x, y + row * 3), second.getBounds().getLocation());
+    }
+
+    @Test
+    public void testIncrementalToggleMatchesFullLayout() {
+        Random random = new Random(3);
+        List<FlowNode> roots = randomForest(random, 2_000);
+        List<FlowNode> all = new ArrayList<>();
+        roots.forEach(root -> collect(root, all));
+        FlowTreeLayout layout = new FlowTreeLayout(roots);
+        layout.layoutAll();
+
+        for (int i = 0; i < 200; i++) {
+            FlowNode node = visibleWithChildren(all, random);
+            layout.toggle(node);
+
+            List<String> incremental = visiblePositions(roots);
+            new FlowTreeLayout(roots).layoutAll();
+            assertEquals(visiblePositions(roots), incremental, "after toggling " + node.getName());
+        }
+    }
+
+    @Test
+    public void testFindAtVisibleNode() {
+        FlowNode root = new FlowNode("root", 0, 0);
+        FlowNode child = new FlowNode("child", 0, 0);
+        root.addChild(child);
+        FlowTreeLayout layout = new FlowTreeLayout(new ArrayList<>(List.of(root)));
+        layout.layoutAll();
+
+        Point inChild = new Point(child.getBounds().x + 5, child.getBounds().y + 5);
+        assertSame(child, layout.findAt(inChild));
+        layout.toggle(root);
+        assertNull(layout.findAt(inChild));
+        assertSame(root, layout.findAt(new Point(root.getBounds().x + 5, root.getBounds().y + 5)));
+    }
+
+    @Test
+    public void testFindAndToggleAfterDrag() {
+        FlowNode root = new FlowNode("root", 0, 0);
+        FlowNode a = new FlowNode("a", 0, 0);
+        FlowNode a1 = new FlowNode("a1", 0, 0);
+        FlowNode a2 = new FlowNode("a2", 0, 0);
+        FlowNode b = new FlowNode("b", 0, 0);
+        FlowNode c = new FlowNode("c", 0, 0);
+        root.addChild(a);
+        root.addChild(b);
+        root.addChild(c);
+        a.addChild(a1);
+        a.addChild(a2);
+        FlowTreeLayout layout = new FlowTreeLayout(new ArrayList<>(List.of(root)));
+        layout.layoutAll();
+
+        // 把 b 拖到 root 上方，原来的行剪枝会跳过它
+        layout.move(b, 0, -3 * FlowTreeLayout.ROW_HEIGHT);
+        Point inB = new Point(b.getBounds().x + 5, b.getBounds().y + 5);
+        assertSame(b, layout.findAt(inB));
+
+        // 折叠 a 只平移 a 下方的节点，拖到上方的 b 保持不动
+        Point bLocation = b.getBounds().getLocation();
+        Point rootLocation = root.getBounds().getLocation();
+        int cY = c.getBounds().y;
+        layout.toggle(a);
+        assertEquals(bLocation, b.getBounds().getLocation());
+        assertEquals(rootLocation, root.getBounds().getLocation());
+        assertEquals(cY - FlowTreeLayout.ROW_HEIGHT, c.getBounds().y);
+        assertSame(b, layout.findAt(inB));
+        assertSame(a, layout.findAt(new Point(a.getBounds().x + 5, a.getBounds().y + 5)));
+    }
+
+    /**
+     * 5000 个节点的调用树：展开一个分支只应耗费毫秒级时间
+     */
+    @Test
+    @Tag("benchmark")
+    public void testToggleBenchmarkOn5kNodes(TestReporter reporter) {
+        Random random = new Random(11);
+        List<FlowNode> roots = randomForest(random, 5_000);
+        List<FlowNode> all = new ArrayList<>();
+        roots.forEach(root -> collect(root, all));
+        FlowTreeLayout layout = new FlowTreeLayout(roots);
+        layout.layoutAll();
+
+        for (int i = 0; i < 200; i++) {
+            layout.toggle(visibleWithChildren(all, random));
+        }
+
+        int toggles = 1_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < toggles; i++) {
+            layout.toggle(visibleWithChildren(all, random));
+        }
+        double incrementalMillis = (System.nanoTime() - start) / 1_000_000.0 / toggles;
+
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            layout.layoutAll();
+        }
+        double fullMillis = (System.nanoTime() - start) / 1_000_000.0 / 100;
+        reporter.publishEntry("toggleMillis", String.format("%.4f", incrementalMillis));
+        reporter.publishEntry("fullLayoutMillis", String.format("%.4f", fullMillis));
+
+        assertTrue(incrementalMillis < 5, "toggle took " + incrementalMillis + " ms");
+    }
+
+    private static List<FlowNode> randomForest(Random random, int size) {
+        List<FlowNode> roots = new ArrayList<>();
+        List<FlowNode> nodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            FlowNode node = new FlowNode("n" + i, 0, 0);
+            if (nodes.isEmpty() || random.nextInt(50) == 0) {
+                roots.add(node);
+            } else {
+                // 偏向最近创建的节点，形成较深的调用链
+                int parentIndex = Math.max(0, nodes.size() - 1 - random.nextInt(Math.min(nodes.size(), 20)));
+                nodes.get(parentIndex).addChild(node);
+            }
+            nodes.add(node);
+        }
+        return roots;
+    }
+
+    private static void collect(FlowNode node, List<FlowNode> result) {
+        result.add(node);
+        for (FlowNode child : node.getChildren()) {
+            collect(child, result);
+        }
+    }
+
+    private static boolean isVisible(FlowNode node) {
+        for (FlowNode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent.isCollapsed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static FlowNode visibleWithChildren(List<FlowNode> all, Random random) {
+        while (true) {
+            FlowNode node = all.get(random.nextInt(all.size()));
+            if (node.hasChildren() && isVisible(node)) {
+                return node;
+            }
+        }
+    }
+
+    private static List<String> visiblePositions(List<FlowNode> roots) {
+        List<String> positions = new ArrayList<>();
+        for (FlowNode root : roots) {
+            visiblePositions(root, positions);
+        }
+        return positions;
+    }
+
+    private static void visiblePositions(FlowNode node, List<String> positions) {
+        positions.add(node.getName() + "@" + node.getBounds().x + "," + node.getBounds().y);
+        if (!node.isCollapsed()) {
+            for (FlowNode child : node.getChildren()) {
+                visiblePositions(child, positions);
+            }
+        }
+    }
+}